@@ -2,6 +2,8 @@ package org.activitymgr.core.dao;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Statement;
 
 import com.google.inject.Inject;
@@ -48,5 +50,19 @@ public class AbstractDAOImpl {
 			}
 	}
 
+	/**
+	 * Tells whether a SQL exception is caused by a duplicate key, that is
+	 * by a row inserted by a concurrent transaction.
+	 * 
+	 * @param e
+	 *            the SQL exception.
+	 * @return <code>true</code> if the exception is a unique constraint
+	 *         violation.
+	 */
+	protected static boolean isDuplicateKey(SQLException e) {
+		// SQLSTATE class 23 : integrity constraint violation
+		return e instanceof SQLIntegrityConstraintViolationException
+				|| (e.getSQLState() != null && e.getSQLState().startsWith("23"));
+	}
 
 }
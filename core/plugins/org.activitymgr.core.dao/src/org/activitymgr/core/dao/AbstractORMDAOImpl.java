@@ -12,6 +12,7 @@ import java.util.Map;
 import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.orm.IDAO;
+import org.activitymgr.core.orm.Page;
 import org.apache.log4j.Logger;
 
 import com.google.inject.Inject;
@@ -100,6 +101,19 @@ public abstract class AbstractORMDAOImpl<TYPE> extends AbstractDAOImpl implement
 		}
 	}
 
+	@Override
+	public Page<TYPE> selectPage(String[] whereClauseAttributeNames,
+			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
+			Object[] pageKey, int pageSize) throws DAOException {
+		try {
+			return wrapped.selectPage(tx(),
+					whereClauseAttributeNames, whereClauseAttributeValues,
+					orderByClauseItems, pageKey, pageSize);
+		} catch (SQLException e) {
+			throw new DAOException(null, e);
+		}
+	}
+
 	@Override
 	public TYPE update(TYPE value) throws DAOException {
 		try {
@@ -0,0 +1,305 @@
+package org.activitymgr.core.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base class of the application wide in-memory indexes that must only reflect
+ * committed data.
+ *
+ * <p>
+ * The modifications made by a transaction are queued in a list bound to the
+ * current thread, and only applied to the shared state once the transaction
+ * is committed (see {@link #commit()}). Meanwhile, the transaction reads a
+ * private copy of the shared state on which its own modifications are
+ * replayed, so that it sees them while the other transactions don't.
+ * </p>
+ *
+ * <p>
+ * The shared state is loaded lazily, and only from a transaction that cannot
+ * see uncommitted data : a read-write transaction or a transaction reading a
+ * replica that finds the shared state unloaded loads a private state that is
+ * dropped when the transaction ends.
+ * </p>
+ *
+ * <p>
+ * The transaction manager must notify the index of the transaction
+ * boundaries : {@link #readWrite()} before the first write,
+ * {@link #replica(boolean)} when the reads are routed to a replica,
+ * {@link #setSavepoint()}, {@link #rollback(int)}, {@link #commit()} and
+ * finally {@link #end()}.
+ * </p>
+ *
+ * @param <S>
+ *            the index state type.
+ * @param <M>
+ *            the index modification type.
+ */
+public abstract class AbstractTransactionalIndex<S, M> {
+
+	/**
+	 * Index state of a transaction.
+	 */
+	private static class Transaction<S, M> {
+		/** Tells whether the transaction may write */
+		private boolean readWrite;
+		/** Tells whether the transaction reads a replica */
+		private boolean replica;
+		/** Tells whether the index has been cleared by the transaction */
+		private boolean cleared;
+		/** Modifications waiting for the commit */
+		private final List<M> modifications = new ArrayList<M>();
+		/** Private state (<code>null</code> until it is required) */
+		private S state;
+	}
+
+	/** Shared state (<code>null</code> until it is loaded) */
+	private volatile S sharedState;
+
+	/** Shared state version (incremented on each modification) */
+	private volatile long version = 0;
+
+	/** Transactions by thread */
+	private final ThreadLocal<Transaction<S, M>> transactions = new ThreadLocal<Transaction<S, M>>();
+
+	/**
+	 * Loads the index state from the database (through the current
+	 * transaction).
+	 *
+	 * @return the loaded state.
+	 */
+	protected abstract S loadState();
+
+	/**
+	 * Copies an index state.
+	 *
+	 * @param state
+	 *            the state to copy.
+	 * @return the copy.
+	 */
+	protected abstract S copyState(S state);
+
+	/**
+	 * Applies a modification to an index state.
+	 *
+	 * @param state
+	 *            the state to modify.
+	 * @param modification
+	 *            the modification.
+	 */
+	protected abstract void apply(S state, M modification);
+
+	/**
+	 * Loads the index if it has not been loaded yet.
+	 */
+	public void load() {
+		getState();
+	}
+
+	/**
+	 * Returns the state to read for the current transaction, loading it if
+	 * required.
+	 *
+	 * @return the index state.
+	 */
+	protected S getState() {
+		Transaction<S, M> tx = transactions.get();
+		if (!readsPrivateState(tx)) {
+			S state = sharedState;
+			if (state != null) {
+				return state;
+			}
+			if (tx == null || (!tx.readWrite && !tx.replica)) {
+				synchronized (this) {
+					if (sharedState == null) {
+						sharedState = loadState();
+						version++;
+					}
+					return sharedState;
+				}
+			}
+		}
+		if (tx.state == null) {
+			S state = null;
+			synchronized (this) {
+				if (!tx.cleared && sharedState != null) {
+					state = copyState(sharedState);
+				}
+			}
+			if (state != null) {
+				for (M modification : tx.modifications) {
+					apply(state, modification);
+				}
+			}
+			else {
+				// The database already holds the transaction modifications
+				state = loadState();
+			}
+			tx.state = state;
+		}
+		return tx.state;
+	}
+
+	/**
+	 * Tells whether the current transaction reads a private state (the
+	 * results computed from such a state must not be shared).
+	 *
+	 * @return <code>true</code> if the state is private.
+	 */
+	public boolean readsPrivateState() {
+		return readsPrivateState(transactions.get());
+	}
+
+	/**
+	 * Tells whether a transaction reads a private state.
+	 *
+	 * @param tx
+	 *            the transaction (may be <code>null</code>).
+	 * @return <code>true</code> if the state is private.
+	 */
+	private static boolean readsPrivateState(Transaction<?, ?> tx) {
+		return tx != null
+				&& (tx.cleared || !tx.modifications.isEmpty() || tx.state != null);
+	}
+
+	/**
+	 * @return the shared state version, incremented each time it is loaded,
+	 *         modified or cleared.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Records a modification of the current transaction. It is applied to
+	 * the shared state once the transaction is committed.
+	 *
+	 * @param modification
+	 *            the modification.
+	 */
+	protected void record(M modification) {
+		Transaction<S, M> tx = getTransaction();
+		tx.modifications.add(modification);
+		if (tx.state != null) {
+			apply(tx.state, modification);
+		}
+	}
+
+	/**
+	 * Clears the index. It will be reloaded on next use.
+	 * <p>
+	 * This method must be called when the index may no longer reflect the
+	 * database (tables re-creation, changes made by another server, ...).
+	 * </p>
+	 */
+	public void clear() {
+		synchronized (this) {
+			sharedState = null;
+			version++;
+		}
+		Transaction<S, M> tx = transactions.get();
+		if (tx != null && (tx.readWrite || !tx.modifications.isEmpty())) {
+			tx.cleared = true;
+			tx.state = null;
+		}
+	}
+
+	/**
+	 * Tells that the current transaction may write (from then on, it doesn't
+	 * load the shared state any more).
+	 */
+	public void readWrite() {
+		getTransaction().readWrite = true;
+	}
+
+	/**
+	 * Tells whether the reads of the current transaction are routed to a
+	 * replica (which must not be used to load the shared state).
+	 *
+	 * @param replica
+	 *            <code>true</code> if the replica is used.
+	 */
+	public void replica(boolean replica) {
+		Transaction<S, M> tx = transactions.get();
+		if (tx != null || replica) {
+			getTransaction().replica = replica;
+		}
+	}
+
+	/**
+	 * Sets a savepoint in the current transaction.
+	 *
+	 * @return the savepoint (the count of recorded modifications).
+	 */
+	public int setSavepoint() {
+		Transaction<S, M> tx = transactions.get();
+		return tx != null ? tx.modifications.size() : 0;
+	}
+
+	/**
+	 * Forgets the modifications recorded by the current transaction after a
+	 * savepoint.
+	 *
+	 * @param savepoint
+	 *            the savepoint (<code>0</code> to forget them all).
+	 */
+	public void rollback(int savepoint) {
+		Transaction<S, M> tx = transactions.get();
+		if (tx != null && savepoint < tx.modifications.size()) {
+			tx.modifications.subList(savepoint, tx.modifications.size())
+					.clear();
+			tx.state = null;
+		}
+	}
+
+	/**
+	 * Applies the modifications recorded by the current transaction to the
+	 * shared state (must be called once the transaction is committed).
+	 */
+	public void commit() {
+		Transaction<S, M> tx = transactions.get();
+		if (tx != null) {
+			if (tx.cleared || !tx.modifications.isEmpty()) {
+				synchronized (this) {
+					if (tx.cleared) {
+						sharedState = null;
+					}
+					// If the shared state is not loaded, the modifications
+					// will be seen on load
+					else if (sharedState != null) {
+						for (M modification : tx.modifications) {
+							apply(sharedState, modification);
+						}
+					}
+					version++;
+				}
+			}
+			tx.cleared = false;
+			tx.modifications.clear();
+			tx.state = null;
+		}
+	}
+
+	/**
+	 * Ends the current transaction (the modifications that have not been
+	 * committed are forgotten).
+	 */
+	public void end() {
+		transactions.remove();
+	}
+
+	/**
+	 * Returns the current transaction, creating it if required.
+	 *
+	 * @return the current transaction.
+	 */
+	private Transaction<S, M> getTransaction() {
+		Transaction<S, M> tx = transactions.get();
+		if (tx == null) {
+			tx = new Transaction<S, M>();
+			transactions.set(tx);
+		}
+		return tx;
+	}
+
+}
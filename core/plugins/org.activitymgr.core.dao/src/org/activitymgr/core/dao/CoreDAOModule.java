@@ -6,6 +6,7 @@ import org.activitymgr.core.dto.Duration;
 import org.activitymgr.core.dto.IDTOFactory;
 import org.activitymgr.core.dto.ReportCfg;
 import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.impl.dao.ChangeLogDAOImpl;
 import org.activitymgr.core.impl.dao.CollaboratorDAOImpl;
 import org.activitymgr.core.impl.dao.ContributionDAOImpl;
 import org.activitymgr.core.impl.dao.CoreDAOImpl;
@@ -100,6 +101,12 @@ public class CoreDAOModule implements Module {
 	    
 	    // Other DAOs
 	    binder.bind(IReportDAO.class).to(ReportDAOImpl.class).in(Singleton.class);
+
+	    // Change log (one node identifier per injector)
+	    binder.bind(IChangeLogDAO.class).to(ChangeLogDAOImpl.class).in(Singleton.class);
+
+	    // Task tree index (shared by all the sessions)
+	    binder.bind(TaskTreeIndex.class).in(Singleton.class);
 	}
 	
 }
@@ -0,0 +1,98 @@
+package org.activitymgr.core.dao;
+
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.misc.ChangeLogEntry;
+import org.activitymgr.core.dto.misc.ChangeLogEntry.Kind;
+
+/**
+ * Change log DAO.
+ *
+ * <p>
+ * When several servers share the same database, each modification is
+ * logged in the <code>CHANGE_LOG</code> table in the modification
+ * transaction, so that the other servers can invalidate their caches.
+ * </p>
+ */
+public interface IChangeLogDAO {
+
+	/**
+	 * @return the identifier of this server (generated on startup).
+	 */
+	String getNodeId();
+
+	/**
+	 * @return <code>true</code> if the modifications are logged.
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Enables or disables the modifications logging (disabled by default, a
+	 * single server doesn't need the change log).
+	 *
+	 * @param enabled
+	 *            <code>true</code> to log the modifications.
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Logs an entity modification (does nothing if the logging is disabled).
+	 *
+	 * @param kind
+	 *            the modification kind.
+	 * @param entity
+	 *            the entity type (<code>null</code> if any entity may have
+	 *            been modified).
+	 * @param entityId
+	 *            the entity identifier.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void log(Kind kind, String entity, Long entityId) throws DAOException;
+
+	/**
+	 * Logs a contribution modification (does nothing if the logging is
+	 * disabled).
+	 *
+	 * @param kind
+	 *            the modification kind.
+	 * @param contribution
+	 *            the contribution.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void log(Kind kind, Contribution contribution) throws DAOException;
+
+	/**
+	 * @return the identifier of the last entry (<code>0</code> if the log is
+	 *         empty).
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	long getLastId() throws DAOException;
+
+	/**
+	 * Returns the entries following a given entry.
+	 *
+	 * @param afterId
+	 *            the identifier of the last known entry.
+	 * @param maxCount
+	 *            the maximum count of entries to return.
+	 * @return the entries (sorted by identifier).
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	ChangeLogEntry[] getEntries(long afterId, int maxCount)
+			throws DAOException;
+
+	/**
+	 * Removes the old entries (the last entry is always kept).
+	 *
+	 * @param beforeTime
+	 *            the time before which the entries are removed.
+	 * @return the count of removed entries.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	int purge(long beforeTime) throws DAOException;
+
+}
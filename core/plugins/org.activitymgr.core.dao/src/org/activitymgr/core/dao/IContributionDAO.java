@@ -78,9 +78,31 @@ public interface IContributionDAO extends IDAO<Contribution> {
 	 */
 	Map<Long, TaskContributionsSums> getTasksSums(Long taskId, String tasksPath, Calendar fromDate, Calendar toDate)
 			throws DAOException;
+
+	/**
+	 * The sums (consumed, ...) of the sub tasks of several tasks, down to a
+	 * given depth.
+	 * 
+	 * @param tasksPaths
+	 *            the full paths of the parent tasks (an empty path stands for
+	 *            the root tasks).
+	 * @param depth
+	 *            the count of levels to consider (<code>1</code> to only
+	 *            consider the direct sub tasks).
+	 * @param fromDate
+	 *            start of the date interval to consider
+	 * @param toDate
+	 *            end of the date interval to consider
+	 * @return the sub tasks sums (consumed, ...)
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	Map<Long, TaskContributionsSums> getTasksSums(String[] tasksPaths, int depth, Calendar fromDate, Calendar toDate)
+			throws DAOException;
 	
 	/**
-	 * Return the contribution years list.
+	 * Return the contribution years list (read from the contributions
+	 * statistics).
 	 * 
 	 * @return the contribution years list.
 	 */
@@ -88,8 +110,97 @@ public interface IContributionDAO extends IDAO<Contribution> {
 
 	/**
 	 * Returns the contributions interval.
+	 * <p>
+	 * When no task path or a root task path is given, the interval is read
+	 * from the contributions statistics.
+	 * </p>
 	 * @param taskPath the optional task path to filter the contributions.
 	 * @return the contributions interval.
 	 */
 	Calendar[] getContributionsInterval(String taskPath);
+
+	/**
+	 * Ajoute des deltas à la somme mensuelle des contributions d'un
+	 * collaborateur sur une tache.
+	 * 
+	 * <p>
+	 * La ligne est créée si elle n'existe pas encore, et supprimée si elle ne
+	 * compte plus aucune contribution.
+	 * </p>
+	 * 
+	 * @param contributorId
+	 *            l'identifiant du collaborateur.
+	 * @param taskId
+	 *            l'identifiant de la tache.
+	 * @param year
+	 *            l'année.
+	 * @param month
+	 *            le mois (de 1 à 12).
+	 * @param durationDelta
+	 *            le delta à appliquer à la somme des durées.
+	 * @param countDelta
+	 *            le delta à appliquer au nombre de contributions.
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	void addToMonthlySums(long contributorId, long taskId, int year,
+			int month, long durationDelta, int countDelta) throws DAOException;
+
+	/**
+	 * Recalcule entièrement la table des sommes mensuelles des contributions.
+	 * 
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	void rebuildMonthlySums() throws DAOException;
+
+	/**
+	 * Met à jour les statistiques (nombre de contributions, dates min et max)
+	 * d'une tache racine pour une année.
+	 * 
+	 * <p>
+	 * En cas de retrait, les dates min et max ne sont recalculées (sur
+	 * l'année concernée seulement) que si la date retirée en était une.
+	 * </p>
+	 * 
+	 * @param rootTaskId
+	 *            l'identifiant de la tache racine.
+	 * @param year
+	 *            l'année.
+	 * @param date
+	 *            la date de la contribution ajoutée ou retirée (au format
+	 *            <code>yyyyMMdd</code>).
+	 * @param countDelta
+	 *            le nombre de contributions ajoutées (positif) ou retirées
+	 *            (négatif) à cette date.
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	void addToStatistics(long rootTaskId, int year, int date, int countDelta)
+			throws DAOException;
+
+	/**
+	 * Recalcule entièrement la table des statistiques des contributions.
+	 * 
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	void rebuildStatistics() throws DAOException;
+
+	/**
+	 * Recalcule les statistiques des contributions de taches racines (après
+	 * un déplacement de tache par exemple).
+	 * 
+	 * <p>
+	 * Les statistiques des taches qui ne sont plus des taches racines sont
+	 * supprimées.
+	 * </p>
+	 * 
+	 * @param rootTaskIds
+	 *            les identifiants des taches racines.
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	void rebuildStatistics(long[] rootTaskIds) throws DAOException;
+
 }
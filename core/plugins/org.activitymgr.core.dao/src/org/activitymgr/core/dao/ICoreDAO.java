@@ -62,6 +62,16 @@ public interface ICoreDAO {
 	 */
 	void createTables() throws DAOException;
 
+	/**
+	 * Ajoute aux tables du modèle de données les colonnes et tables apparues
+	 * depuis leur création.
+	 * 
+	 * @return un booléen indiquant si le modèle a été modifié.
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	boolean upgradeTables() throws DAOException;
+
 	/**
 	 * Executes a SQL script.
 	 * 
@@ -3,6 +3,8 @@ package org.activitymgr.core.dao;
 import java.io.OutputStream;
 import java.sql.ResultSet;
 
+import org.activitymgr.core.orm.Page;
+
 public interface IDAO<TYPE> {
 
 	public TYPE selectByPK(Object... pkValues) throws DAOException;
@@ -25,6 +27,10 @@ public interface IDAO<TYPE> {
 			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
 			int maxRows) throws DAOException;
 
+	public Page<TYPE> selectPage(String[] whereClauseAttributeNames,
+			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
+			Object[] pageKey, int pageSize) throws DAOException;
+
 	public TYPE update(TYPE value) throws DAOException;
 
 	public TYPE insert(TYPE value) throws DAOException;
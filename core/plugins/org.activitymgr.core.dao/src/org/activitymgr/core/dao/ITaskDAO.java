@@ -2,10 +2,11 @@ package org.activitymgr.core.dao;
 
 import java.util.Calendar;
 import java.util.List;
+import java.util.Map;
 
 import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.dto.Task;
-import org.activitymgr.core.dto.misc.TaskSearchFilter;
+import org.activitymgr.core.dto.misc.RecentTasks;
 import org.activitymgr.core.dto.misc.TaskSums;
 
 public interface ITaskDAO extends IDAO<Task> {
@@ -19,44 +20,6 @@ public interface ITaskDAO extends IDAO<Task> {
 	 */
 	int getSubTasksCount(long parentTaskId) throws DAOException;
 
-	/**
-	 * Returns the sub tasks of a given task path filtered by a given string.
-	 * <p>
-	 * Note : the filter is not only applied on the sub tasks, it is also
-	 * applied on any nested task in the tree. This helps to implement dialogs
-	 * in which you can type a text and filter the resulting tree.
-	 * </p>
-	 * 
-	 * @param taskPath
-	 *            the task path.
-	 * @param filter
-	 *            a string that filters sub tasks.
-	 * @return the sub task list.
-	 */
-	Task[] getSubTasks(String taskPath, String filter);
-
-	/**
-	 * Returns the first task matching the given filter.
-	 * @param filter
-	 *            a string that filters tasks.
-	 * @return the matching task or null if no task matches.
-	 */
-	Task getFirstTaskMatching(String filter);
-
-	
-	/**
-	 * Retourn la liste des taches correspondant au filtre de recherche
-	 * spécifié.
-	 * 
-	 * @param filter
-	 *            le filtre de recherche.
-	 * @return la liste des taches correspondant au filtre de recherche
-	 *         spécifié.
-	 * @throws DAOException
-	 *             levé en cas d'incident technique d'accès à la base.
-	 */
-	long[] getTaskIds(TaskSearchFilter filter) throws DAOException;
-
 	/**
 	 * @param contributor
 	 *            le contributeur.
@@ -98,6 +61,137 @@ public interface ITaskDAO extends IDAO<Task> {
 	 */
 	List<TaskSums> getTasksSums(Long taskId, String tasksPath)
 			throws DAOException;
+
+	/**
+	 * The sums of the sub tasks of several tasks, down to a given depth.
+	 * 
+	 * @param tasksPaths
+	 *            the full paths of the parent tasks (an empty path stands for
+	 *            the root tasks).
+	 * @param depth
+	 *            the count of levels to return (<code>1</code> to only return
+	 *            the direct sub tasks).
+	 * @return the sub tasks sums, sorted by path and number.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	List<TaskSums> getTasksSums(String[] tasksPaths, int depth)
+			throws DAOException;
+
+	/**
+	 * Adds the given values to the sums stored on a task and on all its
+	 * ancestors.
+	 * 
+	 * @param fullPath
+	 *            the full path of the deepest task to update (if empty, no
+	 *            task is updated).
+	 * @param budget
+	 *            the budget to add.
+	 * @param initiallyConsumed
+	 *            the initially consumed to add.
+	 * @param todo
+	 *            the estimated time to complete to add.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void addToTasksSums(String fullPath, long budget, long initiallyConsumed,
+			long todo) throws DAOException;
+
+	/**
+	 * Adds the given value to the sub tasks count stored on a task.
+	 * 
+	 * @param fullPath
+	 *            the task full path (if empty, no task is updated).
+	 * @param delta
+	 *            the value to add.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void addToSubTasksCount(String fullPath, int delta) throws DAOException;
+
+	/**
+	 * Recomputes the sums and the sub tasks count stored on every task.
+	 * 
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void rebuildTasksSums() throws DAOException;
+
+	/**
+	 * Returns the tasks recently used by a collaborator.
+	 * 
+	 * @param contributorId
+	 *            the collaborator identifier.
+	 * @param maxResults
+	 *            the maximum number of tasks to return.
+	 * @return the recent tasks (without code path), the most recently used
+	 *         first.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	RecentTasks getRecentTasks(long contributorId, int maxResults)
+			throws DAOException;
+
+	/**
+	 * Returns the use frequencies of the tasks recently used by a
+	 * collaborator.
+	 * 
+	 * @param contributorId
+	 *            the collaborator identifier.
+	 * @param fromDate
+	 *            the date (<code>yyyyMMdd</code>) since which the tasks must
+	 *            have been used.
+	 * @return the contributions count by task identifier.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	Map<Long, Integer> getRecentTasksFrequencies(long contributorId,
+			int fromDate) throws DAOException;
+
+	/**
+	 * Registers the use of a task by a collaborator.
+	 * 
+	 * @param contributorId
+	 *            the collaborator identifier.
+	 * @param taskId
+	 *            the task identifier.
+	 * @param date
+	 *            the date of the contribution (<code>yyyyMMdd</code>) ; the
+	 *            last use date is only updated if the given date is more
+	 *            recent.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void addRecentTaskUse(long contributorId, long taskId, int date)
+			throws DAOException;
+
+	/**
+	 * Forgets the recent tasks of a collaborator.
+	 * 
+	 * @param contributorId
+	 *            the collaborator identifier.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void removeRecentTasks(long contributorId) throws DAOException;
+
+	/**
+	 * Forgets a task and its sub tasks from the collaborators recent tasks.
+	 * 
+	 * @param fullPath
+	 *            the task full path.
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void removeRecentTasks(String fullPath) throws DAOException;
+
+	/**
+	 * Recomputes the collaborators recent tasks from the contributions.
+	 * 
+	 * @throws DAOException
+	 *             thrown if a technical error occurs.
+	 */
+	void rebuildRecentTasks() throws DAOException;
 	
 	/**
 	 * Returns the max task tree depth.
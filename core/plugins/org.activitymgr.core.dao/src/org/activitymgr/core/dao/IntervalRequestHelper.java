@@ -18,12 +18,43 @@ public class IntervalRequestHelper {
 
 	private String toDateStr;
 
+	/** Premier mois entièrement couvert par l'intervalle (yyyyMM) */
+	private int firstFullMonth;
+
+	/** Dernier mois entièrement couvert par l'intervalle (yyyyMM) */
+	private int lastFullMonth;
+
 	public IntervalRequestHelper(Calendar fromDate, Calendar toDate) {
 		this.fromDate = fromDate;
 		this.toDate = toDate;
 		this.fromDateStr = fromDate != null ? sdf.format(fromDate.getTime())
 				: null;
 		this.toDateStr = toDate != null ? sdf.format(toDate.getTime()) : null;
+		// Mois entièrement couverts (les bornes absentes sont ouvertes)
+		if (fromDate == null) {
+			firstFullMonth = 0;
+		} else {
+			Calendar cal = (Calendar) fromDate.clone();
+			if (cal.get(Calendar.DATE) != 1) {
+				cal.set(Calendar.DATE, 1);
+				cal.add(Calendar.MONTH, 1);
+			}
+			firstFullMonth = toMonth(cal);
+		}
+		if (toDate == null) {
+			lastFullMonth = 999999;
+		} else {
+			Calendar cal = (Calendar) toDate.clone();
+			if (cal.get(Calendar.DATE) != cal.getActualMaximum(Calendar.DATE)) {
+				cal.set(Calendar.DATE, 1);
+				cal.add(Calendar.MONTH, -1);
+			}
+			lastFullMonth = toMonth(cal);
+		}
+	}
+
+	private static int toMonth(Calendar cal) {
+		return cal.get(Calendar.YEAR) * 100 + cal.get(Calendar.MONTH) + 1;
 	}
 
 	public boolean hasIntervalCriteria() {
@@ -76,4 +107,86 @@ public class IntervalRequestHelper {
 		return index;
 	}
 
+	/**
+	 * Tells whether the interval covers at least one complete month, in which
+	 * case the contributions may be read from the monthly sums table.
+	 * 
+	 * @return <code>true</code> if at least one month is entirely covered.
+	 */
+	public boolean coversFullMonths() {
+		return firstFullMonth <= lastFullMonth;
+	}
+
+	/**
+	 * Appends a derived table that can be used in place of the
+	 * <code>CONTRIBUTION</code> table for the interval.
+	 * 
+	 * <p>
+	 * The complete months are read from the <code>CONTRIBUTION_MONTHLY</code>
+	 * table (with a day set to 1), whereas the partial months at the edges of
+	 * the interval are read from the daily contributions. The derived table
+	 * exposes the <code>CONTRIBUTION</code> columns plus a
+	 * <code>ctb_count</code> column holding the contributions count of each
+	 * row (<code>sum(ctb_count)</code> must then be used instead of
+	 * <code>count(*)</code>).
+	 * </p>
+	 * 
+	 * <p>
+	 * This method may only be used if {@link #coversFullMonths()} returns
+	 * <code>true</code>.
+	 * </p>
+	 * 
+	 * @param request
+	 *            the request to complete.
+	 * @see #bindMonthlyContributionsParameters(int, PreparedStatement)
+	 */
+	public void appendMonthlyContributions(StringBuffer request) {
+		request.append("(select cmn_year as ctb_year, cmn_month as ctb_month, 1 as ctb_day, ");
+		request.append("cmn_contributor as ctb_contributor, cmn_task as ctb_task, ");
+		request.append("cmn_sum as ctb_duration, cmn_count as ctb_count ");
+		request.append("from CONTRIBUTION_MONTHLY where (cmn_year*100 + cmn_month) between ? and ?");
+		if (hasPartialMonths()) {
+			request.append(" union all select ctb_year, ctb_month, ctb_day, ");
+			request.append("ctb_contributor, ctb_task, ctb_duration, 1 as ctb_count ");
+			request.append("from CONTRIBUTION where");
+			appendIntervalCriteria(request);
+			request.append(" and (ctb_year*100 + ctb_month) not between ? and ?");
+		}
+		request.append(")");
+	}
+
+	/**
+	 * Binds the parameters of the derived table built by
+	 * {@link #appendMonthlyContributions(StringBuffer)}.
+	 * 
+	 * @param startIdx
+	 *            the index of the first parameter.
+	 * @param pStmt
+	 *            the statement.
+	 * @return the index of the next parameter.
+	 * @throws SQLException
+	 *             thrown if a SQL error occurs.
+	 */
+	public int bindMonthlyContributionsParameters(final int startIdx, PreparedStatement pStmt) throws SQLException {
+		int index = startIdx;
+		pStmt.setInt(index++, firstFullMonth);
+		pStmt.setInt(index++, lastFullMonth);
+		if (hasPartialMonths()) {
+			index = bindParameters(index, pStmt);
+			pStmt.setInt(index++, firstFullMonth);
+			pStmt.setInt(index++, lastFullMonth);
+		}
+		return index;
+	}
+
+	/**
+	 * @return <code>true</code> if the interval starts or ends in the middle
+	 *         of a month.
+	 */
+	private boolean hasPartialMonths() {
+		return (fromDate != null && fromDate.get(Calendar.DATE) != 1)
+				|| (toDate != null && toDate.get(Calendar.DATE) != toDate
+						.getActualMaximum(Calendar.DATE));
+	}
+
 }
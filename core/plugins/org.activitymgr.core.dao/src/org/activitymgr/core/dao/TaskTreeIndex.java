@@ -0,0 +1,533 @@
+package org.activitymgr.core.dao;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.util.StringHelper;
+import org.apache.log4j.Logger;
+
+import com.google.inject.Inject;
+
+/**
+ * Application wide in-memory index of the task tree.
+ *
+ * <p>
+ * The index only holds the structural attributes of the tasks (identifier,
+ * path, number and code) so that parent, children and code path lookups can be
+ * served from memory in <code>O(depth)</code>. Complete tasks are still to be
+ * retrieved through their primary key.
+ * </p>
+ *
+ * <p>
+ * The index is loaded lazily on first use (or eagerly through
+ * {@link #load()}) and must then be kept up to date by the task mutation
+ * methods, whose modifications are only shared once the transaction is
+ * committed (see {@link AbstractTransactionalIndex}). It is safe to use it
+ * concurrently : readers never block, whereas loading and commits are
+ * serialized.
+ * </p>
+ */
+public class TaskTreeIndex extends AbstractTransactionalIndex<TaskTreeIndex.Tree, TaskTreeIndex.Change> {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(TaskTreeIndex.class);
+
+	/**
+	 * Structural view of a task.
+	 */
+	static class Node {
+		private final long id;
+		private final String path;
+		private final String fullPath;
+		private final String code;
+		Node(Task task) {
+			this.id = task.getId();
+			this.path = task.getPath() != null ? task.getPath() : ""; //$NON-NLS-1$
+			this.fullPath = this.path + StringHelper.toHex(task.getNumber());
+			this.code = task.getCode();
+		}
+	}
+
+	/**
+	 * Index state.
+	 */
+	static class Tree {
+
+		/** Nodes by task identifier */
+		private final ConcurrentMap<Long, Node> nodesById;
+
+		/** Nodes by task full path */
+		private final ConcurrentMap<String, Node> nodesByFullPath;
+
+		/** Nodes by parent full path and task code */
+		private final ConcurrentMap<String, Node> nodesByPathAndCode;
+
+		/** Children nodes by parent full path (sorted by full path, ie by number) */
+		private final ConcurrentMap<String, ConcurrentSkipListMap<String, Node>> childrenByPath;
+
+		/**
+		 * Creates an empty tree.
+		 */
+		Tree() {
+			nodesById = new ConcurrentHashMap<Long, Node>();
+			nodesByFullPath = new ConcurrentHashMap<String, Node>();
+			nodesByPathAndCode = new ConcurrentHashMap<String, Node>();
+			childrenByPath = new ConcurrentHashMap<String, ConcurrentSkipListMap<String, Node>>();
+		}
+
+		/**
+		 * Copies a tree (the nodes are immutable, they are shared).
+		 *
+		 * @param tree
+		 *            the tree to copy.
+		 */
+		Tree(Tree tree) {
+			nodesById = new ConcurrentHashMap<Long, Node>(tree.nodesById);
+			nodesByFullPath = new ConcurrentHashMap<String, Node>(tree.nodesByFullPath);
+			nodesByPathAndCode = new ConcurrentHashMap<String, Node>(tree.nodesByPathAndCode);
+			childrenByPath = new ConcurrentHashMap<String, ConcurrentSkipListMap<String, Node>>();
+			for (Map.Entry<String, ConcurrentSkipListMap<String, Node>> entry : tree.childrenByPath.entrySet()) {
+				childrenByPath.put(entry.getKey(), new ConcurrentSkipListMap<String, Node>(entry.getValue()));
+			}
+		}
+
+		/**
+		 * Adds a node to the tree.
+		 *
+		 * @param node
+		 *            the node to add.
+		 */
+		private void add(Node node) {
+			nodesById.put(node.id, node);
+			nodesByFullPath.put(node.fullPath, node);
+			nodesByPathAndCode.put(pathAndCodeKey(node.path, node.code), node);
+			ConcurrentSkipListMap<String, Node> children = childrenByPath.get(node.path);
+			if (children == null) {
+				ConcurrentSkipListMap<String, Node> newChildren = new ConcurrentSkipListMap<String, Node>();
+				children = childrenByPath.putIfAbsent(node.path, newChildren);
+				if (children == null) {
+					children = newChildren;
+				}
+			}
+			children.put(node.fullPath, node);
+		}
+
+		/**
+		 * Removes a node from the tree (its sub nodes are kept).
+		 * <p>
+		 * As tasks are moved one after the other, another node may already
+		 * have taken the place of the given one ; in that case the entries of
+		 * the other node are left untouched.
+		 * </p>
+		 *
+		 * @param node
+		 *            the node to remove.
+		 */
+		private void remove(Node node) {
+			nodesById.remove(node.id, node);
+			nodesByFullPath.remove(node.fullPath, node);
+			nodesByPathAndCode.remove(pathAndCodeKey(node.path, node.code), node);
+			ConcurrentSkipListMap<String, Node> children = childrenByPath.get(node.path);
+			if (children != null) {
+				children.remove(node.fullPath, node);
+			}
+		}
+
+		/**
+		 * Removes a node and its sub nodes from the tree.
+		 *
+		 * @param node
+		 *            the node to remove.
+		 */
+		private void removeSubtree(Node node) {
+			ConcurrentSkipListMap<String, Node> children = childrenByPath.remove(node.fullPath);
+			if (children != null) {
+				for (Node child : children.values()) {
+					removeSubtree(child);
+				}
+			}
+			remove(node);
+		}
+
+	}
+
+	/**
+	 * Modification of the tree : a task is saved or removed (with its sub
+	 * tasks).
+	 */
+	static class Change {
+		private final Node node;
+		private final boolean removal;
+		Change(Node node, boolean removal) {
+			this.node = node;
+			this.removal = removal;
+		}
+	}
+
+	/** Tasks DAO */
+	private ITaskDAO taskDAO;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param taskDAO
+	 *            the tasks DAO.
+	 */
+	@Inject
+	public TaskTreeIndex(ITaskDAO taskDAO) {
+		this.taskDAO = taskDAO;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.activitymgr.core.dao.AbstractTransactionalIndex#loadState()
+	 */
+	@Override
+	protected Tree loadState() {
+		long start = System.currentTimeMillis();
+		Tree tree = new Tree();
+		Task[] tasks = taskDAO.selectAll();
+		for (Task task : tasks) {
+			tree.add(new Node(task));
+		}
+		log.debug("Task tree index loaded (" + tasks.length + " tasks, " + (System.currentTimeMillis() - start) + " ms)"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		return tree;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.activitymgr.core.dao.AbstractTransactionalIndex#copyState(java.lang
+	 * .Object)
+	 */
+	@Override
+	protected Tree copyState(Tree tree) {
+		return new Tree(tree);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.activitymgr.core.dao.AbstractTransactionalIndex#apply(java.lang.Object
+	 * , java.lang.Object)
+	 */
+	@Override
+	protected void apply(Tree tree, Change change) {
+		Node previous = tree.nodesById.get(change.node.id);
+		if (change.removal) {
+			if (previous != null) {
+				tree.removeSubtree(previous);
+			}
+		}
+		else {
+			if (previous != null) {
+				tree.remove(previous);
+			}
+			tree.add(change.node);
+		}
+	}
+
+	/**
+	 * Registers a created or updated task.
+	 * <p>
+	 * If the task was already known, its previous path, number and code are
+	 * forgotten.
+	 * </p>
+	 *
+	 * @param task
+	 *            the task.
+	 */
+	public void taskSaved(Task task) {
+		record(new Change(new Node(task), false));
+	}
+
+	/**
+	 * Unregisters a deleted task and all its sub tasks.
+	 *
+	 * @param task
+	 *            the removed task.
+	 */
+	public void taskRemoved(Task task) {
+		record(new Change(new Node(task), true));
+	}
+
+	/**
+	 * Returns the identifier of a task.
+	 *
+	 * @param fullPath
+	 *            the task full path.
+	 * @return the task identifier or <code>null</code> if the task doesn't
+	 *         exist.
+	 */
+	public Long getTaskId(String fullPath) {
+		Tree tree = getState();
+		Node node = fullPath != null ? tree.nodesByFullPath.get(fullPath) : null;
+		return node != null ? node.id : null;
+	}
+
+	/**
+	 * Returns the identifier of a task.
+	 *
+	 * @param path
+	 *            the task path (ie. its parent full path).
+	 * @param code
+	 *            the task code.
+	 * @return the task identifier or <code>null</code> if the task doesn't
+	 *         exist.
+	 */
+	public Long getTaskId(String path, String code) {
+		Tree tree = getState();
+		Node node = tree.nodesByPathAndCode.get(pathAndCodeKey(path, code));
+		return node != null ? node.id : null;
+	}
+
+	/**
+	 * Returns the full path of a task.
+	 *
+	 * @param taskId
+	 *            the task identifier.
+	 * @return the task full path or <code>null</code> if the task doesn't
+	 *         exist.
+	 */
+	public String getFullPath(long taskId) {
+		Tree tree = getState();
+		Node node = tree.nodesById.get(taskId);
+		return node != null ? node.fullPath : null;
+	}
+
+	/**
+	 * Returns the identifier of the parent of a task.
+	 *
+	 * @param taskId
+	 *            the task identifier.
+	 * @return the parent task identifier or <code>null</code> if the task is
+	 *         a root task or is unknown.
+	 */
+	public Long getParentTaskId(long taskId) {
+		Tree tree = getState();
+		Node node = tree.nodesById.get(taskId);
+		return node != null ? getTaskId(node.path) : null;
+	}
+
+	/**
+	 * Returns the number of direct sub tasks of a task.
+	 *
+	 * @param fullPath
+	 *            the parent task full path (<code>""</code> for root tasks).
+	 * @return the sub tasks count.
+	 */
+	public int getSubTasksCount(String fullPath) {
+		Tree tree = getState();
+		Map<String, Node> children = tree.childrenByPath.get(fullPath);
+		return children != null ? children.size() : 0;
+	}
+
+	/**
+	 * Returns the identifiers of the direct sub tasks of a task, ordered by
+	 * task number.
+	 *
+	 * @param fullPath
+	 *            the parent task full path (<code>""</code> for root tasks).
+	 * @return the sub tasks identifiers.
+	 */
+	public long[] getSubTaskIds(String fullPath) {
+		Tree tree = getState();
+		Map<String, Node> children = tree.childrenByPath.get(fullPath);
+		if (children == null) {
+			return new long[0];
+		}
+		Node[] nodes = children.values().toArray(new Node[0]);
+		long[] result = new long[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			result[i] = nodes[i].id;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the identifiers of a task and of all its sub tasks (at any
+	 * depth).
+	 *
+	 * @param fullPath
+	 *            the task full path.
+	 * @return the tasks identifiers (the given task comes first).
+	 */
+	public long[] getSubTreeTaskIds(String fullPath) {
+		Tree tree = getState();
+		List<Long> ids = new ArrayList<Long>();
+		Node node = tree.nodesByFullPath.get(fullPath);
+		if (node != null) {
+			collectSubTree(tree, node, ids);
+		}
+		long[] result = new long[ids.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = ids.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the code path of a task.
+	 *
+	 * @param fullPath
+	 *            the task full path.
+	 * @return the code path (<code>""</code> if the given path is empty) or
+	 *         <code>null</code> if an unknown task is encountered.
+	 */
+	public String getCodePath(String fullPath) {
+		Tree tree = getState();
+		StringBuffer buf = new StringBuffer();
+		String cursor = fullPath != null ? fullPath : ""; //$NON-NLS-1$
+		while (cursor.length() > 0) {
+			Node node = tree.nodesByFullPath.get(cursor);
+			if (node == null) {
+				return null;
+			}
+			buf.insert(0, node.code);
+			buf.insert(0, '/');
+			cursor = node.path;
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Returns the code path of a task.
+	 *
+	 * @param taskId
+	 *            the task identifier.
+	 * @return the code path or <code>null</code> if the task is unknown.
+	 */
+	public String getCodePath(long taskId) {
+		Tree tree = getState();
+		Node node = tree.nodesById.get(taskId);
+		return node != null ? getCodePath(node.fullPath) : null;
+	}
+
+	/**
+	 * Returns the code paths of a set of tasks.
+	 * <p>
+	 * The code paths of the ancestors are computed once for the whole batch
+	 * (they are kept by path prefix), which makes this method cheaper than
+	 * successive calls to {@link #getCodePath(long)} for tasks sharing
+	 * ancestors.
+	 * </p>
+	 *
+	 * @param taskIds
+	 *            the tasks identifiers.
+	 * @return the code paths (in the same order), <code>null</code> for the
+	 *         unknown tasks.
+	 */
+	public String[] getCodePaths(long[] taskIds) {
+		Tree tree = getState();
+		Map<String, String> codePathsByFullPath = new HashMap<String, String>();
+		codePathsByFullPath.put("", ""); //$NON-NLS-1$ //$NON-NLS-2$
+		String[] result = new String[taskIds.length];
+		for (int i = 0; i < taskIds.length; i++) {
+			Node node = tree.nodesById.get(taskIds[i]);
+			result[i] = node != null ? getCodePath(tree, node.fullPath, codePathsByFullPath) : null;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the code path of a task, reusing the code paths already
+	 * computed for its ancestors.
+	 *
+	 * @param tree
+	 *            the tree.
+	 * @param fullPath
+	 *            the task full path.
+	 * @param codePathsByFullPath
+	 *            the code paths already computed, by full path.
+	 * @return the code path or <code>null</code> if an unknown task is
+	 *         encountered.
+	 */
+	private static String getCodePath(Tree tree, String fullPath, Map<String, String> codePathsByFullPath) {
+		String codePath = codePathsByFullPath.get(fullPath);
+		if (codePath == null) {
+			Node node = tree.nodesByFullPath.get(fullPath);
+			String parentCodePath = node != null ? getCodePath(tree, node.path, codePathsByFullPath) : null;
+			if (parentCodePath == null) {
+				return null;
+			}
+			codePath = parentCodePath + '/' + node.code;
+			codePathsByFullPath.put(fullPath, codePath);
+		}
+		return codePath;
+	}
+
+	/**
+	 * Returns the identifier of a task given its code path.
+	 *
+	 * @param codePath
+	 *            the code path (ex: <code>/ROOT/T1/T11</code>).
+	 * @return the task identifier or <code>null</code> if the task doesn't
+	 *         exist.
+	 */
+	public Long getTaskIdByCodePath(String codePath) {
+		Tree tree = getState();
+		String subpath = codePath.trim();
+		if (!subpath.startsWith("/")) { //$NON-NLS-1$
+			return null;
+		}
+		subpath = subpath.substring(1);
+		Node node = null;
+		while (subpath.length() > 0) {
+			int idx = subpath.indexOf('/');
+			String code = idx >= 0 ? subpath.substring(0, idx) : subpath;
+			subpath = idx >= 0 ? subpath.substring(idx + 1) : ""; //$NON-NLS-1$
+			node = tree.nodesByPathAndCode.get(pathAndCodeKey(node != null ? node.fullPath : "", code)); //$NON-NLS-1$
+			if (node == null) {
+				return null;
+			}
+		}
+		return node != null ? node.id : null;
+	}
+
+	/**
+	 * Collects the identifiers of a node and of its sub nodes.
+	 *
+	 * @param tree
+	 *            the tree.
+	 * @param node
+	 *            the node.
+	 * @param ids
+	 *            the list to fill.
+	 */
+	private static void collectSubTree(Tree tree, Node node, List<Long> ids) {
+		ids.add(node.id);
+		Map<String, Node> children = tree.childrenByPath.get(node.fullPath);
+		if (children != null) {
+			for (Node child : children.values()) {
+				collectSubTree(tree, child, ids);
+			}
+		}
+	}
+
+	/**
+	 * Builds the key of a node in the path and code map.
+	 * <p>
+	 * As a path only contains hexadecimal digits, the first colon separates
+	 * the path from the code.
+	 * </p>
+	 *
+	 * @param path
+	 *            the task path.
+	 * @param code
+	 *            the task code.
+	 * @return the key.
+	 */
+	private static String pathAndCodeKey(String path, String code) {
+		return (path != null ? path : "") + ':' + code; //$NON-NLS-1$
+	}
+
+}
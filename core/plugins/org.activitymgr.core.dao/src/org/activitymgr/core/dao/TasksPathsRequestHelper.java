@@ -0,0 +1,118 @@
+package org.activitymgr.core.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Helps building the requests that select the sub tasks of several tasks,
+ * possibly down to several levels, in a single query.
+ *
+ * <p>
+ * The tasks paths being made of two hexadecimal digits per level, the tasks
+ * that are at most <code>depth</code> levels below a task whose full path is
+ * <code>p</code> are the ones whose path starts with <code>p</code> and is at
+ * most <code>2 * (depth - 1)</code> characters longer.
+ * </p>
+ */
+public class TasksPathsRequestHelper {
+
+	/** Parent tasks full paths */
+	private String[] tasksPaths;
+
+	/** Depth */
+	private int depth;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param tasksPaths
+	 *            the full paths of the parent tasks (an empty path stands
+	 *            for the root tasks).
+	 * @param depth
+	 *            the count of levels to select (<code>1</code> to only select
+	 *            the direct sub tasks).
+	 */
+	public TasksPathsRequestHelper(String[] tasksPaths, int depth) {
+		if (tasksPaths.length == 0) {
+			throw new IllegalArgumentException("At least one path must be specified");
+		}
+		if (depth < 1) {
+			throw new IllegalArgumentException("Invalid depth " + depth);
+		}
+		this.tasksPaths = tasksPaths;
+		this.depth = depth;
+	}
+
+	/**
+	 * Appends the criteria to a request.
+	 *
+	 * @param request
+	 *            the request.
+	 * @param pathColumn
+	 *            the path column name (possibly prefixed by a table alias).
+	 */
+	public void appendCriteria(StringBuffer request, String pathColumn) {
+		if (depth == 1) {
+			request.append(pathColumn);
+			if (tasksPaths.length == 1) {
+				request.append("=?");
+			} else {
+				request.append(" in (");
+				for (int i = 0; i < tasksPaths.length; i++) {
+					request.append(i > 0 ? ", ?" : "?");
+				}
+				request.append(")");
+			}
+		} else {
+			request.append("(");
+			for (int i = 0; i < tasksPaths.length; i++) {
+				if (i > 0) {
+					request.append(" or ");
+				}
+				request.append("(").append(pathColumn).append(" like ? and length(")
+						.append(pathColumn).append(")<=?)");
+			}
+			request.append(")");
+		}
+	}
+
+	/**
+	 * Binds the criteria parameters.
+	 *
+	 * @param paramIdx
+	 *            the index of the first parameter.
+	 * @param pStmt
+	 *            the statement.
+	 * @return the index of the next parameter.
+	 * @throws SQLException
+	 *             thrown if a SQL exception occurs.
+	 */
+	public int bindParameters(int paramIdx, PreparedStatement pStmt)
+			throws SQLException {
+		for (String tasksPath : tasksPaths) {
+			if (depth == 1) {
+				pStmt.setString(paramIdx++, tasksPath);
+			} else {
+				pStmt.setString(paramIdx++, tasksPath + "%");
+				pStmt.setInt(paramIdx++, tasksPath.length() + 2 * (depth - 1));
+			}
+		}
+		return paramIdx;
+	}
+
+	/**
+	 * @return a description of the criteria (for error messages).
+	 */
+	@Override
+	public String toString() {
+		if (tasksPaths.length == 1 && depth == 1) {
+			return tasksPaths[0];
+		}
+		StringBuffer buf = new StringBuffer();
+		for (String tasksPath : tasksPaths) {
+			buf.append(buf.length() > 0 ? ", '" : "'").append(tasksPath).append("'");
+		}
+		return buf.append(" (depth=").append(depth).append(")").toString();
+	}
+
+}
@@ -0,0 +1,199 @@
+package org.activitymgr.core.impl.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.activitymgr.core.dao.AbstractDAOImpl;
+import org.activitymgr.core.dao.DAOException;
+import org.activitymgr.core.dao.IChangeLogDAO;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.misc.ChangeLogEntry;
+import org.activitymgr.core.dto.misc.ChangeLogEntry.Kind;
+import org.activitymgr.core.util.Strings;
+import org.apache.log4j.Logger;
+
+public class ChangeLogDAOImpl extends AbstractDAOImpl implements IChangeLogDAO {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(ChangeLogDAOImpl.class);
+
+	/** Server identifier */
+	private final String nodeId = UUID.randomUUID().toString();
+
+	/** Tells whether the modifications are logged */
+	private volatile boolean enabled;
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IChangeLogDAO#getNodeId()
+	 */
+	@Override
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IChangeLogDAO#isEnabled()
+	 */
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IChangeLogDAO#setEnabled(boolean)
+	 */
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IChangeLogDAO#log(org.activitymgr.core.dto.misc.ChangeLogEntry.Kind, java.lang.String, java.lang.Long)
+	 */
+	@Override
+	public void log(Kind kind, String entity, Long entityId)
+			throws DAOException {
+		if (enabled) {
+			insert(kind, entity, entityId, null, null);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IChangeLogDAO#log(org.activitymgr.core.dto.misc.ChangeLogEntry.Kind, org.activitymgr.core.dto.Contribution)
+	 */
+	@Override
+	public void log(Kind kind, Contribution contribution) throws DAOException {
+		if (enabled) {
+			insert(kind, ChangeLogEntry.CONTRIBUTION,
+					contribution.getTaskId(),
+					contribution.getContributorId(),
+					contribution.getYear() * 10000 + contribution.getMonth()
+							* 100 + contribution.getDay());
+		}
+	}
+
+	private void insert(Kind kind, String entity, Long entityId,
+			Long contributorId, Integer day) throws DAOException {
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement("insert into CHANGE_LOG (chl_node, chl_time, chl_kind, chl_entity, chl_entity_id, chl_contributor, chl_day) values (?, ?, ?, ?, ?, ?, ?)"); //$NON-NLS-1$
+			pStmt.setString(1, nodeId);
+			pStmt.setLong(2, System.currentTimeMillis());
+			pStmt.setString(3, String.valueOf(kind.getCode()));
+			pStmt.setString(4, entity);
+			if (entityId != null) {
+				pStmt.setLong(5, entityId);
+			} else {
+				pStmt.setNull(5, Types.BIGINT);
+			}
+			if (contributorId != null) {
+				pStmt.setLong(6, contributorId);
+			} else {
+				pStmt.setNull(6, Types.INTEGER);
+			}
+			if (day != null) {
+				pStmt.setInt(7, day);
+			} else {
+				pStmt.setNull(7, Types.INTEGER);
+			}
+			pStmt.executeUpdate();
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.CHANGE_LOG_FAILURE"), e); //$NON-NLS-1$
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IChangeLogDAO#getLastId()
+	 */
+	@Override
+	public long getLastId() throws DAOException {
+		PreparedStatement pStmt = null;
+		ResultSet rs = null;
+		try {
+			pStmt = tx().prepareStatement("select max(chl_id) from CHANGE_LOG"); //$NON-NLS-1$
+			rs = pStmt.executeQuery();
+			rs.next();
+			return rs.getLong(1);
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.CHANGE_LOG_FAILURE"), e); //$NON-NLS-1$
+		} finally {
+			lastAttemptClose(rs);
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IChangeLogDAO#getEntries(long, int)
+	 */
+	@Override
+	public ChangeLogEntry[] getEntries(long afterId, int maxCount)
+			throws DAOException {
+		PreparedStatement pStmt = null;
+		ResultSet rs = null;
+		try {
+			pStmt = tx().prepareStatement("select chl_id, chl_node, chl_time, chl_kind, chl_entity, chl_entity_id, chl_contributor, chl_day from CHANGE_LOG where chl_id>? order by chl_id"); //$NON-NLS-1$
+			pStmt.setMaxRows(maxCount);
+			pStmt.setLong(1, afterId);
+			rs = pStmt.executeQuery();
+			List<ChangeLogEntry> entries = new ArrayList<ChangeLogEntry>();
+			while (rs.next()) {
+				ChangeLogEntry entry = new ChangeLogEntry();
+				entry.setId(rs.getLong(1));
+				entry.setNodeId(rs.getString(2));
+				entry.setTime(rs.getLong(3));
+				entry.setKind(Kind.fromCode(rs.getString(4).charAt(0)));
+				entry.setEntity(rs.getString(5));
+				long entityId = rs.getLong(6);
+				entry.setEntityId(rs.wasNull() ? null : entityId);
+				long contributorId = rs.getLong(7);
+				entry.setContributorId(rs.wasNull() ? null : contributorId);
+				int day = rs.getInt(8);
+				entry.setDay(rs.wasNull() ? null : day);
+				entries.add(entry);
+			}
+			return entries.toArray(new ChangeLogEntry[entries.size()]);
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.CHANGE_LOG_FAILURE"), e); //$NON-NLS-1$
+		} finally {
+			lastAttemptClose(rs);
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IChangeLogDAO#purge(long)
+	 */
+	@Override
+	public int purge(long beforeTime) throws DAOException {
+		// The last entry is kept (MySQL resets the auto increment counter of
+		// an empty table when it restarts, the identifiers would be reused)
+		long lastId = getLastId();
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement("delete from CHANGE_LOG where chl_time<? and chl_id<?"); //$NON-NLS-1$
+			pStmt.setLong(1, beforeTime);
+			pStmt.setLong(2, lastId);
+			return pStmt.executeUpdate();
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.CHANGE_LOG_FAILURE"), e); //$NON-NLS-1$
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+}
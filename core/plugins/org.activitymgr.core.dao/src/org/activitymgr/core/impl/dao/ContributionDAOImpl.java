@@ -3,12 +3,9 @@ package org.activitymgr.core.impl.dao;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.Map;
@@ -17,6 +14,7 @@ import org.activitymgr.core.dao.AbstractORMDAOImpl;
 import org.activitymgr.core.dao.DAOException;
 import org.activitymgr.core.dao.IContributionDAO;
 import org.activitymgr.core.dao.IntervalRequestHelper;
+import org.activitymgr.core.dao.TasksPathsRequestHelper;
 import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.dto.Contribution;
 import org.activitymgr.core.dto.Task;
@@ -163,6 +161,20 @@ public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implem
 		if (taskId != null && tasksPath != null) {
 			throw new IllegalStateException("Both task Id and task path cannot be specified");
 		}
+		return getTasksSums(taskId, tasksPath != null ? new TasksPathsRequestHelper(new String[] { tasksPath }, 1) : null, fromDate, toDate);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IContributionDAO#getTasksSums(java.lang.String[], int, java.util.Calendar, java.util.Calendar)
+	 */
+	@Override
+	public Map<Long, TaskContributionsSums> getTasksSums(String[] tasksPaths,
+			int depth, Calendar fromDate, Calendar toDate) throws DAOException {
+		return getTasksSums(null, new TasksPathsRequestHelper(tasksPaths, depth), fromDate, toDate);
+	}
+
+	private Map<Long, TaskContributionsSums> getTasksSums(Long taskId, TasksPathsRequestHelper tasksPaths, Calendar fromDate, Calendar toDate)
+			throws DAOException {
 		PreparedStatement pStmt = null;
 		ResultSet rs = null;
 		try {
@@ -171,13 +183,23 @@ public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implem
 			
 			// Prepare the request
 			StringBuffer request = new StringBuffer();
-			request.append("select pt.tsk_id, pt.tsk_number, sum(ctb_duration), count(ctb_duration) ");
+			// Complete months are read from the monthly sums
+			boolean useMonthlySums = interval.coversFullMonths();
+			request.append("select pt.tsk_id, pt.tsk_number, sum(ctb_duration), ");
+			request.append(useMonthlySums ? "sum(ctb_count) " : "count(ctb_duration) ");
 			request.append("from TASK pt left join (");
 			{
-				request.append("TASK lt left join CONTRIBUTION on (ctb_task=lt.tsk_id");
-				if (interval.hasIntervalCriteria()) {
-					request.append(" and ");
-					interval.appendIntervalCriteria(request);
+				if (useMonthlySums) {
+					request.append("TASK lt left join ");
+					interval.appendMonthlyContributions(request);
+					request.append(" ctb on (ctb_task=lt.tsk_id");
+				}
+				else {
+					request.append("TASK lt left join CONTRIBUTION on (ctb_task=lt.tsk_id");
+					if (interval.hasIntervalCriteria()) {
+						request.append(" and ");
+						interval.appendIntervalCriteria(request);
+					}
 				}
 				request.append(")");
 			}
@@ -186,7 +208,7 @@ public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implem
 			if (taskId != null) {
 				request.append("pt.tsk_id=?");
 			} else {
-				request.append("pt.tsk_path=?");
+				tasksPaths.appendCriteria(request, "pt.tsk_path");
 			}
 			request.append(" group by pt.tsk_id");
 			request.append(" order by pt.tsk_number");
@@ -194,13 +216,16 @@ public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implem
 			// Bind parameters			
 			pStmt = tx().prepareStatement(request.toString()); //$NON-NLS-1$
 			int paramIdx = 1;
-			if (interval.hasIntervalCriteria()) {
+			if (useMonthlySums) {
+				paramIdx = interval.bindMonthlyContributionsParameters(paramIdx, pStmt);
+			}
+			else if (interval.hasIntervalCriteria()) {
 				paramIdx = interval.bindParameters(paramIdx, pStmt);
 			}
 			if (taskId != null) {
 				pStmt.setLong(paramIdx++, taskId);
 			} else  {
-				pStmt.setString(paramIdx++, tasksPath);
+				paramIdx = tasksPaths.bindParameters(paramIdx, pStmt);
 			}
 			rs = pStmt.executeQuery();
 
@@ -222,7 +247,7 @@ public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implem
 			log.info("Incident SQL", e); //$NON-NLS-1$
 			throw new DAOException(
 					Strings.getString(
-							"DbMgr.errors.TASK_SUMS_COMPUTATION_FAILURE", taskId != null ? taskId : tasksPath), e); //$NON-NLS-1$ //$NON-NLS-2$
+							"DbMgr.errors.TASK_SUMS_COMPUTATION_FAILURE", taskId != null ? taskId : tasksPaths), e); //$NON-NLS-1$ //$NON-NLS-2$
 		} finally {
 			try {
 				if (pStmt != null)
@@ -276,7 +301,7 @@ public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implem
 		ResultSet rs = null;
 		try {
 			// Build the SQL request
-			pStmt = tx().prepareStatement("select distinct(ctb_year) as year from CONTRIBUTION order by year");
+			pStmt = tx().prepareStatement("select distinct(cst_year) as year from CONTRIBUTION_STATS order by year");
 
 			// Exécution de le requête et extraction du résultat
 			rs = pStmt.executeQuery();
@@ -308,14 +333,27 @@ public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implem
 		try {
 			boolean filterByTaskPath = taskPath != null && !"".equals(taskPath);
 			// Build the SQL request
-			String request = "select count(*),min(ctb_year*10000+ctb_month*100+ctb_day),max(ctb_year*10000+ctb_month*100+ctb_day) from CONTRIBUTION";
-			if (filterByTaskPath) {
+			String request = null;
+			// Root tasks intervals are read from the statistics
+			if (!filterByTaskPath) {
+				request = "select sum(cst_count), min(cst_min_date), max(cst_max_date) from CONTRIBUTION_STATS";
+			}
+			else if (taskPath.length() == 2) {
+				request = "select sum(cst_count), min(cst_min_date), max(cst_max_date) from CONTRIBUTION_STATS join TASK on cst_root_task=tsk_id where tsk_path='' and tsk_number=?";
+			}
+			else {
+				request = "select count(*),min(ctb_year*10000+ctb_month*100+ctb_day),max(ctb_year*10000+ctb_month*100+ctb_day) from CONTRIBUTION";
 				request += " join TASK on ctb_task=tsk_id where tsk_path like ? or concat(tsk_path, tsk_number)=?";
 			}
 			pStmt = tx().prepareStatement(request);
 			if (filterByTaskPath) {
-				pStmt.setString(1, taskPath + '%');
-				pStmt.setString(2, taskPath);
+				if (taskPath.length() == 2) {
+					pStmt.setString(1, taskPath);
+				}
+				else {
+					pStmt.setString(1, taskPath + '%');
+					pStmt.setString(2, taskPath);
+				}
 			}
 			// Exécution de le requête et extraction du résultat
 			Calendar[] result = null;
@@ -324,15 +362,9 @@ public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implem
 				int contributionsCount = rs.getInt(1);
 				// If there is no contribution, simply return null
 				if (contributionsCount > 0) {
-					// Else parse the result
-					result = new Calendar[2];
-					SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd");
-					Date start = sdf.parse(rs.getString(2));
-					result[0] = new GregorianCalendar();
-					result[0].setTime(start);
-					Date end = sdf.parse(rs.getString(3));
-					result[1] = new GregorianCalendar();
-					result[1].setTime(end);
+					// Else convert the result
+					result = new Calendar[] { toCalendar(rs.getInt(2)),
+							toCalendar(rs.getInt(3)) };
 				}
 			}
 			pStmt.close();
@@ -345,11 +377,315 @@ public class ContributionDAOImpl extends AbstractORMDAOImpl<Contribution> implem
 			throw new DAOException(
 					"Erreur lors de la récupération des années de contributions",
 					e);
-		} catch (ParseException e) {
-			log.info("Unexpected parse error", e); //$NON-NLS-1$
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/**
+	 * Converts a date to a calendar.
+	 * 
+	 * @param date
+	 *            the date (<code>yyyyMMdd</code>).
+	 * @return the calendar.
+	 */
+	private static Calendar toCalendar(int date) {
+		return new GregorianCalendar(date / 10000, (date / 100) % 100 - 1,
+				date % 100);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IContributionDAO#addToMonthlySums(long, long, int, int, long, int)
+	 */
+	@Override
+	public void addToMonthlySums(long contributorId, long taskId, int year,
+			int month, long durationDelta, int countDelta) throws DAOException {
+		if (durationDelta == 0 && countDelta == 0) {
+			return;
+		}
+		PreparedStatement pStmt = null;
+		try {
+			// Mise à jour de la ligne existante
+			int updated = updateMonthlySums(contributorId, taskId, year,
+					month, durationDelta, countDelta);
+
+			// Création de la ligne si elle n'existait pas
+			if (updated == 0) {
+				pStmt = tx().prepareStatement("insert into CONTRIBUTION_MONTHLY (cmn_year, cmn_month, cmn_contributor, cmn_task, cmn_sum, cmn_count) values (?, ?, ?, ?, ?, ?)");
+				pStmt.setInt(1, year);
+				pStmt.setInt(2, month);
+				pStmt.setLong(3, contributorId);
+				pStmt.setLong(4, taskId);
+				pStmt.setLong(5, durationDelta);
+				pStmt.setInt(6, countDelta);
+				try {
+					pStmt.executeUpdate();
+				} catch (SQLException e) {
+					if (!isDuplicateKey(e)) {
+						throw e;
+					}
+					// La ligne a été créée entre-temps par une transaction
+					// concurrente
+					updated = updateMonthlySums(contributorId, taskId, year,
+							month, durationDelta, countDelta);
+				}
+				pStmt.close();
+				pStmt = null;
+			}
+			// Suppression de la ligne si elle ne compte plus de contribution
+			if (updated > 0 && countDelta < 0) {
+				pStmt = tx().prepareStatement("delete from CONTRIBUTION_MONTHLY where cmn_year=? and cmn_month=? and cmn_contributor=? and cmn_task=? and cmn_count<=0");
+				pStmt.setInt(1, year);
+				pStmt.setInt(2, month);
+				pStmt.setLong(3, contributorId);
+				pStmt.setLong(4, taskId);
+				pStmt.executeUpdate();
+				pStmt.close();
+				pStmt = null;
+			}
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
 			throw new DAOException(
-					"Unexpected error while parsing a date",
-					e);
+					Strings.getString("DbMgr.errors.MONTHLY_SUMS_UPDATE_FAILURE"), e); //$NON-NLS-1$
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/**
+	 * Met à jour une ligne des sommes mensuelles.
+	 * 
+	 * @return le nombre de lignes mises à jour (<code>0</code> si la ligne
+	 *         n'existe pas).
+	 * @throws SQLException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private int updateMonthlySums(long contributorId, long taskId, int year,
+			int month, long durationDelta, int countDelta) throws SQLException {
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement("update CONTRIBUTION_MONTHLY set cmn_sum=cmn_sum+?, cmn_count=cmn_count+? where cmn_year=? and cmn_month=? and cmn_contributor=? and cmn_task=?");
+			pStmt.setLong(1, durationDelta);
+			pStmt.setInt(2, countDelta);
+			pStmt.setInt(3, year);
+			pStmt.setInt(4, month);
+			pStmt.setLong(5, contributorId);
+			pStmt.setLong(6, taskId);
+			return pStmt.executeUpdate();
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IContributionDAO#rebuildMonthlySums()
+	 */
+	@Override
+	public void rebuildMonthlySums() throws DAOException {
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement("delete from CONTRIBUTION_MONTHLY");
+			pStmt.executeUpdate();
+			pStmt.close();
+			pStmt = null;
+
+			pStmt = tx().prepareStatement("insert into CONTRIBUTION_MONTHLY (cmn_year, cmn_month, cmn_contributor, cmn_task, cmn_sum, cmn_count) "
+					+ "select ctb_year, ctb_month, ctb_contributor, ctb_task, sum(ctb_duration), count(ctb_duration) from CONTRIBUTION "
+					+ "group by ctb_year, ctb_month, ctb_contributor, ctb_task");
+			int count = pStmt.executeUpdate();
+			pStmt.close();
+			pStmt = null;
+			log.info("Contributions monthly sums rebuilt (" + count + " rows)"); //$NON-NLS-1$ //$NON-NLS-2$
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.MONTHLY_SUMS_UPDATE_FAILURE"), e); //$NON-NLS-1$
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IContributionDAO#addToStatistics(long, int, int, int)
+	 */
+	@Override
+	public void addToStatistics(long rootTaskId, int year, int date,
+			int countDelta) throws DAOException {
+		if (countDelta == 0) {
+			return;
+		}
+		PreparedStatement pStmt = null;
+		ResultSet rs = null;
+		try {
+			// Mise à jour de la ligne existante
+			int updated = updateStatistics(rootTaskId, year, date, countDelta);
+
+			// Création de la ligne si elle n'existait pas
+			if (updated == 0 && countDelta > 0) {
+				pStmt = tx().prepareStatement("insert into CONTRIBUTION_STATS (cst_root_task, cst_year, cst_count, cst_min_date, cst_max_date) values (?, ?, ?, ?, ?)");
+				pStmt.setLong(1, rootTaskId);
+				pStmt.setInt(2, year);
+				pStmt.setInt(3, countDelta);
+				pStmt.setInt(4, date);
+				pStmt.setInt(5, date);
+				try {
+					pStmt.executeUpdate();
+				} catch (SQLException e) {
+					if (!isDuplicateKey(e)) {
+						throw e;
+					}
+					// La ligne a été créée entre-temps par une transaction
+					// concurrente
+					updateStatistics(rootTaskId, year, date, countDelta);
+				}
+				pStmt.close();
+				pStmt = null;
+			}
+			// En cas de retrait, les bornes de l'année peuvent avoir changé
+			else if (updated > 0 && countDelta < 0) {
+				pStmt = tx().prepareStatement("delete from CONTRIBUTION_STATS where cst_root_task=? and cst_year=? and cst_count<=0");
+				pStmt.setLong(1, rootTaskId);
+				pStmt.setInt(2, year);
+				int deleted = pStmt.executeUpdate();
+				pStmt.close();
+				pStmt = null;
+				if (deleted == 0) {
+					pStmt = tx().prepareStatement("select cst_min_date, cst_max_date from CONTRIBUTION_STATS where cst_root_task=? and cst_year=?");
+					pStmt.setLong(1, rootTaskId);
+					pStmt.setInt(2, year);
+					rs = pStmt.executeQuery();
+					boolean boundRemoved = rs.next() && (rs.getInt(1) == date || rs.getInt(2) == date);
+					pStmt.close();
+					pStmt = null;
+					if (boundRemoved) {
+						pStmt = tx().prepareStatement("select min(ctb_year*10000+ctb_month*100+ctb_day), max(ctb_year*10000+ctb_month*100+ctb_day) "
+								+ "from CONTRIBUTION, TASK ct, TASK rt "
+								+ "where ctb_task=ct.tsk_id and rt.tsk_id=? and (ct.tsk_id=rt.tsk_id or left(ct.tsk_path, 2)=rt.tsk_number) and ctb_year=?");
+						pStmt.setLong(1, rootTaskId);
+						pStmt.setInt(2, year);
+						rs = pStmt.executeQuery();
+						rs.next();
+						int minDate = rs.getInt(1);
+						int maxDate = rs.getInt(2);
+						pStmt.close();
+						pStmt = null;
+						pStmt = tx().prepareStatement("update CONTRIBUTION_STATS set cst_min_date=?, cst_max_date=? where cst_root_task=? and cst_year=?");
+						pStmt.setInt(1, minDate);
+						pStmt.setInt(2, maxDate);
+						pStmt.setLong(3, rootTaskId);
+						pStmt.setInt(4, year);
+						pStmt.executeUpdate();
+						pStmt.close();
+						pStmt = null;
+					}
+				}
+			}
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.CONTRIBUTIONS_STATS_UPDATE_FAILURE"), e); //$NON-NLS-1$
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/**
+	 * Met à jour la ligne des statistiques d'une tache racine pour une année.
+	 * 
+	 * @return le nombre de lignes mises à jour (<code>0</code> si la ligne
+	 *         n'existe pas).
+	 * @throws SQLException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private int updateStatistics(long rootTaskId, int year, int date,
+			int countDelta) throws SQLException {
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement("update CONTRIBUTION_STATS set cst_count=cst_count+?, "
+					+ "cst_min_date=case when cst_min_date>? then ? else cst_min_date end, "
+					+ "cst_max_date=case when cst_max_date<? then ? else cst_max_date end "
+					+ "where cst_root_task=? and cst_year=?");
+			pStmt.setInt(1, countDelta);
+			pStmt.setInt(2, date);
+			pStmt.setInt(3, date);
+			pStmt.setInt(4, date);
+			pStmt.setInt(5, date);
+			pStmt.setLong(6, rootTaskId);
+			pStmt.setInt(7, year);
+			return pStmt.executeUpdate();
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IContributionDAO#rebuildStatistics()
+	 */
+	@Override
+	public void rebuildStatistics() throws DAOException {
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement("delete from CONTRIBUTION_STATS");
+			pStmt.executeUpdate();
+			pStmt.close();
+			pStmt = null;
+
+			pStmt = tx().prepareStatement("insert into CONTRIBUTION_STATS (cst_root_task, cst_year, cst_count, cst_min_date, cst_max_date) "
+					+ "select rt.tsk_id, ctb_year, count(ctb_duration), min(ctb_year*10000+ctb_month*100+ctb_day), max(ctb_year*10000+ctb_month*100+ctb_day) "
+					+ "from CONTRIBUTION, TASK ct, TASK rt "
+					+ "where ctb_task=ct.tsk_id and rt.tsk_path='' and (ct.tsk_id=rt.tsk_id or left(ct.tsk_path, 2)=rt.tsk_number) "
+					+ "group by rt.tsk_id, ctb_year");
+			int count = pStmt.executeUpdate();
+			pStmt.close();
+			pStmt = null;
+			log.info("Contributions statistics rebuilt (" + count + " rows)"); //$NON-NLS-1$ //$NON-NLS-2$
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.CONTRIBUTIONS_STATS_UPDATE_FAILURE"), e); //$NON-NLS-1$
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.IContributionDAO#rebuildStatistics(long[])
+	 */
+	@Override
+	public void rebuildStatistics(long[] rootTaskIds) throws DAOException {
+		if (rootTaskIds.length == 0) {
+			return;
+		}
+		StringBuilder params = new StringBuilder("?");
+		for (int i = 1; i < rootTaskIds.length; i++) {
+			params.append(", ?");
+		}
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement("delete from CONTRIBUTION_STATS where cst_root_task in (" + params + ")");
+			for (int i = 0; i < rootTaskIds.length; i++) {
+				pStmt.setLong(i + 1, rootTaskIds[i]);
+			}
+			pStmt.executeUpdate();
+			pStmt.close();
+			pStmt = null;
+
+			pStmt = tx().prepareStatement("insert into CONTRIBUTION_STATS (cst_root_task, cst_year, cst_count, cst_min_date, cst_max_date) "
+					+ "select rt.tsk_id, ctb_year, count(ctb_duration), min(ctb_year*10000+ctb_month*100+ctb_day), max(ctb_year*10000+ctb_month*100+ctb_day) "
+					+ "from CONTRIBUTION, TASK ct, TASK rt "
+					+ "where ctb_task=ct.tsk_id and rt.tsk_path='' and rt.tsk_id in (" + params + ") and (ct.tsk_id=rt.tsk_id or left(ct.tsk_path, 2)=rt.tsk_number) "
+					+ "group by rt.tsk_id, ctb_year");
+			for (int i = 0; i < rootTaskIds.length; i++) {
+				pStmt.setLong(i + 1, rootTaskIds[i]);
+			}
+			pStmt.executeUpdate();
+			pStmt.close();
+			pStmt = null;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.CONTRIBUTIONS_STATS_UPDATE_FAILURE"), e); //$NON-NLS-1$
 		} finally {
 			lastAttemptToClose(pStmt);
 		}
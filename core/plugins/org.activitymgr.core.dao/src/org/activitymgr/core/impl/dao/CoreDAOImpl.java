@@ -119,6 +119,107 @@ public class CoreDAOImpl extends AbstractDAOImpl implements ICoreDAO {
 					Strings.getString("DbMgr.errors.SQL_TABLE_CREATION_FAILURE"), null); //$NON-NLS-1$
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.dao.ICoreDAO#upgradeTables()
+	 */
+	@Override
+	public boolean upgradeTables() throws DAOException {
+		boolean upgraded = false;
+		// Sommes des sous-taches stockées sur les taches
+		if (!columnExists("TASK", "TSK_SUB_COUNT")) { //$NON-NLS-1$ //$NON-NLS-2$
+			executeScript("alter table TASK add column TSK_SUM_BUDGET integer default 0 not null;\n" //$NON-NLS-1$
+					+ "alter table TASK add column TSK_SUM_INITIAL_CONS integer default 0 not null;\n" //$NON-NLS-1$
+					+ "alter table TASK add column TSK_SUM_TODO integer default 0 not null;\n" //$NON-NLS-1$
+					+ "alter table TASK add column TSK_SUB_COUNT integer default 0 not null;\n"); //$NON-NLS-1$
+			upgraded = true;
+		}
+		// Sommes mensuelles des contributions
+		if (!tableExists("CONTRIBUTION_MONTHLY")) { //$NON-NLS-1$
+			executeScript("create table CONTRIBUTION_MONTHLY (\n" //$NON-NLS-1$
+					+ "	CMN_YEAR integer not null, CMN_MONTH integer not null,\n" //$NON-NLS-1$
+					+ "	CMN_CONTRIBUTOR integer not null, CMN_TASK integer not null,\n" //$NON-NLS-1$
+					+ "	CMN_SUM integer not null, CMN_COUNT integer not null,\n" //$NON-NLS-1$
+					+ "	constraint CMN_PK primary key (CMN_YEAR, CMN_MONTH, CMN_CONTRIBUTOR, CMN_TASK),\n" //$NON-NLS-1$
+					+ "	constraint CMN_CONTRIBUTOR_FK foreign key (CMN_CONTRIBUTOR) references COLLABORATOR (CLB_ID),\n" //$NON-NLS-1$
+					+ "	constraint CMN_TASK_FK foreign key (CMN_TASK) references TASK (TSK_ID)\n" //$NON-NLS-1$
+					+ (isHsqlOrH2() ? ");\n" : ") engine=innodb;\n") //$NON-NLS-1$ //$NON-NLS-2$
+					+ "create index CMN_CONTRIBUTOR_IDX on CONTRIBUTION_MONTHLY (CMN_CONTRIBUTOR);\n" //$NON-NLS-1$
+					+ "create index CMN_TASK_IDX on CONTRIBUTION_MONTHLY (CMN_TASK);\n"); //$NON-NLS-1$
+			upgraded = true;
+		}
+		// Statistiques des contributions
+		if (!tableExists("CONTRIBUTION_STATS")) { //$NON-NLS-1$
+			executeScript("create table CONTRIBUTION_STATS (\n" //$NON-NLS-1$
+					+ "	CST_ROOT_TASK integer not null, CST_YEAR integer not null,\n" //$NON-NLS-1$
+					+ "	CST_COUNT integer not null, CST_MIN_DATE integer not null, CST_MAX_DATE integer not null,\n" //$NON-NLS-1$
+					+ "	constraint CST_PK primary key (CST_ROOT_TASK, CST_YEAR),\n" //$NON-NLS-1$
+					+ "	constraint CST_ROOT_TASK_FK foreign key (CST_ROOT_TASK) references TASK (TSK_ID)\n" //$NON-NLS-1$
+					+ (isHsqlOrH2() ? ");\n" : ") engine=innodb;\n")); //$NON-NLS-1$ //$NON-NLS-2$
+			upgraded = true;
+		}
+		// Taches récemment utilisées
+		if (!tableExists("RECENT_TASK")) { //$NON-NLS-1$
+			executeScript("create table RECENT_TASK (\n" //$NON-NLS-1$
+					+ "	RCT_CONTRIBUTOR integer not null, RCT_TASK integer not null,\n" //$NON-NLS-1$
+					+ "	RCT_LAST_USED integer not null, RCT_FREQUENCY integer not null,\n" //$NON-NLS-1$
+					+ "	constraint RCT_PK primary key (RCT_CONTRIBUTOR, RCT_TASK),\n" //$NON-NLS-1$
+					+ "	constraint RCT_CONTRIBUTOR_FK foreign key (RCT_CONTRIBUTOR) references COLLABORATOR (CLB_ID),\n" //$NON-NLS-1$
+					+ "	constraint RCT_TASK_FK foreign key (RCT_TASK) references TASK (TSK_ID)\n" //$NON-NLS-1$
+					+ (isHsqlOrH2() ? ");\n" : ") engine=innodb;\n") //$NON-NLS-1$ //$NON-NLS-2$
+					+ "create index RCT_CONTRIBUTOR_LAST_USED_IDX on RECENT_TASK (RCT_CONTRIBUTOR, RCT_LAST_USED);\n" //$NON-NLS-1$
+					+ "create index RCT_TASK_IDX on RECENT_TASK (RCT_TASK);\n"); //$NON-NLS-1$
+			upgraded = true;
+		}
+		// Journal des modifications (partage de la base par plusieurs serveurs)
+		if (!tableExists("CHANGE_LOG")) { //$NON-NLS-1$
+			executeScript("create table CHANGE_LOG (\n" //$NON-NLS-1$
+					+ (isHsqlOrH2() ? "	CHL_ID bigint generated by default as identity(start with 1) not null,\n" //$NON-NLS-1$
+							: "	CHL_ID bigint not null auto_increment,\n") //$NON-NLS-1$
+					+ "	CHL_NODE varchar(40) not null, CHL_TIME bigint not null, CHL_KIND char(1) not null,\n" //$NON-NLS-1$
+					+ "	CHL_ENTITY varchar(20), CHL_ENTITY_ID bigint, CHL_CONTRIBUTOR integer, CHL_DAY integer,\n" //$NON-NLS-1$
+					+ "	constraint CHL_PK primary key (CHL_ID)\n" //$NON-NLS-1$
+					+ (isHsqlOrH2() ? ");\n" : ") engine=innodb;\n") //$NON-NLS-1$ //$NON-NLS-2$
+					+ "create index CHL_TIME_IDX on CHANGE_LOG (CHL_TIME);\n"); //$NON-NLS-1$
+		}
+		return upgraded;
+	}
+
+	/**
+	 * Vérifie si une colonne existe dans une table.
+	 * 
+	 * @param tableName
+	 *            le nom de la table.
+	 * @param columnName
+	 *            le nom de la colonne.
+	 * @return un booléen indiquant si la colonne existe.
+	 * @throws DAOException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private boolean columnExists(String tableName, String columnName)
+			throws DAOException {
+		ResultSet rs = null;
+		try {
+			// Recherche de la colonne
+			rs = tx().getMetaData().getColumns(null, null, tableName,
+					columnName);
+
+			// Récupération du résultat
+			boolean exists = rs.next();
+			rs.close();
+
+			// Retour du résultat
+			return exists;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(Strings.getString(
+					"DbMgr.errors.SQL_TABLES_DETECTION_FAILURE", tableName), e); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			lastAttemptClose(rs);
+		}
+	}
+
 	@Override
 	public boolean isHsqlOrH2() {
 		try {
@@ -15,6 +15,7 @@ import org.activitymgr.core.dao.DAOException;
 import org.activitymgr.core.dao.ICollaboratorDAO;
 import org.activitymgr.core.dao.IReportDAO;
 import org.activitymgr.core.dao.ITaskDAO;
+import org.activitymgr.core.dao.IntervalRequestHelper;
 import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.dto.misc.TaskSums;
@@ -127,6 +128,11 @@ public class ReportDAOImpl extends AbstractDAOImpl implements IReportDAO {
 			 * Retrieve contributions
 			 */
 			boolean byActivity = (taskDepth > 0);
+			// Monthly and yearly reports don't need the days : complete months
+			// are read from the monthly sums
+			IntervalRequestHelper interval = new IntervalRequestHelper(start, end);
+			boolean useMonthlySums = (intervalType == ReportIntervalType.MONTH || intervalType == ReportIntervalType.YEAR)
+					&& interval.coversFullMonths();
 			// Prepare the request
 			StringWriter sw = new StringWriter();
 			sw.append("select ");
@@ -161,7 +167,14 @@ public class ReportDAOImpl extends AbstractDAOImpl implements IReportDAO {
 			}
 			
 			sw.append("\nfrom TASK as ctbtask ");
-			sw.append("\n\tleft join CONTRIBUTION on ctbtask.tsk_id = ctb_task ");
+			if (useMonthlySums) {
+				sw.append("\n\tleft join ");
+				interval.appendMonthlyContributions(sw.getBuffer());
+				sw.append(" ctb on ctbtask.tsk_id = ctb_task ");
+			}
+			else {
+				sw.append("\n\tleft join CONTRIBUTION on ctbtask.tsk_id = ctb_task ");
+			}
 			if (byContributor) {
 				sw.append("\n\tleft join COLLABORATOR on clb_id = ctb_contributor ");
 			}
@@ -263,6 +276,9 @@ public class ReportDAOImpl extends AbstractDAOImpl implements IReportDAO {
 			// Build the request
 			pStmt = tx().prepareStatement(sql);
 			int idx = 1;
+			if (useMonthlySums) {
+				idx = interval.bindMonthlyContributionsParameters(idx, pStmt);
+			}
 			if (byActivity) {
 				pStmt.setInt(idx++, activityPathLength);
 			}
@@ -1,20 +1,23 @@
 package org.activitymgr.core.impl.dao;
 
-import java.io.StringWriter;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.activitymgr.core.dao.AbstractORMDAOImpl;
 import org.activitymgr.core.dao.DAOException;
 import org.activitymgr.core.dao.ITaskDAO;
+import org.activitymgr.core.dao.TasksPathsRequestHelper;
 import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.dto.Task;
-import org.activitymgr.core.dto.misc.TaskSearchFilter;
+import org.activitymgr.core.dto.misc.RecentTasks;
 import org.activitymgr.core.dto.misc.TaskSums;
 import org.activitymgr.core.util.StringHelper;
 import org.activitymgr.core.util.Strings;
@@ -39,8 +42,7 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 		try {
 			// Request preparation
 			pStmt = tx().prepareStatement(
-					"select theTask.tsk_id, count(subTask.tsk_id)"
-				+ " from TASK as theTask left join TASK as subTask on subTask.tsk_path = concat(theTask.tsk_path, theTask.tsk_number) where theTask.tsk_id=? group by theTask.tsk_id");
+					"select tsk_sub_count from TASK where tsk_id=?"); //$NON-NLS-1$
 			pStmt.setLong(1, parentTaskId);
 
 			// Exécution de la requête
@@ -50,89 +52,7 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 			if (!rs.next())
 				throw new DAOException(
 						Strings.getString("DbMgr.errors.SQL_EMPTY_QUERY_RESULT"), null); //$NON-NLS-1$
-			int result = rs.getInt(2);
-
-			// Fermeture du ResultSet
-			pStmt.close();
-			pStmt = null;
-
-			// Retour du résultat
-			return result;
-		} catch (SQLException e) {
-			log.info("Incident SQL", e); //$NON-NLS-1$
-			throw new DAOException(e.getMessage(), e);
-		} finally {
-			lastAttemptToClose(pStmt);
-		}
-	}
-
-	@Override
-	public Task[] getSubTasks(String parentTaskPath, String filter) {
-		PreparedStatement pStmt = null;
-		ResultSet rs = null;
-		try {
-			StringWriter buf = new StringWriter();
-			buf.append("select distinct ").append(getColumnNamesRequestFragment("subtask")).append(" from TASK as subtask");
-			buf.append(" inner join TASK filteredTask on (");
-			buf.append("   left(concat(filteredTask.tsk_path, filteredTask.tsk_number), length(subtask.tsk_path) + 2) = concat(subtask.tsk_path, subtask.tsk_number)");
-			buf.append("   or left(concat(subtask.tsk_path, subtask.tsk_number), length(filteredTask.tsk_path) + 2) = concat(filteredTask.tsk_path, filteredTask.tsk_number)");
-			buf.append(" )");
-			buf.append(" where subtask.tsk_path=? and (filteredTask.tsk_name like ? or filteredTask.tsk_code like ?) order by subtask.tsk_number");
-			
-			// Request preparation
-			pStmt = tx().prepareStatement(buf.toString());
-			pStmt.setString(1, parentTaskPath);
-			String sqlFilter = "%" + filter + "%";
-			pStmt.setString(2, sqlFilter);
-			pStmt.setString(3, sqlFilter);
-
-			// Exécution de la requête
-			rs = pStmt.executeQuery();
-
-			// Préparation du résultat
-			Collection<Task> result = new ArrayList<Task>();
-			while (rs.next()) {
-				result.add(read(rs, 1));
-			}
-
-			// Fermeture du ResultSet
-			pStmt.close();
-			pStmt = null;
-
-			// Retour du résultat
-			return (Task[]) result.toArray(new Task[result.size()]);
-		} catch (SQLException e) {
-			log.info("Incident SQL", e); //$NON-NLS-1$
-			throw new DAOException(e.getMessage(), e);
-		} finally {
-			lastAttemptToClose(pStmt);
-		}
-	}
-
-	@Override
-	public Task getFirstTaskMatching(String filter) {
-		// select  distinct st.TSK_ID, st.TSK_PATH, st.TSK_NUMBER, st.TSK_CODE from task st inner join TASK t on left(concat(t.tsk_path, t.tsk_number), length(concat(st.tsk_path, st.tsk_number))) = concat(st.tsk_path, st.tsk_number) where st.tsk_path='01090304' and t.tsk_name like concat('%', 'CCAP', '%') order by st.tsk_number; 
-		PreparedStatement pStmt = null;
-		ResultSet rs = null;
-		try {
-			StringWriter buf = new StringWriter();
-			buf.append("select ").append(getColumnNamesRequestFragment("t")).append(" from TASK as t");
-			buf.append(" where t.tsk_name like ? or t.tsk_code like ? order by t.tsk_path, t.tsk_number");
-			
-			// Request preparation
-			pStmt = tx().prepareStatement(buf.toString());
-			String sqlFilter = "%" + filter + "%";
-			pStmt.setString(1, sqlFilter);
-			pStmt.setString(2, sqlFilter);
-
-			// Exécution de la requête
-			rs = pStmt.executeQuery();
-
-			// Préparation du résultat
-			Task result = null;
-			if (rs.next()) {
-				result = read(rs, 1);
-			}
+			int result = rs.getInt(1);
 
 			// Fermeture du ResultSet
 			pStmt.close();
@@ -148,99 +68,6 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 		}
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see org.activitymgr.core.IDbMgr#getTasks(org.activitymgr.core.beans.
-	 * TaskSearchFilter)
-	 */
-	@Override
-	public long[] getTaskIds(TaskSearchFilter filter) throws DAOException {
-		PreparedStatement pStmt = null;
-		ResultSet rs = null;
-		try {
-			// Préparation de la requête
-			StringBuffer request = new StringBuffer(
-					"select tsk_id from TASK where "); //$NON-NLS-1$
-			// Ajout du nom de champ
-			switch (filter.getFieldIndex()) {
-			case TaskSearchFilter.TASK_NAME_FIELD_IDX:
-				request.append("tsk_name"); //$NON-NLS-1$
-				break;
-			case TaskSearchFilter.TASK_CODE_FIELD_IDX:
-				request.append("tsk_code"); //$NON-NLS-1$
-				break;
-			default:
-				throw new DAOException(
-						"Unknown field index '" + filter.getFieldIndex() + "'.", null); //$NON-NLS-1$ //$NON-NLS-2$
-			}
-			// Ajout du critère de comparaison
-			switch (filter.getCriteriaIndex()) {
-			case TaskSearchFilter.IS_EQUAL_TO_CRITERIA_IDX:
-				request.append("=?"); //$NON-NLS-1$
-				break;
-			case TaskSearchFilter.STARTS_WITH_CRITERIA_IDX:
-			case TaskSearchFilter.ENDS_WITH_CRITERIA_IDX:
-			case TaskSearchFilter.CONTAINS_CRITERIA_IDX:
-				request.append(" like ?"); //$NON-NLS-1$
-				break;
-			default:
-				throw new DAOException(
-						Strings.getString(
-								"DbMgr.errors.UNKNOWN_CRITERIA_INDEX", new Integer(filter.getCriteriaIndex())), null); //$NON-NLS-1$ //$NON-NLS-2$
-			}
-			// Préparation de la requête
-			log.debug("Search request : '" + request + "'"); //$NON-NLS-1$ //$NON-NLS-2$
-			pStmt = tx().prepareStatement(request.toString());
-			String parameter = null;
-			switch (filter.getCriteriaIndex()) {
-			case TaskSearchFilter.IS_EQUAL_TO_CRITERIA_IDX:
-				parameter = filter.getFieldValue();
-				break;
-			case TaskSearchFilter.STARTS_WITH_CRITERIA_IDX:
-				parameter = filter.getFieldValue() + "%"; //$NON-NLS-1$
-				break;
-			case TaskSearchFilter.ENDS_WITH_CRITERIA_IDX:
-				parameter = "%" + filter.getFieldValue(); //$NON-NLS-1$
-				break;
-			case TaskSearchFilter.CONTAINS_CRITERIA_IDX:
-				parameter = "%" + filter.getFieldValue() + "%"; //$NON-NLS-1$ //$NON-NLS-2$
-				break;
-			default:
-				throw new DAOException(
-						"Unknown criteria index '" + filter.getCriteriaIndex() + "'.", null); //$NON-NLS-1$ //$NON-NLS-2$
-			}
-			log.debug("Search parameter : '" + parameter + "'"); //$NON-NLS-1$ //$NON-NLS-2$
-			pStmt.setString(1, parameter);
-
-			// Exécution de la requête
-			rs = pStmt.executeQuery();
-
-			// Recherche des sous-taches
-			ArrayList<Long> list = new ArrayList<Long>();
-			while (rs.next()) {
-				list.add(rs.getLong(1));
-			}
-
-			// Fermeture du ResultSet
-			pStmt.close();
-			pStmt = null;
-
-			// Préparation du résultat
-			long[] taskIds = new long[list.size()];
-			for (int i = 0; i < taskIds.length; i++) {
-				taskIds[i] = list.get(i);
-			}
-			return taskIds;
-		} catch (SQLException e) {
-			log.info("Incident SQL", e); //$NON-NLS-1$
-			throw new DAOException(
-					Strings.getString("DbMgr.errors.TASKS_SELECTION_FAILURE"), e); //$NON-NLS-1$
-		} finally {
-			lastAttemptToClose(pStmt);
-		}
-	}
-
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -333,42 +160,49 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 		if (taskId != null && tasksPath != null) {
 			throw new IllegalStateException("Both task Id and task path cannot be specified");
 		}
+		return getTasksSums(taskId, tasksPath != null ? new TasksPathsRequestHelper(new String[] { tasksPath }, 1) : null);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#getTasksSums(java.lang.String[], int)
+	 */
+	@Override
+	public List<TaskSums> getTasksSums(String[] tasksPaths, int depth)
+			throws DAOException {
+		return getTasksSums(null, new TasksPathsRequestHelper(tasksPaths, depth));
+	}
+
+	private List<TaskSums> getTasksSums(Long taskId, TasksPathsRequestHelper tasksPaths) throws DAOException {
 		PreparedStatement pStmt = null;
 		ResultSet rs = null;
 		try {
 			List<TaskSums> result = new ArrayList<TaskSums>();
 
 			/**
-			 * Budget, initialy consummed, etc sums computation (all what is independant
-			 * from contributions)
+			 * Budget, initialy consummed, etc sums (all what is independant
+			 * from contributions) are stored on the task itself
 			 */
 			StringBuffer request = new StringBuffer()
 					.append("select ")
-					.append("sum(leaftask.tsk_budget), sum(leaftask.tsk_initial_cons), sum(leaftask.tsk_todo), count(leaftask.tsk_id), ")
-					.append(getColumnNamesRequestFragment("maintask"))
-					.append(" from TASK maintask, TASK leaftask ")
-					.append("where ");
+					.append("tsk_sum_budget, tsk_sum_initial_cons, tsk_sum_todo, tsk_sub_count, ")
+					.append(getColumnNamesRequestFragment(null))
+					.append(" from TASK");
 			// Task id case
 			if (taskId != null) {
-				request.append("maintask.tsk_id=?");
+				request.append(" where tsk_id=?");
 			}
 			// Task path case
-			else {
-				request.append("maintask.tsk_path=?");
+			else if (tasksPaths != null) {
+				request.append(" where ");
+				tasksPaths.appendCriteria(request, "tsk_path");
 			}
-			if (taskId != null || tasksPath != null) {
-				request.append(" and ");
-			}
-			request.append("(maintask.tsk_id=leaftask.tsk_id or leaftask.tsk_path like concat(maintask.tsk_path, maintask.tsk_number, '%'))")
-				.append(" group by maintask.tsk_id ")
-				.append(" order by maintask.tsk_number");
+			request.append(" order by tsk_path, tsk_number");
 			pStmt = tx().prepareStatement(request.toString());
-			int paramIdx = 1;
 			if (taskId != null) {
-				pStmt.setLong(paramIdx++, taskId);
+				pStmt.setLong(1, taskId);
 			}
-			if (tasksPath != null) {
-				pStmt.setString(paramIdx++, tasksPath);
+			if (tasksPaths != null) {
+				tasksPaths.bindParameters(1, pStmt);
 			}
 			rs = pStmt.executeQuery();
 			
@@ -377,7 +211,7 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 				sums.setBudgetSum(rs.getLong(1));
 				sums.setInitiallyConsumedSum(rs.getLong(2));
 				sums.setTodoSum(rs.getLong(3));
-				sums.setLeaf(rs.getLong(4) == 1);
+				sums.setLeaf(rs.getInt(4) == 0);
 				Task task = read(rs, 5);
 				sums.setTask(task);
 				result.add(sums);
@@ -392,17 +226,395 @@ public class TaskDAOImpl extends AbstractORMDAOImpl<Task> implements ITaskDAO {
 			log.info("Incident SQL", e); //$NON-NLS-1$
 			throw new DAOException(
 					Strings.getString(
-							"DbMgr.errors.TASK_SUMS_COMPUTATION_FAILURE", taskId != null ? taskId : tasksPath), e); //$NON-NLS-1$ //$NON-NLS-2$
+							"DbMgr.errors.TASK_SUMS_COMPUTATION_FAILURE", taskId != null ? taskId : tasksPaths), e); //$NON-NLS-1$ //$NON-NLS-2$
 		} finally {
-			try {
-				if (pStmt != null)
-					pStmt.close();
-			} catch (Throwable ignored) {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#addToTasksSums(java.lang.String, long, long, long)
+	 */
+	@Override
+	public void addToTasksSums(String fullPath, long budget,
+			long initiallyConsumed, long todo) throws DAOException {
+		if ("".equals(fullPath) || (budget == 0 && initiallyConsumed == 0 && todo == 0)) { //$NON-NLS-1$
+			return;
+		}
+		PreparedStatement pStmt = null;
+		try {
+			// The task and its ancestors are identified by the prefixes
+			// of the full path (one per level)
+			StringBuffer request = new StringBuffer(
+					"update TASK set tsk_sum_budget=tsk_sum_budget+?, tsk_sum_initial_cons=tsk_sum_initial_cons+?, tsk_sum_todo=tsk_sum_todo+? where "); //$NON-NLS-1$
+			for (int i = 2; i <= fullPath.length(); i += 2) {
+				if (i > 2) {
+					request.append(" or "); //$NON-NLS-1$
+				}
+				request.append("(tsk_path=? and tsk_number=?)"); //$NON-NLS-1$
+			}
+			pStmt = tx().prepareStatement(request.toString());
+			int paramIdx = 1;
+			pStmt.setLong(paramIdx++, budget);
+			pStmt.setLong(paramIdx++, initiallyConsumed);
+			pStmt.setLong(paramIdx++, todo);
+			for (int i = 2; i <= fullPath.length(); i += 2) {
+				pStmt.setString(paramIdx++, fullPath.substring(0, i - 2));
+				pStmt.setString(paramIdx++, fullPath.substring(i - 2, i));
 			}
+			pStmt.executeUpdate();
+
+			// Close the statement
+			pStmt.close();
+			pStmt = null;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(Strings.getString(
+					"DbMgr.errors.TASK_SUMS_UPDATE_FAILURE", fullPath), e); //$NON-NLS-1$
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#addToSubTasksCount(java.lang.String, int)
+	 */
+	@Override
+	public void addToSubTasksCount(String fullPath, int delta)
+			throws DAOException {
+		if ("".equals(fullPath) || delta == 0) { //$NON-NLS-1$
+			return;
+		}
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement(
+					"update TASK set tsk_sub_count=tsk_sub_count+? where tsk_path=? and tsk_number=?"); //$NON-NLS-1$
+			int pathLength = fullPath.length() - 2;
+			pStmt.setInt(1, delta);
+			pStmt.setString(2, fullPath.substring(0, pathLength));
+			pStmt.setString(3, fullPath.substring(pathLength));
+			pStmt.executeUpdate();
+
+			// Close the statement
+			pStmt.close();
+			pStmt = null;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(Strings.getString(
+					"DbMgr.errors.TASK_SUMS_UPDATE_FAILURE", fullPath), e); //$NON-NLS-1$
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#rebuildTasksSums()
+	 */
+	@Override
+	public void rebuildTasksSums() throws DAOException {
+		PreparedStatement pStmt = null;
+		ResultSet rs = null;
+		try {
+			// Load the task tree
+			pStmt = tx().prepareStatement(
+					"select tsk_id, tsk_path, tsk_number, tsk_budget, tsk_initial_cons, tsk_todo from TASK"); //$NON-NLS-1$
+			rs = pStmt.executeQuery();
+			Map<Long, String> fullPaths = new HashMap<Long, String>();
+			// Sums by full path : budget, initially consumed, todo and
+			// sub tasks count
+			Map<String, long[]> sums = new HashMap<String, long[]>();
+			while (rs.next()) {
+				long id = rs.getLong(1);
+				String fullPath = rs.getString(2) + rs.getString(3);
+				fullPaths.put(id, fullPath);
+				long[] taskSums = getOrCreateSums(sums, fullPath);
+				taskSums[0] += rs.getLong(4);
+				taskSums[1] += rs.getLong(5);
+				taskSums[2] += rs.getLong(6);
+			}
+			pStmt.close();
+			pStmt = null;
+
+			// Propagate the values of each task to its ancestors, starting
+			// with the deepest tasks
+			List<String> sortedFullPaths = new ArrayList<String>(sums.keySet());
+			Collections.sort(sortedFullPaths, new Comparator<String>() {
+				@Override
+				public int compare(String fullPath1, String fullPath2) {
+					return fullPath2.length() - fullPath1.length();
+				}
+			});
+			for (String fullPath : sortedFullPaths) {
+				String parentFullPath = fullPath.substring(0, fullPath.length() - 2);
+				if (!"".equals(parentFullPath)) { //$NON-NLS-1$
+					long[] taskSums = sums.get(fullPath);
+					long[] parentSums = getOrCreateSums(sums, parentFullPath);
+					parentSums[0] += taskSums[0];
+					parentSums[1] += taskSums[1];
+					parentSums[2] += taskSums[2];
+					parentSums[3]++;
+				}
+			}
+
+			// Save the sums
+			pStmt = tx().prepareStatement(
+					"update TASK set tsk_sum_budget=?, tsk_sum_initial_cons=?, tsk_sum_todo=?, tsk_sub_count=? where tsk_id=?"); //$NON-NLS-1$
+			for (Map.Entry<Long, String> entry : fullPaths.entrySet()) {
+				long[] taskSums = sums.get(entry.getValue());
+				pStmt.setLong(1, taskSums[0]);
+				pStmt.setLong(2, taskSums[1]);
+				pStmt.setLong(3, taskSums[2]);
+				pStmt.setLong(4, taskSums[3]);
+				pStmt.setLong(5, entry.getKey());
+				pStmt.addBatch();
+			}
+			pStmt.executeBatch();
+			pStmt.close();
+			pStmt = null;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(Strings.getString(
+					"DbMgr.errors.TASK_SUMS_UPDATE_FAILURE", ""), e); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/**
+	 * Returns the sums associated to a full path, creating them if needed.
+	 * 
+	 * @param sums
+	 *            the sums by full path.
+	 * @param fullPath
+	 *            the task full path.
+	 * @return the sums.
+	 */
+	private static long[] getOrCreateSums(Map<String, long[]> sums,
+			String fullPath) {
+		long[] result = sums.get(fullPath);
+		if (result == null) {
+			result = new long[4];
+			sums.put(fullPath, result);
+		}
+		return result;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#getRecentTasks(long, int)
+	 */
+	@Override
+	public RecentTasks getRecentTasks(long contributorId, int maxResults)
+			throws DAOException {
+		PreparedStatement pStmt = null;
+		ResultSet rs = null;
+		try {
+			// Préparation de la requête
+			pStmt = tx().prepareStatement("select rct_frequency, " //$NON-NLS-1$
+					+ getColumnNamesRequestFragment(null)
+					+ " from RECENT_TASK join TASK on rct_task=tsk_id where rct_contributor=?" //$NON-NLS-1$
+					+ " order by rct_last_used desc, rct_frequency desc, tsk_path, tsk_number"); //$NON-NLS-1$
+			pStmt.setLong(1, contributorId);
+			pStmt.setMaxRows(maxResults);
+
+			// Exécution de la requête
+			rs = pStmt.executeQuery();
+			List<Task> tasks = new ArrayList<Task>();
+			List<Integer> frequencies = new ArrayList<Integer>();
+			while (rs.next()) {
+				frequencies.add(rs.getInt(1));
+				tasks.add(read(rs, 2));
+			}
+			pStmt.close();
+			pStmt = null;
+
+			// Retour du résultat
+			RecentTasks result = new RecentTasks();
+			result.setTasks(tasks.toArray(new Task[tasks.size()]));
+			int[] frequenciesArray = new int[frequencies.size()];
+			for (int i = 0; i < frequenciesArray.length; i++) {
+				frequenciesArray[i] = frequencies.get(i);
+			}
+			result.setFrequencies(frequenciesArray);
+			return result;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.TASK_SELECTION_BY_COLLABORATOR_FAILURE"), e); //$NON-NLS-1$
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#getRecentTasksFrequencies(long, int)
+	 */
+	@Override
+	public Map<Long, Integer> getRecentTasksFrequencies(long contributorId,
+			int fromDate) throws DAOException {
+		PreparedStatement pStmt = null;
+		ResultSet rs = null;
+		try {
+			// Préparation de la requête
+			pStmt = tx().prepareStatement("select rct_task, rct_frequency from RECENT_TASK" //$NON-NLS-1$
+					+ " where rct_contributor=? and rct_last_used>=?"); //$NON-NLS-1$
+			pStmt.setLong(1, contributorId);
+			pStmt.setInt(2, fromDate);
+
+			// Exécution de la requête
+			rs = pStmt.executeQuery();
+			Map<Long, Integer> result = new HashMap<Long, Integer>();
+			while (rs.next()) {
+				result.put(rs.getLong(1), rs.getInt(2));
+			}
+			pStmt.close();
+			pStmt = null;
+
+			// Retour du résultat
+			return result;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.TASK_SELECTION_BY_COLLABORATOR_FAILURE"), e); //$NON-NLS-1$
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#addRecentTaskUse(long, long, int)
+	 */
+	@Override
+	public void addRecentTaskUse(long contributorId, long taskId, int date)
+			throws DAOException {
+		PreparedStatement pStmt = null;
+		try {
+			// Mise à jour de la ligne existante
+			int updated = updateRecentTaskUse(contributorId, taskId, date);
+
+			// Création de la ligne si elle n'existait pas
+			if (updated == 0) {
+				pStmt = tx().prepareStatement("insert into RECENT_TASK (rct_contributor, rct_task, rct_last_used, rct_frequency) values (?, ?, ?, 1)"); //$NON-NLS-1$
+				pStmt.setLong(1, contributorId);
+				pStmt.setLong(2, taskId);
+				pStmt.setInt(3, date);
+				try {
+					pStmt.executeUpdate();
+				} catch (SQLException e) {
+					if (!isDuplicateKey(e)) {
+						throw e;
+					}
+					// La ligne a été créée entre-temps par une transaction
+					// concurrente
+					updateRecentTaskUse(contributorId, taskId, date);
+				}
+				pStmt.close();
+				pStmt = null;
+			}
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.RECENT_TASKS_UPDATE_FAILURE"), e); //$NON-NLS-1$
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/**
+	 * Met à jour la ligne d'utilisation d'une tache par un collaborateur.
+	 * 
+	 * @return le nombre de lignes mises à jour (<code>0</code> si la ligne
+	 *         n'existe pas).
+	 * @throws SQLException
+	 *             levé en cas d'incident technique d'accès à la base.
+	 */
+	private int updateRecentTaskUse(long contributorId, long taskId, int date)
+			throws SQLException {
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement("update RECENT_TASK set rct_frequency=rct_frequency+1, " //$NON-NLS-1$
+					+ "rct_last_used=case when rct_last_used<? then ? else rct_last_used end " //$NON-NLS-1$
+					+ "where rct_contributor=? and rct_task=?"); //$NON-NLS-1$
+			pStmt.setInt(1, date);
+			pStmt.setInt(2, date);
+			pStmt.setLong(3, contributorId);
+			pStmt.setLong(4, taskId);
+			return pStmt.executeUpdate();
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#removeRecentTasks(long)
+	 */
+	@Override
+	public void removeRecentTasks(long contributorId) throws DAOException {
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement("delete from RECENT_TASK where rct_contributor=?"); //$NON-NLS-1$
+			pStmt.setLong(1, contributorId);
+			pStmt.executeUpdate();
+			pStmt.close();
+			pStmt = null;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.RECENT_TASKS_UPDATE_FAILURE"), e); //$NON-NLS-1$
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#removeRecentTasks(java.lang.String)
+	 */
+	@Override
+	public void removeRecentTasks(String fullPath) throws DAOException {
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement("delete from RECENT_TASK where rct_task in " //$NON-NLS-1$
+					+ "(select tsk_id from TASK where concat(tsk_path, tsk_number)=? or tsk_path like ?)"); //$NON-NLS-1$
+			pStmt.setString(1, fullPath);
+			pStmt.setString(2, fullPath + "%"); //$NON-NLS-1$
+			pStmt.executeUpdate();
+			pStmt.close();
+			pStmt = null;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.RECENT_TASKS_UPDATE_FAILURE"), e); //$NON-NLS-1$
+		} finally {
+			lastAttemptToClose(pStmt);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.dao.ITaskDAO#rebuildRecentTasks()
+	 */
+	@Override
+	public void rebuildRecentTasks() throws DAOException {
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = tx().prepareStatement("delete from RECENT_TASK"); //$NON-NLS-1$
+			pStmt.executeUpdate();
+			pStmt.close();
+			pStmt = null;
+
+			pStmt = tx().prepareStatement("insert into RECENT_TASK (rct_contributor, rct_task, rct_last_used, rct_frequency) " //$NON-NLS-1$
+					+ "select ctb_contributor, ctb_task, max(ctb_year*10000+ctb_month*100+ctb_day), count(ctb_duration) from CONTRIBUTION " //$NON-NLS-1$
+					+ "group by ctb_contributor, ctb_task"); //$NON-NLS-1$
+			pStmt.executeUpdate();
+			pStmt.close();
+			pStmt = null;
+		} catch (SQLException e) {
+			log.info("Incident SQL", e); //$NON-NLS-1$
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.RECENT_TASKS_UPDATE_FAILURE"), e); //$NON-NLS-1$
+		} finally {
+			lastAttemptToClose(pStmt);
 		}
 	}
 
-	
 	@Override
 	public int getMaxTaskDepthUnder(String path) throws DAOException {
 		PreparedStatement pStmt = null;
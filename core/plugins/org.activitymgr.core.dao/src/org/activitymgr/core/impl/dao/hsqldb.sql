@@ -1,4 +1,8 @@
+drop table if exists CHANGE_LOG;
 drop table if exists REPORT_CONFIG;
+drop table if exists RECENT_TASK;
+drop table if exists CONTRIBUTION_STATS;
+drop table if exists CONTRIBUTION_MONTHLY;
 drop table if exists CONTRIBUTION;
 drop table if exists DURATION;
 drop table if exists TASK;
@@ -30,6 +34,10 @@ create table TASK (
 	TSK_INITIAL_CONS integer      not null,
 	TSK_TODO         integer      not null,
 	TSK_COMMENT      varchar(255),
+	TSK_SUM_BUDGET       integer default 0 not null,
+	TSK_SUM_INITIAL_CONS integer default 0 not null,
+	TSK_SUM_TODO         integer default 0 not null,
+	TSK_SUB_COUNT        integer default 0 not null,
     constraint TSK_PK primary key (TSK_ID)
 );
 create index TSK_PATH_IDX on TASK (TSK_PATH);
@@ -64,6 +72,51 @@ create index CTB_CONTRIBUTOR_IDX on CONTRIBUTION (CTB_CONTRIBUTOR);
 create index CTB_TASK_IDX on CONTRIBUTION (CTB_TASK);
 create index CTB_DURATION_IDX on CONTRIBUTION (CTB_DURATION);
 
+--------------------------------------------------------------
+-- Sommes mensuelles des contributions
+--------------------------------------------------------------
+create table CONTRIBUTION_MONTHLY (
+	CMN_YEAR          integer not null,
+	CMN_MONTH         integer not null,
+	CMN_CONTRIBUTOR   integer not null,
+	CMN_TASK          integer not null,
+	CMN_SUM           integer not null,
+	CMN_COUNT         integer not null,
+    constraint CMN_PK primary key (CMN_YEAR, CMN_MONTH, CMN_CONTRIBUTOR, CMN_TASK),
+    constraint CMN_CONTRIBUTOR_FK foreign key (CMN_CONTRIBUTOR) references COLLABORATOR (CLB_ID),
+    constraint CMN_TASK_FK foreign key (CMN_TASK) references TASK (TSK_ID)
+);
+create index CMN_CONTRIBUTOR_IDX on CONTRIBUTION_MONTHLY (CMN_CONTRIBUTOR);
+create index CMN_TASK_IDX on CONTRIBUTION_MONTHLY (CMN_TASK);
+
+--------------------------------------------------------------
+-- Statistiques des contributions (par tache racine et par an)
+--------------------------------------------------------------
+create table CONTRIBUTION_STATS (
+	CST_ROOT_TASK     integer not null,
+	CST_YEAR          integer not null,
+	CST_COUNT         integer not null,
+	CST_MIN_DATE      integer not null,
+	CST_MAX_DATE      integer not null,
+    constraint CST_PK primary key (CST_ROOT_TASK, CST_YEAR),
+    constraint CST_ROOT_TASK_FK foreign key (CST_ROOT_TASK) references TASK (TSK_ID)
+);
+
+--------------------------------------------------------------
+-- Taches rcemment utilises par les collaborateurs
+--------------------------------------------------------------
+create table RECENT_TASK (
+	RCT_CONTRIBUTOR   integer not null,
+	RCT_TASK          integer not null,
+	RCT_LAST_USED     integer not null,
+	RCT_FREQUENCY     integer not null,
+    constraint RCT_PK primary key (RCT_CONTRIBUTOR, RCT_TASK),
+    constraint RCT_CONTRIBUTOR_FK foreign key (RCT_CONTRIBUTOR) references COLLABORATOR (CLB_ID),
+    constraint RCT_TASK_FK foreign key (RCT_TASK) references TASK (TSK_ID)
+);
+create index RCT_CONTRIBUTOR_LAST_USED_IDX on RECENT_TASK (RCT_CONTRIBUTOR, RCT_LAST_USED);
+create index RCT_TASK_IDX on RECENT_TASK (RCT_TASK);
+
 --------------------------------------------------------------
 -- Report configurations
 --------------------------------------------------------------
@@ -77,3 +130,19 @@ create table REPORT_CONFIG (
     constraint REP_OWNER_FK foreign key (REP_OWNER) references COLLABORATOR (CLB_ID)
 );
 create index REP_OWNER_IDX on REPORT_CONFIG (REP_OWNER);
+
+--------------------------------------------------------------
+-- Change log (servers sharing the database)
+--------------------------------------------------------------
+create table CHANGE_LOG (
+	CHL_ID            bigint generated by default as identity(start with 1) not null,
+	CHL_NODE          varchar(  40) not null,
+	CHL_TIME          bigint not null,
+	CHL_KIND          char(1) not null,
+	CHL_ENTITY        varchar(  20),
+	CHL_ENTITY_ID     bigint,
+	CHL_CONTRIBUTOR   integer,
+	CHL_DAY           integer,
+    constraint CHL_PK primary key (CHL_ID)
+);
+create index CHL_TIME_IDX on CHANGE_LOG (CHL_TIME);
@@ -1,4 +1,8 @@
+drop table if exists CHANGE_LOG;
 drop table if exists REPORT_CONFIG;
+drop table if exists RECENT_TASK;
+drop table if exists CONTRIBUTION_STATS;
+drop table if exists CONTRIBUTION_MONTHLY;
 drop table if exists CONTRIBUTION;
 drop table if exists DURATION;
 drop table if exists TASK;
@@ -30,6 +34,10 @@ create table TASK (
 	TSK_INITIAL_CONS integer(   8) not null,
 	TSK_TODO         integer(   8) not null,
 	TSK_COMMENT      text,
+	TSK_SUM_BUDGET       integer(   8) default 0 not null,
+	TSK_SUM_INITIAL_CONS integer(   8) default 0 not null,
+	TSK_SUM_TODO         integer(   8) default 0 not null,
+	TSK_SUB_COUNT        integer(   3) default 0 not null,
     index TSK_PATH_IDX (TSK_PATH),
     index TSK_FULLPATH_IDX (TSK_PATH, TSK_NUMBER),
     index TSK_PATH_CODE_IDX (TSK_PATH, TSK_CODE),
@@ -68,6 +76,51 @@ create table CONTRIBUTION (
     constraint CTB_DURATION_FK foreign key (CTB_DURATION) references DURATION (DUR_ID)
 ) engine=innodb;
 
+-- ------------------------------------------------------------
+-- Sommes mensuelles des contributions
+-- ------------------------------------------------------------
+create table CONTRIBUTION_MONTHLY (
+	CMN_YEAR          integer(4) not null,
+	CMN_MONTH         integer(2) not null,
+	CMN_CONTRIBUTOR   integer(3) not null,
+	CMN_TASK          integer(8) not null,
+	CMN_SUM           integer(8) not null,
+	CMN_COUNT         integer(3) not null,
+    index CMN_CONTRIBUTOR_IDX (CMN_CONTRIBUTOR),
+    index CMN_TASK_IDX (CMN_TASK),
+    constraint CMN_PK primary key (CMN_YEAR, CMN_MONTH, CMN_CONTRIBUTOR, CMN_TASK),
+    constraint CMN_CONTRIBUTOR_FK foreign key (CMN_CONTRIBUTOR) references COLLABORATOR (CLB_ID),
+    constraint CMN_TASK_FK foreign key (CMN_TASK) references TASK (TSK_ID)
+) engine=innodb;
+
+-- ------------------------------------------------------------
+-- Statistiques des contributions (par tache racine et par an)
+-- ------------------------------------------------------------
+create table CONTRIBUTION_STATS (
+	CST_ROOT_TASK     integer(8) not null,
+	CST_YEAR          integer(4) not null,
+	CST_COUNT         integer(8) not null,
+	CST_MIN_DATE      integer(8) not null,
+	CST_MAX_DATE      integer(8) not null,
+    constraint CST_PK primary key (CST_ROOT_TASK, CST_YEAR),
+    constraint CST_ROOT_TASK_FK foreign key (CST_ROOT_TASK) references TASK (TSK_ID)
+) engine=innodb;
+
+-- ------------------------------------------------------------
+-- Taches rcemment utilises par les collaborateurs
+-- ------------------------------------------------------------
+create table RECENT_TASK (
+	RCT_CONTRIBUTOR   integer(3) not null,
+	RCT_TASK          integer(8) not null,
+	RCT_LAST_USED     integer(8) not null,
+	RCT_FREQUENCY     integer(8) not null,
+    index RCT_CONTRIBUTOR_LAST_USED_IDX (RCT_CONTRIBUTOR, RCT_LAST_USED),
+    index RCT_TASK_IDX (RCT_TASK),
+    constraint RCT_PK primary key (RCT_CONTRIBUTOR, RCT_TASK),
+    constraint RCT_CONTRIBUTOR_FK foreign key (RCT_CONTRIBUTOR) references COLLABORATOR (CLB_ID),
+    constraint RCT_TASK_FK foreign key (RCT_TASK) references TASK (TSK_ID)
+) engine=innodb;
+
 --------------------------------------------------------------
 -- Report configurations
 --------------------------------------------------------------
@@ -81,3 +134,19 @@ create table REPORT_CONFIG (
     constraint REP_PK primary key (REP_ID),
     constraint REP_CONTRIBUTOR_FK foreign key (REP_OWNER) references COLLABORATOR (CLB_ID)
 ) engine=innodb;
+
+--------------------------------------------------------------
+-- Change log (servers sharing the database)
+--------------------------------------------------------------
+create table CHANGE_LOG (
+	CHL_ID            bigint(  20) not null auto_increment,
+	CHL_NODE          varchar(  40) not null,
+	CHL_TIME          bigint(  20) not null,
+	CHL_KIND          char(    1) not null,
+	CHL_ENTITY        varchar(  20),
+	CHL_ENTITY_ID     bigint(  20),
+	CHL_CONTRIBUTOR   integer(   3),
+	CHL_DAY           integer(   8),
+    index CHL_TIME_IDX (CHL_TIME),
+    constraint CHL_PK primary key (CHL_ID)
+) engine=innodb;
@@ -0,0 +1,216 @@
+package org.activitymgr.core.dto.misc;
+
+/**
+ * Change log entry (a modification committed by one of the servers sharing
+ * the database).
+ */
+public class ChangeLogEntry {
+
+	/** Modified entity types */
+	public static final String TASK = "TASK"; //$NON-NLS-1$
+	public static final String COLLABORATOR = "COLLABORATOR"; //$NON-NLS-1$
+	public static final String DURATION = "DURATION"; //$NON-NLS-1$
+	public static final String CONTRIBUTION = "CONTRIBUTION"; //$NON-NLS-1$
+	public static final String REPORT_CFG = "REPORT_CFG"; //$NON-NLS-1$
+
+	/**
+	 * Modification kind.
+	 */
+	public static enum Kind {
+		CREATED('C'), UPDATED('U'), REMOVED('R');
+
+		private final char code;
+
+		private Kind(char code) {
+			this.code = code;
+		}
+
+		/**
+		 * @return the kind code (stored in the database).
+		 */
+		public char getCode() {
+			return code;
+		}
+
+		/**
+		 * @param code
+		 *            the kind code.
+		 * @return the kind.
+		 */
+		public static Kind fromCode(char code) {
+			for (Kind kind : values()) {
+				if (kind.code == code) {
+					return kind;
+				}
+			}
+			throw new IllegalArgumentException(String.valueOf(code));
+		}
+	}
+
+	/** Entry identifier (sequential) */
+	private long id;
+
+	/** Identifier of the server that has made the modification */
+	private String nodeId;
+
+	/** Modification time (according to the server clock) */
+	private long time;
+
+	/** Modification kind */
+	private Kind kind;
+
+	/** Entity type (<code>null</code> if any entity may have been modified) */
+	private String entity;
+
+	/**
+	 * Entity identifier (the task identifier for a contribution,
+	 * <code>null</code> if the entity type is unknown)
+	 */
+	private Long entityId;
+
+	/** Contributor identifier (contributions only) */
+	private Long contributorId;
+
+	/** Contribution date (<code>yyyymmdd</code>, contributions only) */
+	private Integer day;
+
+	/**
+	 * @return the entry identifier.
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @param id
+	 *            the entry identifier to set.
+	 */
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	/**
+	 * @return the identifier of the server that has made the modification.
+	 */
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * @param nodeId
+	 *            the server identifier to set.
+	 */
+	public void setNodeId(String nodeId) {
+		this.nodeId = nodeId;
+	}
+
+	/**
+	 * @return the modification time (according to the server clock).
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * @param time
+	 *            the modification time to set.
+	 */
+	public void setTime(long time) {
+		this.time = time;
+	}
+
+	/**
+	 * @return the modification kind.
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @param kind
+	 *            the modification kind to set.
+	 */
+	public void setKind(Kind kind) {
+		this.kind = kind;
+	}
+
+	/**
+	 * @return the entity type (<code>null</code> if any entity may have been
+	 *         modified).
+	 */
+	public String getEntity() {
+		return entity;
+	}
+
+	/**
+	 * @param entity
+	 *            the entity type to set.
+	 */
+	public void setEntity(String entity) {
+		this.entity = entity;
+	}
+
+	/**
+	 * @return the entity identifier (the task identifier for a
+	 *         contribution).
+	 */
+	public Long getEntityId() {
+		return entityId;
+	}
+
+	/**
+	 * @param entityId
+	 *            the entity identifier to set.
+	 */
+	public void setEntityId(Long entityId) {
+		this.entityId = entityId;
+	}
+
+	/**
+	 * @return the contributor identifier (contributions only).
+	 */
+	public Long getContributorId() {
+		return contributorId;
+	}
+
+	/**
+	 * @param contributorId
+	 *            the contributor identifier to set.
+	 */
+	public void setContributorId(Long contributorId) {
+		this.contributorId = contributorId;
+	}
+
+	/**
+	 * @return the contribution date (<code>yyyymmdd</code>, contributions
+	 *         only).
+	 */
+	public Integer getDay() {
+		return day;
+	}
+
+	/**
+	 * @param day
+	 *            the contribution date to set.
+	 */
+	public void setDay(Integer day) {
+		this.day = day;
+	}
+
+	/**
+	 * @param entity
+	 *            the entity type.
+	 * @return <code>true</code> if the entry may concern an entity of the
+	 *         given type.
+	 */
+	public boolean concerns(String entity) {
+		return this.entity == null || this.entity.equals(entity);
+	}
+
+	@Override
+	public String toString() {
+		return "#" + id + " " + kind + " " + (entity != null ? entity : "*") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				+ (entityId != null ? " " + entityId : "") + " (" + nodeId + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+
+}
@@ -0,0 +1,62 @@
+package org.activitymgr.core.dto.misc;
+
+import org.activitymgr.core.dto.Task;
+
+/**
+ * Contains the tasks recently used by a collaborator.
+ */
+public class RecentTasks {
+
+	/** The recent tasks, the most recently used first */
+	private Task[] tasks;
+
+	/** The recent tasks code paths */
+	private String[] taskCodePaths;
+
+	/** The number of contributions created by the collaborator on each task */
+	private int[] frequencies;
+
+	/**
+	 * @return the recent tasks, the most recently used first
+	 */
+	public Task[] getTasks() {
+		return tasks;
+	}
+
+	/**
+	 * @param tasks the recent tasks to set
+	 */
+	public void setTasks(Task[] tasks) {
+		this.tasks = tasks;
+	}
+
+	/**
+	 * @return the recent tasks code paths
+	 */
+	public String[] getTaskCodePaths() {
+		return taskCodePaths;
+	}
+
+	/**
+	 * @param taskCodePaths the recent tasks code paths to set
+	 */
+	public void setTaskCodePaths(String[] taskCodePaths) {
+		this.taskCodePaths = taskCodePaths;
+	}
+
+	/**
+	 * @return the number of contributions created by the collaborator on
+	 *         each task
+	 */
+	public int[] getFrequencies() {
+		return frequencies;
+	}
+
+	/**
+	 * @param frequencies the frequencies to set
+	 */
+	public void setFrequencies(int[] frequencies) {
+		this.frequencies = frequencies;
+	}
+
+}
@@ -0,0 +1,62 @@
+package org.activitymgr.core.dto.misc;
+
+import org.activitymgr.core.dto.Task;
+
+/**
+ * Contains a page of task suggestions (auto completion).
+ */
+public class TaskSuggestions {
+
+	/** The suggested tasks, the best one first */
+	private Task[] tasks;
+
+	/** The suggested tasks code paths */
+	private String[] taskCodePaths;
+
+	/** The cursor to use to retrieve the next page */
+	private String nextCursor;
+
+	/**
+	 * @return the suggested tasks, the best one first
+	 */
+	public Task[] getTasks() {
+		return tasks;
+	}
+
+	/**
+	 * @param tasks the suggested tasks to set
+	 */
+	public void setTasks(Task[] tasks) {
+		this.tasks = tasks;
+	}
+
+	/**
+	 * @return the suggested tasks code paths
+	 */
+	public String[] getTaskCodePaths() {
+		return taskCodePaths;
+	}
+
+	/**
+	 * @param taskCodePaths the suggested tasks code paths to set
+	 */
+	public void setTaskCodePaths(String[] taskCodePaths) {
+		this.taskCodePaths = taskCodePaths;
+	}
+
+	/**
+	 * @return the cursor to use to retrieve the next page, or
+	 *         <code>null</code> if there is no more suggestion
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * @param nextCursor the next page cursor to set
+	 */
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
+}
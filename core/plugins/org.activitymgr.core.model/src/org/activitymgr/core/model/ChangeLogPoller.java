@@ -0,0 +1,300 @@
+package org.activitymgr.core.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.activitymgr.core.dao.IChangeLogDAO;
+import org.activitymgr.core.dao.TaskTreeIndex;
+import org.activitymgr.core.dto.misc.ChangeLogEntry;
+import org.apache.log4j.Logger;
+
+import com.google.inject.Inject;
+
+/**
+ * Applies the modifications made by the other servers sharing the database
+ * to the local caches.
+ *
+ * <p>
+ * Each call to {@link #poll()} reads the change log entries that follow the
+ * high-water mark (the last applied entry), clears the task indexes if a
+ * remote modification concerns the tasks and notifies the listeners (which
+ * invalidate the caches of the upper layers). The entries written by this
+ * server are skipped, as its caches are updated by the modifications
+ * themselves.
+ * </p>
+ *
+ * <p>
+ * As the entry identifiers are allocated before the transactions commit, an
+ * entry may become visible after an entry that follows it. The high-water
+ * mark is therefore not moved beyond a missing identifier until the gap
+ * timeout expires (the transaction may also have been rolled back) ; the
+ * entries beyond the gap are applied once.
+ * </p>
+ *
+ * <p>
+ * The poller doesn't manage the transactions, the caller must provide one.
+ * </p>
+ */
+public class ChangeLogPoller {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(ChangeLogPoller.class);
+
+	/** Maximum count of entries read at once */
+	private static final int MAX_ENTRIES_PER_QUERY = 500;
+
+	/** Default gap timeout (ms) */
+	private static final long DEFAULT_GAP_TIMEOUT = 60000;
+
+	/**
+	 * Change log listener.
+	 */
+	public static interface IListener {
+
+		/**
+		 * Notifies that modifications made by other servers have been
+		 * applied to the core caches.
+		 *
+		 * @param entries
+		 *            the change log entries (sorted by identifier).
+		 */
+		void changesApplied(List<ChangeLogEntry> entries);
+
+	}
+
+	@Inject
+	private IChangeLogDAO changeLogDAO;
+
+	@Inject
+	private TaskTreeIndex taskTreeIndex;
+
+	@Inject
+	private TaskSearchIndex taskSearchIndex;
+
+	/** Listeners */
+	private final List<IListener> listeners = new CopyOnWriteArrayList<IListener>();
+
+	/** Gap timeout (ms) */
+	private volatile long gapTimeout = DEFAULT_GAP_TIMEOUT;
+
+	/** High-water mark (<code>-1</code> before the first poll) */
+	private long highWaterMark = -1;
+
+	/** Identifiers of the entries applied beyond the high-water mark */
+	private final NavigableSet<Long> appliedIds = new TreeSet<Long>();
+
+	/** Metrics */
+	private final AtomicLong pollsCount = new AtomicLong();
+	private final AtomicLong appliedEntriesCount = new AtomicLong();
+	private volatile long lastPollTime;
+	private volatile long lastLag;
+	private volatile long maxLag;
+
+	/**
+	 * @param listener
+	 *            the listener to register.
+	 */
+	public void addListener(IListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * @param listener
+	 *            the listener to unregister.
+	 */
+	public void removeListener(IListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Enables or disables the modifications logging (disabled by default).
+	 * 
+	 * @param enabled
+	 *            <code>true</code> if this server shares the database with
+	 *            other servers.
+	 * @see IChangeLogDAO#setEnabled(boolean)
+	 */
+	public void setLoggingEnabled(boolean enabled) {
+		changeLogDAO.setEnabled(enabled);
+	}
+
+	/**
+	 * @param gapTimeout
+	 *            the delay (ms) after which a missing entry identifier is
+	 *            considered as rolled back.
+	 */
+	public void setGapTimeout(long gapTimeout) {
+		this.gapTimeout = gapTimeout;
+	}
+
+	/**
+	 * Reads and applies the modifications made by the other servers since
+	 * the previous poll.
+	 *
+	 * <p>
+	 * The first poll only initializes the high-water mark (the caches are
+	 * loaded lazily, the previous modifications don't matter).
+	 * </p>
+	 *
+	 * @return the count of applied remote entries.
+	 */
+	public synchronized int poll() {
+		long now = currentTimeMillis();
+		pollsCount.incrementAndGet();
+		lastPollTime = now;
+		if (highWaterMark < 0) {
+			highWaterMark = changeLogDAO.getLastId();
+			log.info("Change log high-water mark initialized to " + highWaterMark);
+			return 0;
+		}
+		String nodeId = changeLogDAO.getNodeId();
+		List<ChangeLogEntry> remoteEntries = new ArrayList<ChangeLogEntry>();
+		long cursor = highWaterMark;
+		boolean gap = false;
+		ChangeLogEntry[] entries;
+		do {
+			entries = changeLogDAO.getEntries(cursor, MAX_ENTRIES_PER_QUERY);
+			for (ChangeLogEntry entry : entries) {
+				long id = entry.getId();
+				if (!gap && id != cursor + 1 && now - entry.getTime() < gapTimeout) {
+					// The missing entries may belong to transactions that
+					// have not committed yet
+					gap = true;
+				}
+				cursor = id;
+				if (!gap) {
+					highWaterMark = id;
+				}
+				if (appliedIds.contains(id)) {
+					continue;
+				}
+				if (gap) {
+					appliedIds.add(id);
+				}
+				if (!nodeId.equals(entry.getNodeId())) {
+					remoteEntries.add(entry);
+				}
+			}
+		} while (entries.length == MAX_ENTRIES_PER_QUERY);
+		appliedIds.headSet(highWaterMark, true).clear();
+
+		if (!remoteEntries.isEmpty()) {
+			apply(remoteEntries, now);
+		}
+		return remoteEntries.size();
+	}
+
+	private void apply(List<ChangeLogEntry> entries, long now) {
+		long lag = 0;
+		boolean tasksChanged = false;
+		for (ChangeLogEntry entry : entries) {
+			lag = Math.max(lag, now - entry.getTime());
+			tasksChanged |= entry.concerns(ChangeLogEntry.TASK);
+		}
+		if (tasksChanged) {
+			// The indexes are reloaded on next use
+			taskTreeIndex.clear();
+			taskSearchIndex.clear();
+		}
+		appliedEntriesCount.addAndGet(entries.size());
+		lastLag = lag;
+		maxLag = Math.max(maxLag, lag);
+		log.debug(entries.size() + " remote change(s) applied, lag=" + lag + " ms");
+		for (IListener listener : listeners) {
+			try {
+				listener.changesApplied(entries);
+			} catch (RuntimeException e) {
+				log.error("Change log listener failure", e);
+			}
+		}
+	}
+
+	/**
+	 * Removes the entries older than a given retention delay.
+	 *
+	 * @param retention
+	 *            the retention delay (ms), which must be much longer than
+	 *            the polling interval.
+	 * @return the count of removed entries.
+	 */
+	public int purge(long retention) {
+		return changeLogDAO.purge(currentTimeMillis() - retention);
+	}
+
+	/**
+	 * @return the high-water mark (the last applied entry identifier,
+	 *         <code>-1</code> before the first poll).
+	 */
+	public synchronized long getHighWaterMark() {
+		return highWaterMark;
+	}
+
+	/**
+	 * Returns the generation of the data applied so far, which is the same
+	 * on every server that has applied the same entries (the entries applied
+	 * beyond a gap are part of it).
+	 *
+	 * @return the data generation (<code>null</code> before the first
+	 *         poll).
+	 */
+	public synchronized String getDataGeneration() {
+		if (highWaterMark < 0) {
+			return null;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(highWaterMark);
+		for (Long id : appliedIds) {
+			sb.append('+').append(id);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return the count of polls.
+	 */
+	public long getPollsCount() {
+		return pollsCount.get();
+	}
+
+	/**
+	 * @return the count of applied remote entries.
+	 */
+	public long getAppliedEntriesCount() {
+		return appliedEntriesCount.get();
+	}
+
+	/**
+	 * @return the last poll time.
+	 */
+	public long getLastPollTime() {
+		return lastPollTime;
+	}
+
+	/**
+	 * @return the lag (ms) of the last applied remote entries, that is the
+	 *         delay between their modification time and their application
+	 *         (the servers clocks are assumed to be synchronized).
+	 */
+	public long getLastLag() {
+		return lastLag;
+	}
+
+	/**
+	 * @return the maximum lag (ms) observed so far.
+	 */
+	public long getMaxLag() {
+		return maxLag;
+	}
+
+	/**
+	 * @return the current time (may be overridden for testing purpose).
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+}
@@ -0,0 +1,39 @@
+package org.activitymgr.core.model;
+
+/**
+ * Contributions batch update exception.
+ *
+ * @see IModelMgr#updateContributions(org.activitymgr.core.dto.Contribution[],
+ *      long[], boolean)
+ */
+public class ContributionModelException extends ModelException {
+
+	/** Fake serial version UID */
+	private static final long serialVersionUID = 1L;
+
+	/** Index of the invalid contribution */
+	private int index;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param index
+	 *            the index of the contribution associated to the error.
+	 * @param cause
+	 *            the error cause.
+	 */
+	public ContributionModelException(int index, ModelException cause) {
+		super(cause.getMessage(), cause);
+		this.index = index;
+	}
+
+	/**
+	 * Return the index of the invalid contribution.
+	 *
+	 * @return the index of the invalid contribution in the batch.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+}
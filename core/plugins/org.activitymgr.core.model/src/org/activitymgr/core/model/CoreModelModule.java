@@ -4,10 +4,20 @@ import org.activitymgr.core.dao.CoreDAOModule;
 import org.activitymgr.core.model.impl.ModelMgrImpl;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Key;
 import com.google.inject.Singleton;
+import com.google.inject.name.Names;
 
 public class CoreModelModule extends AbstractModule {
 
+	/**
+	 * Key of the model manager implementation, allows a module overriding the
+	 * {@link IModelMgr} binding to decorate the implementation (with a
+	 * transaction management proxy for instance).
+	 */
+	public static final Key<IModelMgr> MODEL_MGR_IMPL_KEY = Key.get(
+			IModelMgr.class, Names.named("impl"));
+
 //	public static interface IPostInjectionListener {
 //		
 //		void afterInjection() throws Exception;
@@ -21,7 +31,17 @@ public class CoreModelModule extends AbstractModule {
 		daoModule.configure(binder());
 		
 		// Bind core ModelManager
-		bind(IModelMgr.class).to(ModelMgrImpl.class).in(Singleton.class);
+		bind(MODEL_MGR_IMPL_KEY).to(ModelMgrImpl.class).in(Singleton.class);
+		bind(IModelMgr.class).to(MODEL_MGR_IMPL_KEY);
+		
+		// Bind task search index (shared by all the sessions)
+		bind(TaskSearchIndex.class).in(Singleton.class);
+
+		// Bind the task indexes transactions synchronizer
+		bind(TransactionSynchronizer.class).in(Singleton.class);
+
+		// Bind change log poller (one per server)
+		bind(ChangeLogPoller.class).in(Singleton.class);
 		
 		// Bind post injection listeners
 //		bindListener(Matchers.any(), new TypeListener() {
@@ -44,6 +44,8 @@ import org.activitymgr.core.dto.ReportCfg;
 import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.dto.misc.IntervalContributions;
 import org.activitymgr.core.dto.misc.TaskSearchFilter;
+import org.activitymgr.core.dto.misc.RecentTasks;
+import org.activitymgr.core.dto.misc.TaskSuggestions;
 import org.activitymgr.core.dto.misc.TaskSums;
 import org.activitymgr.core.dto.report.Report;
 import org.activitymgr.core.dto.report.ReportIntervalType;
@@ -86,6 +88,7 @@ public interface IModelMgr {
 	 *             levé dans la cas ou la tache de destination ne peut recevoir
 	 *             de sous-tache.
 	 */
+	@ReadOnly
 	void checkAcceptsSubtasks(Task task) throws ModelException;
 
 	/**
@@ -190,6 +193,7 @@ public interface IModelMgr {
 	 *            la durée à vérifier.
 	 * @return un booléen indiquant si la durée existe.
 	 */
+	@ReadOnly
 	boolean durationExists(Duration duration);
 
 	/**
@@ -201,6 +205,7 @@ public interface IModelMgr {
 	 *             levé en cas d'incident I/O lors de l'écriture sur le flux de
 	 *             sortie.
 	 */
+	@ReadOnly(replica = true)
 	void exportToXML(OutputStream out) throws IOException;
 
 	/**
@@ -212,6 +217,7 @@ public interface IModelMgr {
 	 * @throws thrown
 	 *             if a DAO exception occurs.
 	 */
+	@ReadOnly
 	boolean isLeaf(long taskId);
 
 	/**
@@ -221,6 +227,7 @@ public interface IModelMgr {
 	 * @throws thrown
 	 *             if a DAO exception occurs.
 	 */
+	@ReadOnly
 	int getSubTasksCount(long parentTaskId);
 
 	/**
@@ -230,12 +237,14 @@ public interface IModelMgr {
 	 *            booléen indiquant si le tri doit être ascendant.
 	 * @return la liste des collaborateurs actifs.
 	 */
+	@ReadOnly
 	Collaborator[] getActiveCollaborators(int orderByClauseFieldIndex,
 			boolean ascendantSort);
 
 	/**
 	 * @return la liste des durées actives.
 	 */
+	@ReadOnly
 	Duration[] getActiveDurations();
 
 	/**
@@ -243,6 +252,7 @@ public interface IModelMgr {
 	 *            l'identifiant du collaborateur recherché.
 	 * @return le collaborateur dont l'identifiant est spécifié.
 	 */
+	@ReadOnly
 	Collaborator getCollaborator(long collaboratorId);
 
 	/**
@@ -250,11 +260,13 @@ public interface IModelMgr {
 	 *            l'identifiant de connexion du collaborateur recherché.
 	 * @return le collaborateur dont l'identifiant de connexion est spécifié.
 	 */
+	@ReadOnly
 	Collaborator getCollaborator(String login);
 
 	/**
 	 * @return la liste des collaborateurs.
 	 */
+	@ReadOnly
 	Collaborator[] getCollaborators();
 
 	/**
@@ -264,9 +276,47 @@ public interface IModelMgr {
 	 *            booléen indiquant si le tri doit être ascendant.
 	 * @return la liste des collaborateurs.
 	 */
+	@ReadOnly
 	Collaborator[] getCollaborators(int orderByClauseFieldIndex,
 			boolean ascendantSort);
 
+	/**
+	 * Retourne une page de collaborateurs.
+	 * 
+	 * <p>
+	 * La pagination se fait par clé : une page est définie par le dernier
+	 * collaborateur de la page précédente, les collaborateurs ayant la même
+	 * valeur d'attribut de tri étant départagés par leur identifiant.
+	 * </p>
+	 * 
+	 * @param orderByClauseFieldIndex
+	 *            index de l'attribut utilisé pour le tri.
+	 * @param ascendantSort
+	 *            booléen indiquant si le tri doit être ascendant.
+	 * @param onlyActiveCollaborators
+	 *            booléen indiquant si seuls les collaborateurs actifs doivent
+	 *            être retournés.
+	 * @param after
+	 *            le dernier collaborateur de la page précédente
+	 *            (<code>null</code> pour la première page).
+	 * @param pageSize
+	 *            la taille de la page.
+	 * @return la page de collaborateurs (vide après la dernière page).
+	 */
+	@ReadOnly
+	Collaborator[] getCollaboratorsPage(int orderByClauseFieldIndex,
+			boolean ascendantSort, boolean onlyActiveCollaborators,
+			Collaborator after, int pageSize);
+
+	/**
+	 * @param onlyActiveCollaborators
+	 *            booléen indiquant si seuls les collaborateurs actifs doivent
+	 *            être comptés.
+	 * @return le nombre de collaborateurs.
+	 */
+	@ReadOnly
+	int getCollaboratorsCount(boolean onlyActiveCollaborators);
+
 	/**
 	 * @param contributor
 	 *            le contributeur.
@@ -277,6 +327,7 @@ public interface IModelMgr {
 	 * @return la liste de taches associées au collaborateur entre les 2 dates
 	 *         spécifiées.
 	 */
+	@ReadOnly
 	Task[] getContributedTasks(Collaborator contributor, Calendar fromDate,
 			Calendar toDate);
 
@@ -292,6 +343,7 @@ public interface IModelMgr {
 	 * @return la liste des contributions associées aux paramétres spécifiés.
 	 * @throws ModelException
 	 */
+	@ReadOnly(replica = true)
 	Contribution[] getContributions(Collaborator contributor, Task task,
 			Calendar fromDate, Calendar toDate) throws ModelException;
 
@@ -314,6 +366,7 @@ public interface IModelMgr {
 	 * @see CoreDAOImpl.tools.activitymgr.core.DbMgrImpl#getContributionsNb(DbTransaction,
 	 *      Task, Collaborator, Integer, Integer, Integer)
 	 */
+	@ReadOnly
 	int getContributionsCount(Collaborator contributor, Task task,
 			Calendar fromDate, Calendar toDate) throws ModelException;
 
@@ -331,6 +384,7 @@ public interface IModelMgr {
 	 * @return la seomme des contributions.
 	 * @throws ModelException
 	 */
+	@ReadOnly
 	long getContributionsSum(Collaborator contributor, Task task,
 			Calendar fromDate, Calendar toDate) throws ModelException;
 
@@ -345,6 +399,7 @@ public interface IModelMgr {
 	 * @throws ModelException
 	 *             levé si l'interval est incohérent.
 	 */
+	@ReadOnly
 	Collaborator[] getContributors(Task task, Calendar fromDate, Calendar toDate)
 			throws ModelException;
 
@@ -353,11 +408,13 @@ public interface IModelMgr {
 	 *            identifiant de la durée.
 	 * @return la durée dont l'identifiant est spécifiée.
 	 */
+	@ReadOnly
 	Duration getDuration(long durationId);
 
 	/**
 	 * @return la liste des durées actives.
 	 */
+	@ReadOnly
 	Duration[] getDurations();
 
 	/**
@@ -381,6 +438,7 @@ public interface IModelMgr {
 	 *             levé dans le cas ou la date de fin spécifiée est antérieure à
 	 *             la date de début spécifiée.
 	 */
+	@ReadOnly
 	IntervalContributions getIntervalContributions(Collaborator contributor,
 			Task task, Calendar fromDate, Calendar toDate)
 			throws ModelException;
@@ -390,6 +448,7 @@ public interface IModelMgr {
 	 *            la tache dont on veut connaitre la tache parent.
 	 * @return la tache parent d'une tache spécifiée.
 	 */
+	@ReadOnly
 	Task getParentTask(Task task);
 
 	/**
@@ -397,6 +456,7 @@ public interface IModelMgr {
 	 * @throws thrown
 	 *             if a database exception occurs.
 	 */
+	@ReadOnly
 	int getRootTasksCount();
 
 	/**
@@ -405,6 +465,7 @@ public interface IModelMgr {
 	 *            sous-taches.
 	 * @return la liste des taches associées à un chemin donné.
 	 */
+	@ReadOnly
 	Task[] getSubTasks(Long parentTaskId);
 
 	/**
@@ -422,6 +483,7 @@ public interface IModelMgr {
 	 *            a string that filters sub tasks.
 	 * @return the sub task list.
 	 */
+	@ReadOnly
 	Task[] getSubTasks(Long parentTaskId, String filter);
 
 	/**
@@ -430,13 +492,62 @@ public interface IModelMgr {
 	 *            a string that filters tasks.
 	 * @return the matching task or null if no task matches.
 	 */
+	@ReadOnly
 	Task getFirstTaskMatching(String filter);
 
+	/**
+	 * Returns a page of leaf tasks matching the given filter, the best
+	 * suggestion first.
+	 * <p>
+	 * The tasks whose code equals or starts with the filter come first, then
+	 * those whose name starts with it, and finally those that only contain
+	 * it. Inside a same category, the tasks recently used by the contributor
+	 * come first, the most often used first (the use frequencies are the
+	 * ones of the first page for all the pages).
+	 * </p>
+	 * 
+	 * @param contributor
+	 *            the contributor whose recent tasks must be used to rank the
+	 *            tasks (optional).
+	 * @param filter
+	 *            a string that filters tasks.
+	 * @param cursor
+	 *            the cursor returned with the previous page (
+	 *            <code>null</code> for the first page).
+	 * @param maxResults
+	 *            the page size (at least <code>1</code>).
+	 * @return the task suggestions.
+	 * @throws ModelException
+	 *             thrown if the cursor or the page size is invalid.
+	 */
+	@ReadOnly
+	TaskSuggestions getTaskSuggestions(Collaborator contributor,
+			String filter, String cursor, int maxResults) throws ModelException;
+
+	/**
+	 * Returns the tasks recently used by a contributor, with their code
+	 * paths.
+	 * <p>
+	 * The tasks are read from the recent tasks table maintained on
+	 * contribution creation : the task with the most recent contribution
+	 * comes first, the most frequently used first for a same date.
+	 * </p>
+	 * 
+	 * @param contributor
+	 *            the contributor.
+	 * @param maxResults
+	 *            the maximum number of tasks to return.
+	 * @return the recent tasks.
+	 */
+	@ReadOnly
+	RecentTasks getRecentTasks(Collaborator contributor, int maxResults);
+
 	/**
 	 * @param taskId
 	 *            l'identifiant de la tache recherchée.
 	 * @return la tache dont l'identifiant est spécifié.
 	 */
+	@ReadOnly
 	Task getTask(long taskId);
 
 	/**
@@ -446,6 +557,7 @@ public interface IModelMgr {
 	 *            le code de la tache recherchée.
 	 * @return la tache dont le code et la tache parent sont spécifiés.
 	 */
+	@ReadOnly
 	Task getTask(String taskPath, String taskCode);
 
 	/**
@@ -458,6 +570,7 @@ public interface IModelMgr {
 	 * @throws ModelException
 	 *             levé dans le cas ou le chemin de tache est inconnu.
 	 */
+	@ReadOnly
 	Task getTaskByCodePath(final String codePath) throws ModelException;
 
 	/**
@@ -470,8 +583,26 @@ public interface IModelMgr {
 	 *             levé dans le cas ou le chemin ou le numéro de la tache ont
 	 *             changé.
 	 */
+	@ReadOnly
 	String getTaskCodePath(Task task) throws ModelException;
 
+	/**
+	 * Construit les chemins d'un ensemble de taches à partir des codes de
+	 * tache.
+	 * <p>
+	 * Les chemins des taches parentes communes ne sont construits qu'une
+	 * fois ; cette méthode doit donc être préférée à des appels successifs à
+	 * {@link #getTaskCodePath(Task)}.
+	 * </p>
+	 * 
+	 * @param taskIds
+	 *            les identifiants des taches.
+	 * @return les chemins (dans le même ordre), <code>null</code> pour les
+	 *         taches inconnues.
+	 */
+	@ReadOnly
+	String[] getTaskCodePaths(long[] taskIds);
+
 	/**
 	 * Retourn la liste des taches correspondant au filtre de recherche
 	 * spécifié.
@@ -481,6 +612,7 @@ public interface IModelMgr {
 	 * @return la liste des taches correspondant au filtre de recherche
 	 *         spécifié.
 	 */
+	@ReadOnly
 	Task[] getTasks(TaskSearchFilter filter);
 
 	/**
@@ -493,6 +625,7 @@ public interface IModelMgr {
 	 * @throws ModelException
 	 *             levé dans le cas ou une tache n'existe pas.
 	 */
+	@ReadOnly
 	Task[] getTasksByCodePath(String[] codePaths) throws ModelException;
 
 	/**
@@ -507,6 +640,7 @@ public interface IModelMgr {
 	 *             levé dans le cas ou le chemin ou le numéro de la tache en
 	 *             base ne sont pas ceux de la tache spécifiée.
 	 */
+	@ReadOnly(replica = true)
 	TaskSums getTaskSums(long taskId, Calendar fromDate, Calendar toDate)
 			throws ModelException;
 
@@ -522,9 +656,78 @@ public interface IModelMgr {
 	 *             levé dans le cas ou le chemin ou le numéro de la tache en
 	 *             base ne sont pas ceux de la tache spécifiée.
 	 */
+	@ReadOnly(replica = true)
 	List<TaskSums> getSubTasksSums(Task parentTask, Calendar fromDate, Calendar toDate)
 			throws ModelException;
 
+	/**
+	 * Returns the sums of the sub tasks of a task down to a given depth, in
+	 * a single batch.
+	 * 
+	 * @param parentTask
+	 *            the parent task (<code>null</code> for the root tasks).
+	 * @param depth
+	 *            the count of levels to load (<code>1</code> to only load the
+	 *            direct sub tasks).
+	 * @param fromDate
+	 *            start of the date interval to consider
+	 * @param toDate
+	 *            end of the date interval to consider
+	 * @return the sub tasks sums, sorted by path and number (the sub tasks of
+	 *         a task follow each other).
+	 * @throws ModelException
+	 *             levé dans le cas ou le chemin ou le numéro de la tache en
+	 *             base ne sont pas ceux de la tache spécifiée.
+	 */
+	@ReadOnly(replica = true)
+	List<TaskSums> getSubTasksSums(Task parentTask, int depth,
+			Calendar fromDate, Calendar toDate) throws ModelException;
+
+	/**
+	 * Returns the sums of the tasks belonging to the branches that lead to
+	 * the given tasks, in a single batch : the root tasks and the sub tasks of
+	 * each ancestor of the given tasks (which include the given tasks
+	 * themselves).
+	 * 
+	 * <p>
+	 * This helps revealing deep tasks in a tree.
+	 * </p>
+	 * 
+	 * @param taskIds
+	 *            the tasks identifiers (the unknown ones are ignored).
+	 * @param fromDate
+	 *            start of the date interval to consider
+	 * @param toDate
+	 *            end of the date interval to consider
+	 * @return the tasks sums, sorted by path and number.
+	 */
+	@ReadOnly(replica = true)
+	List<TaskSums> getBranchesSums(long[] taskIds, Calendar fromDate,
+			Calendar toDate);
+
+	/**
+	 * Returns the sums of the tasks of a tree filtered by a given string, down
+	 * to the tasks matching the filter, in a single batch.
+	 * 
+	 * <p>
+	 * For each task that is an ancestor of a matching task (and for the root),
+	 * the returned list contains the sub tasks that must appear in the
+	 * filtered tree (see {@link #getSubTasks(Long, String)}). The sub tasks
+	 * of the other matching tasks are not filtered and are not returned.
+	 * </p>
+	 * 
+	 * @param filter
+	 *            a string that filters the tasks.
+	 * @param fromDate
+	 *            start of the date interval to consider
+	 * @param toDate
+	 *            end of the date interval to consider
+	 * @return the tasks sums, sorted by path and number.
+	 */
+	@ReadOnly(replica = true)
+	List<TaskSums> getFilteredTasksSums(String filter, Calendar fromDate,
+			Calendar toDate);
+
 	/**
 	 * Importe le contenu d'un fichier XML.
 	 * 
@@ -576,6 +779,7 @@ public interface IModelMgr {
 	 * @throws IOException if an I/O error occurs. 
 	 * @throws ModelException if a model violation occurs.
 	 */
+	@ReadOnly(replica = true)
 	byte[] exportToExcel(Long parentTaskId) throws IOException, ModelException;
 
 	/**
@@ -713,8 +917,27 @@ public interface IModelMgr {
 	 * 
 	 * @return un booléen indiquant si la table spécifiée existe dans le modèle.
 	 */
+	@ReadOnly
 	boolean tablesExist();
 
+	/**
+	 * Met à jour les tables du modèle de données créées par une version
+	 * antérieure de l'application (ajout des colonnes et tables manquantes).
+	 */
+	void upgradeTables();
+
+	/**
+	 * Recalcule les sommes stockées en base (sommes des sous-taches, sommes
+	 * mensuelles et statistiques des contributions, taches récemment
+	 * utilisées) à partir des données de détail.
+	 * <p>
+	 * Ces sommes sont normalement maintenues à chaque modification ; cette
+	 * méthode permet de les reconstruire après une modification directe de
+	 * la base.
+	 * </p>
+	 */
+	void rebuildSums();
+
 	/**
 	 * Modifie les attributs d'un collaborateur.
 	 * 
@@ -741,6 +964,34 @@ public interface IModelMgr {
 	Contribution updateContribution(Contribution contribution,
 			boolean updateEstimatedTimeToComlete) throws ModelException;
 
+	/**
+	 * Enregistre un lot de modifications de contributions.
+	 * 
+	 * <p>
+	 * Chaque contribution est créée, mise à jour ou supprimée (si sa durée est
+	 * nulle) selon la durée connue de l'appelant. Toutes les modifications
+	 * sont vérifiées avant qu'aucune ne soit enregistrée.
+	 * </p>
+	 * 
+	 * @param contributions
+	 *            les contributions (une durée nulle indique que la
+	 *            contribution doit être supprimée).
+	 * @param previousDurationIds
+	 *            les durées des contributions connues de l'appelant avant
+	 *            modification (0 si la contribution n'existait pas).
+	 * @param updateEstimatedTimeToComlete
+	 *            booléen indiquant si le reste à faire doit être mis à jour.
+	 * @throws ModelException
+	 *             levé ({@link ContributionModelException}) si l'une des
+	 *             modifications est invalide ou si la donnée a changé en base
+	 *             de données, aucune modification n'étant alors
+	 *             enregistrée, ou en cas de modification concurrente pendant
+	 *             l'enregistrement (la transaction doit alors être annulée).
+	 */
+	void updateContributions(Contribution[] contributions,
+			long[] previousDurationIds, boolean updateEstimatedTimeToComlete)
+			throws ModelException;
+
 	/**
 	 * Met à jour une durée.
 	 * 
@@ -792,6 +1043,7 @@ public interface IModelMgr {
 	 * 
 	 * @return the contribution years list.
 	 */
+	@ReadOnly
 	Collection<Integer> getContributionYears();
 
 	/**
@@ -829,6 +1081,7 @@ public interface IModelMgr {
 	 *             if start date is not specified and no contribution exist in
 	 *             the database.
 	 */
+	@ReadOnly(replica = true)
 	Report buildReport(Calendar start, ReportIntervalType intervalType,
 			Integer intervalCount, Long rootTaskId, int taskDepth,
 			boolean onlyKeepTasksWithContributions, boolean byContributor,
@@ -958,6 +1211,7 @@ public interface IModelMgr {
 	 *             if start date is not specified and no contribution exist in
 	 *             the database.
 	 */
+	@ReadOnly(replica = true)
 	Workbook buildReport(Calendar start, ReportIntervalType intervalType,
 			Integer intervalCount, Long rootTaskId, int taskDepth,
 			boolean onlyKeepTasksWithContributions, boolean byContributor,
@@ -1016,6 +1270,7 @@ public interface IModelMgr {
 	 *             if start date is not specified and no contribution exist in
 	 *             the database.
 	 */
+	@ReadOnly(replica = true)
 	Workbook buildReport(Calendar start, ReportIntervalType intervalType,
 			Integer intervalCount, Long rootTaskId, int taskDepth,
 			boolean onlyKeepTasksWithContributions, boolean byContributor,
@@ -1024,6 +1279,53 @@ public interface IModelMgr {
 			boolean includeTotals, boolean dryRun)
 			throws ModelException;
 
+	/**
+	 * Builds a report and converts it in Excel format, notifying the progress
+	 * of the generation.
+	 * 
+	 * @param start
+	 *            the start date to consider [Optional].
+	 * @param intervalType
+	 *            the interval type (days, weeks, months, years) [Required].
+	 * @param intervalCount
+	 *            the interval count to cover [Optional].
+	 * @param rootTaskId
+	 *            the root task identifier [Optional].
+	 * @param taskDepth
+	 *            the task depth to consider [Required].
+	 * @param onlyKeepTasksWithContributions
+	 *            <code>true</code> if the report must only keep tasks with
+	 *            contributions.
+	 * @param byContributor
+	 *            <code>true</code> if the report must decline contributions by
+	 *            contributors.
+	 * @param contributorCentricMode
+	 *            <code>true</code> if the report must be ordered by
+	 *            contributors and then by tasks or the inverse.
+	 * @param contributorIds
+	 *            contributor identifiers (optional).
+	 * @param columnIds
+	 *            the column identifiers to user.
+	 * @param includeTotals
+	 *            <code>true</code> to include a column with row sums and a row
+	 *            with columns sums.
+	 * @param monitor
+	 *            the progress monitor.
+	 * @return the report.
+	 * @throws ModelException
+	 *             if start date is not specified and no contribution exist in
+	 *             the database.
+	 * @see #buildReport(Calendar, ReportIntervalType, Integer, Long, int,
+	 *      boolean, boolean, boolean, long[], String[], boolean, boolean)
+	 */
+	@ReadOnly(replica = true)
+	Workbook buildReport(Calendar start, ReportIntervalType intervalType,
+			Integer intervalCount, Long rootTaskId, int taskDepth,
+			boolean onlyKeepTasksWithContributions, boolean byContributor,
+			boolean contributorCentricMode, long[] contributorIds,
+			String[] columnIds, boolean includeTotals,
+			IReportProgressMonitor monitor) throws ModelException;
+
 
 	/**
 	 * Returns the max task tree depth under a given task.
@@ -1033,6 +1335,7 @@ public interface IModelMgr {
 	 * @throws DAOException
 	 *             thrown if a technical error occurs.
 	 */
+	@ReadOnly
 	int getMaxTaskDepthUnder(Long rootTaskId) throws DAOException;
 
 	/**
@@ -1042,6 +1345,7 @@ public interface IModelMgr {
 	 *            the optional root task identifier to filter the contributions.
 	 * @return the contributions interval.
 	 */
+	@ReadOnly
 	Calendar[] getContributionsInterval(Long rootTaskId);
 
 	/**
@@ -1060,6 +1364,7 @@ public interface IModelMgr {
 	 * @throws ModelException
 	 *             if a model violation is detected.
 	 */
+	@ReadOnly
 	ReportCfg[] getReportCfgs(String category, Long ownerId)
 			throws ModelException;
 
@@ -1070,6 +1375,7 @@ public interface IModelMgr {
 	 *            the report configuration identifier.
 	 * @return the report configuration.
 	 */
+	@ReadOnly
 	ReportCfg getReportCfg(long id);
 
 	/**
@@ -0,0 +1,38 @@
+package org.activitymgr.core.model;
+
+/**
+ * Receives the progress of a report generation.
+ * 
+ * @see IModelMgr#buildReport(java.util.Calendar,
+ *      org.activitymgr.core.dto.report.ReportIntervalType, Integer, Long,
+ *      int, boolean, boolean, boolean, long[], String[], boolean,
+ *      IReportProgressMonitor)
+ */
+public interface IReportProgressMonitor {
+
+	/**
+	 * Notifies that the report data are being queried (the rows count is not
+	 * known until the query ends, the first call to
+	 * {@link #rowsProcessed(int, int)}).
+	 * 
+	 * <p>
+	 * This method is called from the thread that generates the report.
+	 * </p>
+	 */
+	void queryStarted();
+
+	/**
+	 * Notifies that some report rows have been processed.
+	 * 
+	 * <p>
+	 * This method is called from the thread that generates the report.
+	 * </p>
+	 * 
+	 * @param processed
+	 *            the count of processed rows.
+	 * @param total
+	 *            the total count of rows.
+	 */
+	void rowsProcessed(int processed, int total);
+
+}
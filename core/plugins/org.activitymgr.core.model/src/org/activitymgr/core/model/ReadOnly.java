@@ -0,0 +1,31 @@
+package org.activitymgr.core.model;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a model manager method that does not modify the database.
+ *
+ * <p>
+ * The transaction wrappers may run such a method in a read-only transaction
+ * (<code>Connection.setReadOnly(true)</code>, no commit, no rollback, no
+ * savepoint).
+ * </p>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ReadOnly {
+
+	/**
+	 * Tells whether the method may be served by a read replica, that is
+	 * whether it tolerates some replication lag (reports, exports, ...).
+	 * 
+	 * @see ReplicaRouter
+	 */
+	boolean replica() default false;
+
+}
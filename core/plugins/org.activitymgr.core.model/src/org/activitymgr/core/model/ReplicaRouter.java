@@ -0,0 +1,120 @@
+package org.activitymgr.core.model;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a model manager call may be served by a read replica.
+ * 
+ * <p>
+ * Only the methods annotated with <code>@ReadOnly(replica = true)</code> are
+ * routed to the replica. As the replica may lag behind the primary database,
+ * a user's calls are routed to the primary database for a while after their
+ * own writes (so that they see them).
+ * </p>
+ * 
+ * <p>
+ * This class is thread safe, it is meant to be shared by all the users.
+ * </p>
+ */
+public class ReplicaRouter {
+
+	/** Maximum replication lag (ms) */
+	private final long maxLag;
+
+	/** Last write commit time, by user */
+	private final ConcurrentMap<Object, Long> lastWrites = new ConcurrentHashMap<Object, Long>();
+
+	/** Counters (metrics) */
+	private final AtomicLong replicaCallsCount = new AtomicLong();
+	private final AtomicLong lagFallbacksCount = new AtomicLong();
+
+	/**
+	 * Default constructor.
+	 * 
+	 * @param maxLag
+	 *            the maximum replication lag (ms) ; the replica is not used
+	 *            for a user during this delay after their own writes.
+	 */
+	public ReplicaRouter(long maxLag) {
+		this.maxLag = maxLag;
+	}
+
+	/**
+	 * Tells whether a method may be served by a read replica.
+	 * 
+	 * @param method
+	 *            the model manager method.
+	 * @return <code>true</code> if the method is annotated with
+	 *         <code>@ReadOnly(replica = true)</code>.
+	 */
+	public static boolean isReplicable(Method method) {
+		ReadOnly readOnly = method.getAnnotation(ReadOnly.class);
+		return readOnly != null && readOnly.replica();
+	}
+
+	/**
+	 * Tells whether a call must be routed to the replica.
+	 * 
+	 * @param method
+	 *            the invoked model manager method.
+	 * @param user
+	 *            the user key (<code>null</code> if unknown, in which case
+	 *            the primary database is used).
+	 * @return <code>true</code> if the replica must be used.
+	 */
+	public boolean useReplica(Method method, Object user) {
+		if (user == null || !isReplicable(method)) {
+			return false;
+		}
+		Long lastWrite = lastWrites.get(user);
+		if (lastWrite != null) {
+			if (currentTimeMillis() - lastWrite < maxLag) {
+				lagFallbacksCount.incrementAndGet();
+				return false;
+			}
+			// The replica has caught up
+			lastWrites.remove(user, lastWrite);
+		}
+		replicaCallsCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Registers a user's write (must be called when the transaction is
+	 * committed).
+	 * 
+	 * @param user
+	 *            the user key (ignored if <code>null</code>).
+	 */
+	public void writeCommitted(Object user) {
+		if (user != null) {
+			lastWrites.put(user, currentTimeMillis());
+		}
+	}
+
+	/**
+	 * @return the current time (ms).
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * @return the count of calls routed to the replica.
+	 */
+	public long getReplicaCallsCount() {
+		return replicaCallsCount.get();
+	}
+
+	/**
+	 * @return the count of replicable calls routed to the primary database
+	 *         because of a recent write of the user.
+	 */
+	public long getLagFallbacksCount() {
+		return lagFallbacksCount.get();
+	}
+
+}
@@ -0,0 +1,893 @@
+package org.activitymgr.core.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.activitymgr.core.dao.AbstractTransactionalIndex;
+import org.activitymgr.core.dao.DAOException;
+import org.activitymgr.core.dao.ITaskDAO;
+import org.activitymgr.core.dao.TaskTreeIndex;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.misc.TaskSearchFilter;
+import org.activitymgr.core.util.Strings;
+import org.apache.log4j.Logger;
+
+import com.google.inject.Inject;
+
+/**
+ * Application wide in-memory trigram index over the task names and codes.
+ *
+ * <p>
+ * Every lower-cased name and code is split into its 3 characters sequences
+ * (trigrams). A <i>contains</i> query intersects the tasks posting sets of the
+ * query trigrams and then checks the remaining candidates ; queries that are
+ * shorter than 3 characters are checked against every task.
+ * </p>
+ *
+ * <p>
+ * The matching is case insensitive. The tree structure (ancestors, sub tasks,
+ * ordering) is taken from the {@link TaskTreeIndex}.
+ * </p>
+ *
+ * <p>
+ * Like the {@link TaskTreeIndex}, the index is loaded lazily on first use and
+ * must then be kept up to date by the task mutation methods (see
+ * {@link AbstractTransactionalIndex}).
+ * </p>
+ */
+public class TaskSearchIndex extends AbstractTransactionalIndex<TaskSearchIndex.Entries, TaskSearchIndex.Change> {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(TaskSearchIndex.class);
+
+	/** N-gram size */
+	private static final int N = 3;
+
+	/** Scores used to rank the matches (the lower the better) */
+	private static final int CODE_EQUALS_SCORE = 0;
+	private static final int CODE_STARTS_WITH_SCORE = 1;
+	private static final int NAME_STARTS_WITH_SCORE = 2;
+	private static final int NAME_WORD_STARTS_WITH_SCORE = 3;
+	private static final int CODE_CONTAINS_SCORE = 4;
+	private static final int NAME_CONTAINS_SCORE = 5;
+	private static final int NO_MATCH_SCORE = Integer.MAX_VALUE;
+
+	/** Weight of a score compared to the use frequency */
+	private static final int FREQUENCY_WEIGHT = 1000;
+
+	/**
+	 * Indexed task attributes.
+	 */
+	static class Entry {
+		private final long id;
+		private final String code;
+		private final String name;
+		Entry(Task task) {
+			this.id = task.getId();
+			this.code = normalize(task.getCode());
+			this.name = normalize(task.getName());
+		}
+	}
+
+	/**
+	 * Result of the last tree filter query.
+	 */
+	private static class FilterResult {
+		private final String filter;
+		private final long version;
+		private final long treeVersion;
+		private final Set<Long> matches;
+		private final Set<Long> matchesAndAncestors;
+		FilterResult(String filter, long version, long treeVersion,
+				Set<Long> matches, Set<Long> matchesAndAncestors) {
+			this.filter = filter;
+			this.version = version;
+			this.treeVersion = treeVersion;
+			this.matches = matches;
+			this.matchesAndAncestors = matchesAndAncestors;
+		}
+	}
+
+	/**
+	 * Index state.
+	 */
+	static class Entries {
+
+		/** Entries by task identifier */
+		private final ConcurrentMap<Long, Entry> entriesById = new ConcurrentHashMap<Long, Entry>();
+
+		/** Task identifiers by trigram */
+		private final ConcurrentMap<String, Set<Long>> postings = new ConcurrentHashMap<String, Set<Long>>();
+
+		/**
+		 * Adds an entry.
+		 *
+		 * @param entry
+		 *            the entry.
+		 */
+		private void add(Entry entry) {
+			entriesById.put(entry.id, entry);
+			Set<String> trigrams = trigrams(entry.code);
+			trigrams.addAll(trigrams(entry.name));
+			for (String trigram : trigrams) {
+				Set<Long> set = postings.get(trigram);
+				if (set == null) {
+					Set<Long> newSet = Collections
+							.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+					set = postings.putIfAbsent(trigram, newSet);
+					if (set == null) {
+						set = newSet;
+					}
+				}
+				set.add(entry.id);
+			}
+		}
+
+		/**
+		 * Removes an entry.
+		 *
+		 * @param entry
+		 *            the entry.
+		 */
+		private void remove(Entry entry) {
+			entriesById.remove(entry.id);
+			Set<String> trigrams = trigrams(entry.code);
+			trigrams.addAll(trigrams(entry.name));
+			for (String trigram : trigrams) {
+				Set<Long> set = postings.get(trigram);
+				if (set != null) {
+					set.remove(entry.id);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Modification of the index : a task is saved, or tasks are removed.
+	 */
+	static class Change {
+		private final Entry entry;
+		private final long[] removedTaskIds;
+		Change(Entry entry, long[] removedTaskIds) {
+			this.entry = entry;
+			this.removedTaskIds = removedTaskIds;
+		}
+	}
+
+	/** Tasks DAO */
+	private ITaskDAO taskDAO;
+
+	/** Task tree index */
+	private TaskTreeIndex taskTreeIndex;
+
+	/** Last tree filter query result */
+	private volatile FilterResult lastFilterResult;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param taskDAO
+	 *            the tasks DAO.
+	 * @param taskTreeIndex
+	 *            the task tree index.
+	 */
+	@Inject
+	public TaskSearchIndex(ITaskDAO taskDAO, TaskTreeIndex taskTreeIndex) {
+		this.taskDAO = taskDAO;
+		this.taskTreeIndex = taskTreeIndex;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.dao.AbstractTransactionalIndex#loadState()
+	 */
+	@Override
+	protected Entries loadState() {
+		long start = System.currentTimeMillis();
+		Entries entries = new Entries();
+		Task[] tasks = taskDAO.selectAll();
+		for (Task task : tasks) {
+			entries.add(new Entry(task));
+		}
+		log.debug("Task search index loaded (" + tasks.length + " tasks, " + entries.postings.size() + " trigrams, " + (System.currentTimeMillis() - start) + " ms)"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		return entries;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.activitymgr.core.dao.AbstractTransactionalIndex#copyState(java.lang
+	 * .Object)
+	 */
+	@Override
+	protected Entries copyState(Entries entries) {
+		Entries copy = new Entries();
+		for (Entry entry : entries.entriesById.values()) {
+			copy.add(entry);
+		}
+		return copy;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.activitymgr.core.dao.AbstractTransactionalIndex#apply(java.lang.Object
+	 * , java.lang.Object)
+	 */
+	@Override
+	protected void apply(Entries entries, Change change) {
+		if (change.entry != null) {
+			Entry previous = entries.entriesById.get(change.entry.id);
+			if (previous != null) {
+				if (previous.code.equals(change.entry.code)
+						&& previous.name.equals(change.entry.name)) {
+					return;
+				}
+				entries.remove(previous);
+			}
+			entries.add(change.entry);
+		}
+		else {
+			for (long taskId : change.removedTaskIds) {
+				Entry entry = entries.entriesById.get(taskId);
+				if (entry != null) {
+					entries.remove(entry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Registers a created or updated task.
+	 *
+	 * @param task
+	 *            the task.
+	 */
+	public void taskSaved(Task task) {
+		record(new Change(new Entry(task), null));
+	}
+
+	/**
+	 * Unregisters removed tasks.
+	 *
+	 * @param taskIds
+	 *            the removed tasks identifiers.
+	 */
+	public void tasksRemoved(long[] taskIds) {
+		record(new Change(null, taskIds));
+	}
+
+	/**
+	 * Returns the identifiers of the tasks whose name or code contains the
+	 * given string, ordered by full path.
+	 *
+	 * @param filter
+	 *            the string to look for.
+	 * @return the matching tasks identifiers.
+	 */
+	public long[] getMatchingTaskIds(String filter) {
+		return sortByFullPath(getMatches(getState(), normalize(filter)));
+	}
+
+	/**
+	 * Returns the first task (the lowest path, then the lowest number) whose
+	 * name or code contains the given string.
+	 *
+	 * @param filter
+	 *            the string to look for.
+	 * @return the matching task identifier or <code>null</code> if no task
+	 *         matches.
+	 */
+	public Long getFirstMatchingTaskId(String filter) {
+		Long result = null;
+		String resultFullPath = null;
+		for (Long id : getMatches(getState(), normalize(filter))) {
+			String fullPath = taskTreeIndex.getFullPath(id);
+			if (fullPath != null && (resultFullPath == null || compareByPathAndNumber(fullPath, resultFullPath) < 0)) {
+				result = id;
+				resultFullPath = fullPath;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the identifiers of the tasks matching the given filter (or
+	 * having a descendant matching it), plus their ancestors.
+	 *
+	 * @param filter
+	 *            the string to look for.
+	 * @return the tasks identifiers.
+	 */
+	public Set<Long> getMatchingTaskIdsAndAncestors(String filter) {
+		return Collections.unmodifiableSet(getFilterResult(normalize(filter)).matchesAndAncestors);
+	}
+
+	/**
+	 * Returns the sub tasks of a given task that must appear in a tree
+	 * filtered by the given string.
+	 * <p>
+	 * A sub task is kept if it matches the filter, if one of its descendants
+	 * does, or if one of its ancestors does.
+	 * </p>
+	 *
+	 * @param parentFullPath
+	 *            the parent task full path (<code>""</code> for the root
+	 *            tasks).
+	 * @param filter
+	 *            the string to look for.
+	 * @return the sub tasks identifiers ordered by number.
+	 */
+	public long[] getFilteredSubTaskIds(String parentFullPath, String filter) {
+		FilterResult filterResult = getFilterResult(normalize(filter));
+		// If the parent or one of its ancestors matches, all the
+		// sub tasks are kept
+		boolean ancestorMatches = false;
+		String cursor = parentFullPath;
+		while (!ancestorMatches && cursor.length() > 0) {
+			Long id = taskTreeIndex.getTaskId(cursor);
+			ancestorMatches = id != null && filterResult.matches.contains(id);
+			cursor = cursor.substring(0, cursor.length() - 2);
+		}
+		long[] subTaskIds = taskTreeIndex.getSubTaskIds(parentFullPath);
+		if (ancestorMatches) {
+			return subTaskIds;
+		}
+		long[] result = new long[subTaskIds.length];
+		int count = 0;
+		for (long subTaskId : subTaskIds) {
+			if (filterResult.matchesAndAncestors.contains(subTaskId)) {
+				result[count++] = subTaskId;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Returns the identifiers of the tasks matching the given search filter,
+	 * ordered by full path.
+	 *
+	 * @param filter
+	 *            the search filter.
+	 * @return the matching tasks identifiers.
+	 * @throws DAOException
+	 *             thrown if the filter field or criteria is unknown.
+	 */
+	public long[] getTaskIds(TaskSearchFilter filter) throws DAOException {
+		int fieldIndex = filter.getFieldIndex();
+		if (fieldIndex != TaskSearchFilter.TASK_NAME_FIELD_IDX
+				&& fieldIndex != TaskSearchFilter.TASK_CODE_FIELD_IDX) {
+			throw new DAOException(
+					"Unknown field index '" + fieldIndex + "'.", null); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		int criteriaIndex = filter.getCriteriaIndex();
+		switch (criteriaIndex) {
+		case TaskSearchFilter.IS_EQUAL_TO_CRITERIA_IDX:
+		case TaskSearchFilter.STARTS_WITH_CRITERIA_IDX:
+		case TaskSearchFilter.ENDS_WITH_CRITERIA_IDX:
+		case TaskSearchFilter.CONTAINS_CRITERIA_IDX:
+			break;
+		default:
+			throw new DAOException(
+					Strings.getString(
+							"DbMgr.errors.UNKNOWN_CRITERIA_INDEX", new Integer(criteriaIndex)), null); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		String value = normalize(filter.getFieldValue());
+		Entries entries = getState();
+		List<Long> result = new ArrayList<Long>();
+		// Whatever the criteria is, the value is contained in the field
+		for (Long id : getCandidates(entries, value)) {
+			Entry entry = entries.entriesById.get(id);
+			if (entry != null) {
+				String field = fieldIndex == TaskSearchFilter.TASK_NAME_FIELD_IDX ? entry.name
+						: entry.code;
+				boolean matches;
+				switch (criteriaIndex) {
+				case TaskSearchFilter.IS_EQUAL_TO_CRITERIA_IDX:
+					matches = field.equals(value);
+					break;
+				case TaskSearchFilter.STARTS_WITH_CRITERIA_IDX:
+					matches = field.startsWith(value);
+					break;
+				case TaskSearchFilter.ENDS_WITH_CRITERIA_IDX:
+					matches = field.endsWith(value);
+					break;
+				default:
+					matches = field.contains(value);
+				}
+				if (matches) {
+					result.add(id);
+				}
+			}
+		}
+		return sortByFullPath(result);
+	}
+
+	/**
+	 * Returns the best matches of the given string.
+	 * <p>
+	 * The matches are ranked as follows : code equal to the string, code
+	 * starting with the string, name starting with the string, a word of the
+	 * name starting with the string, code containing the string, name
+	 * containing the string. Ties are broken by depth and then by full path.
+	 * </p>
+	 *
+	 * @param filter
+	 *            the string to look for.
+	 * @param maxResults
+	 *            the maximum number of results.
+	 * @return the best matches identifiers, the best one first.
+	 */
+	public long[] getTopMatchingTaskIds(String filter, int maxResults) {
+		return getRankedTaskIds(filter, null, false, null, maxResults);
+	}
+
+	/**
+	 * Returns a page of the best matches of the given string.
+	 * <p>
+	 * The matches are ranked like in {@link #getTopMatchingTaskIds(String, int)}
+	 * ; inside a same match category, the most frequently used tasks come
+	 * first.
+	 * </p>
+	 * <p>
+	 * The page starts right after the rank designated by the given cursor (see
+	 * {@link #getCursor(long, String, Map)}). As the cursor holds a rank and
+	 * not an offset, the pagination remains stable if tasks are created or
+	 * removed in the meantime. The cursor also holds the frequencies the
+	 * previous pages were ranked with, which are used instead of the given
+	 * ones, so that a task used in the meantime is neither skipped nor
+	 * returned twice.
+	 * </p>
+	 *
+	 * @param filter
+	 *            the string to look for.
+	 * @param frequencies
+	 *            the tasks use frequencies by task identifier (optional,
+	 *            ignored if a cursor is given).
+	 * @param leavesOnly
+	 *            <code>true</code> if only the leaf tasks must be returned.
+	 * @param cursor
+	 *            the cursor of the last result of the previous page (or
+	 *            <code>null</code> for the first page).
+	 * @param maxResults
+	 *            the maximum number of results.
+	 * @return the best matches identifiers, the best one first.
+	 * @throws IllegalArgumentException
+	 *             thrown if the cursor is invalid.
+	 */
+	public long[] getRankedTaskIds(String filter,
+			Map<Long, Integer> frequencies, boolean leavesOnly, String cursor,
+			int maxResults) {
+		final String value = normalize(filter);
+		Entries entries = getState();
+		Object[] after = null;
+		if (cursor != null) {
+			after = parseCursor(cursor);
+			frequencies = getCursorFrequencies(cursor);
+		}
+		List<Long> result = new ArrayList<Long>();
+		if (maxResults > 0) {
+			// Keep the K best matches in a heap whose head is the worst one
+			Comparator<Object[]> comparator = new Comparator<Object[]>() {
+				@Override
+				public int compare(Object[] r1, Object[] r2) {
+					return compareRanks(r2, r1);
+				}
+			};
+			PriorityQueue<Object[]> heap = new PriorityQueue<Object[]>(
+					maxResults + 1, comparator);
+			for (Long id : getMatches(entries, value)) {
+				Object[] rank = rank(entries, id, value, frequencies);
+				if (rank != null
+						&& (after == null || compareRanks(rank, after) > 0)
+						&& (!leavesOnly || taskTreeIndex.getSubTasksCount((String) rank[1]) == 0)) {
+					if (heap.size() < maxResults) {
+						heap.add(rank);
+					} else if (compareRanks(rank, heap.peek()) < 0) {
+						heap.poll();
+						heap.add(rank);
+					}
+				}
+			}
+			Object[][] ranks = heap.toArray(new Object[heap.size()][]);
+			Arrays.sort(ranks, Collections.reverseOrder(comparator));
+			for (Object[] rank : ranks) {
+				result.add((Long) rank[2]);
+			}
+		}
+		return toArray(result);
+	}
+
+	/**
+	 * Returns the pagination cursor designating the rank of a task. The
+	 * frequencies of the tasks matching the string are stored along with the
+	 * rank, so that the next pages are ranked the same way.
+	 *
+	 * @param taskId
+	 *            the task identifier.
+	 * @param filter
+	 *            the string that was looked for.
+	 * @param frequencies
+	 *            the tasks use frequencies that were used (optional).
+	 * @return the cursor.
+	 * @throws IllegalArgumentException
+	 *             thrown if the task doesn't match the given string.
+	 */
+	public String getCursor(long taskId, String filter,
+			Map<Long, Integer> frequencies) {
+		Entries entries = getState();
+		String value = normalize(filter);
+		Object[] rank = rank(entries, taskId, value, frequencies);
+		if (rank == null) {
+			throw new IllegalArgumentException("Task " + taskId + " doesn't match '" + filter + "'"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		StringBuffer buf = new StringBuffer().append(rank[0]).append(':')
+				.append(rank[1]).append(':').append(rank[2]);
+		if (frequencies != null) {
+			// Only the matching tasks frequencies are useful
+			char separator = ':';
+			for (Map.Entry<Long, Integer> frequency : new TreeMap<Long, Integer>(
+					frequencies).entrySet()) {
+				Entry entry = entries.entriesById.get(frequency.getKey());
+				if (entry != null && score(entry, value) != NO_MATCH_SCORE) {
+					buf.append(separator).append(frequency.getKey())
+							.append('=').append(frequency.getValue());
+					separator = ',';
+				}
+			}
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Returns the frequencies held by a pagination cursor.
+	 *
+	 * @param cursor
+	 *            the cursor.
+	 * @return the tasks use frequencies (<code>null</code> if none).
+	 * @throws IllegalArgumentException
+	 *             thrown if the cursor is invalid.
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<Long, Integer> getCursorFrequencies(String cursor) {
+		return (Map<Long, Integer>) parseCursor(cursor)[3];
+	}
+
+	/**
+	 * Parses a pagination cursor.
+	 *
+	 * @param cursor
+	 *            the cursor.
+	 * @return the rank, followed by the frequencies (<code>null</code> if
+	 *         none).
+	 * @throws IllegalArgumentException
+	 *             thrown if the cursor is invalid.
+	 */
+	private static Object[] parseCursor(String cursor) {
+		String[] parts = cursor.split(":"); //$NON-NLS-1$
+		if (parts.length != 3 && parts.length != 4) {
+			throw new IllegalArgumentException("Invalid cursor '" + cursor + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		try {
+			Map<Long, Integer> frequencies = null;
+			if (parts.length == 4) {
+				frequencies = new HashMap<Long, Integer>();
+				for (String frequency : parts[3].split(",")) { //$NON-NLS-1$
+					int idx = frequency.indexOf('=');
+					if (idx < 0) {
+						throw new IllegalArgumentException("Invalid cursor '" + cursor + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+					frequencies.put(Long.valueOf(frequency.substring(0, idx)),
+							Integer.valueOf(frequency.substring(idx + 1)));
+				}
+			}
+			return new Object[] { Integer.valueOf(parts[0]), parts[1],
+					Long.valueOf(parts[2]), frequencies };
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid cursor '" + cursor + "'", e); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * Computes the rank of a task (score, full path, identifier).
+	 *
+	 * @param entries
+	 *            the index state.
+	 * @param id
+	 *            the task identifier.
+	 * @param value
+	 *            the normalized string.
+	 * @param frequencies
+	 *            the tasks use frequencies (optional).
+	 * @return the rank or <code>null</code> if the task doesn't match.
+	 */
+	private Object[] rank(Entries entries, Long id, String value,
+			Map<Long, Integer> frequencies) {
+		Entry entry = entries.entriesById.get(id);
+		String fullPath = taskTreeIndex.getFullPath(id);
+		if (entry == null || fullPath == null) {
+			return null;
+		}
+		int score = score(entry, value);
+		if (score == NO_MATCH_SCORE) {
+			return null;
+		}
+		score *= FREQUENCY_WEIGHT;
+		Integer frequency = frequencies != null ? frequencies.get(id) : null;
+		if (frequency != null) {
+			score -= Math.min(frequency, FREQUENCY_WEIGHT - 1);
+		}
+		return new Object[] { score, fullPath, id };
+	}
+
+	/**
+	 * Returns the rank score of a task for a given string.
+	 *
+	 * @param id
+	 *            the task identifier.
+	 * @param filter
+	 *            the string.
+	 * @return the score (the lower the better), or {@link Integer#MAX_VALUE}
+	 *         if the task doesn't match.
+	 */
+	public int getScore(long id, String filter) {
+		Entry entry = getState().entriesById.get(id);
+		return entry != null ? score(entry, normalize(filter)) : NO_MATCH_SCORE;
+	}
+
+	/**
+	 * Computes the score of an entry.
+	 *
+	 * @param entry
+	 *            the entry.
+	 * @param value
+	 *            the normalized string.
+	 * @return the score.
+	 */
+	private static int score(Entry entry, String value) {
+		if (entry.code.equals(value)) {
+			return CODE_EQUALS_SCORE;
+		} else if (entry.code.startsWith(value)) {
+			return CODE_STARTS_WITH_SCORE;
+		} else if (entry.name.startsWith(value)) {
+			return NAME_STARTS_WITH_SCORE;
+		} else if (entry.name.contains(" " + value)) { //$NON-NLS-1$
+			return NAME_WORD_STARTS_WITH_SCORE;
+		} else if (entry.code.contains(value)) {
+			return CODE_CONTAINS_SCORE;
+		} else if (entry.name.contains(value)) {
+			return NAME_CONTAINS_SCORE;
+		}
+		return NO_MATCH_SCORE;
+	}
+
+	/**
+	 * Compares two ranks (score, then depth and full path, then identifier).
+	 *
+	 * @param r1
+	 *            the first rank.
+	 * @param r2
+	 *            the second rank.
+	 * @return the comparison result.
+	 */
+	private static int compareRanks(Object[] r1, Object[] r2) {
+		int result = ((Integer) r1[0]).compareTo((Integer) r2[0]);
+		if (result == 0) {
+			String fullPath1 = (String) r1[1];
+			String fullPath2 = (String) r2[1];
+			result = fullPath1.length() - fullPath2.length();
+			if (result == 0) {
+				result = fullPath1.compareTo(fullPath2);
+			}
+			if (result == 0) {
+				result = ((Long) r1[2]).compareTo((Long) r2[2]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the (possibly cached) tree filter result for a given string.
+	 *
+	 * @param value
+	 *            the normalized string.
+	 * @return the filter result.
+	 */
+	private FilterResult getFilterResult(String value) {
+		// The versions are read first : if the indexes are modified meanwhile,
+		// the result is computed again on next call. The tree version changes
+		// on every move or removal, which changes the matches ancestors
+		long currentVersion = getVersion();
+		long currentTreeVersion = taskTreeIndex.getVersion();
+		Entries entries = getState();
+		// The results computed from the private state of a transaction are
+		// not cached
+		boolean shared = !readsPrivateState()
+				&& !taskTreeIndex.readsPrivateState();
+		FilterResult filterResult = lastFilterResult;
+		if (!shared || filterResult == null
+				|| filterResult.version != currentVersion
+				|| filterResult.treeVersion != currentTreeVersion
+				|| !filterResult.filter.equals(value)) {
+			Set<Long> matches = new HashSet<Long>(getMatches(entries, value));
+			Set<Long> matchesAndAncestors = new HashSet<Long>();
+			for (Long id : matches) {
+				Long cursor = id;
+				// Stop as soon as an already registered ancestor is reached
+				while (cursor != null && matchesAndAncestors.add(cursor)) {
+					cursor = taskTreeIndex.getParentTaskId(cursor);
+				}
+			}
+			filterResult = new FilterResult(value, currentVersion,
+					currentTreeVersion, matches, matchesAndAncestors);
+			if (shared) {
+				lastFilterResult = filterResult;
+			}
+		}
+		return filterResult;
+	}
+
+	/**
+	 * Returns the identifiers of the tasks whose name or code contains the
+	 * given string.
+	 *
+	 * @param entries
+	 *            the index state.
+	 * @param value
+	 *            the normalized string.
+	 * @return the matching tasks identifiers.
+	 */
+	private static Collection<Long> getMatches(Entries entries, String value) {
+		List<Long> result = new ArrayList<Long>();
+		for (Long id : getCandidates(entries, value)) {
+			Entry entry = entries.entriesById.get(id);
+			if (entry != null
+					&& (entry.name.contains(value) || entry.code
+							.contains(value))) {
+				result.add(id);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the identifiers of the tasks that may contain the given string
+	 * (ie. that contain all its trigrams).
+	 *
+	 * @param entries
+	 *            the index state.
+	 * @param value
+	 *            the normalized string.
+	 * @return the candidate tasks identifiers.
+	 */
+	private static Collection<Long> getCandidates(Entries entries, String value) {
+		if (value.length() < N) {
+			return entries.entriesById.keySet();
+		}
+		// Retrieve the posting sets, the smallest first
+		Set<String> trigrams = trigrams(value);
+		List<Set<Long>> sets = new ArrayList<Set<Long>>();
+		for (String trigram : trigrams) {
+			Set<Long> set = entries.postings.get(trigram);
+			if (set == null) {
+				return Collections.emptyList();
+			}
+			sets.add(set);
+		}
+		Collections.sort(sets, new Comparator<Set<Long>>() {
+			@Override
+			public int compare(Set<Long> s1, Set<Long> s2) {
+				return s1.size() - s2.size();
+			}
+		});
+		// Intersection
+		List<Long> result = new ArrayList<Long>(sets.get(0));
+		for (int i = 1; i < sets.size() && !result.isEmpty(); i++) {
+			result.retainAll(sets.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Sorts task identifiers by task full path.
+	 *
+	 * @param ids
+	 *            the tasks identifiers.
+	 * @return the sorted identifiers.
+	 */
+	private long[] sortByFullPath(Collection<Long> ids) {
+		final List<Object[]> entries = new ArrayList<Object[]>(ids.size());
+		for (Long id : ids) {
+			String fullPath = taskTreeIndex.getFullPath(id);
+			if (fullPath != null) {
+				entries.add(new Object[] { fullPath, id });
+			}
+		}
+		Collections.sort(entries, new Comparator<Object[]>() {
+			@Override
+			public int compare(Object[] o1, Object[] o2) {
+				return ((String) o1[0]).compareTo((String) o2[0]);
+			}
+		});
+		List<Long> result = new ArrayList<Long>(entries.size());
+		for (Object[] entry : entries) {
+			result.add((Long) entry[1]);
+		}
+		return toArray(result);
+	}
+
+	/**
+	 * Compares two full paths by path and then by number.
+	 *
+	 * @param fullPath1
+	 *            the first full path.
+	 * @param fullPath2
+	 *            the second full path.
+	 * @return the comparison result.
+	 */
+	private static int compareByPathAndNumber(String fullPath1, String fullPath2) {
+		String path1 = fullPath1.substring(0, fullPath1.length() - 2);
+		String path2 = fullPath2.substring(0, fullPath2.length() - 2);
+		int result = path1.compareTo(path2);
+		return result != 0 ? result : fullPath1.compareTo(fullPath2);
+	}
+
+	/**
+	 * Splits a string into its trigrams.
+	 *
+	 * @param value
+	 *            the normalized string.
+	 * @return the trigrams.
+	 */
+	private static Set<String> trigrams(String value) {
+		Set<String> result = new HashSet<String>();
+		for (int i = 0; i + N <= value.length(); i++) {
+			result.add(value.substring(i, i + N));
+		}
+		return result;
+	}
+
+	/**
+	 * Normalizes a string before indexing or searching it.
+	 *
+	 * @param value
+	 *            the string.
+	 * @return the lower case string.
+	 */
+	private static String normalize(String value) {
+		return value != null ? value.toLowerCase(Locale.ROOT) : ""; //$NON-NLS-1$
+	}
+
+	/**
+	 * Converts a list of identifiers to an array.
+	 *
+	 * @param ids
+	 *            the identifiers.
+	 * @return the array.
+	 */
+	private static long[] toArray(List<Long> ids) {
+		long[] result = new long[ids.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = ids.get(i);
+		}
+		return result;
+	}
+
+}
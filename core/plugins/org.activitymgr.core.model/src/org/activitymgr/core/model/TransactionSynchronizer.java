@@ -0,0 +1,169 @@
+package org.activitymgr.core.model;
+
+import org.activitymgr.core.dao.AbstractTransactionalIndex;
+import org.activitymgr.core.dao.TaskTreeIndex;
+
+import com.google.inject.Inject;
+
+/**
+ * Notifies the application wide task indexes of the boundaries of the
+ * transaction bound to the current thread, so that the modifications made by
+ * a transaction are only shared once it is committed (see
+ * {@link AbstractTransactionalIndex}). It also tells the
+ * {@link ReplicaRouter} when a user's writes have been committed.
+ *
+ * <p>
+ * The transaction managers (the model manager wrappers) must call
+ * {@link #readWrite()} before invoking a method that is not {@link ReadOnly},
+ * {@link #commit()} right after the database commit,
+ * {@link #rollback(Object)} after a rollback and finally
+ * {@link #release(ReplicaRouter, Object)} when the transaction is over.
+ * </p>
+ */
+public class TransactionSynchronizer {
+
+	/**
+	 * Current transaction state.
+	 */
+	private static class Transaction {
+		/** Tells whether the transaction may write */
+		private boolean readWrite;
+		/** Tells whether the transaction has been committed */
+		private boolean committed;
+		/**
+		 * Tells whether some writes have been rolled back (the whole
+		 * transaction or up to a savepoint)
+		 */
+		private boolean rolledBack;
+	}
+
+	/** Transactions by thread */
+	private final ThreadLocal<Transaction> transactions = new ThreadLocal<Transaction>();
+
+	/** Task tree index */
+	private TaskTreeIndex taskTreeIndex;
+
+	/** Task search index */
+	private TaskSearchIndex taskSearchIndex;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param taskTreeIndex
+	 *            the task tree index.
+	 * @param taskSearchIndex
+	 *            the task search index.
+	 */
+	@Inject
+	public TransactionSynchronizer(TaskTreeIndex taskTreeIndex,
+			TaskSearchIndex taskSearchIndex) {
+		this.taskTreeIndex = taskTreeIndex;
+		this.taskSearchIndex = taskSearchIndex;
+	}
+
+	/**
+	 * Tells that the current transaction may write.
+	 */
+	public void readWrite() {
+		getTransaction().readWrite = true;
+		taskTreeIndex.readWrite();
+		taskSearchIndex.readWrite();
+	}
+
+	/**
+	 * Tells whether the reads of the current transaction are routed to a
+	 * read replica.
+	 *
+	 * @param replica
+	 *            <code>true</code> if the replica is used.
+	 */
+	public void replica(boolean replica) {
+		taskTreeIndex.replica(replica);
+		taskSearchIndex.replica(replica);
+	}
+
+	/**
+	 * Sets a savepoint in the current transaction.
+	 *
+	 * @return the savepoint.
+	 */
+	public Object setSavepoint() {
+		return new int[] { taskTreeIndex.setSavepoint(),
+				taskSearchIndex.setSavepoint() };
+	}
+
+	/**
+	 * Forgets the modifications made by the current transaction (after a
+	 * savepoint if one is given).
+	 *
+	 * @param savepoint
+	 *            the savepoint returned by {@link #setSavepoint()} or
+	 *            <code>null</code> to rollback the whole transaction.
+	 */
+	public void rollback(Object savepoint) {
+		Transaction tx = transactions.get();
+		if (tx != null && tx.readWrite) {
+			tx.rolledBack = true;
+		}
+		int[] marks = savepoint != null ? (int[]) savepoint : new int[2];
+		taskTreeIndex.rollback(marks[0]);
+		taskSearchIndex.rollback(marks[1]);
+	}
+
+	/**
+	 * Shares the modifications made by the current transaction (must be
+	 * called right after the database commit).
+	 */
+	public void commit() {
+		Transaction tx = transactions.get();
+		if (tx != null && tx.readWrite) {
+			tx.committed = true;
+		}
+		taskTreeIndex.commit();
+		taskSearchIndex.commit();
+	}
+
+	/**
+	 * Ends the current transaction.
+	 */
+	public void release() {
+		release(null, null);
+	}
+
+	/**
+	 * Ends the current transaction, and registers the user's write in the
+	 * replica router if the transaction wrote and has been committed. If its
+	 * writes have been discarded (rollback, even partial, or no commit),
+	 * there is nothing for the replica to catch up with.
+	 *
+	 * @param router
+	 *            the replica router (optional).
+	 * @param user
+	 *            the user key (ignored if <code>null</code>).
+	 */
+	public void release(ReplicaRouter router, Object user) {
+		Transaction tx = transactions.get();
+		transactions.remove();
+		taskTreeIndex.end();
+		taskSearchIndex.end();
+		if (router != null && tx != null && tx.readWrite && tx.committed
+				&& !tx.rolledBack) {
+			router.writeCommitted(user);
+		}
+	}
+
+	/**
+	 * Returns the current transaction, creating it if required.
+	 *
+	 * @return the current transaction.
+	 */
+	private Transaction getTransaction() {
+		Transaction tx = transactions.get();
+		if (tx == null) {
+			tx = new Transaction();
+			transactions.set(tx);
+		}
+		return tx;
+	}
+
+}
@@ -37,18 +37,23 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
 import org.activitymgr.core.dao.DAOException;
+import org.activitymgr.core.dao.IChangeLogDAO;
 import org.activitymgr.core.dao.ICollaboratorDAO;
 import org.activitymgr.core.dao.IContributionDAO;
 import org.activitymgr.core.dao.ICoreDAO;
@@ -56,24 +61,31 @@ import org.activitymgr.core.dao.IDurationDAO;
 import org.activitymgr.core.dao.IReportCfgDAO;
 import org.activitymgr.core.dao.IReportDAO;
 import org.activitymgr.core.dao.ITaskDAO;
-import org.activitymgr.core.dao.TaskDAOCache;
+import org.activitymgr.core.dao.TaskTreeIndex;
 import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.dto.Contribution;
 import org.activitymgr.core.dto.Duration;
 import org.activitymgr.core.dto.IDTOFactory;
 import org.activitymgr.core.dto.ReportCfg;
 import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.misc.ChangeLogEntry;
+import org.activitymgr.core.dto.misc.ChangeLogEntry.Kind;
 import org.activitymgr.core.dto.misc.IntervalContributions;
 import org.activitymgr.core.dto.misc.TaskContributions;
 import org.activitymgr.core.dto.misc.TaskContributionsSums;
 import org.activitymgr.core.dto.misc.TaskSearchFilter;
+import org.activitymgr.core.dto.misc.RecentTasks;
+import org.activitymgr.core.dto.misc.TaskSuggestions;
 import org.activitymgr.core.dto.misc.TaskSums;
 import org.activitymgr.core.dto.report.Report;
 import org.activitymgr.core.dto.report.ReportIntervalType;
 import org.activitymgr.core.dto.report.ReportItem;
+import org.activitymgr.core.model.ContributionModelException;
 import org.activitymgr.core.model.IModelMgr;
 import org.activitymgr.core.model.IReportColumnComputer;
+import org.activitymgr.core.model.IReportProgressMonitor;
 import org.activitymgr.core.model.ModelException;
+import org.activitymgr.core.model.TaskSearchIndex;
 import org.activitymgr.core.model.XLSModelException;
 import org.activitymgr.core.model.impl.XlsImportHelper.IXLSHandler;
 import org.activitymgr.core.model.impl.XlsImportHelper.XLSCell;
@@ -115,9 +127,41 @@ import com.google.inject.Inject;
  */
 public class ModelMgrImpl implements IModelMgr {
 
+	/**
+	 * Mise à jour différée des statistiques des contributions.
+	 */
+	private static class StatisticsDelta implements
+			Comparable<StatisticsDelta> {
+		final long rootTaskId;
+		final int year;
+		final int date;
+		final int countDelta;
+
+		StatisticsDelta(long rootTaskId, int year, int date, int countDelta) {
+			this.rootTaskId = rootTaskId;
+			this.year = year;
+			this.date = date;
+			this.countDelta = countDelta;
+		}
+
+		@Override
+		public int compareTo(StatisticsDelta o) {
+			if (rootTaskId != o.rootTaskId) {
+				return rootTaskId < o.rootTaskId ? -1 : 1;
+			}
+			if (year != o.year) {
+				return year < o.year ? -1 : 1;
+			}
+			return date < o.date ? -1 : (date == o.date ? 0 : 1);
+		}
+	}
+
 	/** Logger */
 	private static Logger log = Logger.getLogger(ModelMgrImpl.class);
 
+	/** Number of days during which a recent task is considered to rank the task suggestions */
+	private static final int SUGGESTIONS_FREQUENCY_DAYS = 90;
+
 	/** DAO */
 	@Inject
 	private ICoreDAO dao;
@@ -146,9 +190,21 @@ public class ModelMgrImpl implements IModelMgr {
 	@Inject
 	private IReportCfgDAO reportCfgDAO;
 
+	/** Change log DAO */
+	@Inject
+	private IChangeLogDAO changeLogDAO;
+
 	/** Bean factory */
 	@Inject
 	private IDTOFactory factory;
+
+	/** Task tree index */
+	@Inject
+	private TaskTreeIndex taskTreeIndex;
+
+	/** Task names and codes search index */
+	@Inject
+	private TaskSearchIndex taskSearchIndex;
 	
 	/** Report columns computers map */
 	private Map<String, IReportColumnComputer> defaultReportColumnComputers = new HashMap<String, IReportColumnComputer>();
@@ -170,6 +226,34 @@ public class ModelMgrImpl implements IModelMgr {
 		return dao.tablesExist();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#upgradeTables()
+	 */
+	@Override
+	public void upgradeTables() {
+		if (dao.upgradeTables()) {
+			// Les colonnes et tables de sommes viennent d'être ajoutées
+			rebuildSums();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#rebuildSums()
+	 */
+	@Override
+	public void rebuildSums() {
+		taskDAO.rebuildTasksSums();
+		contributionDAO.rebuildMonthlySums();
+		contributionDAO.rebuildStatistics();
+		taskDAO.rebuildRecentTasks();
+		// Every sum may have changed
+		changeLogDAO.log(Kind.UPDATED, null, null);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -178,6 +262,8 @@ public class ModelMgrImpl implements IModelMgr {
 	@Override
 	public void createTables() {
 		dao.createTables();
+		taskTreeIndex.clear();
+		taskSearchIndex.clear();
 	}
 
 	/**
@@ -218,6 +304,7 @@ public class ModelMgrImpl implements IModelMgr {
 			log.debug(" - new path : '" + task.getPath() + "'"); //$NON-NLS-1$ //$NON-NLS-2$
 			// Mise à jour
 			taskDAO.update(task);
+			taskTreeIndex.taskSaved(task);
 		}
 	}
 
@@ -270,11 +357,12 @@ public class ModelMgrImpl implements IModelMgr {
 	 * 
 	 * @param task
 	 *            la copie de la tache en mémoire.
+	 * @return la tache en base de données.
 	 * @throws ModelException
 	 *             levé dans la cas ou la tache de destination ne peut recevoir
 	 *             de sous-tache.
 	 */
-	private void checkTaskPath(Task task)
+	private Task checkTaskPath(Task task)
 			throws ModelException {
 		boolean noErrorOccured = false;
 		Task _task = null;
@@ -299,6 +387,7 @@ public class ModelMgrImpl implements IModelMgr {
 				log.error("     db fullath = " + _task.getPath() + "/" + _task.getNumber()); //$NON-NLS-1$ //$NON-NLS-2$
 			}
 		}
+		return _task;
 	}
 
 	/**
@@ -336,7 +425,9 @@ public class ModelMgrImpl implements IModelMgr {
 		checkUniqueLogin(collaborator);
 
 		// Collaborator creation
-		return collaboratorDAO.insert(collaborator);
+		collaborator = collaboratorDAO.insert(collaborator);
+		changeLogDAO.log(Kind.CREATED, ChangeLogEntry.COLLABORATOR, collaborator.getId());
+		return collaborator;
 	}
 
 	/*
@@ -350,6 +441,29 @@ public class ModelMgrImpl implements IModelMgr {
 	public Contribution createContribution(Contribution contribution,
 			boolean updateEstimatedTimeToComlete) throws 
 			ModelException {
+		return createContribution(contribution, updateEstimatedTimeToComlete,
+				null);
+	}
+
+	/**
+	 * Crée une contribution.
+	 * 
+	 * @param contribution
+	 *            la contribution.
+	 * @param updateEstimatedTimeToComlete
+	 *            booléen indiquant si le RAF doit être automatiquement mis à
+	 *            jour.
+	 * @param pendingStatistics
+	 *            les mises à jour des statistiques différées
+	 *            (<code>null</code> pour une mise à jour immédiate).
+	 * @return la contribution créée.
+	 * @throws ModelException
+	 *             levé en cas de violation du modèle.
+	 * @see #applyStatistics(List)
+	 */
+	private Contribution createContribution(Contribution contribution,
+			boolean updateEstimatedTimeToComlete,
+			List<StatisticsDelta> pendingStatistics) throws ModelException {
 		log.info("createContribution(" + contribution + ")"); //$NON-NLS-1$ //$NON-NLS-2$
 		// La tache ne peut accepter une contribution que
 		// si elle n'admet aucune sous-tache
@@ -366,13 +480,16 @@ public class ModelMgrImpl implements IModelMgr {
 
 		// Contribution creation
 		contribution = contributionDAO.insert(contribution);
+		addToContributionsSums(contribution, contribution.getDurationId(), 1,
+				pendingStatistics);
+		addRecentTaskUse(contribution);
+		changeLogDAO.log(Kind.CREATED, contribution);
 
 		// Faut-il mettre à jour automatiquement le RAF de la tache ?
 		if (updateEstimatedTimeToComlete) {
 			// Mise à jour du RAF de la tache
 			long newEtc = task.getTodo() - contribution.getDurationId();
-			task.setTodo(newEtc > 0 ? newEtc : 0);
-			taskDAO.update(task);
+			updateTaskEtc(task, newEtc > 0 ? newEtc : 0);
 		}
 
 		// Retour du résultat
@@ -401,7 +518,9 @@ public class ModelMgrImpl implements IModelMgr {
 					Strings.getString("ModelMgr.errors.NUL_DURATION_FORBIDDEN")); //$NON-NLS-1$
 
 		// Duration creation
-		return durationDAO.insert(duration);
+		duration = durationDAO.insert(duration);
+		changeLogDAO.log(Kind.CREATED, ChangeLogEntry.DURATION, duration.getId());
+		return duration;
 	}
 
 	/*
@@ -430,7 +549,9 @@ public class ModelMgrImpl implements IModelMgr {
 				.setLastName("<" + Strings.getString("ModelMgr.defaults.COLLABORATOR_LAST_NAME") + ">"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
 		// Collaborator creation
-		return collaboratorDAO.insert(collaborator);
+		collaborator = collaboratorDAO.insert(collaborator);
+		changeLogDAO.log(Kind.CREATED, ChangeLogEntry.COLLABORATOR, collaborator.getId());
+		return collaborator;
 	}
 
 	/*
@@ -495,7 +616,16 @@ public class ModelMgrImpl implements IModelMgr {
 		task.setNumber(taskNumber);
 
 		// Création de la tache
-		return taskDAO.insert(task);
+		task = taskDAO.insert(task);
+		taskTreeIndex.taskSaved(task);
+		taskSearchIndex.taskSaved(task);
+
+		// Mise à jour des sommes de la tache et de ses taches parentes
+		taskDAO.addToTasksSums(task.getFullPath(), task.getBudget(),
+				task.getInitiallyConsumed(), task.getTodo());
+		taskDAO.addToSubTasksCount(parentPath, 1);
+		changeLogDAO.log(Kind.CREATED, ChangeLogEntry.TASK, task.getId());
+		return task;
 	}
 
 	/*
@@ -622,7 +752,7 @@ public class ModelMgrImpl implements IModelMgr {
 		XmlHelper.println(out, "<!DOCTYPE model SYSTEM \"activitymgr.dtd\">"); //$NON-NLS-1$
 
 		// Ajout des sommes de controle
-		List<TaskSums> rootTasksSums = getSubTasksSums(null, "", null, null);
+		List<TaskSums> rootTasksSums = getTasksSums(null, new String[] { "" }, 1, null, null);
 		if (rootTasksSums.size() > 0) {
 			XmlHelper.println(out, "<!-- "); //$NON-NLS-1$
 			XmlHelper
@@ -809,7 +939,11 @@ public class ModelMgrImpl implements IModelMgr {
 	 */
 	@Override
 	public int getSubTasksCount(long parentTaskId) {
-		return taskDAO.getSubTasksCount(parentTaskId);
+		String fullPath = taskTreeIndex.getFullPath(parentTaskId);
+		if (fullPath == null)
+			throw new DAOException(
+					Strings.getString("DbMgr.errors.SQL_EMPTY_QUERY_RESULT"), null); //$NON-NLS-1$
+		return taskTreeIndex.getSubTasksCount(fullPath);
 	}
 
 	/*
@@ -859,8 +993,14 @@ public class ModelMgrImpl implements IModelMgr {
 			boolean ascendantSort, boolean onlyActiveCollaborators) {
 		String[] whereClauseAttrNames = onlyActiveCollaborators ? new String[] { "isActive" } : null;
 		Object[] whereClauseAttrValues = onlyActiveCollaborators ? new Object[] { Boolean.TRUE } : null;
+		String orderByClauseFieldName = getCollaboratorFieldName(orderByClauseFieldIndex);
+		Object[] orderByClause = new Object[] { ascendantSort ? new AscendantOrderByClause(orderByClauseFieldName) : new DescendantOrderByClause(orderByClauseFieldName)};
+		return collaboratorDAO.select(whereClauseAttrNames, whereClauseAttrValues, orderByClause, -1);
+	}
+
+	private static String getCollaboratorFieldName(int fieldIndex) {
 		String orderByClauseFieldName = null;
-		switch (orderByClauseFieldIndex) {
+		switch (fieldIndex) {
 		case Collaborator.ID_FIELD_IDX:
 			orderByClauseFieldName = "id"; //$NON-NLS-1$
 			break;
@@ -879,10 +1019,60 @@ public class ModelMgrImpl implements IModelMgr {
 		default:
 			throw new DAOException(
 					Strings.getString(
-							"DbMgr.errors.UNKNOWN_FIELD_INDEX", new Integer(orderByClauseFieldIndex)), null); //$NON-NLS-1$ //$NON-NLS-2$
+							"DbMgr.errors.UNKNOWN_FIELD_INDEX", new Integer(fieldIndex)), null); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return orderByClauseFieldName;
+	}
+
+	private static Object getCollaboratorFieldValue(Collaborator collaborator, int fieldIndex) {
+		switch (fieldIndex) {
+		case Collaborator.LOGIN_FIELD_IDX:
+			return collaborator.getLogin();
+		case Collaborator.FIRST_NAME_FIELD_IDX:
+			return collaborator.getFirstName();
+		case Collaborator.LAST_NAME_FIELD_IDX:
+			return collaborator.getLastName();
+		case Collaborator.IS_ACTIVE_FIELD_IDX:
+			return collaborator.getIsActive();
+		default:
+			throw new DAOException(
+					Strings.getString(
+							"DbMgr.errors.UNKNOWN_FIELD_INDEX", new Integer(fieldIndex)), null); //$NON-NLS-1$ //$NON-NLS-2$
 		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#getCollaboratorsPage(int, boolean, boolean, org.activitymgr.core.dto.Collaborator, int)
+	 */
+	@Override
+	public Collaborator[] getCollaboratorsPage(int orderByClauseFieldIndex,
+			boolean ascendantSort, boolean onlyActiveCollaborators,
+			Collaborator after, int pageSize) {
+		String[] whereClauseAttrNames = onlyActiveCollaborators ? new String[] { "isActive" } : null;
+		Object[] whereClauseAttrValues = onlyActiveCollaborators ? new Object[] { Boolean.TRUE } : null;
+		String orderByClauseFieldName = getCollaboratorFieldName(orderByClauseFieldIndex);
 		Object[] orderByClause = new Object[] { ascendantSort ? new AscendantOrderByClause(orderByClauseFieldName) : new DescendantOrderByClause(orderByClauseFieldName)};
-		return collaboratorDAO.select(whereClauseAttrNames, whereClauseAttrValues, orderByClause, -1);
+		// La clé de tri est complétée par l'identifiant
+		Object[] pageKey = null;
+		if (after != null) {
+			pageKey = orderByClauseFieldIndex == Collaborator.ID_FIELD_IDX ? new Object[] { after.getId() }
+					: new Object[] { getCollaboratorFieldValue(after, orderByClauseFieldIndex), after.getId() };
+		}
+		return collaboratorDAO.selectPage(whereClauseAttrNames, whereClauseAttrValues, orderByClause, pageKey, pageSize).getItems();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#getCollaboratorsCount(boolean)
+	 */
+	@Override
+	public int getCollaboratorsCount(boolean onlyActiveCollaborators) {
+		return (int) (onlyActiveCollaborators ? collaboratorDAO.count(
+				new String[] { "isActive" }, new Object[] { Boolean.TRUE })
+				: collaboratorDAO.countAll());
 	}
 
 	/*
@@ -1050,12 +1240,13 @@ public class ModelMgrImpl implements IModelMgr {
 		result.setToDate(toDate);
 		TaskContributions[] taskContributionsArray = new TaskContributions[tasks.length];
 		result.setTaskContributions(taskContributionsArray);
+		String[] taskCodePaths = getTaskCodePaths(tasks);
 		for (int i = 0; i < tasks.length; i++) {
 			Task theTask = tasks[i];
 			TaskContributions taskContributions = taskContributionsCache
 					.get(theTask.getId());
 			taskContributions.setTask(theTask);
-			taskContributions.setTaskCodePath(buildTaskCodePath(theTask));
+			taskContributions.setTaskCodePath(taskCodePaths[i]);
 			taskContributionsArray[i] = taskContributions;
 		}
 
@@ -1120,17 +1311,11 @@ public class ModelMgrImpl implements IModelMgr {
 		String parentTaskFullPath = task.getPath();
 		// Si le chemin est vide, la tache parent est nulle (tache racine)
 		if (parentTaskFullPath != null && !"".equals(parentTaskFullPath)) { //$NON-NLS-1$
-			// Extraction du chemin et du numéro de la tache recherchée
+			// Recherche de la tache dans l'index
 			log.debug("Fullpath='" + parentTaskFullPath + "'"); //$NON-NLS-1$ //$NON-NLS-2$
-			String path = parentTaskFullPath.substring(0,
-					parentTaskFullPath.length() - 2);
-			byte number = StringHelper.toByte(parentTaskFullPath
-					.substring(parentTaskFullPath.length() - 2));
-			log.debug(" => path=" + path); //$NON-NLS-1$
-			log.debug(" => number=" + number); //$NON-NLS-1$
-
-			// Recherche de la tache
-			parentTask = getTask(path, number);
+			Long parentTaskId = taskTreeIndex.getTaskId(parentTaskFullPath);
+			if (parentTaskId != null)
+				parentTask = getTask(parentTaskId);
 		}
 		// Retour du résultat
 		return parentTask;
@@ -1144,7 +1329,9 @@ public class ModelMgrImpl implements IModelMgr {
 		Task parentTask = parentTaskId != null ? getTask(parentTaskId)
 				: null;
 		String fullpath = parentTask == null ? "" : parentTask.getFullPath(); //$NON-NLS-1$
-		return taskDAO.getSubTasks(fullpath, filter);
+		Task[] tasks = getTasks(taskSearchIndex.getFilteredSubTaskIds(fullpath, filter));
+		sort(tasks);
+		return tasks;
 	}
 
 	/* (non-Javadoc)
@@ -1152,7 +1339,80 @@ public class ModelMgrImpl implements IModelMgr {
 	 */
 	@Override
 	public Task getFirstTaskMatching(String filter) {
-		return taskDAO.getFirstTaskMatching(filter);
+		Long taskId = taskSearchIndex.getFirstMatchingTaskId(filter);
+		return taskId != null ? getTask(taskId) : null;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.model.IModelMgr#getTaskSuggestions(org.activitymgr.core.dto.Collaborator, java.lang.String, java.lang.String, int)
+	 */
+	@Override
+	public TaskSuggestions getTaskSuggestions(Collaborator contributor,
+			String filter, String cursor, int maxResults) throws ModelException {
+		if (maxResults < 1) {
+			throw new ModelException(Strings.getString(
+					"ModelMgr.errors.INVALID_SUGGESTIONS_COUNT", maxResults)); //$NON-NLS-1$
+		}
+		// Retrieve the contributor recent tasks frequencies (the next pages
+		// are ranked with the frequencies held by the cursor)
+		Map<Long, Integer> frequencies = null;
+		if (contributor != null && cursor == null) {
+			Calendar fromDate = Calendar.getInstance();
+			fromDate.add(Calendar.DATE, -SUGGESTIONS_FREQUENCY_DAYS);
+			frequencies = taskDAO.getRecentTasksFrequencies(contributor.getId(),
+					fromDate.get(Calendar.YEAR) * 10000
+							+ (fromDate.get(Calendar.MONTH) + 1) * 100
+							+ fromDate.get(Calendar.DAY_OF_MONTH));
+		}
+
+		// Rank the tasks (one more task is requested to know if there
+		// is a next page)
+		long[] taskIds = null;
+		try {
+			taskIds = taskSearchIndex.getRankedTaskIds(filter, frequencies, true, cursor, maxResults + 1);
+		} catch (IllegalArgumentException e) {
+			throw new ModelException(e.getMessage());
+		}
+		int count = Math.min(taskIds.length, maxResults);
+
+		// Load the tasks, keeping the ranking order
+		long[] pageTaskIds = Arrays.copyOf(taskIds, count);
+		Map<Long, Task> tasksMap = new HashMap<Long, Task>();
+		for (Task task : getTasks(pageTaskIds)) {
+			tasksMap.put(task.getId(), task);
+		}
+		// The shared index may be ahead of the transaction snapshot (a task
+		// removed in the meantime) : such a task is ignored
+		List<Task> tasks = new ArrayList<Task>();
+		List<String> taskCodePaths = new ArrayList<String>();
+		String[] codePaths = taskTreeIndex.getCodePaths(pageTaskIds);
+		for (int i = 0; i < count; i++) {
+			Task task = tasksMap.get(pageTaskIds[i]);
+			if (task != null && codePaths[i] != null) {
+				tasks.add(task);
+				taskCodePaths.add(codePaths[i]);
+			}
+		}
+		TaskSuggestions result = new TaskSuggestions();
+		result.setTasks(tasks.toArray(new Task[tasks.size()]));
+		result.setTaskCodePaths(taskCodePaths.toArray(new String[taskCodePaths.size()]));
+		if (taskIds.length > maxResults) {
+			// The frequencies of the first page are kept for the next ones
+			result.setNextCursor(taskSearchIndex.getCursor(pageTaskIds[count - 1], filter,
+					cursor != null ? taskSearchIndex.getCursorFrequencies(cursor) : frequencies));
+		}
+		return result;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.model.IModelMgr#getRecentTasks(org.activitymgr.core.dto.Collaborator, int)
+	 */
+	@Override
+	public RecentTasks getRecentTasks(Collaborator contributor, int maxResults) {
+		RecentTasks result = taskDAO.getRecentTasks(contributor.getId(), maxResults);
+		// Code paths are built from the task tree index
+		result.setTaskCodePaths(getTaskCodePaths(result.getTasks()));
+		return result;
 	}
 
 	/*
@@ -1198,7 +1458,7 @@ public class ModelMgrImpl implements IModelMgr {
 	 */
 	@Override
 	public int getRootTasksCount() {
-		return (int) taskDAO.count(new String[] { PATH_ATTRIBUTE }, new Object[] { "" });
+		return taskTreeIndex.getSubTasksCount(""); //$NON-NLS-1$
 	}
 
 	/*
@@ -1209,7 +1469,7 @@ public class ModelMgrImpl implements IModelMgr {
 	 */
 	@Override
 	public Task[] getTasks(TaskSearchFilter filter) {
-		long[] taskIds = taskDAO.getTaskIds(filter);
+		long[] taskIds = taskSearchIndex.getTaskIds(filter);
 		Task[] tasks = getTasks(taskIds);
 
 		// On trie les taches manuellement car le tri base de données
@@ -1250,8 +1510,8 @@ public class ModelMgrImpl implements IModelMgr {
 	 */
 	@Override
 	public Task getTask(String taskPath, String taskCode) {
-		Task[] tasks = taskDAO.select(new String[] { PATH_ATTRIBUTE, CODE_ATTRIBUTE }, new Object[] { taskPath, taskCode }, null, -1);
-		return tasks.length > 0 ? tasks[0] : null;
+		Long taskId = taskTreeIndex.getTaskId(taskPath, taskCode);
+		return taskId != null ? getTask(taskId) : null;
 	}
 
 	/*
@@ -1266,19 +1526,11 @@ public class ModelMgrImpl implements IModelMgr {
 			throw new ModelException(
 					Strings.getString("ModelMgr.errors.INVALID_TASK_CODE_PATH")); //$NON-NLS-1$
 		// Recherche de la tache
-		String subpath = codePath.trim().substring(1);
-		log.debug("Processing task path '" + subpath + "'"); //$NON-NLS-1$ //$NON-NLS-2$
-		Task task = null;
-		while (subpath.length() > 0) {
-			int idx = subpath.indexOf('/');
-			String taskCode = idx >= 0 ? subpath.substring(0, idx) : subpath;
-			String taskPath = task != null ? task.getFullPath() : ""; //$NON-NLS-1$
-			subpath = idx >= 0 ? subpath.substring(idx + 1) : ""; //$NON-NLS-1$
-			task = getTask(taskPath, taskCode);
-			if (task == null)
-				throw new ModelException(Strings.getString(
-						"ModelMgr.errors.UNKNOWN_TASK_CODE_PATH", codePath)); //$NON-NLS-1$ //$NON-NLS-2$
-		}
+		Long taskId = taskTreeIndex.getTaskIdByCodePath(codePath);
+		Task task = taskId != null ? getTask(taskId) : null;
+		if (task == null && codePath.trim().length() > 1)
+			throw new ModelException(Strings.getString(
+					"ModelMgr.errors.UNKNOWN_TASK_CODE_PATH", codePath)); //$NON-NLS-1$ //$NON-NLS-2$
 		log.debug("Found " + task); //$NON-NLS-1$
 
 		// Retour du résultat
@@ -1330,7 +1582,7 @@ public class ModelMgrImpl implements IModelMgr {
 	@Override
 	public TaskSums getTaskSums(long taskId, Calendar fromDate, Calendar toDate)
 			throws ModelException {
-		return getSubTasksSums(taskId, null, fromDate, toDate).get(0);
+		return getTasksSums(taskId, null, 1, fromDate, toDate).get(0);
 	}
 
 	
@@ -1340,6 +1592,15 @@ public class ModelMgrImpl implements IModelMgr {
 	@Override
 	public List<TaskSums> getSubTasksSums(Task parentTask, Calendar fromDate,
 			Calendar toDate) throws ModelException {
+		return getSubTasksSums(parentTask, 1, fromDate, toDate);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.model.IModelMgr#getSubTasksSums(org.activitymgr.core.dto.Task, int, java.util.Calendar, java.util.Calendar)
+	 */
+	@Override
+	public List<TaskSums> getSubTasksSums(Task parentTask, int depth,
+			Calendar fromDate, Calendar toDate) throws ModelException {
 		// Vérification de la tache (le chemin de la tache doit être le bon
 		// pour que le calcul le soit)
 		if (parentTask != null)
@@ -1348,16 +1609,81 @@ public class ModelMgrImpl implements IModelMgr {
 		// Compute parent task path
 		String tasksPath = parentTask != null ? parentTask.getFullPath() : "";
 		
-		return getSubTasksSums(null, tasksPath, fromDate, toDate);
+		return getTasksSums(null, new String[] { tasksPath }, depth, fromDate, toDate);
 	}
-	
-	private List<TaskSums> getSubTasksSums(Long taskId, String tasksPath, Calendar fromDate,
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.model.IModelMgr#getBranchesSums(long[], java.util.Calendar, java.util.Calendar)
+	 */
+	@Override
+	public List<TaskSums> getBranchesSums(long[] taskIds, Calendar fromDate,
+			Calendar toDate) {
+		// Full paths of the ancestors (the root tasks path being empty)
+		Set<String> tasksPaths = new TreeSet<String>();
+		for (long taskId : taskIds) {
+			String fullPath = taskTreeIndex.getFullPath(taskId);
+			if (fullPath != null) {
+				addAncestorsPaths(fullPath, tasksPaths);
+			}
+		}
+		if (tasksPaths.isEmpty()) {
+			return new ArrayList<TaskSums>();
+		}
+		return getTasksSums(null, tasksPaths.toArray(new String[tasksPaths.size()]), 1, fromDate, toDate);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.model.IModelMgr#getFilteredTasksSums(java.lang.String, java.util.Calendar, java.util.Calendar)
+	 */
+	@Override
+	public List<TaskSums> getFilteredTasksSums(String filter,
+			Calendar fromDate, Calendar toDate) {
+		// The sub tasks of the root and of the ancestors of the matching
+		// tasks are loaded at once
+		Set<String> matchingTasksPaths = new HashSet<String>();
+		Set<String> tasksPaths = new TreeSet<String>();
+		tasksPaths.add(""); //$NON-NLS-1$
+		for (long taskId : taskSearchIndex.getMatchingTaskIds(filter)) {
+			String fullPath = taskTreeIndex.getFullPath(taskId);
+			if (fullPath != null) {
+				matchingTasksPaths.add(fullPath);
+				addAncestorsPaths(fullPath, tasksPaths);
+			}
+		}
+		List<TaskSums> tasksSums = getTasksSums(null, tasksPaths.toArray(new String[tasksPaths.size()]), 1, fromDate, toDate);
+
+		// Only keep the tasks that appear in the filtered tree (see
+		// TaskSearchIndex.getFilteredSubTaskIds)
+		Set<Long> visibleTaskIds = taskSearchIndex.getMatchingTaskIdsAndAncestors(filter);
+		List<TaskSums> result = new ArrayList<TaskSums>();
+		for (TaskSums sums : tasksSums) {
+			Task task = sums.getTask();
+			boolean visible = visibleTaskIds.contains(task.getId());
+			String cursor = task.getPath();
+			while (!visible && cursor != null && cursor.length() > 0) {
+				visible = matchingTasksPaths.contains(cursor);
+				cursor = cursor.substring(0, cursor.length() - 2);
+			}
+			if (visible) {
+				result.add(sums);
+			}
+		}
+		return result;
+	}
+
+	private static void addAncestorsPaths(String fullPath, Set<String> tasksPaths) {
+		for (int length = 0; length < fullPath.length(); length += 2) {
+			tasksPaths.add(fullPath.substring(0, length));
+		}
+	}
+
+	private List<TaskSums> getTasksSums(Long taskId, String[] tasksPaths, int depth, Calendar fromDate,
 			Calendar toDate) {
 		// Compute sums
-		List<TaskSums> tasksSums = taskDAO.getTasksSums(taskId, tasksPath);
+		List<TaskSums> tasksSums = taskId != null ? taskDAO.getTasksSums(taskId, null) : taskDAO.getTasksSums(tasksPaths, depth);
 
 		// Add contributions
-		Map<Long, TaskContributionsSums> contributionSums = contributionDAO.getTasksSums(taskId, tasksPath, fromDate, toDate);
+		Map<Long, TaskContributionsSums> contributionSums = getContributionsSums(taskId, tasksPaths, depth, fromDate, toDate);
 		for (TaskSums taskSums : tasksSums) {
 			long theTaskId = taskSums.getTask().getId();
 			taskSums.setContributionsSums(contributionSums.get(theTaskId));
@@ -1367,7 +1693,7 @@ public class ModelMgrImpl implements IModelMgr {
 		if (fromDate != null) {
 			Calendar date = (Calendar) fromDate.clone();
 			date.add(Calendar.DATE, -1);
-			Map<Long, TaskContributionsSums> pastContributionsSums = contributionDAO.getTasksSums(taskId, tasksPath, null, date);
+			Map<Long, TaskContributionsSums> pastContributionsSums = getContributionsSums(taskId, tasksPaths, depth, null, date);
 			for (TaskSums taskSums : tasksSums) {
 				long theTaskId = taskSums.getTask().getId();
 				taskSums.setInitiallyConsumedSum(taskSums.getInitiallyConsumedSum() + pastContributionsSums.get(theTaskId).getConsumedSum());
@@ -1378,7 +1704,7 @@ public class ModelMgrImpl implements IModelMgr {
 		if (toDate != null) {
 			Calendar date = (Calendar) toDate.clone();
 			date.add(Calendar.DATE, +1);
-			Map<Long, TaskContributionsSums> futureContributionsSums = contributionDAO.getTasksSums(taskId, tasksPath, date, null);
+			Map<Long, TaskContributionsSums> futureContributionsSums = getContributionsSums(taskId, tasksPaths, depth, date, null);
 			for (TaskSums taskSums : tasksSums) {
 				long theTaskId = taskSums.getTask().getId();
 				try {
@@ -1393,6 +1719,12 @@ public class ModelMgrImpl implements IModelMgr {
 		// Return the result
 		return tasksSums;
 	}
+
+	private Map<Long, TaskContributionsSums> getContributionsSums(Long taskId,
+			String[] tasksPaths, int depth, Calendar fromDate, Calendar toDate) {
+		return taskId != null ? contributionDAO.getTasksSums(taskId, null, fromDate, toDate)
+				: contributionDAO.getTasksSums(tasksPaths, depth, fromDate, toDate);
+	}
 	
 	/*
 	 * (non-Javadoc)
@@ -1414,6 +1746,32 @@ public class ModelMgrImpl implements IModelMgr {
 		return buildTaskCodePath(task);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.activitymgr.core.model.IModelMgr#getTaskCodePaths(long[])
+	 */
+	@Override
+	public String[] getTaskCodePaths(long[] taskIds) {
+		return taskTreeIndex.getCodePaths(taskIds);
+	}
+
+	/**
+	 * Construit les chemins d'un ensemble de taches à partir des codes de
+	 * tache.
+	 * 
+	 * @param tasks
+	 *            les taches.
+	 * @return les chemins.
+	 */
+	private String[] getTaskCodePaths(Task[] tasks) {
+		long[] taskIds = new long[tasks.length];
+		for (int i = 0; i < tasks.length; i++) {
+			taskIds[i] = tasks[i].getId();
+		}
+		return taskTreeIndex.getCodePaths(taskIds);
+	}
+
 	/**
 	 * Construit le chemin de la tâche à partir des codes de tache.
 	 * 
@@ -1422,17 +1780,13 @@ public class ModelMgrImpl implements IModelMgr {
 	 * @return le chemin.
 	 */
 	private String buildTaskCodePath(Task task) {
-		// Construction
-		StringBuffer taskPath = new StringBuffer(""); //$NON-NLS-1$
-		Task cursor = task;
-		while (cursor != null) {
-			taskPath.insert(0, cursor.getCode());
-			taskPath.insert(0, "/"); //$NON-NLS-1$
-			cursor = getParentTask(cursor);
-		}
+		// Le chemin de la tache parent est construit à partir de l'index
+		String parentCodePath = taskTreeIndex.getCodePath(task.getPath());
+		if (parentCodePath == null)
+			throw new IllegalStateException("Unknown parent task path '" + task.getPath() + "'"); //$NON-NLS-1$ //$NON-NLS-2$
 
 		// Retour du résultat
-		return taskPath.toString();
+		return parentCodePath + "/" + task.getCode(); //$NON-NLS-1$
 	}
 
 	/*
@@ -1556,22 +1910,47 @@ public class ModelMgrImpl implements IModelMgr {
 		// Récupération de la tache parent et des sous-taches
 		// avant modification de son numéro et de son chemin
 		String initialTaskFullPath = task.getFullPath();
+		Long srcRootTaskId = taskTreeIndex.getTaskId(initialTaskFullPath
+				.substring(0, 2));
 		Task srcParentTask = getParentTask(task);
 		Task[] subTasksToMove = getSubTasks(task);
+		TaskSums sums = taskDAO.getTasksSums(task.getId(), null).get(0);
+
+		// Retrait des sommes de la tache des taches parentes d'origine
+		taskDAO.addToTasksSums(task.getPath(), -sums.getBudgetSum(),
+				-sums.getInitiallyConsumedSum(), -sums.getTodoSum());
+		taskDAO.addToSubTasksCount(task.getPath(), -1);
 
 		// Déplacement de la tache
 		byte number = taskDAO.newTaskNumber(destPath);
 		task.setPath(destPath);
 		task.setNumber(number);
 		taskDAO.update(task);
+		taskTreeIndex.taskSaved(task);
+
+		// Ajout des sommes de la tache aux taches parentes de destination
+		taskDAO.addToTasksSums(destPath, sums.getBudgetSum(),
+				sums.getInitiallyConsumedSum(), sums.getTodoSum());
+		taskDAO.addToSubTasksCount(destPath, 1);
 
 		// Déplacement des sous-taches
 		changeTasksPaths(subTasksToMove, initialTaskFullPath.length(),
 				task.getFullPath());
 
+		// Si la tache change de tache racine, les statistiques des
+		// contributions (tenues par tache racine) des taches racines
+		// d'origine et de destination doivent être recalculées
+		Long destRootTaskId = taskTreeIndex.getTaskId(task.getFullPath()
+				.substring(0, 2));
+		if (!srcRootTaskId.equals(destRootTaskId)) {
+			contributionDAO.rebuildStatistics(new long[] { srcRootTaskId,
+					destRootTaskId });
+		}
+
 		// Reconstruction des numéros de tâches d'où la tâche provenait
 		// et qui a laissé un 'trou' en étant déplacée
 		rebuildSubtasksNumbers(srcParentTask);
+		changeLogDAO.log(Kind.UPDATED, ChangeLogEntry.TASK, task.getId());
 	}
 
 	/*
@@ -1621,6 +2000,7 @@ public class ModelMgrImpl implements IModelMgr {
 				String fullPath = task.getFullPath();
 				changeTasksPaths(subTasks, fullPath.length(), fullPath);
 				taskDAO.update(task);
+				taskTreeIndex.taskSaved(task);
 			}
 		}
 	}
@@ -1642,8 +2022,10 @@ public class ModelMgrImpl implements IModelMgr {
 					Strings.getString(
 							"ModelMgr.errros.COLLABORATOR_WITH_CONTRIBUTIONS_CANNOT_BE_REMOVED", new Long(contribsNb))); //$NON-NLS-1$ //$NON-NLS-2$
 
-		// Suppression du collaborateur
+		// Suppression du collaborateur (et de ses taches récentes)
+		taskDAO.removeRecentTasks(collaborator.getId());
 		collaboratorDAO.delete(new String[] { "id" }, new Object[] { collaborator.getId() });
+		changeLogDAO.log(Kind.REMOVED, ChangeLogEntry.COLLABORATOR, collaborator.getId());
 	}
 
 	/*
@@ -1656,10 +2038,31 @@ public class ModelMgrImpl implements IModelMgr {
 	@Override
 	public void removeContribution(Contribution contribution,
 			boolean updateEstimatedTimeToComlete) throws ModelException {
+		removeContribution(contribution, updateEstimatedTimeToComlete, null);
+	}
+
+	/**
+	 * Supprime une contribution.
+	 * 
+	 * @param contribution
+	 *            la contribution.
+	 * @param updateEstimatedTimeToComlete
+	 *            booléen indiquant si le RAF doit être automatiquement mis à
+	 *            jour.
+	 * @param pendingStatistics
+	 *            les mises à jour des statistiques différées
+	 *            (<code>null</code> pour une mise à jour immédiate).
+	 * @throws ModelException
+	 *             levé en cas de violation du modèle.
+	 * @see #applyStatistics(List)
+	 */
+	private void removeContribution(Contribution contribution,
+			boolean updateEstimatedTimeToComlete,
+			List<StatisticsDelta> pendingStatistics) throws ModelException {
 		// Faut-il mettre à jour automatiquement le RAF de la tache ?
 		if (!updateEstimatedTimeToComlete) {
 			// Suppression de la contribution
-			contributionDAO.delete(contribution);
+			deleteContribution(contribution, pendingStatistics);
 		} else {
 			// Récupération des éléments de la contribution
 			Collaborator contributor = getCollaborator(contribution
@@ -1685,11 +2088,10 @@ public class ModelMgrImpl implements IModelMgr {
 							Strings.getString("ModelMgr.errors.CONTRIBUTION_UPDATE_DETECTED")); //$NON-NLS-1$
 
 				// Suppression de la contribution
-				contributionDAO.delete(contribution);
+				deleteContribution(contributions[0], pendingStatistics);
 
 				// Mise à jour du RAF de la tache
-				task.setTodo(task.getTodo() + contribution.getDurationId());
-				taskDAO.update(task);
+				updateTaskEtc(task, task.getTodo() + contribution.getDurationId());
 			}
 		}
 	}
@@ -1704,8 +2106,10 @@ public class ModelMgrImpl implements IModelMgr {
 	@Override
 	public void removeContributions(Contribution[] contributions) {
 		// Suppression de la contribution
+		List<StatisticsDelta> pendingStatistics = new ArrayList<StatisticsDelta>();
 		for (int i = 0; i < contributions.length; i++)
-			contributionDAO.delete(contributions[i]);
+			deleteContribution(contributions[i], pendingStatistics);
+		applyStatistics(pendingStatistics);
 	}
 
 	/*
@@ -1730,6 +2134,7 @@ public class ModelMgrImpl implements IModelMgr {
 
 		// Suppression
 		durationDAO.delete(duration);
+		changeLogDAO.log(Kind.REMOVED, ChangeLogEntry.DURATION, duration.getId());
 	}
 
 	/*
@@ -1755,15 +2160,29 @@ public class ModelMgrImpl implements IModelMgr {
 		// numéros de taches
 		Task parentTask = getParentTask(task);
 
+		// Récupération des sommes de la tache
+		TaskSums sums = taskDAO.getTasksSums(task.getId(), null).get(0);
+
+		// Retrait des sommes de la tache des taches parentes
+		taskDAO.addToTasksSums(task.getPath(), -sums.getBudgetSum(),
+				-sums.getInitiallyConsumedSum(), -sums.getTodoSum());
+		taskDAO.addToSubTasksCount(task.getPath(), -1);
+
+		// Forget the task and its sub tasks in the recent tasks
+		taskDAO.removeRecentTasks(task.getFullPath());
+
 		// Delete sub tasks
+		long[] removedTaskIds = taskTreeIndex.getSubTreeTaskIds(task.getFullPath());
 		taskDAO.delete(new String[] { PATH_ATTRIBUTE }, new Object[] { new LikeStatement(task.getFullPath() + "%") });
 
 		// Delete the task
 		taskDAO.delete(task);
+		taskTreeIndex.taskRemoved(task);
+		taskSearchIndex.tasksRemoved(removedTaskIds);
 
 		// Reconstruction des numéros de taches
 		rebuildSubtasksNumbers(parentTask);
-
+		changeLogDAO.log(Kind.REMOVED, ChangeLogEntry.TASK, task.getId());
 	}
 
 	/**
@@ -1787,20 +2206,25 @@ public class ModelMgrImpl implements IModelMgr {
 		// Changement des numéros de la tache 1 avec une valeur fictive
 		task1.setNumber((byte) 0);
 		taskDAO.update(task1);
+		taskTreeIndex.taskSaved(task1);
 		changeTasksPaths(task1subTasks, task1InitialFullpath.length(),
 				task1.getFullPath());
 
 		// Changement des numéros de la tache 2
 		task2.setNumber(task1InitialNumber);
 		taskDAO.update(task2);
+		taskTreeIndex.taskSaved(task2);
 		changeTasksPaths(task2subTasks, task2InitialFullpath.length(),
 				task2.getFullPath());
 
 		// Changement des numéros de la tache 1
 		task1.setNumber(task2InitialNumber);
 		taskDAO.update(task1);
+		taskTreeIndex.taskSaved(task1);
 		changeTasksPaths(task1subTasks, task1InitialFullpath.length(),
 				task1.getFullPath());
+		changeLogDAO.log(Kind.UPDATED, ChangeLogEntry.TASK, task1.getId());
+		changeLogDAO.log(Kind.UPDATED, ChangeLogEntry.TASK, task2.getId());
 	}
 
 	/*
@@ -1817,7 +2241,9 @@ public class ModelMgrImpl implements IModelMgr {
 		checkUniqueLogin(collaborator);
 
 		// Mise à jour des données
-		return collaboratorDAO.update(collaborator);
+		collaborator = collaboratorDAO.update(collaborator);
+		changeLogDAO.log(Kind.UPDATED, ChangeLogEntry.COLLABORATOR, collaborator.getId());
+		return collaborator;
 	}
 
 	/*
@@ -1829,7 +2255,9 @@ public class ModelMgrImpl implements IModelMgr {
 	 */
 	@Override
 	public Duration updateDuration(Duration duration) {
-		return durationDAO.update(duration);
+		duration = durationDAO.update(duration);
+		changeLogDAO.log(Kind.UPDATED, ChangeLogEntry.DURATION, duration.getId());
+		return duration;
 	}
 
 	/*
@@ -1852,7 +2280,12 @@ public class ModelMgrImpl implements IModelMgr {
 		// Faut-il mettre à jour automatiquement le RAF de la tache ?
 		if (!updateEstimatedTimeToComlete) {
 			// Mise à jour des données
+			Contribution dbContribution = getDbContribution(contribution);
 			result = contributionDAO.update(contribution);
+			if (dbContribution != null) {
+				addToContributionsSums(contribution, contribution.getDurationId()
+						- dbContribution.getDurationId(), 0);
+			}
 		} else {
 			// Récupération des éléments de la contribution
 			Collaborator contributor = getCollaborator(contribution
@@ -1874,18 +2307,125 @@ public class ModelMgrImpl implements IModelMgr {
 
 				// Mise à jour de la contribution
 				result = contributionDAO.update(contribution);
+				addToContributionsSums(contribution, newDuration - oldDuration, 0);
 
 				// Mise à jour du RAF de la tache
 				long newEtc = task.getTodo() + oldDuration - newDuration;
-				task.setTodo(newEtc > 0 ? newEtc : 0);
-				taskDAO.update(task);
+				updateTaskEtc(task, newEtc > 0 ? newEtc : 0);
 			}
 		}
+		changeLogDAO.log(Kind.UPDATED, contribution);
 
 		// Retour du résultat
 		return result;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.activitymgr.core.model.IModelMgr#updateContributions(org.activitymgr
+	 * .core.dto.Contribution[], long[], boolean)
+	 */
+	@Override
+	public void updateContributions(Contribution[] contributions,
+			long[] previousDurationIds, boolean updateEstimatedTimeToComlete)
+			throws ModelException {
+		log.info("updateContributions(" + contributions.length + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+		if (previousDurationIds.length != contributions.length) {
+			throw new IllegalArgumentException("Previous durations count mismatch");
+		}
+		// Vérification de l'ensemble des modifications avant
+		// enregistrement
+		Contribution[] dbContributions = new Contribution[contributions.length];
+		for (int i = 0; i < contributions.length; i++) {
+			try {
+				dbContributions[i] = checkContributionUpdate(contributions[i],
+						previousDurationIds[i]);
+			} catch (ModelException e) {
+				throw new ContributionModelException(i, e);
+			}
+		}
+		// Enregistrement (les contrôles ayant été faits, une erreur ne peut
+		// survenir qu'en cas de modification concurrente)
+		List<StatisticsDelta> pendingStatistics = new ArrayList<StatisticsDelta>();
+		for (int i = 0; i < contributions.length; i++) {
+			Contribution contribution = contributions[i];
+			if (dbContributions[i] == null) {
+				if (contribution.getDurationId() != 0) {
+					createContribution(contribution,
+							updateEstimatedTimeToComlete, pendingStatistics);
+				}
+			} else if (contribution.getDurationId() == 0) {
+				removeContribution(dbContributions[i],
+						updateEstimatedTimeToComlete, pendingStatistics);
+			} else {
+				updateContribution(contribution,
+						updateEstimatedTimeToComlete);
+			}
+		}
+		applyStatistics(pendingStatistics);
+	}
+
+	/**
+	 * Vérifie qu'une modification de contribution peut être enregistrée.
+	 * 
+	 * @param contribution
+	 *            la contribution (une durée nulle indique une suppression).
+	 * @param previousDurationId
+	 *            la durée connue de l'appelant avant modification.
+	 * @return la contribution en base (<code>null</code> si elle n'existe
+	 *         pas).
+	 * @throws ModelException
+	 *             levé si la modification est invalide.
+	 */
+	private Contribution checkContributionUpdate(Contribution contribution,
+			long previousDurationId) throws ModelException {
+		// La durée existe-t-elle ?
+		if (contribution.getDurationId() != 0
+				&& getDuration(contribution.getDurationId()) == null) {
+			throw new ModelException(
+					Strings.getString("ModelMgr.errors.INVALID_DURATION")); //$NON-NLS-1$
+		}
+		// Le collaborateur et la tache doivent exister (ils ont pu être
+		// supprimés de manière concurrente)
+		Collaborator contributor = getCollaborator(contribution
+				.getContributorId());
+		if (contributor == null) {
+			throw new ModelException(Strings.getString(
+					"ModelMgr.errors.UNKNOWN_COLLABORATOR", contribution.getContributorId())); //$NON-NLS-1$
+		}
+		Task task = getTask(contribution.getTaskId());
+		if (task == null) {
+			throw new ModelException(Strings.getString(
+					"ModelMgr.errors.UNKNOWN_TASK", contribution.getTaskId())); //$NON-NLS-1$
+		}
+		// Récupération de la contribution correspondante en base
+		Contribution[] dbContributions = contributionDAO.getContributions(
+				contributor, task, contribution.getDate(),
+				contribution.getDate());
+		Contribution dbContribution = dbContributions.length > 0 ? dbContributions[0]
+				: null;
+		// On vérifie que la donnée en base est en phase avec l'appelant
+		if (dbContribution == null && previousDurationId != 0) {
+			throw new ModelException(
+					Strings.getString("ModelMgr.errors.CONTRIBUTION_DELETION_DETECTED")); //$NON-NLS-1$
+		}
+		if (dbContribution != null
+				&& dbContribution.getDurationId() != previousDurationId) {
+			throw new ModelException(
+					Strings.getString("ModelMgr.errors.CONTRIBUTION_UPDATE_DETECTED")); //$NON-NLS-1$
+		}
+		// La tache ne peut accepter une contribution que
+		// si elle n'admet aucune sous-tache
+		if (dbContribution == null && contribution.getDurationId() != 0
+				&& getSubTasksCount(contribution.getTaskId()) > 0) {
+			throw new ModelException(
+					Strings.getString("ModelMgr.errors.TASK_WITH_AT_LEAST_ONE_SUBTASK_CANNOT_ACCEPT_CONTRIBUTIONS")); //$NON-NLS-1$
+		}
+		return dbContribution;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -1903,12 +2443,18 @@ public class ModelMgrImpl implements IModelMgr {
 					Strings.getString("ModelMgr.errors.A_TASK_WITH_SUBTASKS_CANNOT_ACCEPT_CONTRIBUTIONS")); //$NON-NLS-1$
 
 		// Mise à jour des identifiants de tâche
+		List<StatisticsDelta> pendingStatistics = new ArrayList<StatisticsDelta>();
 		for (int i = 0; i < contributions.length; i++) {
 			Contribution contribution = contributions[i];
-			contributionDAO.delete(contribution);
+			deleteContribution(contribution, pendingStatistics);
 			contribution.setTaskId(newContributionTask.getId());
 			contributionDAO.insert(contribution);
+			addToContributionsSums(contribution, contribution.getDurationId(),
+					1, pendingStatistics);
+			addRecentTaskUse(contribution);
+			changeLogDAO.log(Kind.CREATED, contribution);
 		}
+		applyStatistics(pendingStatistics);
 
 		// Retour de la tache modifiée
 		return contributions;
@@ -1951,7 +2497,7 @@ public class ModelMgrImpl implements IModelMgr {
 		// attributs
 		// n'est autorisée que pour les champs autres que le chemin et le
 		// numéro.
-		checkTaskPath(task);
+		Task dbTask = checkTaskPath(task);
 
 		// Check sur l'unicité du code pour le chemin considéré
 		Task parentTask = getParentTask(task);
@@ -1963,14 +2509,179 @@ public class ModelMgrImpl implements IModelMgr {
 
 		// Mise à jour des données
 		task = taskDAO.update(task);
+		taskTreeIndex.taskSaved(task);
+		taskSearchIndex.taskSaved(task);
+
+		// Mise à jour des sommes de la tache et de ses taches parentes
+		taskDAO.addToTasksSums(task.getFullPath(),
+				task.getBudget() - dbTask.getBudget(),
+				task.getInitiallyConsumed() - dbTask.getInitiallyConsumed(),
+				task.getTodo() - dbTask.getTodo());
+		changeLogDAO.log(Kind.UPDATED, ChangeLogEntry.TASK, task.getId());
 
 		// Retour de la tache modifiée
 		return task;
 	}
 
+	/**
+	 * Met à jour le reste à faire d'une tache ainsi que les sommes de ses
+	 * taches parentes.
+	 * 
+	 * @param task
+	 *            la tache à mettre à jour.
+	 * @param newEtc
+	 *            le nouveau reste à faire.
+	 */
+	private void updateTaskEtc(Task task, long newEtc) {
+		long oldEtc = task.getTodo();
+		task.setTodo(newEtc);
+		taskDAO.update(task);
+		taskDAO.addToTasksSums(task.getFullPath(), 0, 0, newEtc - oldEtc);
+		changeLogDAO.log(Kind.UPDATED, ChangeLogEntry.TASK, task.getId());
+	}
+
+	/**
+	 * Retourne la version en base d'une contribution.
+	 * 
+	 * @param contribution
+	 *            la contribution.
+	 * @return la contribution lue en base ou <code>null</code> si elle
+	 *         n'existe pas.
+	 */
+	private Contribution getDbContribution(Contribution contribution) {
+		return contributionDAO.selectByPK(contribution.getYear(),
+				contribution.getMonth(), contribution.getDay(),
+				contribution.getContributorId(), contribution.getTaskId());
+	}
+
+	/**
+	 * Supprime une contribution et la retranche des sommes mensuelles.
+	 * <p>
+	 * La durée retranchée est celle présente en base, qui peut différer de
+	 * celle de la contribution spécifiée.
+	 * </p>
+	 * 
+	 * @param contribution
+	 *            la contribution à supprimer.
+	 * @param pendingStatistics
+	 *            les mises à jour des statistiques différées
+	 *            (<code>null</code> pour une mise à jour immédiate).
+	 */
+	private void deleteContribution(Contribution contribution,
+			List<StatisticsDelta> pendingStatistics) {
+		Contribution dbContribution = getDbContribution(contribution);
+		if (dbContribution != null) {
+			contributionDAO.delete(dbContribution);
+			addToContributionsSums(dbContribution,
+					-dbContribution.getDurationId(), -1, pendingStatistics);
+			changeLogDAO.log(Kind.REMOVED, dbContribution);
+		}
+	}
+
+	/**
+	 * Répercute une modification de contribution sur les sommes mensuelles
+	 * et, en cas d'ajout ou de retrait, sur les statistiques des
+	 * contributions.
+	 * 
+	 * @param contribution
+	 *            la contribution modifiée.
+	 * @param durationDelta
+	 *            le delta de durée.
+	 * @param countDelta
+	 *            le delta du nombre de contributions.
+	 */
+	private void addToContributionsSums(Contribution contribution, long durationDelta, int countDelta) {
+		addToContributionsSums(contribution, durationDelta, countDelta, null);
+	}
+
+	/**
+	 * Répercute une modification de contribution sur les sommes mensuelles
+	 * et, en cas d'ajout ou de retrait, sur les statistiques des
+	 * contributions.
+	 * 
+	 * @param contribution
+	 *            la contribution modifiée.
+	 * @param durationDelta
+	 *            le delta de durée.
+	 * @param countDelta
+	 *            le delta du nombre de contributions.
+	 * @param pendingStatistics
+	 *            les mises à jour des statistiques différées
+	 *            (<code>null</code> pour une mise à jour immédiate).
+	 */
+	private void addToContributionsSums(Contribution contribution,
+			long durationDelta, int countDelta,
+			List<StatisticsDelta> pendingStatistics) {
+		contributionDAO.addToMonthlySums(contribution.getContributorId(),
+				contribution.getTaskId(), contribution.getYear(),
+				contribution.getMonth(), durationDelta, countDelta);
+		if (countDelta != 0) {
+			String fullPath = taskTreeIndex.getFullPath(contribution.getTaskId());
+			StatisticsDelta delta = new StatisticsDelta(
+					taskTreeIndex.getTaskId(fullPath.substring(0, 2)),
+					contribution.getYear(), contribution.getYear() * 10000
+							+ contribution.getMonth() * 100
+							+ contribution.getDay(), countDelta);
+			if (pendingStatistics != null) {
+				pendingStatistics.add(delta);
+			} else {
+				contributionDAO.addToStatistics(delta.rootTaskId, delta.year,
+						delta.date, delta.countDelta);
+			}
+		}
+	}
+
+	/**
+	 * Applique les mises à jour différées des statistiques des
+	 * contributions.
+	 * 
+	 * <p>
+	 * La ligne des statistiques d'une tache racine pour une année est
+	 * modifiée par toutes les contributions de l'année : les mises à jour
+	 * d'un lot de contributions sont appliquées en fin de lot, pour que
+	 * la ligne reste verrouillée le moins longtemps possible, et dans
+	 * l'ordre des clés, pour que deux lots concurrents ne puissent pas
+	 * s'interbloquer. Les mises à jour d'une même date sont cumulées.
+	 * </p>
+	 * 
+	 * @param pendingStatistics
+	 *            les mises à jour différées.
+	 */
+	private void applyStatistics(List<StatisticsDelta> pendingStatistics) {
+		Collections.sort(pendingStatistics);
+		StatisticsDelta previous = null;
+		int countDelta = 0;
+		for (StatisticsDelta delta : pendingStatistics) {
+			if (previous != null && previous.compareTo(delta) != 0) {
+				contributionDAO.addToStatistics(previous.rootTaskId,
+						previous.year, previous.date, countDelta);
+				countDelta = 0;
+			}
+			previous = delta;
+			countDelta += delta.countDelta;
+		}
+		if (previous != null) {
+			contributionDAO.addToStatistics(previous.rootTaskId,
+					previous.year, previous.date, countDelta);
+		}
+	}
+
+	/**
+	 * Enregistre l'utilisation de la tache d'une contribution par son
+	 * contributeur.
+	 * 
+	 * @param contribution
+	 *            la contribution créée.
+	 */
+	private void addRecentTaskUse(Contribution contribution) {
+		taskDAO.addRecentTaskUse(contribution.getContributorId(),
+				contribution.getTaskId(), contribution.getYear() * 10000
+						+ contribution.getMonth() * 100 + contribution.getDay());
+	}
+
 	private Task getTask(String taskPath, byte taskNumber) {
-		Task[] tasks = taskDAO.select(new String[] { PATH_ATTRIBUTE, "number" }, new Object[] { taskPath, taskNumber }, null, -1);
-		return tasks.length > 0 ? tasks[0] : null;
+		Long taskId = taskTreeIndex.getTaskId(taskPath + StringHelper.toHex(taskNumber));
+		return taskId != null ? getTask(taskId) : null;
 	}
 
 	private Task[] getTasks(long[] tasksIds) {
@@ -2099,8 +2810,7 @@ public class ModelMgrImpl implements IModelMgr {
 	public void importFromExcel(Long parentTaskId, InputStream xls)
 			throws IOException, ModelException {
 		final List<String> numericFieldNames = Arrays.asList(new String[] { BUDGET_ATTRIBUTE, "initiallyConsumed", "todo" });
-		final TaskDAOCache taskCache = new TaskDAOCache(taskDAO);
-		final String parentTaskCodePath = parentTaskId == null ? "" : taskCache.getCodePath(parentTaskId);
+		final String parentTaskCodePath = parentTaskId == null ? "" : taskTreeIndex.getCodePath(parentTaskId);
 		XlsImportHelper.visit(xls, new IXLSHandler() {
 			@Override
 			public void handleRow(Map<String, XLSCell> cells) throws ModelException {
@@ -2134,7 +2844,8 @@ public class ModelMgrImpl implements IModelMgr {
 				}
 				
 				// Create task
-				Task parentTask = taskCache.getByCodePath(theParentTaskCodePath);
+				Long parentId = taskTreeIndex.getTaskIdByCodePath(theParentTaskCodePath);
+				Task parentTask = parentId != null ? getTask(parentId) : null;
 				if (!"".equals(theParentTaskCodePath) && parentTask == null) {
 					throw new ModelException("Unknown task path '" + theParentTaskCodePath + "'");
 				}
@@ -2285,6 +2996,33 @@ public class ModelMgrImpl implements IModelMgr {
 			boolean contributorCentricMode, long[] contributorIds,
 			String[] columnIds, boolean includeTotals, boolean dryRun)
 			throws ModelException {
+		return buildReport(start, intervalType, intervalCount, rootTaskId,
+				taskDepth, onlyKeepTasksWithContributions, byContributor,
+				contributorCentricMode, contributorIds, columnIds,
+				includeTotals, dryRun, null);
+	}
+
+	@Override
+	public Workbook buildReport(Calendar start,
+			ReportIntervalType intervalType, Integer intervalCount,
+			Long rootTaskId, int taskDepth,
+			boolean onlyKeepTasksWithContributions, boolean byContributor,
+			boolean contributorCentricMode, long[] contributorIds,
+			String[] columnIds, boolean includeTotals,
+			IReportProgressMonitor monitor) throws ModelException {
+		return buildReport(start, intervalType, intervalCount, rootTaskId,
+				taskDepth, onlyKeepTasksWithContributions, byContributor,
+				contributorCentricMode, contributorIds, columnIds,
+				includeTotals, false, monitor);
+	}
+
+	private Workbook buildReport(Calendar start,
+			ReportIntervalType intervalType, Integer intervalCount,
+			Long rootTaskId, int taskDepth,
+			boolean onlyKeepTasksWithContributions, boolean byContributor,
+			boolean contributorCentricMode, long[] contributorIds,
+			String[] columnIds, boolean includeTotals, boolean dryRun,
+			IReportProgressMonitor monitor) throws ModelException {
 		Map<String, IReportColumnComputer> reportColumnComputers = new HashMap<String, IReportColumnComputer>(defaultReportColumnComputers); 
 		List<IReportColumnComputer> columns = new ArrayList<IReportColumnComputer>();
 		int taskFields = 0;
@@ -2337,7 +3075,8 @@ public class ModelMgrImpl implements IModelMgr {
 						.toArray(new IReportColumnComputer[columns.size()]),
 				collaboratorFields.toArray(new String[collaboratorFields.size()]),
 				includeTotals,
-				dryRun);
+				dryRun,
+				monitor);
 	}
 
 	@Override
@@ -2348,11 +3087,28 @@ public class ModelMgrImpl implements IModelMgr {
 			boolean contributorCentricMode, long[] contributorIds,
 			IReportColumnComputer[] columns, String[] orderContributorsBy,
 			boolean includeTotals, boolean dryRun) throws ModelException {
+		return buildReport(start, intervalType, intervalCount, rootTaskId,
+				taskDepth, onlyKeepTasksWithContributions, byContributor,
+				contributorCentricMode, contributorIds, columns,
+				orderContributorsBy, includeTotals, dryRun, null);
+	}
+
+	private Workbook buildReport(Calendar start,
+			ReportIntervalType intervalType, Integer intervalCount,
+			Long rootTaskId, int taskDepth,
+			boolean onlyKeepTasksWithContributions, boolean byContributor,
+			boolean contributorCentricMode, long[] contributorIds,
+			IReportColumnComputer[] columns, String[] orderContributorsBy,
+			boolean includeTotals, boolean dryRun,
+			IReportProgressMonitor monitor) throws ModelException {
 		try {
 			// In Excel 97 format, it is not possible to have more than 256
 			// columns
 			int maxIntervalCount = 256 - columns.length - 1;
 			// Build raw report
+			if (monitor != null && !dryRun) {
+				monitor.queryStarted();
+			}
 			Report report = doBuildReport(start, intervalType, intervalCount,
 					rootTaskId, taskDepth, onlyKeepTasksWithContributions,
 					byContributor, contributorCentricMode, contributorIds,
@@ -2404,6 +3160,8 @@ public class ModelMgrImpl implements IModelMgr {
 
 			long[] columnSums = new long[dates.size()];
 			ReportItem lastItem = null;
+			int totalRows = report.getItems().size();
+			int processedRows = 0;
 			for (ReportItem item : report.getItems()) {
 				TaskSums contributedTask = item.getContributedTask();
 				Row row = sheet.createRow(sheet.getLastRowNum() + 1);
@@ -2455,6 +3213,12 @@ public class ModelMgrImpl implements IModelMgr {
 							sum / 100d);
 				}
 				lastItem = item;
+				// Notify the progress every 100 rows
+				processedRows++;
+				if (monitor != null
+						&& (processedRows % 100 == 0 || processedRows == totalRows)) {
+					monitor.rowsProcessed(processedRows, totalRows);
+				}
 			}
 
 			// Footer
@@ -2585,7 +3349,9 @@ public class ModelMgrImpl implements IModelMgr {
 		if (reportCfg.getName() == null) {
 			throw new ModelException("Name cannot be null");
 		}
-		return reportCfgDAO.insert(reportCfg);
+		reportCfg = reportCfgDAO.insert(reportCfg);
+		changeLogDAO.log(Kind.CREATED, ChangeLogEntry.REPORT_CFG, reportCfg.getId());
+		return reportCfg;
 	}
 
 	/*
@@ -2598,6 +3364,7 @@ public class ModelMgrImpl implements IModelMgr {
 	@Override
 	public void removeReportCfg(long id) {
 		reportCfgDAO.deleteByPK(id);
+		changeLogDAO.log(Kind.REMOVED, ChangeLogEntry.REPORT_CFG, id);
 	}
 
 	/*
@@ -2610,6 +3377,7 @@ public class ModelMgrImpl implements IModelMgr {
 	@Override
 	public void updateReportCfg(ReportCfg reportCfg) {
 		reportCfgDAO.update(reportCfg);
+		changeLogDAO.log(Kind.UPDATED, ChangeLogEntry.REPORT_CFG, reportCfg.getId());
 	}
 
 	/*
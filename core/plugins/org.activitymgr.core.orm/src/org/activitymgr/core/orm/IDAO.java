@@ -30,6 +30,27 @@ public interface IDAO<TYPE> {
 			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
 			int maxRows) throws SQLException;
 
+	/**
+	 * Selects a page using keyset pagination : the page starts after the
+	 * given sort key instead of skipping the previous rows.
+	 * 
+	 * <p>
+	 * The primary key attributes that are not in the order by clause are
+	 * appended to it (in the direction of its last item) so that the sort key
+	 * is unique. The sort key attributes must not be <code>null</code>.
+	 * </p>
+	 * 
+	 * @param pageKey
+	 *            the continuation token returned with the previous page
+	 *            (<code>null</code> for the first page).
+	 * @param pageSize
+	 *            the maximum count of items of the page.
+	 */
+	public Page<TYPE> selectPage(Connection con,
+			String[] whereClauseAttributeNames,
+			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
+			Object[] pageKey, int pageSize) throws SQLException;
+
 	public TYPE update(Connection con, TYPE value) throws SQLException;
 
 	public TYPE insert(Connection con, TYPE value) throws SQLException;
@@ -0,0 +1,37 @@
+package org.activitymgr.core.orm;
+
+/**
+ * Page of a keyset paginated selection.
+ * 
+ * @see IDAO#selectPage(java.sql.Connection, String[], Object[], Object[],
+ *      Object[], int)
+ */
+public class Page<TYPE> {
+
+	private TYPE[] items;
+
+	private Object[] nextPageKey;
+
+	public Page(TYPE[] items, Object[] nextPageKey) {
+		this.items = items;
+		this.nextPageKey = nextPageKey;
+	}
+
+	public TYPE[] getItems() {
+		return items;
+	}
+
+	/**
+	 * @return the continuation token to give to select the next page (the
+	 *         sort key of the last item of the page), <code>null</code> if
+	 *         this page is the last one.
+	 */
+	public Object[] getNextPageKey() {
+		return nextPageKey;
+	}
+
+	public boolean hasNextPage() {
+		return nextPageKey != null;
+	}
+
+}
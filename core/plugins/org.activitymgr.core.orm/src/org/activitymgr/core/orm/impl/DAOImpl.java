@@ -23,6 +23,7 @@ import java.util.Map;
 
 import org.activitymgr.core.orm.IConverter;
 import org.activitymgr.core.orm.IDAO;
+import org.activitymgr.core.orm.Page;
 import org.activitymgr.core.orm.impl.converters.BigDecimalConverter;
 import org.activitymgr.core.orm.impl.converters.BooleanConverter;
 import org.activitymgr.core.orm.impl.converters.ByteConverter;
@@ -600,6 +601,171 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 		}
 	}
 
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.orm.IDAO#selectPage(java.sql.Connection, java.lang.String[], java.lang.Object[], java.lang.Object[], java.lang.Object[], int)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Page<TYPE> selectPage(Connection con, String[] whereClauseAttributeNames, Object[] whereClauseAttributeValues, Object[] orderByClauseItems, Object[] pageKey, int pageSize) throws SQLException {
+		if (pageSize <= 0)
+			throw new IllegalArgumentException("Page size must be positive");
+		// Attributs de la clé de tri (complétés par la clé primaire afin
+		// que la clé de tri soit unique)
+		List<Field> keyAttributes = new ArrayList<Field>();
+		List<Boolean> ascendantSorts = new ArrayList<Boolean>();
+		if (orderByClauseItems != null) {
+			for (Object orderByClauseItem : orderByClauseItems) {
+				if (!(orderByClauseItem instanceof AbstractOrderByClause)) {
+					keyAttributes.add(getAttributeByName((String) orderByClauseItem));
+					ascendantSorts.add(Boolean.TRUE);
+				}
+				else {
+					keyAttributes.add(getAttributeByName(((AbstractOrderByClause) orderByClauseItem).getAttributeName()));
+					if (orderByClauseItem instanceof AscendantOrderByClause)
+						ascendantSorts.add(Boolean.TRUE);
+					else if (orderByClauseItem instanceof DescendantOrderByClause)
+						ascendantSorts.add(Boolean.FALSE);
+					else
+						throw new IllegalStateException("Unknown order by clause item type : '" + orderByClauseItem + "'", null);
+				}
+			}
+		}
+		// (dans le sens du dernier critère de tri)
+		Boolean pkAscendantSort = ascendantSorts.isEmpty() ? Boolean.TRUE : ascendantSorts.get(ascendantSorts.size() - 1);
+		for (Field pkAttribute : pkAttributes) {
+			if (!keyAttributes.contains(pkAttribute)) {
+				keyAttributes.add(pkAttribute);
+				ascendantSorts.add(pkAscendantSort);
+			}
+		}
+		if (pageKey != null && pageKey.length != keyAttributes.size())
+			throw new IllegalArgumentException("Wrong page key length : " + pageKey.length + " (expected " + keyAttributes.size() + ")");
+
+		// Construction de la requête
+		StringBuffer buf = new StringBuffer(selectAllRequest);
+		appendCustomWhereClause(buf, whereClauseAttributeNames, whereClauseAttributeValues);
+		List<Field> keyParameterAttributes = new ArrayList<Field>();
+		List<Object> keyParameterValues = new ArrayList<Object>();
+		if (pageKey != null) {
+			buf.append(whereClauseAttributeNames != null ? " and " : " where ");
+			if (supportsRowValueComparison(con, ascendantSorts)) {
+				appendRowValueCondition(buf, keyAttributes, ascendantSorts.get(0), pageKey, keyParameterAttributes, keyParameterValues);
+			}
+			else {
+				appendExpandedKeyCondition(buf, keyAttributes, ascendantSorts, pageKey, keyParameterAttributes, keyParameterValues);
+			}
+		}
+		buf.append(" order by ");
+		for (int i=0; i<keyAttributes.size(); i++) {
+			if (i!=0) buf.append(", ");
+			buf.append(columnNamesDictionnary.get(keyAttributes.get(i)));
+			buf.append(ascendantSorts.get(i) ? " asc" : " desc");
+		}
+		buf.append(" limit ?");
+		String request = buf.toString();
+		if (sqlLog.isDebugEnabled())
+			sqlLog.debug("pageSelectRequest=" + request);
+
+		PreparedStatement pStmt = null;
+		try {
+			pStmt = con.prepareStatement(request);
+			// Binding de la clause where puis de la clé de la page
+			int parameterIdx = bindAttributeValueToStatement(pStmt, whereClauseAttributeNames, whereClauseAttributeValues);
+			for (int i=0; i<keyParameterAttributes.size(); i++) {
+				attributeValueToStatementColumn(keyParameterAttributes.get(i), keyParameterValues.get(i), pStmt, parameterIdx++);
+			}
+			// Une ligne supplémentaire indique s'il existe une page suivante
+			pStmt.setInt(parameterIdx, pageSize + 1);
+			ResultSet rs = pStmt.executeQuery();
+			List<Object> result = new ArrayList<Object>();
+			while (rs.next()) {
+				TYPE newInstance = newInstance();
+				result.add(newInstance);
+				resultSetToInstanceAttributes(rs, newInstance, true);
+			}
+			// Fermeture du statement
+			pStmt.close();
+			pStmt = null;
+
+			// Calcul de la clé de la page suivante
+			Object[] nextPageKey = null;
+			if (result.size() > pageSize) {
+				result.remove(pageSize);
+				Object last = result.get(pageSize - 1);
+				nextPageKey = new Object[keyAttributes.size()];
+				for (int i=0; i<nextPageKey.length; i++) {
+					nextPageKey[i] = keyAttributes.get(i).get(last);
+				}
+			}
+
+			// Retour du résultat
+			return new Page<TYPE>(result.toArray((TYPE[]) Array.newInstance(mappedClass, result.size())), nextPageKey);
+		} catch (IllegalArgumentException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		} catch (IllegalAccessException e) {
+			log.error("Error while accessing instance attribute", e);
+			throw new IllegalStateException("Error while accessing instance attribute", e); 
+		}
+		finally {
+			if (pStmt!=null) try { pStmt.close(); } catch (SQLException ignored) {}
+		}
+	}
+
+	/**
+	 * Ajoute la condition de clé de page sous la forme
+	 * <code>(a, b) &gt; (?, ?)</code>.
+	 */
+	private void appendRowValueCondition(StringBuffer buf, List<Field> keyAttributes, boolean ascendantSort, Object[] pageKey, List<Field> parameterAttributes, List<Object> parameterValues) {
+		buf.append("(");
+		for (int i=0; i<keyAttributes.size(); i++) {
+			if (i!=0) buf.append(", ");
+			buf.append(columnNamesDictionnary.get(keyAttributes.get(i)));
+			parameterAttributes.add(keyAttributes.get(i));
+			parameterValues.add(pageKey[i]);
+		}
+		buf.append(ascendantSort ? ") > (" : ") < (");
+		for (int i=0; i<keyAttributes.size(); i++) {
+			buf.append(i!=0 ? ", ?" : "?");
+		}
+		buf.append(")");
+	}
+
+	/**
+	 * Ajoute la condition de clé de page sous une forme portable, équivalente
+	 * à <code>(a, b) &gt; (?, ?)</code> :
+	 * <code>(a &gt;= ? and (a &gt; ? or (a = ? and b &gt; ?)))</code> (la
+	 * première comparaison permet à la base d'utiliser un index sur la
+	 * première colonne).
+	 */
+	private void appendExpandedKeyCondition(StringBuffer buf, List<Field> keyAttributes, List<Boolean> ascendantSorts, Object[] pageKey, List<Field> parameterAttributes, List<Object> parameterValues) {
+		Field first = keyAttributes.get(0);
+		if (keyAttributes.size() > 1) {
+			buf.append("(").append(columnNamesDictionnary.get(first));
+			buf.append(ascendantSorts.get(0) ? ">=?" : "<=?").append(" and ");
+			parameterAttributes.add(first);
+			parameterValues.add(pageKey[0]);
+		}
+		for (int i=0; i<keyAttributes.size(); i++) {
+			Field attribute = keyAttributes.get(i);
+			String columnName = columnNamesDictionnary.get(attribute);
+			buf.append("(").append(columnName).append(ascendantSorts.get(i) ? ">?" : "<?");
+			parameterAttributes.add(attribute);
+			parameterValues.add(pageKey[i]);
+			if (i < keyAttributes.size() - 1) {
+				buf.append(" or (").append(columnName).append("=? and ");
+				parameterAttributes.add(attribute);
+				parameterValues.add(pageKey[i]);
+			}
+		}
+		for (int i=0; i<keyAttributes.size(); i++) {
+			buf.append(i < keyAttributes.size() - 1 ? "))" : ")");
+		}
+		if (keyAttributes.size() > 1) {
+			buf.append(")");
+		}
+	}
+
 	@Override
 	public TYPE newInstance() {
 		return ReflectionHelper.newInstance(constructor);
@@ -1030,6 +1196,37 @@ public class DAOImpl<TYPE> implements IDAO<TYPE> {
 		}
 	}
 
+	/**
+	 * Indique si la comparaison de la clé de page peut s'écrire
+	 * <code>(a, b) &gt; (?, ?)</code>.
+	 * 
+	 * <p>
+	 * Ce n'est pas le cas si les sens de tri diffèrent, avec HSQLDB (qui
+	 * exige des paramètres typés dans un constructeur de ligne), ni avec
+	 * MySQL (qui n'utilise pas les index pour cette comparaison avant la
+	 * version 5.7) ; la forme développée est alors utilisée, comme pour les
+	 * bases inconnues.
+	 * </p>
+	 * 
+	 * @param con la connexion SQL.
+	 * @param ascendantSorts les sens de tri.
+	 * @return un booléen indiquant si la comparaison de lignes est utilisable.
+	 * @throws SQLException levé en cas d'incident technique d'accès à la base.
+	 */
+	private static boolean supportsRowValueComparison(Connection con, List<Boolean> ascendantSorts) throws SQLException {
+		if (ascendantSorts.size() < 2 || !isH2(con))
+			return false;
+		for (Boolean ascendantSort : ascendantSorts) {
+			if (!ascendantSort.equals(ascendantSorts.get(0)))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean isH2(Connection con) throws SQLException {
+		return "H2".equals(con.getMetaData().getDatabaseProductName());
+	}
+
 	/**
 	 * Indique si la BDD de donn�es est une base HSQLDB.
 	 * @param con la connexion SQL.
@@ -19,6 +19,8 @@ import junit.framework.TestResult;
 import org.activitymgr.core.dto.IDTOFactory;
 import org.activitymgr.core.model.CoreModelModule;
 import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.core.model.ReadOnly;
+import org.activitymgr.core.model.TransactionSynchronizer;
 import org.activitymgr.core.util.DbHelper;
 import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.log4j.Logger;
@@ -108,20 +110,28 @@ public abstract class AbstractModelTestCase extends TestCase implements
 
 		// Retrieve model manager instance
 		final IModelMgr modelMgr = injector.getInstance(IModelMgr.class);
+		final TransactionSynchronizer synchronizer = injector.getInstance(TransactionSynchronizer.class);
 		this.modelMgr = (IModelMgr) Proxy.newProxyInstance(
 				AbstractModelTestCase.class.getClassLoader(),
 				new Class<?>[] { IModelMgr.class }, new InvocationHandler() {
 					@Override
 					public Object invoke(Object proxy, Method method,
 							Object[] args) throws Throwable {
+						if (!method.isAnnotationPresent(ReadOnly.class)) {
+							synchronizer.readWrite();
+						}
 						try {
 							Object result = method.invoke(modelMgr, args);
 							tx.commit();
+							synchronizer.commit();
 							return result;
 						} catch (InvocationTargetException t) {
 							t.getCause().printStackTrace();
 							tx.rollback();
+							synchronizer.rollback(null);
 							throw t.getCause();
+						} finally {
+							synchronizer.release();
 						}
 					}
 				});
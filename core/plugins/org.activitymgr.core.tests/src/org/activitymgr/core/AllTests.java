@@ -23,7 +23,11 @@ public class AllTests {
 		suite.addTestSuite(XlsTest.class);
 		suite.addTestSuite(ReportTest.class);
 		suite.addTestSuite(XLSReportTest.class);
-		suite.addTestSuite(TaskCacheTest.class);
+		suite.addTestSuite(TaskCacheTest.class);
+		suite.addTestSuite(TaskSearchIndexTest.class);
+		suite.addTestSuite(ReplicaRoutingTest.class);
+		suite.addTestSuite(ChangeLogTest.class);
+		suite.addTestSuite(PageSelectionTest.class);
 		//$JUnit-END$
 		return suite;
 	}
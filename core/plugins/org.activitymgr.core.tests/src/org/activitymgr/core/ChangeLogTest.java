@@ -0,0 +1,226 @@
+package org.activitymgr.core;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.activitymgr.core.dao.IChangeLogDAO;
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Duration;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.misc.ChangeLogEntry;
+import org.activitymgr.core.dto.misc.ChangeLogEntry.Kind;
+import org.activitymgr.core.model.ChangeLogPoller;
+import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.core.model.ModelException;
+import org.activitymgr.core.model.ReadOnly;
+import org.activitymgr.core.model.TransactionSynchronizer;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Change log test, the two servers sharing the database being simulated by
+ * two injectors.
+ */
+public class ChangeLogTest extends AbstractModelTestCase {
+
+	/** Second server */
+	private IModelMgr otherModelMgr;
+	private ChangeLogPoller otherPoller;
+
+	/** First server (the test one) */
+	private ChangeLogPoller poller;
+	private IChangeLogDAO changeLogDAO;
+
+	/** Entries notified to the first server listener */
+	private List<ChangeLogEntry> notifiedEntries = new ArrayList<ChangeLogEntry>();
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		changeLogDAO = getInjector().getInstance(IChangeLogDAO.class);
+		changeLogDAO.setEnabled(true);
+		poller = getInjector().getInstance(ChangeLogPoller.class);
+		poller.addListener(new ChangeLogPoller.IListener() {
+			@Override
+			public void changesApplied(List<ChangeLogEntry> entries) {
+				notifiedEntries.addAll(entries);
+			}
+		});
+
+		Injector otherInjector = Guice.createInjector(getGuiceModules());
+		otherInjector.getInstance(IChangeLogDAO.class).setEnabled(true);
+		otherPoller = otherInjector.getInstance(ChangeLogPoller.class);
+		final IModelMgr modelMgr = otherInjector.getInstance(IModelMgr.class);
+		final TransactionSynchronizer synchronizer = otherInjector.getInstance(TransactionSynchronizer.class);
+		otherModelMgr = (IModelMgr) Proxy.newProxyInstance(
+				ChangeLogTest.class.getClassLoader(),
+				new Class<?>[] { IModelMgr.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method,
+							Object[] args) throws Throwable {
+						if (!method.isAnnotationPresent(ReadOnly.class)) {
+							synchronizer.readWrite();
+						}
+						try {
+							Object result = method.invoke(modelMgr, args);
+							get().commit();
+							synchronizer.commit();
+							return result;
+						} catch (InvocationTargetException e) {
+							get().rollback();
+							synchronizer.rollback(null);
+							throw e.getCause();
+						} finally {
+							synchronizer.release();
+						}
+					}
+				});
+
+		// Initialize the high-water marks
+		assertEquals(0, poller.poll());
+		assertEquals(0, otherPoller.poll());
+	}
+
+	public void testRemoteTaskChanges() throws ModelException {
+		// Load the first server task index
+		assertEquals(0, getModelMgr().getRootTasksCount());
+
+		// The other server creates a task : the first server index is stale
+		// until it polls
+		Task task = otherModelMgr.createNewTask(null);
+		assertEquals(0, getModelMgr().getRootTasksCount());
+		assertEquals(1, poller.poll());
+		assertEquals(1, getModelMgr().getRootTasksCount());
+		assertEquals(1, notifiedEntries.size());
+		ChangeLogEntry entry = notifiedEntries.get(0);
+		assertEquals(Kind.CREATED, entry.getKind());
+		assertEquals(ChangeLogEntry.TASK, entry.getEntity());
+		assertEquals(task.getId(), entry.getEntityId().longValue());
+
+		// Nothing new
+		assertEquals(0, poller.poll());
+
+		// The changes made by a server are not applied by itself
+		task.setCode("NEW");
+		task = getModelMgr().updateTask(task);
+		assertEquals(0, poller.poll());
+		assertEquals(1, otherPoller.poll());
+		assertEquals(task.getId(), otherModelMgr.getTaskByCodePath("/NEW").getId());
+
+		// Removal
+		otherModelMgr.removeTask(task);
+		assertEquals(1, poller.poll());
+		assertEquals(0, getModelMgr().getRootTasksCount());
+		assertEquals(0, otherPoller.poll());
+		assertEquals(poller.getHighWaterMark(), otherPoller.getHighWaterMark());
+		assertEquals(poller.getDataGeneration(), otherPoller.getDataGeneration());
+	}
+
+	public void testRemoteContributionChanges() throws ModelException {
+		Collaborator collaborator = otherModelMgr.createNewCollaborator();
+		Duration duration = getFactory().newDuration();
+		duration.setId(100);
+		duration = otherModelMgr.createDuration(duration);
+		Task task = otherModelMgr.createNewTask(null);
+		Contribution contribution = getFactory().newContribution();
+		contribution.setDate(cal(2026, 10, 19));
+		contribution.setContributorId(collaborator.getId());
+		contribution.setDurationId(duration.getId());
+		contribution.setTaskId(task.getId());
+		otherModelMgr.createContribution(contribution, true);
+
+		// Collaborator, duration, task, contribution and task update
+		// (estimated time to complete)
+		assertEquals(5, poller.poll());
+		ChangeLogEntry entry = notifiedEntries.get(3);
+		assertEquals(ChangeLogEntry.CONTRIBUTION, entry.getEntity());
+		assertEquals(task.getId(), entry.getEntityId().longValue());
+		assertEquals(collaborator.getId(), entry.getContributorId().longValue());
+		assertEquals(20261019, entry.getDay().intValue());
+		assertTrue(poller.getLastLag() >= 0);
+		assertTrue(poller.getMaxLag() >= poller.getLastLag());
+		assertEquals(5, poller.getAppliedEntriesCount());
+	}
+
+	public void testGaps() throws Exception {
+		long hwm = poller.getHighWaterMark();
+		String otherNodeId = "other";
+		long now = System.currentTimeMillis();
+
+		// An entry follows a missing one : it is applied but the high-water
+		// mark stays before the gap
+		String generation = poller.getDataGeneration();
+		insertEntry(hwm + 2, otherNodeId, now);
+		assertEquals(1, poller.poll());
+		assertEquals(hwm, poller.getHighWaterMark());
+		assertEquals(0, poller.poll());
+		// ... but the data generation changes
+		String gapGeneration = poller.getDataGeneration();
+		assertFalse(gapGeneration.equals(generation));
+
+		// The missing entry is committed
+		insertEntry(hwm + 1, otherNodeId, now);
+		assertEquals(1, poller.poll());
+		assertEquals(hwm + 2, poller.getHighWaterMark());
+		assertFalse(poller.getDataGeneration().equals(gapGeneration));
+
+		// A gap older than the timeout is skipped
+		poller.setGapTimeout(1000);
+		insertEntry(hwm + 4, otherNodeId, now - 2000);
+		assertEquals(1, poller.poll());
+		assertEquals(hwm + 4, poller.getHighWaterMark());
+	}
+
+	public void testDisabledAndPurge() throws Exception {
+		// Nothing is logged when the change log is disabled
+		changeLogDAO.setEnabled(false);
+		getModelMgr().createNewTask(null);
+		assertEquals(0, changeLogDAO.getLastId());
+
+		// The last entry is kept by the purge
+		changeLogDAO.setEnabled(true);
+		getModelMgr().createNewTask(null);
+		getModelMgr().createNewTask(null);
+		long lastId = changeLogDAO.getLastId();
+		assertEquals(1, changeLogDAO.purge(System.currentTimeMillis() + 1000));
+		get().commit();
+		assertEquals(lastId, changeLogDAO.getLastId());
+		assertEquals(0, changeLogDAO.getEntries(lastId, 10).length);
+	}
+
+	public void testUpgradeCreatesChangeLog() throws Exception {
+		// Database created by a previous version
+		Statement stmt = get().createStatement();
+		stmt.executeUpdate("drop table CHANGE_LOG");
+		stmt.close();
+		get().commit();
+
+		// The upgrade (performed by the servers at startup) creates the
+		// table, the modifications can then be logged
+		getModelMgr().upgradeTables();
+		getModelMgr().createNewTask(null);
+		assertEquals(1, changeLogDAO.getEntries(0, 10).length);
+	}
+
+	private void insertEntry(long id, String nodeId, long time)
+			throws SQLException {
+		PreparedStatement pStmt = get().prepareStatement(
+				"insert into CHANGE_LOG (chl_id, chl_node, chl_time, chl_kind, chl_entity) values (?, ?, ?, 'U', 'DURATION')");
+		pStmt.setLong(1, id);
+		pStmt.setString(2, nodeId);
+		pStmt.setLong(3, time);
+		pStmt.executeUpdate();
+		pStmt.close();
+		get().commit();
+	}
+
+}
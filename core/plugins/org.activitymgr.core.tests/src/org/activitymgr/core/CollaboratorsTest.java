@@ -161,4 +161,63 @@ public class CollaboratorsTest extends AbstractModelTestCase {
 		getModelMgr().removeCollaborator(c2);
 	}
 
+	public void testCollaboratorsPages() throws ModelException {
+		// Création de 5 collaborateurs dont 2 portent le même prénom
+		String[] firstNames = new String[] { "FN3", "FN1", "FN2", "FN1", "FN0" };
+		Collaborator[] created = new Collaborator[firstNames.length];
+		for (int i = 0; i < firstNames.length; i++) {
+			Collaborator collaborator = getFactory().newCollaborator();
+			collaborator.setFirstName(firstNames[i]);
+			collaborator.setLastName("LN" + i);
+			collaborator.setLogin("l" + i);
+			collaborator.setIsActive(i != 2);
+			created[i] = getModelMgr().createCollaborator(collaborator);
+		}
+		assertEquals(5, getModelMgr().getCollaboratorsCount(false));
+		assertEquals(4, getModelMgr().getCollaboratorsCount(true));
+
+		// Parcours par pages de 2 par prénom : les prénoms identiques sont
+		// départagés par l'identifiant
+		long[] expected = new long[] { created[4].getId(), created[1].getId(),
+				created[3].getId(), created[2].getId(), created[0].getId() };
+		assertPages(expected, Collaborator.FIRST_NAME_FIELD_IDX, true, false);
+		// Tri descendant
+		long[] reversed = new long[expected.length];
+		for (int i = 0; i < expected.length; i++) {
+			reversed[i] = expected[expected.length - 1 - i];
+		}
+		assertPages(reversed, Collaborator.FIRST_NAME_FIELD_IDX, false, false);
+		// Collaborateurs actifs seulement
+		assertPages(new long[] { created[4].getId(), created[1].getId(),
+				created[3].getId(), created[0].getId() },
+				Collaborator.FIRST_NAME_FIELD_IDX, true, true);
+		// Tri par identifiant
+		assertPages(new long[] { created[0].getId(), created[1].getId(),
+				created[2].getId(), created[3].getId(), created[4].getId() },
+				Collaborator.ID_FIELD_IDX, true, false);
+
+		// Suppression
+		for (Collaborator collaborator : created) {
+			getModelMgr().removeCollaborator(collaborator);
+		}
+	}
+
+	private void assertPages(long[] expectedIds, int orderByFieldIndex,
+			boolean ascendantSort, boolean onlyActiveCollaborators) {
+		int idx = 0;
+		Collaborator last = null;
+		Collaborator[] page;
+		do {
+			page = getModelMgr().getCollaboratorsPage(orderByFieldIndex,
+					ascendantSort, onlyActiveCollaborators, last, 2);
+			assertTrue(page.length <= 2);
+			for (Collaborator collaborator : page) {
+				assertEquals(expectedIds[idx++], collaborator.getId());
+				last = collaborator;
+			}
+		}
+		while (page.length > 0);
+		assertEquals(expectedIds.length, idx);
+	}
+
 }
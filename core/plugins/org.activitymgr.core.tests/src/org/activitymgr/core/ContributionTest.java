@@ -11,7 +11,10 @@ import org.activitymgr.core.dto.Contribution;
 import org.activitymgr.core.dto.Duration;
 import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.dto.misc.IntervalContributions;
+import org.activitymgr.core.dto.misc.RecentTasks;
 import org.activitymgr.core.dto.misc.TaskContributions;
+import org.activitymgr.core.dto.misc.TaskSums;
+import org.activitymgr.core.model.ContributionModelException;
 import org.activitymgr.core.model.ModelException;
 
 public class ContributionTest extends AbstractModelTestCase {
@@ -317,6 +320,114 @@ public class ContributionTest extends AbstractModelTestCase {
 		removeSampleObjects();
 	}
 
+	public void testBatchUpdate() throws ModelException {
+		// Création des taches de test
+		createSampleObjects(true);
+		task111 = getModelMgr().getTask(task111.getId());
+		long initialEtc = task111.getTodo();
+
+		// Mise à jour de c1, création d'une contribution le lendemain et
+		// suppression de c3 en une seule opération
+		Contribution update = getFactory().newContribution();
+		update.setDate(c1.getDate());
+		update.setContributorId(col1.getId());
+		update.setTaskId(task111.getId());
+		update.setDurationId(duration2.getId());
+		Calendar nextDay = (Calendar) c1.getDate().clone();
+		nextDay.add(Calendar.DATE, 1);
+		Contribution creation = getFactory().newContribution();
+		creation.setDate(nextDay);
+		creation.setContributorId(col1.getId());
+		creation.setTaskId(task111.getId());
+		creation.setDurationId(duration2.getId());
+		Contribution removal = getFactory().newContribution();
+		removal.setDate(c3.getDate());
+		removal.setContributorId(col2.getId());
+		removal.setTaskId(task111.getId());
+		removal.setDurationId(0);
+		getModelMgr().updateContributions(
+				new Contribution[] { update, creation, removal },
+				new long[] { duration1.getId(), 0, duration1.getId() }, true);
+
+		// Vérification en base
+		Contribution[] cs = getModelMgr().getContributions(col1, task111,
+				c1.getDate(), nextDay);
+		assertEquals(2, cs.length);
+		assertEquals(duration2.getId(), cs[0].getDurationId());
+		assertEquals(duration2.getId(), cs[1].getDurationId());
+		assertEquals(0, getModelMgr().getContributions(col2, task111,
+				c3.getDate(), c3.getDate()).length);
+		c3 = null;
+
+		// Vérification du RAF (+50 -50 +100)
+		task111 = getModelMgr().getTask(task111.getId());
+		assertEquals(initialEtc + 100, task111.getTodo());
+
+		// Une donnée périmée fait échouer le lot sans qu'aucune
+		// modification ne soit enregistrée
+		update.setDurationId(duration1.getId());
+		creation.setDurationId(duration1.getId());
+		try {
+			getModelMgr().updateContributions(
+					new Contribution[] { update, creation },
+					new long[] { duration2.getId(), 0 }, true);
+			fail("The batch update should have failed");
+		} catch (ContributionModelException e) {
+			assertEquals(1, e.getIndex());
+		}
+		cs = getModelMgr().getContributions(col1, task111, c1.getDate(),
+				nextDay);
+		assertEquals(duration2.getId(), cs[0].getDurationId());
+		assertEquals(duration2.getId(), cs[1].getDurationId());
+
+		// Suppression des taches de test
+		getModelMgr().removeContribution(cs[1], false);
+		removeSampleObjects();
+	}
+
+	public void testBatchUpdateWithUnknownTaskOrContributor() throws ModelException {
+		// Création des taches de test
+		createSampleObjects(true);
+
+		// Contribution sur une tache inexistante (supprimée de manière
+		// concurrente) le jour de c1 : la contribution c1 ne doit pas être
+		// prise pour la contribution en base
+		Contribution contribution = getFactory().newContribution();
+		contribution.setDate(c1.getDate());
+		contribution.setContributorId(col1.getId());
+		contribution.setTaskId(-1);
+		contribution.setDurationId(duration2.getId());
+		try {
+			getModelMgr().updateContributions(
+					new Contribution[] { contribution },
+					new long[] { c1.getDurationId() }, true);
+			fail("A contribution on an unknown task should be rejected");
+		} catch (ContributionModelException e) {
+			assertEquals(0, e.getIndex());
+		}
+
+		// Même chose avec un collaborateur inexistant
+		contribution.setContributorId(-1);
+		contribution.setTaskId(task111.getId());
+		try {
+			getModelMgr().updateContributions(
+					new Contribution[] { contribution },
+					new long[] { c1.getDurationId() }, true);
+			fail("A contribution of an unknown collaborator should be rejected");
+		} catch (ContributionModelException e) {
+			assertEquals(0, e.getIndex());
+		}
+
+		// Rien n'a été modifié
+		Contribution[] cs = getModelMgr().getContributions(col1, task111,
+				c1.getDate(), c1.getDate());
+		assertEquals(1, cs.length);
+		assertEquals(c1.getDurationId(), cs[0].getDurationId());
+
+		// Suppression des taches de test
+		removeSampleObjects();
+	}
+
 	public void testGetContributions() throws ModelException {
 		// Création des taches de test
 		createSampleObjects(true);
@@ -613,4 +724,228 @@ public class ContributionTest extends AbstractModelTestCase {
 		// Remove sample objects
 		removeSampleObjects();
 	}
+
+	public void testMonthlySums() throws ModelException {
+		// Création des taches de test
+		createSampleObjects(false);
+
+		// Contributions sur plusieurs mois
+		c1 = newContribution(2014, 1, 10, col1, task111, duration1);
+		c2 = newContribution(2014, 1, 31, col1, task111, duration1);
+		c3 = newContribution(2014, 2, 15, col1, task111, duration2);
+		Contribution c4 = newContribution(2014, 3, 1, col1, task111, duration1);
+		Contribution c5 = newContribution(2014, 2, 1, col2, task112, duration1);
+
+		// Intervalles alignés sur les mois, partiels ou ouverts
+		assertTaskSums(rootTask, date(2014, 1, 1), date(2014, 3, 31), 450, 5);
+		assertTaskSums(rootTask, date(2014, 1, 15), date(2014, 3, 1), 350, 4);
+		assertTaskSums(rootTask, date(2014, 2, 2), date(2014, 2, 27), 50, 1);
+		assertTaskSums(rootTask, date(2014, 2, 1), null, 250, 3);
+		assertTaskSums(rootTask, null, date(2014, 1, 31), 200, 2);
+		assertTaskSums(rootTask, null, null, 450, 5);
+		assertTaskSums(task112, date(2014, 1, 1), date(2014, 3, 31), 100, 1);
+
+		// Mise à jour d'une contribution
+		c3.setDurationId(duration1.getId());
+		getModelMgr().updateContribution(c3, false);
+		assertTaskSums(rootTask, date(2014, 1, 1), date(2014, 3, 31), 500, 5);
+
+		// Suppression d'une contribution
+		getModelMgr().removeContribution(c1, false);
+		c1 = null;
+		assertTaskSums(rootTask, date(2014, 1, 1), date(2014, 3, 31), 400, 4);
+		assertTaskSums(rootTask, date(2014, 1, 1), date(2014, 1, 31), 100, 1);
+
+		// Changement de tache
+		getModelMgr().changeContributionTask(new Contribution[] { c4 }, task112);
+		assertTaskSums(task111, date(2014, 1, 1), date(2014, 3, 31), 200, 2);
+		assertTaskSums(task112, date(2014, 1, 1), date(2014, 3, 31), 200, 2);
+
+		// La reconstruction des sommes donne le même résultat
+		getModelMgr().rebuildSums();
+		assertTaskSums(task111, date(2014, 1, 1), date(2014, 3, 31), 200, 2);
+		assertTaskSums(task112, date(2014, 1, 1), date(2014, 3, 31), 200, 2);
+		assertTaskSums(rootTask, date(2014, 1, 15), date(2014, 3, 1), 400, 4);
+
+		// Remove sample objects
+		getModelMgr().removeContribution(c4, false);
+		getModelMgr().removeContribution(c5, false);
+		removeSampleObjects();
+	}
+
+	public void testContributionsStatistics() throws ModelException {
+		// Création des taches de test
+		createSampleObjects(false);
+		Task otherRootTask = null;
+		try {
+			c1 = newContribution(2010, 5, 10, col1, task111, duration1);
+			c2 = newContribution(2012, 3, 4, col1, task112, duration1);
+			c3 = newContribution(2012, 11, 20, col2, task111, duration1);
+
+			// Années et intervalles
+			Collection<Integer> years = getModelMgr().getContributionYears();
+			assertEquals(2, years.size());
+			assertTrue(years.contains(2010));
+			assertTrue(years.contains(2012));
+			assertInterval(getModelMgr().getContributionsInterval(null), 20100510, 20121120);
+			assertInterval(getModelMgr().getContributionsInterval(rootTask.getId()), 20100510, 20121120);
+			assertInterval(getModelMgr().getContributionsInterval(task11.getId()), 20100510, 20121120);
+			assertNull(getModelMgr().getContributionsInterval(task2.getId()));
+
+			// Suppression de la borne inférieure (année supprimée)
+			getModelMgr().removeContribution(c1, false);
+			c1 = null;
+			years = getModelMgr().getContributionYears();
+			assertEquals(1, years.size());
+			assertTrue(years.contains(2012));
+			assertInterval(getModelMgr().getContributionsInterval(null), 20120304, 20121120);
+
+			// Suppression de la borne supérieure (dans une année conservée)
+			getModelMgr().removeContribution(c3, false);
+			c3 = null;
+			assertInterval(getModelMgr().getContributionsInterval(rootTask.getId()), 20120304, 20120304);
+
+			// Changement de tache racine
+			otherRootTask = getModelMgr().createNewTask(null);
+			getModelMgr().moveTask(task11, otherRootTask);
+			assertNull(getModelMgr().getContributionsInterval(rootTask.getId()));
+			assertInterval(getModelMgr().getContributionsInterval(otherRootTask.getId()), 20120304, 20120304);
+			assertInterval(getModelMgr().getContributionsInterval(null), 20120304, 20120304);
+		}
+		finally {
+			// Remove sample objects
+			if (c2 != null) {
+				getModelMgr().removeContribution(c2, false);
+				c2 = null;
+			}
+			if (otherRootTask != null) {
+				getModelMgr().removeTask(getModelMgr().getTask(otherRootTask.getId()));
+			}
+			removeSampleObjects();
+		}
+	}
+
+	public void testBatchUpdateStatistics() throws ModelException {
+		// Création des taches de test
+		createSampleObjects(false);
+		try {
+			// Créations (dont deux à la même date) en un seul lot
+			Contribution[] creations = new Contribution[] {
+					contribution(2013, 2, 1, col1, task111, duration1),
+					contribution(2013, 2, 1, col2, task112, duration1),
+					contribution(2013, 3, 5, col1, task111, duration2) };
+			getModelMgr().updateContributions(creations, new long[3], false);
+			assertInterval(getModelMgr().getContributionsInterval(rootTask.getId()), 20130201, 20130305);
+			assertTrue(getModelMgr().getContributionYears().contains(2013));
+
+			// Suppression de la borne supérieure et d'une des contributions
+			// de la borne inférieure
+			Contribution[] removals = new Contribution[] {
+					contribution(2013, 3, 5, col1, task111, null),
+					contribution(2013, 2, 1, col1, task111, null) };
+			getModelMgr().updateContributions(removals, new long[] {
+					duration2.getId(), duration1.getId() }, false);
+			assertInterval(getModelMgr().getContributionsInterval(rootTask.getId()), 20130201, 20130201);
+
+			// La reconstruction des statistiques donne le même résultat
+			getModelMgr().rebuildSums();
+			assertInterval(getModelMgr().getContributionsInterval(rootTask.getId()), 20130201, 20130201);
+			c1 = getModelMgr().getContributions(col2, task112, date(2013, 2, 1), date(2013, 2, 1))[0];
+		}
+		finally {
+			// Remove sample objects
+			removeSampleObjects();
+		}
+	}
+
+	public void testRecentTasks() throws ModelException {
+		// Création des taches de test
+		createSampleObjects(false);
+		try {
+			assertEquals(0, getModelMgr().getRecentTasks(col1, 10).getTasks().length);
+
+			c1 = newContribution(2014, 1, 10, col1, task111, duration1);
+			c2 = newContribution(2014, 1, 12, col1, task112, duration1);
+			c3 = newContribution(2014, 1, 13, col1, task112, duration2);
+
+			// Most recent first, with code paths and frequencies
+			RecentTasks recentTasks = getModelMgr().getRecentTasks(col1, 10);
+			assertEquals(2, recentTasks.getTasks().length);
+			assertEquals(task112.getId(), recentTasks.getTasks()[0].getId());
+			assertEquals(task111.getId(), recentTasks.getTasks()[1].getId());
+			assertEquals(getModelMgr().getTaskCodePath(task112), recentTasks.getTaskCodePaths()[0]);
+			assertEquals(2, recentTasks.getFrequencies()[0]);
+			assertEquals(1, recentTasks.getFrequencies()[1]);
+			assertEquals(0, getModelMgr().getRecentTasks(col2, 10).getTasks().length);
+
+			// Limit
+			recentTasks = getModelMgr().getRecentTasks(col1, 1);
+			assertEquals(1, recentTasks.getTasks().length);
+
+			// Older contributions don't change the last use date
+			getModelMgr().removeContribution(c1, false);
+			c1 = newContribution(2014, 1, 1, col1, task111, duration1);
+			recentTasks = getModelMgr().getRecentTasks(col1, 10);
+			assertEquals(task112.getId(), recentTasks.getTasks()[0].getId());
+			assertEquals(2, recentTasks.getFrequencies()[1]);
+
+			// Rebuild from the contributions
+			getModelMgr().rebuildSums();
+			recentTasks = getModelMgr().getRecentTasks(col1, 10);
+			assertEquals(task112.getId(), recentTasks.getTasks()[0].getId());
+			assertEquals(1, recentTasks.getFrequencies()[1]);
+		}
+		finally {
+			// Remove sample objects
+			removeSampleObjects();
+		}
+	}
+
+	private static void assertInterval(Calendar[] interval, int expectedFrom, int expectedTo) {
+		assertNotNull(interval);
+		assertEquals(expectedFrom, toInt(interval[0]));
+		assertEquals(expectedTo, toInt(interval[1]));
+	}
+
+	private static int toInt(Calendar date) {
+		return date.get(Calendar.YEAR) * 10000
+				+ (date.get(Calendar.MONTH) + 1) * 100
+				+ date.get(Calendar.DATE);
+	}
+
+	private Contribution newContribution(int year, int month, int day,
+			Collaborator contributor, Task task, Duration duration)
+			throws ModelException {
+		Contribution contribution = getFactory().newContribution();
+		contribution.setDate(date(year, month, day));
+		contribution.setContributorId(contributor.getId());
+		contribution.setDurationId(duration.getId());
+		contribution.setTaskId(task.getId());
+		return getModelMgr().createContribution(contribution, false);
+	}
+
+	private Contribution contribution(int year, int month, int day,
+			Collaborator contributor, Task task, Duration duration) {
+		Contribution contribution = getFactory().newContribution();
+		contribution.setDate(date(year, month, day));
+		contribution.setContributorId(contributor.getId());
+		contribution.setDurationId(duration != null ? duration.getId() : 0);
+		contribution.setTaskId(task.getId());
+		return contribution;
+	}
+
+	private static Calendar date(int year, int month, int day) {
+		return new GregorianCalendar(year, month - 1, day);
+	}
+
+	private void assertTaskSums(Task task, Calendar fromDate, Calendar toDate,
+			long expectedSum, long expectedCount) throws ModelException {
+		// Sommes calculées à partir des sommes mensuelles
+		TaskSums sums = getModelMgr().getTaskSums(task.getId(), fromDate, toDate);
+		assertEquals(expectedSum, sums.getContributionsSums().getConsumedSum());
+		assertEquals(expectedCount, sums.getContributionsSums().getContributionsNb());
+		// Sommes calculées à partir des contributions journalières
+		assertEquals(expectedSum, getModelMgr().getContributionsSum(null, task, fromDate, toDate));
+		assertEquals(expectedCount, getModelMgr().getContributionsCount(null, task, fromDate, toDate));
+	}
 }
@@ -0,0 +1,232 @@
+package org.activitymgr.core;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import org.activitymgr.core.dao.ICollaboratorDAO;
+import org.activitymgr.core.dao.IContributionDAO;
+import org.activitymgr.core.dao.IDAO;
+import org.activitymgr.core.dao.ITaskDAO;
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Duration;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.model.ModelException;
+import org.activitymgr.core.orm.Page;
+import org.activitymgr.core.orm.query.AscendantOrderByClause;
+import org.activitymgr.core.orm.query.DescendantOrderByClause;
+
+/**
+ * Tests de la pagination par clé ({@link IDAO#selectPage(String[], Object[],
+ * Object[], Object[], int)}).
+ *
+ * <p>
+ * Les pages successives doivent restituer les mêmes éléments, dans le même
+ * ordre, qu'une sélection complète triée de la même façon (clé primaire
+ * comprise). Les tris dans un même sens utilisent la comparaison de lignes
+ * <code>(a, b) &gt; (?, ?)</code> (sous H2), les tris mixtes la forme
+ * développée.
+ * </p>
+ */
+public class PageSelectionTest extends AbstractModelTestCase {
+
+	/**
+	 * Identifie un élément dans les comparaisons.
+	 */
+	private interface IKey<TYPE> {
+		String get(TYPE item);
+	}
+
+	private static final IKey<Collaborator> COLLABORATOR_KEY = new IKey<Collaborator>() {
+		@Override
+		public String get(Collaborator item) {
+			return String.valueOf(item.getId());
+		}
+	};
+
+	private static final IKey<Task> TASK_KEY = new IKey<Task>() {
+		@Override
+		public String get(Task item) {
+			return String.valueOf(item.getId());
+		}
+	};
+
+	private static final IKey<Contribution> CONTRIBUTION_KEY = new IKey<Contribution>() {
+		@Override
+		public String get(Contribution item) {
+			return item.getYear() + "-" + item.getMonth() + "-" + item.getDay()
+					+ "/" + item.getContributorId() + "/" + item.getTaskId();
+		}
+	};
+
+	public void testCollaboratorsPages() throws ModelException {
+		// 7 collaborateurs, dont plusieurs ont le même nom
+		for (int i = 0; i < 7; i++) {
+			Collaborator collaborator = getFactory().newCollaborator();
+			collaborator.setLogin("login" + (7 - i));
+			collaborator.setFirstName("FN" + i);
+			collaborator.setLastName("LN" + (i % 3));
+			collaborator.setIsActive(i % 2 == 0);
+			getModelMgr().createCollaborator(collaborator);
+		}
+		ICollaboratorDAO dao = getInjector().getInstance(ICollaboratorDAO.class);
+
+		// Tris dans un même sens
+		assertPages(dao, null, null,
+				new Object[] { new AscendantOrderByClause("lastName") },
+				new Object[] { new AscendantOrderByClause("lastName"), new AscendantOrderByClause("id") },
+				3, COLLABORATOR_KEY);
+		assertPages(dao, null, null,
+				new Object[] { new DescendantOrderByClause("lastName") },
+				new Object[] { new DescendantOrderByClause("lastName"), new DescendantOrderByClause("id") },
+				2, COLLABORATOR_KEY);
+		// Sans tri (clé primaire)
+		assertPages(dao, null, null, null,
+				new Object[] { new AscendantOrderByClause("id") },
+				4, COLLABORATOR_KEY);
+		// Tri mixte avec une clause where
+		assertPages(dao, new String[] { "isActive" }, new Object[] { Boolean.TRUE },
+				new Object[] { new DescendantOrderByClause("lastName"), new AscendantOrderByClause("login") },
+				new Object[] { new DescendantOrderByClause("lastName"), new AscendantOrderByClause("login"), new AscendantOrderByClause("id") },
+				1, COLLABORATOR_KEY);
+		// Tri mixte sur un booléen
+		assertPages(dao, null, null,
+				new Object[] { new DescendantOrderByClause("isActive"), new AscendantOrderByClause("lastName") },
+				new Object[] { new DescendantOrderByClause("isActive"), new AscendantOrderByClause("lastName"), new AscendantOrderByClause("id") },
+				2, COLLABORATOR_KEY);
+	}
+
+	public void testTasksPages() throws ModelException {
+		// 6 sous-tâches dont plusieurs ont le même budget
+		Task rootTask = getModelMgr().createNewTask(null);
+		for (int i = 0; i < 6; i++) {
+			Task task = getFactory().newTask();
+			task.setCode("T" + i);
+			task.setName("Task " + i);
+			task.setBudget((i % 2) * 10);
+			getModelMgr().createTask(rootTask, task);
+		}
+		ITaskDAO dao = getInjector().getInstance(ITaskDAO.class);
+
+		// Ordre de l'arbre
+		assertPages(dao, null, null,
+				new Object[] { "path", "number" },
+				new Object[] { "path", "number", "id" },
+				2, TASK_KEY);
+		// Sous-tâches par budget
+		String[] whereClauseAttributeNames = new String[] { "path" };
+		Object[] whereClauseAttributeValues = new Object[] { rootTask.getFullPath() };
+		assertPages(dao, whereClauseAttributeNames, whereClauseAttributeValues,
+				new Object[] { new AscendantOrderByClause("budget") },
+				new Object[] { new AscendantOrderByClause("budget"), new AscendantOrderByClause("id") },
+				4, TASK_KEY);
+		assertPages(dao, whereClauseAttributeNames, whereClauseAttributeValues,
+				new Object[] { new DescendantOrderByClause("budget"), new AscendantOrderByClause("code") },
+				new Object[] { new DescendantOrderByClause("budget"), new AscendantOrderByClause("code"), new AscendantOrderByClause("id") },
+				4, TASK_KEY);
+	}
+
+	public void testContributionsPages() throws ModelException {
+		// 2 tâches, 2 collaborateurs, 3 jours
+		Task rootTask = getModelMgr().createNewTask(null);
+		Task[] tasks = new Task[2];
+		for (int i = 0; i < tasks.length; i++) {
+			tasks[i] = getFactory().newTask();
+			tasks[i].setCode("T" + i);
+			tasks[i].setName("Task " + i);
+			tasks[i] = getModelMgr().createTask(rootTask, tasks[i]);
+		}
+		Collaborator[] collaborators = new Collaborator[2];
+		for (int i = 0; i < collaborators.length; i++) {
+			collaborators[i] = getModelMgr().createNewCollaborator();
+		}
+		Duration[] durations = new Duration[2];
+		for (int i = 0; i < durations.length; i++) {
+			durations[i] = getFactory().newDuration();
+			durations[i].setId(50 * (i + 1));
+			durations[i] = getModelMgr().createDuration(durations[i]);
+		}
+		Calendar date = new GregorianCalendar(2015, 11, 30);
+		for (int d = 0; d < 3; d++) {
+			for (int c = 0; c < collaborators.length; c++) {
+				for (int t = 0; t < tasks.length; t++) {
+					Contribution contribution = getFactory().newContribution();
+					contribution.setDate(date);
+					contribution.setContributorId(collaborators[c].getId());
+					contribution.setTaskId(tasks[t].getId());
+					contribution.setDurationId(durations[(d + c + t) % 2].getId());
+					getModelMgr().createContribution(contribution, false);
+				}
+			}
+			date.add(Calendar.DATE, 1);
+		}
+		IContributionDAO dao = getInjector().getInstance(IContributionDAO.class);
+
+		// Ordre de la clé primaire (5 colonnes, changement d'année)
+		assertPages(dao, null, null, null,
+				new Object[] { "year", "month", "day", "contributorId", "taskId" },
+				5, CONTRIBUTION_KEY);
+		// Contributions d'un collaborateur, dernières d'abord
+		assertPages(dao, new String[] { "contributorId" }, new Object[] { collaborators[1].getId() },
+				new Object[] { new DescendantOrderByClause("year"), new DescendantOrderByClause("month"), new DescendantOrderByClause("day") },
+				new Object[] { new DescendantOrderByClause("year"), new DescendantOrderByClause("month"), new DescendantOrderByClause("day"),
+						new DescendantOrderByClause("contributorId"), new DescendantOrderByClause("taskId") },
+				2, CONTRIBUTION_KEY);
+		// Tri mixte par durée
+		assertPages(dao, null, null,
+				new Object[] { new DescendantOrderByClause("durationId"), new AscendantOrderByClause("taskId") },
+				new Object[] { new DescendantOrderByClause("durationId"), new AscendantOrderByClause("taskId"),
+						"year", "month", "day", "contributorId" },
+				3, CONTRIBUTION_KEY);
+	}
+
+	public void testWrongPageKey() {
+		ICollaboratorDAO dao = getInjector().getInstance(ICollaboratorDAO.class);
+		try {
+			dao.selectPage(null, null, new Object[] { "lastName" }, new Object[] { "LN" }, 10);
+			fail("A page key must contain the primary key");
+		}
+		catch (IllegalArgumentException ignored) {}
+	}
+
+	/**
+	 * Vérifie que le parcours des pages restitue la sélection complète.
+	 */
+	private <TYPE> void assertPages(IDAO<TYPE> dao,
+			String[] whereClauseAttributeNames,
+			Object[] whereClauseAttributeValues, Object[] orderByClauseItems,
+			Object[] fullOrderByClauseItems, int pageSize, IKey<TYPE> key) {
+		List<String> expected = new ArrayList<String>();
+		for (TYPE item : dao.select(whereClauseAttributeNames,
+				whereClauseAttributeValues, fullOrderByClauseItems, -1)) {
+			expected.add(key.get(item));
+		}
+		assertTrue(expected.size() > pageSize);
+
+		List<String> actual = new ArrayList<String>();
+		Object[] pageKey = null;
+		int pagesCount = 0;
+		do {
+			Page<TYPE> page = dao.selectPage(whereClauseAttributeNames,
+					whereClauseAttributeValues, orderByClauseItems, pageKey,
+					pageSize);
+			pagesCount++;
+			assertTrue(page.getItems().length <= pageSize);
+			for (TYPE item : page.getItems()) {
+				actual.add(key.get(item));
+			}
+			pageKey = page.getNextPageKey();
+			assertEquals(pageKey != null, page.hasNextPage());
+			// Seule la dernière page peut être incomplète
+			if (pageKey != null) {
+				assertEquals(pageSize, page.getItems().length);
+			}
+		}
+		while (pageKey != null);
+		assertEquals(expected, actual);
+		assertEquals((expected.size() + pageSize - 1) / pageSize, pagesCount);
+	}
+
+}
@@ -0,0 +1,214 @@
+package org.activitymgr.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Calendar;
+
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Duration;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.core.model.ModelException;
+import org.activitymgr.core.model.ReadOnly;
+import org.activitymgr.core.model.ReplicaRouter;
+import org.activitymgr.core.model.TransactionSynchronizer;
+import org.apache.commons.dbcp.BasicDataSource;
+
+/**
+ * Read replica routing test, the replica being a second H2 database
+ * synchronized on demand.
+ */
+public class ReplicaRoutingTest extends AbstractModelTestCase {
+
+	/** User key */
+	private static final String USER = "user";
+
+	/** Maximum replication lag (ms) */
+	private static final long MAX_LAG = 1000;
+
+	/** Replica database */
+	private BasicDataSource replicaDatasource;
+	private Connection replicaTx;
+
+	/** Tells whether the current call is routed to the replica */
+	private boolean onReplica;
+
+	/** Current time (the router clock) */
+	private long now;
+
+	/** Replica router */
+	private ReplicaRouter router;
+
+	/** Model manager routing the calls */
+	private IModelMgr routedModelMgr;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		replicaDatasource = new BasicDataSource();
+		replicaDatasource.setDriverClassName("org.h2.Driver");
+		replicaDatasource.setUrl("jdbc:h2:mem:activitymgrreplica");
+		replicaDatasource.setUsername("sa");
+		replicaDatasource.setPassword("");
+		replicaDatasource.setDefaultAutoCommit(false);
+		replicaTx = replicaDatasource.getConnection();
+
+		router = new ReplicaRouter(MAX_LAG) {
+			@Override
+			protected long currentTimeMillis() {
+				return now;
+			}
+		};
+		// The transaction boundaries are notified to the synchronizer, which
+		// tells the router when the user's writes are committed
+		final IModelMgr modelMgr = getInjector().getInstance(IModelMgr.class);
+		final TransactionSynchronizer synchronizer = getInjector().getInstance(TransactionSynchronizer.class);
+		routedModelMgr = (IModelMgr) Proxy.newProxyInstance(
+				ReplicaRoutingTest.class.getClassLoader(),
+				new Class<?>[] { IModelMgr.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method,
+							Object[] args) throws Throwable {
+						boolean readOnly = method.isAnnotationPresent(ReadOnly.class);
+						onReplica = router.useReplica(method, USER);
+						synchronizer.replica(onReplica);
+						if (!readOnly) {
+							synchronizer.readWrite();
+						}
+						try {
+							Object result = method.invoke(modelMgr, args);
+							if (!readOnly) {
+								ReplicaRoutingTest.super.get().commit();
+								synchronizer.commit();
+							}
+							return result;
+						} catch (InvocationTargetException e) {
+							if (!readOnly) {
+								ReplicaRoutingTest.super.get().rollback();
+								synchronizer.rollback(null);
+							}
+							throw e.getCause();
+						} finally {
+							if (onReplica) {
+								replicaTx.rollback();
+							}
+							onReplica = false;
+							synchronizer.release(router, USER);
+						}
+					}
+				});
+	}
+
+	@Override
+	public Connection get() {
+		return onReplica ? replicaTx : super.get();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		replicaTx.close();
+		replicaDatasource.close();
+		super.tearDown();
+	}
+
+	public void testRouting() throws Exception {
+		// The test requires H2 (the replica is synchronized through a script)
+		if (!super.get().getMetaData().getURL().startsWith("jdbc:h2:")) {
+			return;
+		}
+
+		// Writes go to the primary database
+		Collaborator collaborator = routedModelMgr.createNewCollaborator();
+		Duration duration = getFactory().newDuration();
+		duration.setId(100);
+		duration = routedModelMgr.createDuration(duration);
+		Task task = routedModelMgr.createNewTask(null);
+		synchronizeReplica();
+		Contribution contribution = getFactory().newContribution();
+		contribution.setDate(Calendar.getInstance());
+		contribution.setContributorId(collaborator.getId());
+		contribution.setDurationId(duration.getId());
+		contribution.setTaskId(task.getId());
+		routedModelMgr.createContribution(contribution, false);
+
+		// Right after the user's write, the primary database is used
+		now += MAX_LAG / 2;
+		assertEquals(1, routedModelMgr.getContributions(collaborator, task, null, null).length);
+		assertEquals(1, router.getLagFallbacksCount());
+		assertEquals(0, router.getReplicaCallsCount());
+
+		// ... but not for the other users
+		Method getContributions = getMethod("getContributions");
+		assertTrue(router.useReplica(getContributions, "other"));
+
+		// Once the lag is over, the replica is used (and doesn't contain
+		// the contribution yet)
+		now += MAX_LAG;
+		assertEquals(0, routedModelMgr.getContributions(collaborator, task, null, null).length);
+		assertEquals(2, router.getReplicaCallsCount());
+
+		// Only the replicable queries are routed to the replica
+		assertFalse(ReplicaRouter.isReplicable(getMethod("getCollaborators")));
+		assertEquals(1, routedModelMgr.getCollaborators().length);
+		assertFalse(router.useReplica(getContributions, null));
+
+		// Once synchronized, the replica returns the contribution
+		synchronizeReplica();
+		assertEquals(1, routedModelMgr.getContributions(collaborator, task, null, null).length);
+
+		// A rolled back write doesn't keep the user on the primary database
+		now += MAX_LAG;
+		Contribution invalid = getFactory().newContribution();
+		invalid.setDate(Calendar.getInstance());
+		invalid.setContributorId(collaborator.getId());
+		invalid.setDurationId(duration.getId() + 1);
+		invalid.setTaskId(task.getId());
+		try {
+			routedModelMgr.createContribution(invalid, false);
+			fail("An unknown duration must be rejected");
+		} catch (ModelException ignored) {
+			// success!
+		}
+		long lagFallbacksCount = router.getLagFallbacksCount();
+		assertEquals(1, routedModelMgr.getContributions(collaborator, task, null, null).length);
+		assertEquals(lagFallbacksCount, router.getLagFallbacksCount());
+	}
+
+	/**
+	 * Copies the primary database into the replica.
+	 */
+	private void synchronizeReplica() throws IOException, SQLException {
+		File script = File.createTempFile("activitymgr", ".sql");
+		try {
+			Statement stmt = super.get().createStatement();
+			stmt.execute("script drop to '" + script.getAbsolutePath() + "'");
+			stmt.close();
+			stmt = replicaTx.createStatement();
+			stmt.execute("drop all objects");
+			stmt.execute("runscript from '" + script.getAbsolutePath() + "'");
+			stmt.close();
+			replicaTx.commit();
+		}
+		finally {
+			script.delete();
+		}
+	}
+
+	private static Method getMethod(String name) {
+		for (Method method : IModelMgr.class.getMethods()) {
+			if (method.getName().equals(name)) {
+				return method;
+			}
+		}
+		throw new IllegalArgumentException(name);
+	}
+
+}
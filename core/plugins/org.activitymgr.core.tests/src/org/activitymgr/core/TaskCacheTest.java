@@ -1,16 +1,20 @@
 package org.activitymgr.core;
 
-import org.activitymgr.core.dao.ITaskDAO;
-import org.activitymgr.core.dao.TaskDAOCache;
+import org.activitymgr.core.dao.TaskTreeIndex;
 import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.model.IModelMgr;
 import org.activitymgr.core.model.ModelException;
+import org.activitymgr.core.model.TransactionSynchronizer;
 
 import com.google.inject.Inject;
 
 public class TaskCacheTest extends AbstractModelTestCase {
 	
 	@Inject
-	private ITaskDAO taskDAO;
+	private TaskTreeIndex index;
+
+	@Inject
+	private TransactionSynchronizer synchronizer;
 
 	/** Taches de test */
 	private Task rootTask;
@@ -23,37 +27,151 @@ public class TaskCacheTest extends AbstractModelTestCase {
 	public void testCache() throws ModelException {
 		createSampleTasks();
 		try {
-			TaskDAOCache cache = new TaskDAOCache(taskDAO);
-			
 			// Unknown code path
-			assertNull(cache.getByCodePath("/Unknown/Path"));
+			assertNull(index.getTaskIdByCodePath("/Unknown/Path"));
 			
 			// Regular code path
-			Task byCodePath = cache.getByCodePath("/RT/T1/T11/T112");
+			Long byCodePath = index.getTaskIdByCodePath("/RT/T1/T11/T112");
 			assertNotNull(byCodePath);
-			assertEquals(task112.getId(), byCodePath.getId());
+			assertEquals(task112.getId(), byCodePath.longValue());
+			assertEquals("/RT/T1/T11/T112", index.getCodePath(task112.getId()));
 			
 			// Unknown full path
-			assertNull(cache.getByFullPath("0099"));
+			assertNull(index.getTaskId("0099"));
 			
 			// Regular full path
-			Task byPath = cache.getByFullPath(task112.getFullPath());
+			Long byPath = index.getTaskId(task112.getFullPath());
 			assertNotNull(byPath);
-			assertEquals(task112.getId(), byPath.getId());
+			assertEquals(task112.getId(), byPath.longValue());
 
 			// Test get parent
-			Task parent = cache.getParent(task112);
+			Long parent = index.getParentTaskId(task112.getId());
 			assertNotNull(parent);
-			assertEquals(task11.getId(), parent.getId());
+			assertEquals(task11.getId(), parent.longValue());
 			
 			// Parent of root task
-			assertNull(cache.getParent(rootTask));
+			assertNull(index.getParentTaskId(rootTask.getId()));
+			
+			// Sub tasks
+			assertEquals(2, index.getSubTasksCount(task11.getFullPath()));
+			assertEquals(0, index.getSubTasksCount(task112.getFullPath()));
+			long[] subTaskIds = index.getSubTaskIds(rootTask.getFullPath());
+			assertEquals(2, subTaskIds.length);
+			assertEquals(task1.getId(), subTaskIds[0]);
+			assertEquals(task2.getId(), subTaskIds[1]);
+		}
+		finally {
+			removeSampleTasks();
+		}
+	}
+
+	public void testIncrementalUpdates() throws ModelException {
+		createSampleTasks();
+		try {
+			// Code update
+			task11.setCode("T11B");
+			task11 = getModelMgr().updateTask(task11);
+			assertNull(index.getTaskIdByCodePath("/RT/T1/T11/T112"));
+			assertEquals(task112.getId(), index.getTaskIdByCodePath("/RT/T1/T11B/T112").longValue());
+			assertEquals("/RT/T1/T11B/T112", getModelMgr().getTaskCodePath(task112));
+
+			// Move
+			getModelMgr().moveTask(task11, null);
+			task112 = getModelMgr().getTask(task112.getId());
+			assertEquals("/T11B/T112", index.getCodePath(task112.getId()));
+			assertEquals(task112.getId(), getModelMgr().getTaskByCodePath("/T11B/T112").getId());
+			assertEquals(0, index.getSubTasksCount(getModelMgr().getTask(task1.getId()).getFullPath()));
+			assertEquals(2, getModelMgr().getRootTasksCount());
+
+			// Toggle
+			task1 = getModelMgr().getTask(task1.getId());
+			getModelMgr().moveDownTask(task1);
+			long[] subTaskIds = index.getSubTaskIds(rootTask.getFullPath());
+			assertEquals(task2.getId(), subTaskIds[0]);
+			assertEquals(task1.getId(), subTaskIds[1]);
+			assertEquals("/RT/T1", index.getCodePath(task1.getId()));
 			
+			// The index must match a freshly loaded one
+			String fullPath = getModelMgr().getTask(task112.getId()).getFullPath();
+			assertEquals(task112.getId(), index.getTaskId(fullPath).longValue());
+			index.clear();
+			assertEquals(task112.getId(), index.getTaskId(fullPath).longValue());
+			assertEquals("/T11B/T112", index.getCodePath(task112.getId()));
+
+			// Removal
+			getModelMgr().removeTask(getModelMgr().getTask(task11.getId()));
+			assertNull(index.getTaskIdByCodePath("/T11B"));
+			assertNull(index.getTaskIdByCodePath("/T11B/T112"));
+			assertTrue(getModelMgr().isLeaf(task1.getId()));
+			assertEquals(1, getModelMgr().getRootTasksCount());
+		}
+		finally {
+			removeSampleTasks();
+		}
+	}
+	
+	public void testTransactionIsolation() throws Exception {
+		createSampleTasks();
+		try {
+			// The model manager implementation, the transaction being
+			// managed by the test
+			IModelMgr modelMgr = getInjector().getInstance(IModelMgr.class);
+			index.load();
+
+			// An uncommitted task is only seen by its transaction
+			synchronizer.readWrite();
+			Task task3 = getFactory().newTask();
+			task3.setCode("T3");
+			task3.setName("Task 3");
+			modelMgr.createTask(rootTask, task3);
+			assertNotNull(index.getTaskIdByCodePath("/RT/T3"));
+			assertEquals(3, index.getSubTasksCount(rootTask.getFullPath()));
+			assertNull(getTaskIdByCodePathInOtherThread("/RT/T3"));
+
+			// Once rolled back, it is forgotten
+			get().rollback();
+			synchronizer.rollback(null);
+			synchronizer.release();
+			assertNull(index.getTaskIdByCodePath("/RT/T3"));
+			assertEquals(2, index.getSubTasksCount(rootTask.getFullPath()));
+
+			// A committed task is seen by everyone
+			synchronizer.readWrite();
+			task3 = getFactory().newTask();
+			task3.setCode("T3");
+			task3.setName("Task 3");
+			task3 = modelMgr.createTask(rootTask, task3);
+			assertNull(getTaskIdByCodePathInOtherThread("/RT/T3"));
+			get().commit();
+			synchronizer.commit();
+			synchronizer.release();
+			assertEquals(task3.getId(), getTaskIdByCodePathInOtherThread("/RT/T3").longValue());
+			assertEquals(task3.getId(), index.getTaskIdByCodePath("/RT/T3").longValue());
 		}
 		finally {
 			removeSampleTasks();
 		}
 	}
+
+	/**
+	 * Looks a task up from another thread (ie. another transaction).
+	 * 
+	 * @param codePath
+	 *            the task code path.
+	 * @return the task identifier.
+	 */
+	private Long getTaskIdByCodePathInOtherThread(final String codePath) throws InterruptedException {
+		final Long[] result = new Long[1];
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				result[0] = index.getTaskIdByCodePath(codePath);
+			}
+		};
+		thread.start();
+		thread.join();
+		return result[0];
+	}
 	
 	private void createSampleTasks() throws ModelException {
 		// Création des tâches de test
@@ -0,0 +1,302 @@
+package org.activitymgr.core;
+
+import java.util.Calendar;
+import java.util.Set;
+
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Duration;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.misc.TaskSuggestions;
+import org.activitymgr.core.model.ModelException;
+import org.activitymgr.core.model.TaskSearchIndex;
+
+import com.google.inject.Inject;
+
+public class TaskSearchIndexTest extends AbstractModelTestCase {
+
+	@Inject
+	private TaskSearchIndex index;
+
+	/** Taches de test */
+	private Task rootTask;
+	private Task task1;
+	private Task task11;
+	private Task task111;
+	private Task task112;
+	private Task task2;
+
+	public void testContains() throws ModelException {
+		createSampleTasks();
+		try {
+			// Short query (no trigram)
+			assertIds(index.getMatchingTaskIds("T2"), task2);
+
+			// Trigram query on codes and names, case insensitive
+			assertIds(index.getMatchingTaskIds("t11"), task11, task111, task112);
+			assertIds(index.getMatchingTaskIds("SPECIFICATION"), task111);
+			assertIds(index.getMatchingTaskIds("ask 11"), task11, task111, task112);
+
+			// No match
+			assertEquals(0, index.getMatchingTaskIds("unknown").length);
+
+			// First match (lowest path first)
+			assertEquals(task1.getId(), getModelMgr().getFirstTaskMatching("Task 1").getId());
+			assertNull(getModelMgr().getFirstTaskMatching("unknown"));
+		}
+		finally {
+			removeSampleTasks();
+		}
+	}
+
+	public void testFilteredTree() throws ModelException {
+		createSampleTasks();
+		try {
+			// Ancestors of matches
+			Set<Long> ids = index.getMatchingTaskIdsAndAncestors("specif");
+			assertEquals(4, ids.size());
+			assertTrue(ids.contains(rootTask.getId()));
+			assertTrue(ids.contains(task1.getId()));
+			assertTrue(ids.contains(task11.getId()));
+			assertTrue(ids.contains(task111.getId()));
+
+			// Filtered sub tasks
+			assertTasks(getModelMgr().getSubTasks(null, "specif"), rootTask);
+			assertTasks(getModelMgr().getSubTasks(rootTask.getId(), "specif"), task1);
+			assertTasks(getModelMgr().getSubTasks(task11.getId(), "specif"), task111);
+
+			// The sub tasks of a matching task are kept
+			assertTasks(getModelMgr().getSubTasks(task11.getId(), "Task 11"), task111, task112);
+			assertTasks(getModelMgr().getSubTasks(task11.getId(), "T1"), task111, task112);
+			assertTasks(getModelMgr().getSubTasks(rootTask.getId(), "unknown"));
+		}
+		finally {
+			removeSampleTasks();
+		}
+	}
+
+	public void testFilteredTreeAfterMove() throws ModelException {
+		createSampleTasks();
+		try {
+			// Cache the filter result
+			index.load();
+			assertTrue(index.getMatchingTaskIdsAndAncestors("specif").contains(task1.getId()));
+			assertTasks(getModelMgr().getSubTasks(rootTask.getId(), "specif"), task1);
+
+			// Move the parent of the match : the cached ancestors are stale
+			getModelMgr().moveTask(task11, task2);
+			Set<Long> ids = index.getMatchingTaskIdsAndAncestors("specif");
+			assertEquals(4, ids.size());
+			assertTrue(ids.contains(rootTask.getId()));
+			assertTrue(ids.contains(task2.getId()));
+			assertTrue(ids.contains(task11.getId()));
+			assertTrue(ids.contains(task111.getId()));
+			assertTasks(getModelMgr().getSubTasks(rootTask.getId(), "specif"), task2);
+			assertTasks(getModelMgr().getSubTasks(task2.getId(), "specif"), task11);
+			assertTasks(getModelMgr().getSubTasks(task1.getId(), "specif"));
+		}
+		finally {
+			removeSampleTasks();
+		}
+	}
+
+	public void testTopMatches() throws ModelException {
+		createSampleTasks();
+		try {
+			// Code equality first, then code prefix, deepest last
+			long[] ids = index.getTopMatchingTaskIds("t11", 10);
+			assertIds(ids, task11, task111, task112);
+
+			// Name word prefix before name contains
+			ids = index.getTopMatchingTaskIds("dev", 10);
+			assertIds(ids, task112, task2);
+			assertTrue(index.getScore(task112.getId(), "dev") < index.getScore(task2.getId(), "dev"));
+
+			// Limit
+			ids = index.getTopMatchingTaskIds("t", 2);
+			assertIds(ids, task1, task2);
+		}
+		finally {
+			removeSampleTasks();
+		}
+	}
+
+	public void testSuggestions() throws ModelException {
+		createSampleTasks();
+		Collaborator collaborator = null;
+		Duration duration = null;
+		Contribution contribution = null;
+		Contribution contribution2 = null;
+		try {
+			// Only leaf tasks are suggested
+			TaskSuggestions suggestions = getModelMgr().getTaskSuggestions(null, "task", null, 10);
+			assertTasks(suggestions.getTasks(), task111, task112);
+			assertEquals("/RT/T1/T11/T111", suggestions.getTaskCodePaths()[0]);
+			assertNull(suggestions.getNextCursor());
+
+			// Pagination
+			suggestions = getModelMgr().getTaskSuggestions(null, "t", null, 2);
+			assertTasks(suggestions.getTasks(), task2, task111);
+			assertNotNull(suggestions.getNextCursor());
+			suggestions = getModelMgr().getTaskSuggestions(null, "t", suggestions.getNextCursor(), 2);
+			assertTasks(suggestions.getTasks(), task112);
+			assertNull(suggestions.getNextCursor());
+
+			// Invalid cursor
+			try {
+				getModelMgr().getTaskSuggestions(null, "t", "invalid", 2);
+				fail("An invalid cursor must be rejected");
+			} catch (ModelException ignored) {
+				// success!
+			}
+
+			// Invalid page size
+			try {
+				getModelMgr().getTaskSuggestions(null, "t", null, 0);
+				fail("An empty page must be rejected");
+			} catch (ModelException ignored) {
+				// success!
+			}
+
+			// The contributor recently used tasks come first
+			collaborator = getModelMgr().createNewCollaborator();
+			duration = getFactory().newDuration();
+			duration.setId(100);
+			duration = getModelMgr().createDuration(duration);
+			contribution = getFactory().newContribution();
+			contribution.setDate(Calendar.getInstance());
+			contribution.setContributorId(collaborator.getId());
+			contribution.setDurationId(duration.getId());
+			contribution.setTaskId(task112.getId());
+			getModelMgr().createContribution(contribution, false);
+			suggestions = getModelMgr().getTaskSuggestions(collaborator, "task", null, 10);
+			assertTasks(suggestions.getTasks(), task112, task111);
+			// ... but the match quality prevails
+			suggestions = getModelMgr().getTaskSuggestions(collaborator, "t111", null, 10);
+			assertTasks(suggestions.getTasks(), task111);
+
+			// The next pages are ranked with the first page frequencies
+			suggestions = getModelMgr().getTaskSuggestions(collaborator, "t", null, 1);
+			assertTasks(suggestions.getTasks(), task112);
+			contribution2 = getFactory().newContribution();
+			contribution2.setDate(Calendar.getInstance());
+			contribution2.setContributorId(collaborator.getId());
+			contribution2.setDurationId(duration.getId());
+			contribution2.setTaskId(task111.getId());
+			getModelMgr().createContribution(contribution2, false);
+			suggestions = getModelMgr().getTaskSuggestions(collaborator, "t", suggestions.getNextCursor(), 10);
+			assertTasks(suggestions.getTasks(), task2, task111);
+		}
+		finally {
+			if (contribution2 != null)
+				getModelMgr().removeContribution(contribution2, false);
+			if (contribution != null)
+				getModelMgr().removeContribution(contribution, false);
+			removeSampleTasks();
+			if (collaborator != null)
+				getModelMgr().removeCollaborator(collaborator);
+			if (duration != null)
+				getModelMgr().removeDuration(duration);
+		}
+	}
+
+	public void testTaskCodePaths() throws ModelException {
+		createSampleTasks();
+		try {
+			String[] codePaths = getModelMgr().getTaskCodePaths(new long[] {
+					task112.getId(), task111.getId(), -1, task2.getId(), rootTask.getId() });
+			assertEquals(5, codePaths.length);
+			assertEquals("/RT/T1/T11/T112", codePaths[0]);
+			assertEquals("/RT/T1/T11/T111", codePaths[1]);
+			assertNull(codePaths[2]);
+			assertEquals("/RT/T2", codePaths[3]);
+			assertEquals("/RT", codePaths[4]);
+			// Same result as the single task API
+			assertEquals(getModelMgr().getTaskCodePath(task112), codePaths[0]);
+			assertEquals(0, getModelMgr().getTaskCodePaths(new long[0]).length);
+		}
+		finally {
+			removeSampleTasks();
+		}
+	}
+
+	public void testIncrementalUpdates() throws ModelException {
+		createSampleTasks();
+		try {
+			// Rename
+			task2.setName("Tests");
+			task2 = getModelMgr().updateTask(task2);
+			assertEquals(0, index.getMatchingTaskIds("predevelopment").length);
+			assertIds(index.getMatchingTaskIds("tests"), task2);
+
+			// Creation
+			Task task21 = getFactory().newTask();
+			task21.setCode("T21");
+			task21.setName("Integration tests");
+			task21 = getModelMgr().createTask(task2, task21);
+			assertIds(index.getMatchingTaskIds("tests"), task2, task21);
+			assertTasks(getModelMgr().getSubTasks(task2.getId(), "integration"), task21);
+
+			// Removal
+			getModelMgr().removeTask(task11);
+			assertEquals(0, index.getMatchingTaskIds("t11").length);
+			assertEquals(0, index.getMatchingTaskIds("specif").length);
+			assertTasks(getModelMgr().getSubTasks(rootTask.getId(), "task"), task1, task2);
+		}
+		finally {
+			removeSampleTasks();
+		}
+	}
+
+	private void assertIds(long[] ids, Task... expectedTasks) {
+		assertEquals(expectedTasks.length, ids.length);
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals(expectedTasks[i].getId(), ids[i]);
+		}
+	}
+
+	private void assertTasks(Task[] tasks, Task... expectedTasks) {
+		assertEquals(expectedTasks.length, tasks.length);
+		for (int i = 0; i < tasks.length; i++) {
+			assertEquals(expectedTasks[i].getId(), tasks[i].getId());
+		}
+	}
+
+	private void createSampleTasks() throws ModelException {
+		// Création des tâches de test
+		rootTask = getModelMgr().createNewTask(null);
+		rootTask.setCode("RT");
+		rootTask.setName("Root task");
+		rootTask = getModelMgr().updateTask(rootTask);
+
+		task1 = getFactory().newTask();
+		task1.setCode("T1");
+		task1.setName("Task 1");
+		task1 = getModelMgr().createTask(rootTask, task1);
+
+		task11 = getFactory().newTask();
+		task11.setCode("T11");
+		task11.setName("Task 11");
+		task11 = getModelMgr().createTask(task1, task11);
+
+		task111 = getFactory().newTask();
+		task111.setCode("T111");
+		task111.setName("Task 111 Specification");
+		task111 = getModelMgr().createTask(task11, task111);
+
+		task112 = getFactory().newTask();
+		task112.setCode("T112");
+		task112.setName("Task 112 Development");
+		task112 = getModelMgr().createTask(task11, task112);
+
+		task2 = getFactory().newTask();
+		task2.setCode("T2");
+		task2.setName("Predevelopment");
+		task2 = getModelMgr().createTask(rootTask, task2);
+	}
+
+	private void removeSampleTasks() throws ModelException {
+		getModelMgr().removeTask(getModelMgr().getTask(rootTask.getId()));
+	}
+
+}
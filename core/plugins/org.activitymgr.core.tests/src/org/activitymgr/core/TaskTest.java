@@ -364,6 +364,48 @@ public class TaskTest extends AbstractModelTestCase {
 		removeSampleTasks();
 	}
 
+	public void testBatchedSubTasksSums() throws ModelException {
+		// Création des taches de test
+		createSampleTasks();
+		try {
+			// Two levels at once
+			List<TaskSums> subTasksSums = getModelMgr().getSubTasksSums(rootTask, 2, null, null);
+			assertTaskIds(subTasksSums, task1, task2, task11);
+			assertFalse(subTasksSums.get(0).isLeaf());
+			assertTrue(subTasksSums.get(1).isLeaf());
+			// Same sums as level by level
+			TaskSums sums1 = getModelMgr().getSubTasksSums(rootTask, null, null).get(0);
+			assertEquals(sums1.getBudgetSum(), subTasksSums.get(0).getBudgetSum());
+			assertEquals(sums1.getContributionsSums().getConsumedSum(), subTasksSums.get(0).getContributionsSums().getConsumedSum());
+			assertTaskIds(getModelMgr().getSubTasksSums(rootTask, 3, null, null), task1, task2, task11, task111, task112);
+
+			// Branches leading to a deep task
+			assertTaskIds(getModelMgr().getBranchesSums(new long[] { task112.getId(), -1 }, null, null),
+					rootTask, task1, task2, task11, task111, task112);
+			assertTrue(getModelMgr().getBranchesSums(new long[0], null, null).isEmpty());
+
+			// Filtered tree, down to the matching tasks
+			subTasksSums = getModelMgr().getFilteredTasksSums("T11", null, null);
+			assertTaskIds(subTasksSums, rootTask, task1, task11, task111, task112);
+			// Same tasks as level by level
+			assertEquals(1, getModelMgr().getSubTasks(rootTask.getId(), "T11").length);
+			assertEquals(2, getModelMgr().getSubTasks(task11.getId(), "T11").length);
+			assertTaskIds(getModelMgr().getFilteredTasksSums("T2", null, null), rootTask, task2);
+			assertTrue(getModelMgr().getFilteredTasksSums("NOTHING", null, null).isEmpty());
+		}
+		finally {
+			// Suppression des taches de test
+			removeSampleTasks();
+		}
+	}
+
+	private static void assertTaskIds(List<TaskSums> tasksSums, Task... expectedTasks) {
+		assertEquals(expectedTasks.length, tasksSums.size());
+		for (int i = 0; i < expectedTasks.length; i++) {
+			assertEquals(expectedTasks[i].getId(), tasksSums.get(i).getTask().getId());
+		}
+	}
+
 	public void testTasksSum() throws ModelException {
 		// Création des taches de test
 		createSampleTasks();
@@ -459,6 +501,91 @@ public class TaskTest extends AbstractModelTestCase {
 		removeSampleTasks();
 	}
 
+	public void testTasksSumsUpdates() throws ModelException {
+		// Création des taches de test
+		createSampleTasks();
+		Duration duration = null;
+		Collaborator col = null;
+		Contribution contribution = null;
+		try {
+			assertConsistentSums(rootTask);
+
+			// Modification d'une tache
+			task111.setBudget(task111.getBudget() + 50);
+			task111.setTodo(task111.getTodo() + 20);
+			task111 = getModelMgr().updateTask(task111);
+			assertConsistentSums(rootTask);
+
+			// Mise à jour du RAF par une contribution
+			duration = getFactory().newDuration();
+			duration.setId(100);
+			duration = getModelMgr().createDuration(duration);
+			col = getModelMgr().createNewCollaborator();
+			contribution = getFactory().newContribution();
+			contribution.setContributorId(col.getId());
+			contribution.setDate(new GregorianCalendar());
+			contribution.setTaskId(task112.getId());
+			contribution.setDurationId(100);
+			getModelMgr().createContribution(contribution, true);
+			assertConsistentSums(rootTask);
+			getModelMgr().removeContribution(contribution, true);
+			contribution = null;
+			assertConsistentSums(rootTask);
+
+			// Déplacement d'une tache
+			getModelMgr().moveTask(task111, task1);
+			assertConsistentSums(rootTask);
+			assertEquals(1, getModelMgr().getSubTasksSums(task1, null, null).get(0).getTask().getNumber());
+			assertEquals(2, getModelMgr().getSubTasksCount(task1.getId()));
+			task11 = getModelMgr().getTask(task11.getId());
+			assertEquals(1, getModelMgr().getSubTasksCount(task11.getId()));
+
+			// Suppression d'une tache
+			task112 = getModelMgr().getTask(task112.getId());
+			getModelMgr().removeTask(task112);
+			task11 = getModelMgr().getTask(task11.getId());
+			assertTrue(getModelMgr().getTaskSums(task11.getId(), null, null).isLeaf());
+			assertConsistentSums(rootTask);
+		}
+		finally {
+			if (contribution != null)
+				getModelMgr().removeContribution(contribution, false);
+			removeSampleTasks();
+			if (col != null)
+				getModelMgr().removeCollaborator(col);
+			if (duration != null)
+				getModelMgr().removeDuration(duration);
+		}
+	}
+
+	/**
+	 * Vérifie que les sommes stockées d'une tache et de ses sous-taches
+	 * correspondent aux valeurs des taches.
+	 * 
+	 * @param task
+	 *            la tache à vérifier.
+	 * @return les sommes recalculées (budget, consommé initial et RAF).
+	 */
+	private long[] assertConsistentSums(Task task) throws ModelException {
+		task = getModelMgr().getTask(task.getId());
+		long[] expected = new long[] { task.getBudget(),
+				task.getInitiallyConsumed(), task.getTodo() };
+		Task[] subTasks = getModelMgr().getSubTasks(task.getId());
+		for (Task subTask : subTasks) {
+			long[] subTaskSums = assertConsistentSums(subTask);
+			for (int i = 0; i < expected.length; i++) {
+				expected[i] += subTaskSums[i];
+			}
+		}
+		TaskSums sums = getModelMgr().getTaskSums(task.getId(), null, null);
+		assertEquals(expected[0], sums.getBudgetSum());
+		assertEquals(expected[1], sums.getInitiallyConsumedSum());
+		assertEquals(expected[2], sums.getTodoSum());
+		assertEquals(subTasks.length == 0, sums.isLeaf());
+		assertEquals(subTasks.length, getModelMgr().getSubTasksCount(task.getId()));
+		return expected;
+	}
+
 	public void testSearchTasks() throws ModelException {
 		// Création des taches de test
 		createSampleTasks();
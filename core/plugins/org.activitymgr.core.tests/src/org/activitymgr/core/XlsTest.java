@@ -113,6 +113,35 @@ public class XlsTest extends AbstractModelTestCase {
 		
 	}
 
+	public void testFailedImportRollback() throws IOException, ModelException {
+		Workbook wbk = new HSSFWorkbook();
+		Sheet sheet = wbk.createSheet();
+		Row headerRow = sheet.createRow(0);
+		headerRow.createCell(0).setCellValue("path");
+		headerRow.createCell(1).setCellValue("code");
+		headerRow.createCell(2).setCellValue("name");
+		// First row : valid root task
+		Row contentRow = sheet.createRow(1);
+		contentRow.createCell(1).setCellValue(MYCODE);
+		contentRow.createCell(2).setCellValue(MYTASK);
+		// Second row : unknown path
+		contentRow = sheet.createRow(2);
+		contentRow.createCell(0).setCellValue("UNKNOWN");
+		contentRow.createCell(1).setCellValue(MYCODE);
+		contentRow.createCell(2).setCellValue(MYTASK);
+		try {
+			getModelMgr().importFromExcel(null, serialize(wbk));
+			fail("A sheet that contains a unknown path should fail");
+		}
+		catch (ModelException e) {
+		}
+		// The first task creation has been rolled back, the task indexes
+		// must not reference it any more
+		assertEquals(0, getModelMgr().getSubTasks(null).length);
+		assertEquals(0, getModelMgr().getRootTasksCount());
+		assertEquals(0, getModelMgr().getTaskSuggestions(null, MYCODE, null, 10).getTasks().length);
+	}
+
 	public void testBasicImport() throws IOException, ModelException {
 		Workbook wbk = new HSSFWorkbook();
 		Sheet sheet = wbk.createSheet();
@@ -69,6 +69,8 @@ public class ReportTest extends AbstractModelTestCase {
 			IContributionDAO cDAO = getInjector().getInstance(IContributionDAO.class);
 			// Remove all contributions
 			cDAO.delete(null, null);
+			// The stored sums must be rebuilt after a direct modification
+			getModelMgr().rebuildSums();
 			// Launch a report that is expected to fail
 			doBuildReport(
 					null, // no start date 
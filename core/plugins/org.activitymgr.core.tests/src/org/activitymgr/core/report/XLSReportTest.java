@@ -3,7 +3,9 @@ package org.activitymgr.core.report;
 import java.util.Calendar;
 
 import org.activitymgr.core.AbstractModelTestCase;
+import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.dto.report.ReportIntervalType;
+import org.activitymgr.core.model.IReportProgressMonitor;
 import org.activitymgr.core.model.ModelException;
 
 public class XLSReportTest extends AbstractModelTestCase {
@@ -44,4 +46,39 @@ public class XLSReportTest extends AbstractModelTestCase {
 		}
 	}
 
+	public void testProgress() throws ModelException {
+		Task task1 = getModelMgr().createNewTask(null);
+		Task task2 = getModelMgr().createNewTask(null);
+		try {
+			final int[] progress = new int[] { -1, -1, 0, 0 };
+			getModelMgr().buildReport(cal(2017, 1, 1), ReportIntervalType.MONTH,
+					2, null, 1, false, false, false, null,
+					new String[] { "task.path" }, true,
+					new IReportProgressMonitor() {
+						@Override
+						public void queryStarted() {
+							// The query precedes the rows processing
+							assertEquals(0, progress[2]);
+							progress[3]++;
+						}
+
+						@Override
+						public void rowsProcessed(int processed, int total) {
+							progress[0] = processed;
+							progress[1] = total;
+							progress[2]++;
+						}
+					});
+			// The last notification covers all the rows
+			assertTrue(progress[1] > 0);
+			assertEquals(progress[1], progress[0]);
+			assertEquals(1, progress[2]);
+			assertEquals(1, progress[3]);
+		}
+		finally {
+			getModelMgr().removeTask(task2);
+			getModelMgr().removeTask(task1);
+		}
+	}
+
 }
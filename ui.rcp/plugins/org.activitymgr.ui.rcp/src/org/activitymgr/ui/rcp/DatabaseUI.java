@@ -109,6 +109,12 @@ public class DatabaseUI implements ModifyListener {
 	/** Datasource */
 	private BasicDataSource datasource;
 
+	/**
+	 * Read replica datasource (optional, configured through the
+	 * <code>activitymgr.jdbc.replica.*</code> system properties)
+	 */
+	private BasicDataSource replicaDatasource;
+
 	/** Listener */
 	private List<IDbStatusListener> listeners = new ArrayList<IDbStatusListener>();
 
@@ -729,6 +735,17 @@ public class DatabaseUI implements ModifyListener {
 		datasource.setPassword(jdbcPassword);
 		datasource.setDefaultAutoCommit(false);
 
+		// Réplique en lecture (optionnelle)
+		String replicaUrl = System.getProperty("activitymgr.jdbc.replica.url"); //$NON-NLS-1$
+		if (replicaUrl != null && !"".equals(replicaUrl.trim())) { //$NON-NLS-1$
+			replicaDatasource = new BasicDataSource();
+			replicaDatasource.setDriverClassName(System.getProperty("activitymgr.jdbc.replica.driver", jdbcDriver)); //$NON-NLS-1$
+			replicaDatasource.setUrl(replicaUrl);
+			replicaDatasource.setUsername(System.getProperty("activitymgr.jdbc.replica.user", jdbcUser)); //$NON-NLS-1$
+			replicaDatasource.setPassword(System.getProperty("activitymgr.jdbc.replica.password", jdbcPassword)); //$NON-NLS-1$
+			replicaDatasource.setDefaultAutoCommit(false);
+		}
+
 		// Test de l'existence du modèle en base
 		boolean dbModelOk = modelMgr.tablesExist();
 		// Si le modèle n'est pas installé et que l'utilisateur
@@ -752,6 +769,9 @@ public class DatabaseUI implements ModifyListener {
 
 		// Si le modèle de données est bien installé
 		if (dbModelOk) {
+			// Mise à jour éventuelle du modèle
+			modelMgr.upgradeTables();
+
 			// Activation/désactivation des boutons et des champs
 			disableField(dbTypeCombo);
 			disableField(dbTypeLabel);
@@ -803,6 +823,10 @@ public class DatabaseUI implements ModifyListener {
 				datasource.close();
 				datasource = null;
 			}
+			if (replicaDatasource != null) {
+				replicaDatasource.close();
+				replicaDatasource = null;
+			}
 		} catch (SQLException e) {
 			throw new UITechException("Unexpected error while closing the database",e); // TODO internationalize
 		}
@@ -996,4 +1020,12 @@ public class DatabaseUI implements ModifyListener {
 		return datasource;
 	}
 
+	/**
+	 * @return the read replica datasource (<code>null</code> if no replica
+	 *         is configured).
+	 */
+	public BasicDataSource getReplicaDatasource() {
+		return replicaDatasource;
+	}
+
 }
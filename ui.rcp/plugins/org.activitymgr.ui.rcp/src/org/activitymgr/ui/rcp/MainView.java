@@ -33,14 +33,19 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.activitymgr.core.dto.IDTOFactory;
 import org.activitymgr.core.model.CoreModelModule;
 import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.core.model.ReadOnly;
+import org.activitymgr.core.model.ReplicaRouter;
+import org.activitymgr.core.model.TransactionSynchronizer;
 import org.activitymgr.core.util.Strings;
 import org.activitymgr.ui.rcp.DatabaseUI.IDbStatusListener;
 import org.activitymgr.ui.rcp.util.UITechException;
 import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.log4j.Logger;
 import org.eclipse.jface.action.IStatusLineManager;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.layout.GridData;
@@ -58,8 +63,11 @@ import com.google.inject.Provider;
 public class MainView extends ViewPart {
 	public static final String ID = "org.activitymgr.ui.view";
 
+	/** Default maximum read replica lag (ms) */
+	private static final long DEFAULT_REPLICA_MAX_LAG = 5000;
+
 	/** Logger */
-	//private static Logger log = Logger.getLogger(MainView.class);
+	private static Logger log = Logger.getLogger(MainView.class);
 
 	/** Onglets */
 	private static TabItem databaseTab;
@@ -84,6 +92,14 @@ public class MainView extends ViewPart {
 	/** Factory */
 	private IDTOFactory factory;
 
+	/** Transactions counters (metrics) */
+	private AtomicLong readOnlyTransactionsCount = new AtomicLong();
+	private AtomicLong readWriteTransactionsCount = new AtomicLong();
+
+	/** Read replica router (the RCP client has a single user) */
+	private ReplicaRouter replicaRouter = new ReplicaRouter(Long.getLong(
+			"activitymgr.jdbc.replica.maxLag", DEFAULT_REPLICA_MAX_LAG)); //$NON-NLS-1$
+
 	/**
 	 * This is a callback that will allow us to create the viewer and initialize
 	 * it.
@@ -203,33 +219,74 @@ public class MainView extends ViewPart {
 					public Object invoke(Object proxy, Method method,
 							Object[] args) throws Throwable {
 						Connection tx = null;
+						// Query methods are run in a read-only transaction
+						boolean readOnly = method.isAnnotationPresent(ReadOnly.class);
+						TransactionSynchronizer synchronizer = injector.getInstance(TransactionSynchronizer.class);
 						try {
 							// Open the transaction
 							BasicDataSource datasource = databaseUI.getDatasource();
 							if (datasource == null) {
 								throw new IllegalStateException("Database is closed");
 							}
+							// Reports & exports may be served by the read replica
+							BasicDataSource replicaDatasource = databaseUI.getReplicaDatasource();
+							if (replicaDatasource != null
+									&& replicaRouter.useReplica(method, ID)) {
+								// The shared task tree must not be loaded from
+								// the replica : it is loaded from the primary
+								// database first if required
+								((IModelMgr) proxy).getTaskCodePaths(new long[0]);
+								datasource = replicaDatasource;
+								synchronizer.replica(true);
+							}
 							tx = datasource.getConnection();
+							if (readOnly) {
+								tx.setReadOnly(true);
+								readOnlyTransactionsCount.incrementAndGet();
+							}
+							else {
+								synchronizer.readWrite();
+								readWriteTransactionsCount.incrementAndGet();
+							}
 							dbTxs.set(tx);
 							// Call the real model manager
 							IModelMgr wrappedModelMgr = injector.getInstance(IModelMgr.class);
 							Object result = method.invoke(wrappedModelMgr, args);
-							// Commit the transaction
-							tx.commit();
+							// Commit the transaction (a read-only transaction
+							// is simply ended when released)
+							if (!readOnly) {
+								tx.commit();
+								synchronizer.commit();
+							}
 							return result;
 						} catch (SQLException e) {
 							throw new IllegalStateException("Database connection failed", e);
 						} catch (InvocationTargetException t) {
 							// Rollback the transaction in case of failure
-							if (tx != null) {
+							if (tx != null && !readOnly) {
 								tx.rollback();
+								synchronizer.rollback(null);
 							}
 							throw t.getCause();
 						} finally {
 							// Release the transaction
 							dbTxs.remove();
+							// The replica is not used until it catches up
+							// with the committed writes
+							synchronizer.release(replicaRouter, ID);
 							if (tx != null) {
-								tx.close();
+								try {
+									if (readOnly) {
+										// End the read-only transaction (releases the
+										// snapshot) and give the connection back to
+										// the pool in its default mode
+										tx.rollback();
+										tx.setReadOnly(false);
+									}
+								}
+								finally {
+									tx.close();
+								}
 							}
 						}
 					}
@@ -250,6 +307,10 @@ public class MainView extends ViewPart {
 		if (databaseUI != null) {
 			databaseUI.closeDatabase();
 		}
+		log.info("Transactions : " + readOnlyTransactionsCount.get()
+				+ " read-only, " + readWriteTransactionsCount.get()
+				+ " read-write, " + replicaRouter.getReplicaCallsCount()
+				+ " served by the read replica");
 	}
 
 }
\ No newline at end of file
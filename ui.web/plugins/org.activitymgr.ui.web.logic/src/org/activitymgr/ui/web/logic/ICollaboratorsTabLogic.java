@@ -8,7 +8,7 @@ public interface ICollaboratorsTabLogic extends ITabLogic<ICollaboratorsTabLogic
 	public interface View extends ITabLogic.View<ICollaboratorsTabLogic> {
 
 		void setCollaboratorsProviderCallback(
-				ITableCellProviderCallback<Long> collaboratorsProviderCallback);
+				IPagedTableCellProviderCallback<Long> collaboratorsProviderCallback);
 		
 	}
 
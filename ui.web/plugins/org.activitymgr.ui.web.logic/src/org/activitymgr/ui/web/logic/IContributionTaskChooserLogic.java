@@ -21,6 +21,8 @@ public interface IContributionTaskChooserLogic extends
 
 		public void setRecentTasks(Map<Long, String> recentTasks);
 
+		public void setTaskSuggestions(Map<Long, String> suggestedTasks);
+
 		public void setCreationPatterns(Map<String, String> patterns);
 
 		public void setNewTaskFieldsEnabled(boolean enabled);
@@ -29,7 +29,7 @@ public interface IContributionsTabLogic extends ITabLogic<IContributionsTabLogic
 	
 	public interface View extends ITabLogic.View<IContributionsTabLogic> {
 		
-		void setCollaboratorsProvider(ITableCellProviderCallback<Long> collaboratorsProvider);
+		void setCollaboratorsProvider(IPagedTableCellProviderCallback<Long> collaboratorsProvider);
 		
 		void selectCollaborator(long collaboratorId);
 
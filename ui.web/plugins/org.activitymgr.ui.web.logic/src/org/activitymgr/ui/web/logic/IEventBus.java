@@ -2,11 +2,53 @@ package org.activitymgr.ui.web.logic;
 
 public interface IEventBus {
 
-	public <EVENT extends AbstractEvent> void register(Class<EVENT> eventType,
+	/**
+	 * Listener registration handle.
+	 */
+	public interface IRegistration {
+
+		/**
+		 * Unregisters the listener (does nothing if it has already been
+		 * unregistered).
+		 */
+		void unregister();
+
+	}
+
+	/**
+	 * Registers a listener.
+	 * 
+	 * <p>
+	 * The listener is notified of the events of the given type and of its sub
+	 * types.
+	 * </p>
+	 * 
+	 * @param eventType
+	 *            the event type.
+	 * @param listener
+	 *            the listener.
+	 * @return the registration handle.
+	 */
+	public <EVENT extends AbstractEvent> IRegistration register(Class<EVENT> eventType,
 			IEventListener<EVENT> listener);
 
 	public void unregister(IEventListener<? extends AbstractEvent> listener);
 
 	public void fire(AbstractEvent event);
 
-}
\ No newline at end of file
+	/**
+	 * Fires an event in background : the listeners are notified one after the
+	 * other by a shared bounded executor (or by the calling thread if the
+	 * executor queue is full), each one in its own transaction.
+	 * 
+	 * <p>
+	 * Such listeners run outside of the user interface request and must not
+	 * update the views.
+	 * </p>
+	 * 
+	 * @param event
+	 *            the event.
+	 */
+	public void fireAsync(AbstractEvent event);
+
+}
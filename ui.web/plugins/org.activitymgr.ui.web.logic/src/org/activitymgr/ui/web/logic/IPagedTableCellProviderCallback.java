@@ -0,0 +1,22 @@
+package org.activitymgr.ui.web.logic;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Table cell provider whose rows are loaded by pages : the view only requests
+ * the rows it displays, and the sort is performed by the provider.
+ */
+public interface IPagedTableCellProviderCallback<ITEM_ID_TYPE> extends ITableCellProviderCallback<ITEM_ID_TYPE> {
+
+	int size();
+
+	List<ITEM_ID_TYPE> getItemIds(int startIndex, int count);
+
+	int indexOf(ITEM_ID_TYPE element);
+
+	Collection<String> getSortablePropertyIds();
+
+	void sort(String propertyId, boolean ascending);
+
+}
@@ -11,6 +11,10 @@ public interface IReportsTabLogic extends ITabLogic<IReportsTabLogic.View> {
 
 	void onSelectionChanged(Collection<Long> value);
 
+	void onReportJobsRefresh();
+
+	void onReportJobDownload(String jobId);
+
 	public interface View extends ITabLogic.View<IReportsTabLogic> {
 		
 		void setReportsView(IReportsLogic.View view);
@@ -28,6 +32,13 @@ public interface IReportsTabLogic extends ITabLogic<IReportsTabLogic.View> {
 
 		void removeReportCfg(long id);
 
+		void setReportJob(String id, String name, String status,
+				boolean downloadable);
+
+		void removeReportJob(String id);
+
+		void setReportJobsPollingEnabled(boolean enabled);
+
 	}
 
 }
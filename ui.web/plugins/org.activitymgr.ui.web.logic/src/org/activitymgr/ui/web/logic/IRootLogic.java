@@ -3,6 +3,17 @@ package org.activitymgr.ui.web.logic;
 
 public interface IRootLogic extends ILogic<IRootLogic.View> {
 	
+	/**
+	 * Applies the changes committed by the other sessions.
+	 */
+	void onRemoteChanges();
+
+	/**
+	 * Writes the buffered contributions modifications, and reports those
+	 * that couldn't be written in the background.
+	 */
+	void onPendingWrites();
+
 	public interface View extends ILogic.IView<IRootLogic> {
 
 		void showErrorNotification(String message, String details);
@@ -26,6 +37,31 @@ public interface IRootLogic extends ILogic<IRootLogic.View> {
 
 		void openExternalUrl(String url);
 
+		/**
+		 * Notifies that changes committed by other sessions are pending.
+		 * 
+		 * <p>
+		 * This method is invoked outside of the user interface thread : the
+		 * view must call {@link IRootLogic#onRemoteChanges()} once it has
+		 * acquired the user interface lock, and push the resulting updates
+		 * to the browser.
+		 * </p>
+		 */
+		void notifyRemoteChanges();
+
+		/**
+		 * Notifies that buffered modifications have been written in the
+		 * background.
+		 * 
+		 * <p>
+		 * This method is invoked outside of the user interface thread : the
+		 * view must call {@link IRootLogic#onPendingWrites()} once it has
+		 * acquired the user interface lock (the modifications are already
+		 * saved, only the failures remain to be reported).
+		 * </p>
+		 */
+		void notifyPendingWrites();
+
 	}
 
 }
@@ -11,6 +11,8 @@ public interface ITasksTabLogic extends ITabLogic<ITasksTabLogic.View> {
 
 		void setTreeContentProviderCallback(
 				ITreeContentProviderCallback<Long> tasksProviderCallback);
+
+		void reloadTaskTreeItems();
 		
 	}
 
@@ -8,6 +8,7 @@ import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
@@ -18,17 +19,27 @@ import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.model.CoreModelModule;
 import org.activitymgr.core.model.IModelMgr;
 import org.activitymgr.core.model.ModelException;
+import org.activitymgr.core.model.ReplicaRouter;
+import org.activitymgr.core.model.TransactionSynchronizer;
 import org.activitymgr.ui.web.logic.impl.CollaboratorsCellLogicFatory;
 import org.activitymgr.ui.web.logic.impl.ContributionsCellLogicFatory;
 import org.activitymgr.ui.web.logic.impl.TasksCellLogicFatory;
+import org.activitymgr.ui.web.logic.impl.event.EventDispatchService;
+import org.activitymgr.ui.web.logic.impl.internal.CellLogicCacheRegistry;
+import org.activitymgr.ui.web.logic.impl.internal.ChangeFeed;
+import org.activitymgr.ui.web.logic.impl.internal.ChangeLogPollingService;
 import org.activitymgr.ui.web.logic.impl.internal.CollaboratorsTabLogicImpl;
 import org.activitymgr.ui.web.logic.impl.internal.ConfigurationImpl;
 import org.activitymgr.ui.web.logic.impl.internal.ContributionsTabLogicImpl;
+import org.activitymgr.ui.web.logic.impl.internal.ContributionsWriteBehindService;
+import org.activitymgr.ui.web.logic.impl.internal.DatabaseUpgradeService;
 import org.activitymgr.ui.web.logic.impl.internal.DefaultConstraintsValidator;
+import org.activitymgr.ui.web.logic.impl.internal.ModelMgrWrapperProvider;
 import org.activitymgr.ui.web.logic.impl.internal.NewContributionTaskButtonLogic;
 import org.activitymgr.ui.web.logic.impl.internal.ReportsTabLogicImpl;
 import org.activitymgr.ui.web.logic.impl.internal.TasksTabLogicImpl;
 import org.activitymgr.ui.web.logic.impl.internal.ThreadLocalizedDbTransactionProviderImpl;
+import org.activitymgr.ui.web.logic.impl.internal.WeekPrefetchService;
 import org.activitymgr.ui.web.logic.impl.internal.services.RESTServicesModule;
 import org.activitymgr.ui.web.logic.spi.IAuthenticatorExtension;
 import org.activitymgr.ui.web.logic.spi.ICollaboratorsCellLogicFactory;
@@ -48,9 +59,16 @@ import com.google.inject.Singleton;
 import com.google.inject.TypeLiteral;
 import com.google.inject.multibindings.MapBinder;
 import com.google.inject.multibindings.Multibinder;
+import com.google.inject.util.Modules;
 
 public class LogicModule extends AbstractModule {
 
+	/** Default maximum read replica lag (ms) */
+	private static final int DEFAULT_REPLICA_MAX_LAG = 5000;
+
+	/** Default maximum count of active connections of the pool */
+	public static final int DEFAULT_MAX_ACTIVE_CONNECTIONS = 8;
+
 	@Override
 	protected void configure() {
 		// Load configuration
@@ -75,9 +93,6 @@ public class LogicModule extends AbstractModule {
 		ConfigurationImpl cfg = new ConfigurationImpl(props);
 		bind(IConfiguration.class).toInstance(cfg);
 
-		// Install core module
-		install(new CoreModelModule());
-		
 		// Create the datasource
 		BasicDataSource datasource = new BasicDataSource();
 		IConfiguration jdbcCfg = cfg.getScoped("activitymgr.jdbc",
@@ -89,15 +104,54 @@ public class LogicModule extends AbstractModule {
 		datasource.setUsername(jdbcCfg.get("user", "taskmgr"));
 		datasource.setPassword(jdbcCfg
 				.get("password", "taskmgr"));
+		datasource.setMaxActive(jdbcCfg.getInt("maxActive",
+				DEFAULT_MAX_ACTIVE_CONNECTIONS));
 		datasource.setDefaultAutoCommit(false);
-		final ThreadLocalizedDbTransactionProviderImpl dbTxProvider = new ThreadLocalizedDbTransactionProviderImpl(datasource);
+		
+		// Create the read replica datasource (optional)
+		BasicDataSource replicaDatasource = null;
+		ReplicaRouter replicaRouter = null;
+		IConfiguration replicaCfg = jdbcCfg.getScoped("replica", null);
+		String replicaUrl = replicaCfg.get("url");
+		if (replicaUrl != null && !"".equals(replicaUrl.trim())) {
+			replicaDatasource = new BasicDataSource();
+			replicaDatasource.setDriverClassName(replicaCfg.get("driver",
+					datasource.getDriverClassName()));
+			replicaDatasource.setUrl(replicaUrl);
+			replicaDatasource.setUsername(replicaCfg.get("user",
+					datasource.getUsername()));
+			replicaDatasource.setPassword(replicaCfg.get("password",
+					datasource.getPassword()));
+			replicaDatasource.setDefaultAutoCommit(false);
+			replicaRouter = new ReplicaRouter(replicaCfg.getInt("maxLag",
+					DEFAULT_REPLICA_MAX_LAG));
+		}
+		final ThreadLocalizedDbTransactionProviderImpl dbTxProvider = new ThreadLocalizedDbTransactionProviderImpl(
+				datasource, replicaDatasource, replicaRouter);
 		bind(ThreadLocalizedDbTransactionProviderImpl.class).toInstance(dbTxProvider);
+		dbTxProvider.setSynchronizerProvider(getProvider(TransactionSynchronizer.class));
 		bind(Connection.class).toProvider(new Provider<Connection>() {
 			@Override
 			public Connection get() {
-				return dbTxProvider.get().getTx();
+				try {
+					return dbTxProvider.get().getTx();
+				} catch (SQLException e) {
+					throw new IllegalStateException("Database connection failed", e);
+				}
 			}
 		});
+
+		// Install core module (the model manager is wrapped in order to
+		// switch the transaction to read-write mode when required)
+		install(Modules.override(new CoreModelModule()).with(new AbstractModule() {
+			@Override
+			protected void configure() {
+				bind(IModelMgr.class).toProvider(
+						new ModelMgrWrapperProvider(
+								getProvider(CoreModelModule.MODEL_MGR_IMPL_KEY),
+								dbTxProvider));
+			}
+		}));
 		
 		// Default SPI implementations
 		bind(IFeatureAccessManager.class).toInstance(new DefaultFeatureAccessManager());
@@ -106,6 +160,27 @@ public class LogicModule extends AbstractModule {
 		bind(ICollaboratorsCellLogicFactory.class).toInstance(new CollaboratorsCellLogicFatory());
 		bind(IContributionsCellLogicFactory.class).toInstance(new ContributionsCellLogicFatory());
 		bind(ITasksCellLogicFactory.class).toInstance(new TasksCellLogicFatory());
+
+		// Asynchronous events dispatch (shared by the sessions event buses)
+		bind(EventDispatchService.class).in(Singleton.class);
+
+		// Committed changes feed (shared by the sessions)
+		bind(ChangeFeed.class).in(Singleton.class);
+
+		// Sessions cells logics caches (diagnostic)
+		bind(CellLogicCacheRegistry.class).in(Singleton.class);
+
+		// Weeks contributions prefetch (shared by the sessions)
+		bind(WeekPrefetchService.class).in(Singleton.class);
+
+		// Contributions write-behind (shared by the sessions)
+		bind(ContributionsWriteBehindService.class).in(Singleton.class);
+
+		// Database tables upgrade (at startup)
+		bind(DatabaseUpgradeService.class).asEagerSingleton();
+
+		// Change log polling (servers sharing the database)
+		bind(ChangeLogPollingService.class).asEagerSingleton();
 		
 		// Install REST services
 		install(new RESTServicesModule());
@@ -0,0 +1,78 @@
+package org.activitymgr.ui.web.logic.impl;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.activitymgr.ui.web.logic.IPagedTableCellProviderCallback;
+
+public abstract class AbstractSafePagedTableCellProviderCallback<ITEM_ID_TYPE> extends AbstractSafeTableCellProviderCallback<ITEM_ID_TYPE> implements IPagedTableCellProviderCallback<ITEM_ID_TYPE> {
+	
+	public AbstractSafePagedTableCellProviderCallback(AbstractLogicImpl<?> source) {
+		super(source);
+	}
+
+	@Override
+	public final int size() {
+		try {
+			return unsafeSize();
+		}
+		catch (Throwable t) {
+			doThrow(t);
+			return 0;
+		}
+	}
+
+	protected abstract int unsafeSize() throws Exception;
+
+	@Override
+	public final List<ITEM_ID_TYPE> getItemIds(int startIndex, int count) {
+		try {
+			return unsafeGetItemIds(startIndex, count);
+		}
+		catch (Throwable t) {
+			doThrow(t);
+			return null;
+		}
+	}
+
+	protected abstract List<ITEM_ID_TYPE> unsafeGetItemIds(int startIndex, int count) throws Exception;
+
+	@Override
+	public final int indexOf(ITEM_ID_TYPE element) {
+		try {
+			return unsafeIndexOf(element);
+		}
+		catch (Throwable t) {
+			doThrow(t);
+			return -1;
+		}
+	}
+
+	protected abstract int unsafeIndexOf(ITEM_ID_TYPE element) throws Exception;
+
+	@Override
+	public final Collection<String> getSortablePropertyIds() {
+		try {
+			return unsafeGetSortablePropertyIds();
+		}
+		catch (Throwable t) {
+			doThrow(t);
+			return null;
+		}
+	}
+
+	protected abstract Collection<String> unsafeGetSortablePropertyIds() throws Exception;
+
+	@Override
+	public final void sort(String propertyId, boolean ascending) {
+		try {
+			unsafeSort(propertyId, ascending);
+		}
+		catch (Throwable t) {
+			doThrow(t);
+		}
+	}
+
+	protected abstract void unsafeSort(String propertyId, boolean ascending) throws Exception;
+
+}
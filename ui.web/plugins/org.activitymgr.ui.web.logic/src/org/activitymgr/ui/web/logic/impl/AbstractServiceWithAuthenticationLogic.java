@@ -29,11 +29,13 @@ public abstract class AbstractServiceWithAuthenticationLogic extends
 			throws ModelException, IOException, HttpException {
 			// Check authentication
 		Collaborator connected = checkAuthentication(request, response);
+		setTransactionUser(connected);
 		doService(connected, request, response);
 	}
 
 	protected abstract void doService(Collaborator connected, Request request,
-			Response response) throws ModelException, IOException;
+			Response response) throws ModelException, IOException,
+			HttpException;
 
 	private Collaborator checkAuthentication(Request request, Response response)
 			throws HttpException {
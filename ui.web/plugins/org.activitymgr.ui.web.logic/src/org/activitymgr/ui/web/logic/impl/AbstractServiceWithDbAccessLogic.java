@@ -1,8 +1,8 @@
 package org.activitymgr.ui.web.logic.impl;
 
 import java.io.IOException;
-import java.sql.Connection;
 
+import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.model.ModelException;
 import org.activitymgr.ui.web.logic.impl.internal.DbTransactionContext;
 import org.activitymgr.ui.web.logic.impl.internal.ThreadLocalizedDbTransactionProviderImpl;
@@ -41,7 +41,6 @@ public abstract class AbstractServiceWithDbAccessLogic implements IRESTServiceLo
 			// Init tx
 			DbTransactionContext ctx = dbTxProvider.newCtx();
 			ctxReleased = false;
-			Connection tx = ctx.getTx();
 
 			// Execute service
 			doService(request, response);
@@ -51,8 +50,8 @@ public abstract class AbstractServiceWithDbAccessLogic implements IRESTServiceLo
 				response.setContentType("application/octet-stream");
 			}
 			
-			// Commit & release tx
-			tx.commit();
+			// Commit (if required) & release tx
+			ctx.commit();
 			dbTxProvider.release();
 			ctxReleased = true;
 		} catch (Throwable t) {
@@ -78,4 +77,15 @@ public abstract class AbstractServiceWithDbAccessLogic implements IRESTServiceLo
 	protected abstract void doService(Request request, Response response)
 			throws ModelException, IOException, HttpException;
 
+	/**
+	 * Registers the user of the current transaction (used by the read replica
+	 * lag guard).
+	 * 
+	 * @param user
+	 *            the connected collaborator.
+	 */
+	protected void setTransactionUser(Collaborator user) {
+		dbTxProvider.get().setUser(user.getId());
+	}
+
 }
@@ -55,10 +55,10 @@ public class ContributionsCellLogicFatory implements IContributionsCellLogicFact
 	private Map<String, String> durationsMap;
 
 	/* (non-Javadoc)
-	 * @see org.activitymgr.ui.web.logic.impl.IContributionsCellLogicFactory#createCellLogic(org.activitymgr.core.dto.Collaborator, java.util.Calendar, org.activitymgr.core.dto.misc.TaskContributions, java.lang.String)
+	 * @see org.activitymgr.ui.web.logic.impl.IContributionsCellLogicFactory#createCellLogic(org.activitymgr.core.dto.Collaborator, java.util.Calendar, org.activitymgr.core.dto.misc.TaskContributions, org.activitymgr.ui.web.logic.impl.ContributionsTotals, org.activitymgr.ui.web.logic.impl.ContributionsWriteBuffer, java.lang.String)
 	 */
 	@Override
-	public ILogic<?> createCellLogic(final AbstractLogicImpl<?> parentLogic, final ILogicContext context, final Collaborator contributor, final Calendar firstDayOfWeek, final TaskContributions weekContributions, final String propertyId) {
+	public ILogic<?> createCellLogic(final AbstractLogicImpl<?> parentLogic, final ILogicContext context, final Collaborator contributor, final Calendar firstDayOfWeek, final TaskContributions weekContributions, final ContributionsTotals totals, final ContributionsWriteBuffer writeBuffer, final String propertyId) {
 		ILogic<?> logic = null;
 		if (DAY_COLUMNS_IDENTIFIERS.contains(propertyId)) {
 			final int dayOfWeek = DAY_COLUMNS_IDENTIFIERS.indexOf(propertyId);
@@ -68,7 +68,7 @@ public class ContributionsCellLogicFatory implements IContributionsCellLogicFact
 				ITextFieldLogic textFieldLogic = new AbstractSafeTextFieldLogicImpl(parentLogic, duration, false) {
 					@Override
 					protected void unsafeOnValueChanged(String newValue) {
-						onDurationChanged(parentLogic, contributor, firstDayOfWeek, weekContributions, dayOfWeek, newValue, this, propertyId);
+						onDurationChanged(parentLogic, contributor, firstDayOfWeek, weekContributions, totals, writeBuffer, dayOfWeek, newValue, this, propertyId);
 					}
 				};
 				textFieldLogic.getView().setNumericFieldStyle();
@@ -79,7 +79,7 @@ public class ContributionsCellLogicFatory implements IContributionsCellLogicFact
 					@Override
 					protected void unsafeOnSelectedItemChanged(
 							String newValue) throws Exception {
-						onDurationChanged(parentLogic, contributor, firstDayOfWeek, weekContributions, dayOfWeek, newValue, this, propertyId);
+						onDurationChanged(parentLogic, contributor, firstDayOfWeek, weekContributions, totals, writeBuffer, dayOfWeek, newValue, this, propertyId);
 					}
 				};
 				selectFieldLogic.getView().setWidth(DAY_COLUMN_WIDTH_WITH_SELECT_FIELD);
@@ -93,7 +93,7 @@ public class ContributionsCellLogicFatory implements IContributionsCellLogicFact
 			logic = new LabelLogicImpl(parentLogic, weekContributions.getTask().getName());
 		}
 		else if (TOTAL_COLUMN_ID.equals(propertyId)) {
-			logic = new LabelLogicImpl(parentLogic, "");
+			logic = new LabelLogicImpl(parentLogic, StringHelper.hundredthToEntry(totals.getTaskTotal(weekContributions.getTask().getId())));
 		}
 		else {
 			throw new IllegalArgumentException(propertyId);
@@ -105,15 +105,36 @@ public class ContributionsCellLogicFatory implements IContributionsCellLogicFact
 		return logic;
 	}
 
-	private void onDurationChanged(AbstractLogicImpl<?> parentLogic, Collaborator contributor, Calendar firstDayOfWeek, TaskContributions weekContributions, int dayOfWeek, String duration, IFieldLogic<String, ? extends ILogic.IView<?>> logic, String propertyId) {
+	private void onDurationChanged(AbstractLogicImpl<?> parentLogic, Collaborator contributor, Calendar firstDayOfWeek, TaskContributions weekContributions, ContributionsTotals totals, ContributionsWriteBuffer writeBuffer, int dayOfWeek, String duration, IFieldLogic<String, ? extends ILogic.IView<?>> logic, String propertyId) {
 		try {
 			long durationId = 0;
 			if (duration != null && !"".equals(duration.trim())) {
 				durationId = StringHelper.entryToHundredth(duration.replaceAll(",", "."));
 			}
 			Contribution contribution = weekContributions.getContributions()[dayOfWeek];
+			long oldDurationId = contribution != null ? contribution.getDurationId() : 0;
+			// Write-behind case : the row is updated, the contribution will
+			// be written later
+			if (writeBuffer != null && writeBuffer.isEnabled()) {
+				Calendar day = (Calendar) firstDayOfWeek.clone();
+				day.add(Calendar.DATE, dayOfWeek);
+				if (durationId == 0) {
+					weekContributions.getContributions()[dayOfWeek] = null;
+				}
+				else {
+					if (contribution == null) {
+						contribution = dtoFactory.newContribution();
+						contribution.setContributorId(contributor.getId());
+						contribution.setTaskId(weekContributions.getTask().getId());
+						contribution.setDate(day);
+						weekContributions.getContributions()[dayOfWeek] = contribution;
+					}
+					contribution.setDurationId(durationId);
+				}
+				writeBuffer.write(parentLogic, totals, contributor, weekContributions, day, dayOfWeek, oldDurationId, durationId, logic);
+			}
 			// First case : the contribution must be created
-			if (contribution == null) {
+			else if (contribution == null) {
 				if (durationId != 0) {
 					// Let's create the new contribution
 					contribution = dtoFactory.newContribution();
@@ -144,12 +165,16 @@ public class ContributionsCellLogicFatory implements IContributionsCellLogicFact
 			duration = durationId == 0 ? "" : StringHelper.hundredthToEntry(durationId);
 			logic.getView().setValue(duration);
 
+			// Update the totals (the footer and the total column are
+			// then refreshed without iterating over the rows)
+			long taskId = weekContributions.getTask().getId();
+			totals.update(taskId, dayOfWeek, oldDurationId, durationId);
+
 			// FIre a change event
-			long oldDuration = contribution != null ? contribution.getDurationId() : 0;
 			parentLogic.getEventBus().fire(
 					new ContributionChangeEvent(parentLogic,
-							weekContributions.getTask().getId(), propertyId,
-							oldDuration, durationId));
+							taskId, propertyId,
+							oldDurationId, durationId));
 		}
 		catch (ModelException e) {
 			logic.getView().focus();
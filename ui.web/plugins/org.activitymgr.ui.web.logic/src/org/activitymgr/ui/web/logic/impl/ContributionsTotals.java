@@ -0,0 +1,113 @@
+package org.activitymgr.ui.web.logic.impl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.misc.TaskContributions;
+
+/**
+ * Running totals of a week contributions table (per day, per task and
+ * overall).
+ *
+ * <p>
+ * The totals are computed once when the week is loaded ; each modification
+ * of a contribution then updates them in constant time, so that the footer
+ * and the total column are served without iterating over the rows.
+ * </p>
+ */
+public class ContributionsTotals {
+
+	/** Totals by day of week */
+	private final long[] dayTotals = new long[7];
+
+	/** Totals by task */
+	private final Map<Long, long[]> taskTotals = new HashMap<Long, long[]>();
+
+	/** Overall total */
+	private long total;
+
+	/**
+	 * Computes the totals of a week.
+	 *
+	 * @param weekContributions
+	 *            the week contributions.
+	 */
+	public void reset(Collection<TaskContributions> weekContributions) {
+		for (int i = 0; i < dayTotals.length; i++) {
+			dayTotals[i] = 0;
+		}
+		taskTotals.clear();
+		total = 0;
+		for (TaskContributions tc : weekContributions) {
+			long taskId = tc.getTask().getId();
+			Contribution[] contributions = tc.getContributions();
+			for (int dayOfWeek = 0; dayOfWeek < contributions.length; dayOfWeek++) {
+				Contribution contribution = contributions[dayOfWeek];
+				if (contribution != null) {
+					add(taskId, dayOfWeek, contribution.getDurationId());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies the modification of a contribution.
+	 *
+	 * @param taskId
+	 *            the task identifier.
+	 * @param dayOfWeek
+	 *            the day of week (<code>0</code> for the first day).
+	 * @param oldDurationId
+	 *            the previous duration (<code>0</code> if the contribution
+	 *            has been created).
+	 * @param newDurationId
+	 *            the new duration (<code>0</code> if the contribution has
+	 *            been removed).
+	 */
+	public void update(long taskId, int dayOfWeek, long oldDurationId, long newDurationId) {
+		add(taskId, dayOfWeek, newDurationId - oldDurationId);
+	}
+
+	private void add(long taskId, int dayOfWeek, long amount) {
+		if (amount == 0) {
+			return;
+		}
+		long[] taskTotal = taskTotals.get(taskId);
+		if (taskTotal == null) {
+			taskTotal = new long[1];
+			taskTotals.put(taskId, taskTotal);
+		}
+		taskTotal[0] += amount;
+		dayTotals[dayOfWeek] += amount;
+		total += amount;
+	}
+
+	/**
+	 * @param dayOfWeek
+	 *            the day of week (<code>0</code> for the first day).
+	 * @return the total of the day.
+	 */
+	public long getDayTotal(int dayOfWeek) {
+		return dayTotals[dayOfWeek];
+	}
+
+	/**
+	 * @param taskId
+	 *            the task identifier.
+	 * @return the total of the task.
+	 */
+	public long getTaskTotal(long taskId) {
+		long[] taskTotal = taskTotals.get(taskId);
+		return taskTotal != null ? taskTotal[0] : 0;
+	}
+
+	/**
+	 * @return the overall total.
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+}
@@ -0,0 +1,386 @@
+package org.activitymgr.ui.web.logic.impl;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.IDTOFactory;
+import org.activitymgr.core.dto.misc.TaskContributions;
+import org.activitymgr.core.model.ContributionModelException;
+import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.core.model.ModelException;
+import org.activitymgr.core.util.StringHelper;
+import org.activitymgr.ui.web.logic.IFieldLogic;
+import org.activitymgr.ui.web.logic.ILogic;
+import org.activitymgr.ui.web.logic.impl.event.ContributionChangeEvent;
+import org.activitymgr.ui.web.logic.impl.event.EntityChange;
+import org.activitymgr.ui.web.logic.impl.internal.ChangeFeed;
+import org.activitymgr.ui.web.logic.impl.internal.ContributionsWriteBehindService;
+import org.activitymgr.ui.web.logic.impl.internal.DbTransactionContext;
+import org.activitymgr.ui.web.logic.impl.internal.SessionChangesQueue;
+import org.activitymgr.ui.web.logic.impl.internal.ThreadLocalizedDbTransactionProviderImpl;
+import org.activitymgr.ui.web.logic.spi.IContributionsCellLogicFactory;
+import org.apache.log4j.Logger;
+
+import com.google.inject.Inject;
+
+/**
+ * Session buffer of the contributions cells modifications (write-behind).
+ *
+ * <p>
+ * When it is enabled (see {@link ContributionsWriteBehindService}), the
+ * modifications of the contributions cells are not written at once : the
+ * successive modifications of a cell are coalesced, then all the pending
+ * modifications are written in a single transaction (see
+ * {@link IModelMgr#updateContributions(Contribution[], long[], boolean)})
+ * as soon as a cell of another row is modified, or before the contributions
+ * table is reloaded.
+ * </p>
+ *
+ * <p>
+ * Once the coalescing window has elapsed, the pending modifications are
+ * written at once by the scheduler thread, in a dedicated transaction (so
+ * that they don't depend on the user interface lock, which may not be
+ * acquired before the next browser request if push is not available).
+ * </p>
+ *
+ * <p>
+ * A modification that cannot be written is reverted in its cell, which gets
+ * the focus, and reported to the user ; the other modifications are written.
+ * As the views can only be updated from the user interface thread, the
+ * modifications that couldn't be written by the scheduler thread are
+ * reported by the next {@link #flush()}.
+ * </p>
+ *
+ * <p>
+ * Except {@link #flush()}, which may also be invoked from the user interface
+ * thread, the methods must only be invoked from the user interface thread.
+ * </p>
+ */
+public class ContributionsWriteBuffer {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(ContributionsWriteBuffer.class);
+
+	/**
+	 * Pending modification of a contribution cell.
+	 */
+	private static class PendingWrite {
+		AbstractLogicImpl<?> parentLogic;
+		ContributionsTotals totals;
+		TaskContributions weekContributions;
+		int dayOfWeek;
+		IFieldLogic<String, ? extends ILogic.IView<?>> cell;
+		/** Contribution to write (its duration is 0 for a removal) */
+		Contribution contribution;
+		/** Duration in the database */
+		long persistedDurationId;
+	}
+
+	@Inject
+	private IModelMgr modelMgr;
+
+	@Inject
+	private IDTOFactory dtoFactory;
+
+	@Inject
+	private ThreadLocalizedDbTransactionProviderImpl dbTxProvider;
+
+	@Inject
+	private ChangeFeed changeFeed;
+
+	@Inject
+	private SessionChangesQueue changesQueue;
+
+	private final ContributionsWriteBehindService service;
+
+	/** Pending modifications (of a single row) by day */
+	private final Map<String, PendingWrite> pendingWrites = new LinkedHashMap<String, PendingWrite>();
+
+	/** Row of the pending modifications */
+	private String pendingRow;
+
+	/** Flush request scheduled at the end of the coalescing window */
+	private Future<?> scheduledFlush;
+
+	/** Flush request listener */
+	private Runnable listener;
+
+	/** Modifications that couldn't be written (not reported yet) */
+	private final List<PendingWrite> failedWrites = new ArrayList<PendingWrite>();
+	private final List<String> errors = new ArrayList<String>();
+
+	/**
+	 * Changes committed by the scheduler thread (not notified to the session
+	 * yet)
+	 */
+	private final List<EntityChange> committedChanges = new ArrayList<EntityChange>();
+
+	@Inject
+	public ContributionsWriteBuffer(ContributionsWriteBehindService service) {
+		this.service = service;
+	}
+
+	/**
+	 * @return <code>true</code> if the contributions modifications are
+	 *         buffered.
+	 */
+	public boolean isEnabled() {
+		return service.isEnabled();
+	}
+
+	/**
+	 * @param listener
+	 *            the listener notified once the pending modifications have
+	 *            been written at the end of the coalescing window (outside
+	 *            of the user interface thread) ; it must then invoke
+	 *            {@link #flush()} and {@link #drainCommittedChanges()} from
+	 *            the user interface thread.
+	 */
+	public void setListener(Runnable listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Buffers the modification of a contribution cell (the contributions of
+	 * the row must already be up to date).
+	 *
+	 * @param parentLogic
+	 *            the table logic.
+	 * @param totals
+	 *            the table totals.
+	 * @param contributor
+	 *            the contributor.
+	 * @param weekContributions
+	 *            the row contributions.
+	 * @param day
+	 *            the contribution date.
+	 * @param dayOfWeek
+	 *            the day of week (<code>0</code> for the first day).
+	 * @param previousDurationId
+	 *            the duration before the modification (<code>0</code> if the
+	 *            contribution didn't exist).
+	 * @param durationId
+	 *            the new duration (<code>0</code> if the contribution must be
+	 *            removed).
+	 * @param cell
+	 *            the modified cell.
+	 * @throws ModelException
+	 *             thrown if the pending modifications of the previous row
+	 *             cannot be written because of a concurrent modification.
+	 */
+	public synchronized void write(AbstractLogicImpl<?> parentLogic, ContributionsTotals totals,
+			Collaborator contributor, TaskContributions weekContributions,
+			Calendar day, int dayOfWeek, long previousDurationId,
+			long durationId, IFieldLogic<String, ? extends ILogic.IView<?>> cell)
+			throws ModelException {
+		long taskId = weekContributions.getTask().getId();
+		String row = contributor.getId() + "/" + taskId;
+		if (!row.equals(pendingRow)) {
+			// The focus has left the previous row
+			flush();
+			pendingRow = row;
+		}
+		service.recordEdit();
+		String key = day.get(Calendar.YEAR) + "-" + day.get(Calendar.MONTH)
+				+ "-" + day.get(Calendar.DATE);
+		PendingWrite pendingWrite = pendingWrites.get(key);
+		if (pendingWrite == null) {
+			pendingWrite = new PendingWrite();
+			pendingWrite.parentLogic = parentLogic;
+			pendingWrite.totals = totals;
+			pendingWrite.weekContributions = weekContributions;
+			pendingWrite.dayOfWeek = dayOfWeek;
+			pendingWrite.persistedDurationId = previousDurationId;
+			pendingWrite.contribution = dtoFactory.newContribution();
+			pendingWrite.contribution.setContributorId(contributor.getId());
+			pendingWrite.contribution.setTaskId(taskId);
+			pendingWrite.contribution.setDate(day);
+			pendingWrites.put(key, pendingWrite);
+		}
+		pendingWrite.cell = cell;
+		pendingWrite.contribution.setDurationId(durationId);
+		if (durationId == pendingWrite.persistedDurationId) {
+			// The modifications cancel each other out
+			pendingWrites.remove(key);
+		}
+		if (scheduledFlush == null && !pendingWrites.isEmpty()) {
+			scheduledFlush = service.schedule(new Runnable() {
+				@Override
+				public void run() {
+					writeInBackground();
+					if (listener != null) {
+						listener.run();
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Writes the pending modifications, and reports the modifications that
+	 * couldn't be written (including by the scheduler thread).
+	 *
+	 * @throws ModelException
+	 *             thrown if a concurrent modification occurs while the
+	 *             modifications are written (the transaction must then be
+	 *             rolled back, the modifications remain pending).
+	 */
+	public synchronized void flush() throws ModelException {
+		if (scheduledFlush != null) {
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+		}
+		writePendingWrites();
+		if (!failedWrites.isEmpty()) {
+			for (PendingWrite failedWrite : failedWrites) {
+				revert(failedWrite);
+			}
+			failedWrites.get(0).cell.getView().focus();
+			StringBuffer details = new StringBuffer();
+			for (String error : errors) {
+				details.append(details.length() > 0 ? "\n" : "").append(error);
+			}
+			failedWrites.get(0).parentLogic.getRoot().getView().showErrorNotification(
+					failedWrites.size() + " contribution(s) couldn't be saved",
+					details.toString());
+			failedWrites.clear();
+			errors.clear();
+		}
+	}
+
+	/**
+	 * Returns and forgets the changes committed by the scheduler thread.
+	 *
+	 * @return the changes (in commit order).
+	 */
+	public synchronized List<EntityChange> drainCommittedChanges() {
+		List<EntityChange> result = new ArrayList<EntityChange>(committedChanges);
+		committedChanges.clear();
+		return result;
+	}
+
+	/**
+	 * Writes the pending modifications in a dedicated transaction, once the
+	 * coalescing window has elapsed (the views are not accessed). The
+	 * committed changes are published to the other sessions.
+	 */
+	private void writeInBackground() {
+		List<EntityChange> changes = null;
+		synchronized (this) {
+			scheduledFlush = null;
+			if (pendingWrites.isEmpty()) {
+				return;
+			}
+			// Restored if the transaction is rolled back
+			Map<String, PendingWrite> initialPendingWrites = new LinkedHashMap<String, PendingWrite>(pendingWrites);
+			String initialPendingRow = pendingRow;
+			int initialFailuresCount = failedWrites.size();
+			try {
+				DbTransactionContext txCtx = dbTxProvider.newCtx();
+				try {
+					writePendingWrites();
+					txCtx.commit();
+					changes = new ArrayList<EntityChange>(txCtx.getChanges());
+				} catch (ModelException e) {
+					txCtx.rollback(null);
+					throw e;
+				} catch (SQLException e) {
+					txCtx.rollback(null);
+					throw e;
+				} catch (RuntimeException e) {
+					txCtx.rollback(null);
+					throw e;
+				} finally {
+					dbTxProvider.release();
+				}
+			} catch (Throwable t) {
+				// The modifications remain pending, they will be written by
+				// the next flush
+				log.error("Contributions write-behind failure", t);
+				pendingWrites.clear();
+				pendingWrites.putAll(initialPendingWrites);
+				pendingRow = initialPendingRow;
+				failedWrites.subList(initialFailuresCount, failedWrites.size()).clear();
+				errors.subList(initialFailuresCount, errors.size()).clear();
+			}
+			if (changes != null) {
+				committedChanges.addAll(changes);
+			}
+		}
+		if (changes != null && !changes.isEmpty()) {
+			changeFeed.publish(changesQueue, changes);
+		}
+	}
+
+	/**
+	 * Writes the pending modifications (the views are not accessed : the
+	 * modifications that cannot be written are reported by
+	 * {@link #flush()}).
+	 *
+	 * @throws ModelException
+	 *             thrown if a concurrent modification occurs while the
+	 *             modifications are written.
+	 */
+	private void writePendingWrites() throws ModelException {
+		while (!pendingWrites.isEmpty()) {
+			List<PendingWrite> writes = new ArrayList<PendingWrite>(pendingWrites.values());
+			Contribution[] contributions = new Contribution[writes.size()];
+			long[] previousDurationIds = new long[writes.size()];
+			for (int i = 0; i < contributions.length; i++) {
+				contributions[i] = writes.get(i).contribution;
+				previousDurationIds[i] = writes.get(i).persistedDurationId;
+			}
+			try {
+				modelMgr.updateContributions(contributions, previousDurationIds, true);
+				pendingWrites.clear();
+				service.recordFlush(contributions.length);
+			}
+			catch (ContributionModelException e) {
+				// Nothing has been written : the invalid modification is
+				// reverted and the other ones are written again
+				PendingWrite failedWrite = writes.get(e.getIndex());
+				pendingWrites.values().remove(failedWrite);
+				service.recordFailure();
+				failedWrites.add(failedWrite);
+				errors.add(e.getMessage());
+			}
+		}
+		pendingRow = null;
+	}
+
+	private void revert(PendingWrite failedWrite) {
+		Contribution[] contributions = failedWrite.weekContributions.getContributions();
+		Contribution contribution = contributions[failedWrite.dayOfWeek];
+		long durationId = contribution != null ? contribution.getDurationId() : 0;
+		long persistedDurationId = failedWrite.persistedDurationId;
+		if (persistedDurationId == 0) {
+			contributions[failedWrite.dayOfWeek] = null;
+		}
+		else {
+			if (contribution == null) {
+				contribution = dtoFactory.newContribution();
+				contribution.setContributorId(failedWrite.contribution.getContributorId());
+				contribution.setTaskId(failedWrite.contribution.getTaskId());
+				contribution.setDate(failedWrite.contribution.getDate());
+				contributions[failedWrite.dayOfWeek] = contribution;
+			}
+			contribution.setDurationId(persistedDurationId);
+		}
+		failedWrite.cell.getView().setValue(
+				persistedDurationId == 0 ? "" : StringHelper.hundredthToEntry(persistedDurationId));
+		long taskId = failedWrite.contribution.getTaskId();
+		failedWrite.totals.update(taskId, failedWrite.dayOfWeek, durationId, persistedDurationId);
+		failedWrite.parentLogic.getEventBus().fire(
+				new ContributionChangeEvent(failedWrite.parentLogic, taskId,
+						IContributionsCellLogicFactory.DAY_COLUMNS_IDENTIFIERS.get(failedWrite.dayOfWeek),
+						durationId, persistedDurationId));
+	}
+
+}
@@ -0,0 +1,38 @@
+package org.activitymgr.ui.web.logic.impl.event;
+
+import java.util.List;
+
+import org.activitymgr.ui.web.logic.AbstractEvent;
+import org.activitymgr.ui.web.logic.ILogic;
+
+/**
+ * Fired once a transaction that has modified some entities is committed,
+ * either by the current session (local changes) or by another one.
+ */
+public class EntitiesChangedEvent extends AbstractEvent {
+
+	private List<EntityChange> changes;
+
+	private boolean local;
+
+	public EntitiesChangedEvent(ILogic<?> source, List<EntityChange> changes,
+			boolean local) {
+		super(source);
+		this.changes = changes;
+		this.local = local;
+	}
+
+	public List<EntityChange> getChanges() {
+		return changes;
+	}
+
+	/**
+	 * @return <code>true</code> if the changes have been made by the current
+	 *         session (in which case the views that have triggered them are
+	 *         usually already up to date).
+	 */
+	public boolean isLocal() {
+		return local;
+	}
+
+}
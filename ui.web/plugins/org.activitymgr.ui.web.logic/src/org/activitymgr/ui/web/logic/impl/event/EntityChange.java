@@ -0,0 +1,94 @@
+package org.activitymgr.ui.web.logic.impl.event;
+
+import java.util.Arrays;
+
+/**
+ * Describes a committed modification of a model entity.
+ * 
+ * <p>
+ * The entity is a copy of the DTO taken when the modification occurred, it
+ * may be shared by several sessions and must not be modified.
+ * </p>
+ */
+public class EntityChange {
+
+	/**
+	 * Modification kind.
+	 */
+	public static enum Kind {
+		CREATED, UPDATED, REMOVED;
+	}
+
+	private final Kind kind;
+
+	private final Class<?> entityType;
+
+	private final Object id;
+
+	private final Object entity;
+
+	private final String[] changedFields;
+
+	/**
+	 * Default constructor.
+	 * 
+	 * @param kind
+	 *            the modification kind.
+	 * @param entityType
+	 *            the entity type (<code>null</code> if any entity may have
+	 *            been modified, after an import for example).
+	 * @param id
+	 *            the entity identifier (<code>null</code> for the entities
+	 *            that have a composite key, like the contributions).
+	 * @param entity
+	 *            the entity copy.
+	 * @param changedFields
+	 *            the modified fields (<code>null</code> if unknown).
+	 */
+	public EntityChange(Kind kind, Class<?> entityType, Object id,
+			Object entity, String[] changedFields) {
+		this.kind = kind;
+		this.entityType = entityType;
+		this.id = id;
+		this.entity = entity;
+		this.changedFields = changedFields;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public Class<?> getEntityType() {
+		return entityType;
+	}
+
+	public Object getId() {
+		return id;
+	}
+
+	public Object getEntity() {
+		return entity;
+	}
+
+	public String[] getChangedFields() {
+		return changedFields;
+	}
+
+	/**
+	 * @param type
+	 *            the entity type.
+	 * @return <code>true</code> if the change may concern an entity of the
+	 *         given type.
+	 */
+	public boolean concerns(Class<?> type) {
+		return entityType == null || type.isAssignableFrom(entityType);
+	}
+
+	@Override
+	public String toString() {
+		return kind + " " + (entityType != null ? entityType.getSimpleName() : "*")
+				+ (id != null ? " #" + id : "")
+				+ (changedFields != null ? " " + Arrays.asList(changedFields) : "");
+	}
+
+}
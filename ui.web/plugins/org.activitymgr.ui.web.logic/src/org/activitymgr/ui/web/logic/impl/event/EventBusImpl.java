@@ -1,61 +1,240 @@
 package org.activitymgr.ui.web.logic.impl.event;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.activitymgr.ui.web.logic.AbstractEvent;
 import org.activitymgr.ui.web.logic.IEventBus;
 import org.activitymgr.ui.web.logic.IEventListener;
+import org.activitymgr.ui.web.logic.impl.internal.DbTransactionContext;
+import org.activitymgr.ui.web.logic.impl.internal.ThreadLocalizedDbTransactionProviderImpl;
+import org.apache.log4j.Logger;
 
+import com.google.inject.Inject;
+
+/**
+ * Event bus.
+ * 
+ * <p>
+ * The listeners are stored in copy on write arrays, so that an event may be
+ * fired while listeners are (un)registered, and the listeners to notify for
+ * a given event class (the listeners of the class and of its super classes)
+ * are computed once until the next (un)registration.
+ * </p>
+ */
 public class EventBusImpl implements IEventBus {
 
-	private Map<Class<? extends AbstractEvent>, Collection<IEventListener<?>>> listeners = new HashMap<Class<? extends AbstractEvent>, Collection<IEventListener<?>>>();
+	private final class Registration implements IRegistration {
+
+		private final Class<? extends AbstractEvent> eventType;
+
+		private final IEventListener<?> listener;
+
+		/** Tells whether the listener is still registered */
+		private volatile boolean active = true;
+
+		Registration(Class<? extends AbstractEvent> eventType,
+				IEventListener<?> listener) {
+			this.eventType = eventType;
+			this.listener = listener;
+		}
+
+		@Override
+		public void unregister() {
+			remove(this);
+		}
+
+	}
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(EventBusImpl.class);
+
+	private static final Registration[] NO_REGISTRATIONS = new Registration[0];
+
+	@Inject
+	private EventDispatchService dispatchService;
+
+	@Inject
+	private ThreadLocalizedDbTransactionProviderImpl dbTxProvider;
+
+	/** Registrations by event type (guarded by <code>this</code>) */
+	private final Map<Class<?>, Registration[]> registrations = new HashMap<Class<?>, Registration[]>();
+
+	/** Registrations by listener (guarded by <code>this</code>) */
+	private final Map<IEventListener<?>, List<Registration>> listenerRegistrations = new IdentityHashMap<IEventListener<?>, List<Registration>>();
+
+	/**
+	 * Registrations to notify by event class (reset each time a listener is
+	 * registered or unregistered)
+	 */
+	private volatile Map<Class<?>, Registration[]> dispatchTable = new ConcurrentHashMap<Class<?>, Registration[]>();
 
 	/* (non-Javadoc)
 	 * @see org.activitymgr.ui.web.logic.impl.event.IEventBus#register(java.lang.Class, org.activitymgr.ui.web.logic.impl.event.IEventListener)
 	 */
 	@Override
-	public <EVENT extends AbstractEvent> void register(Class<EVENT> eventType,
-			IEventListener<EVENT> listener) {
-		Collection<IEventListener<?>> eventTypeListeners = listeners
-				.get(eventType);
-		if (eventTypeListeners == null) {
-			eventTypeListeners = new ArrayList<IEventListener<?>>();
-			listeners.put(eventType, eventTypeListeners);
+	public synchronized <EVENT extends AbstractEvent> IRegistration register(
+			Class<EVENT> eventType, IEventListener<EVENT> listener) {
+		Registration registration = new Registration(eventType, listener);
+		Registration[] eventTypeRegistrations = registrations.get(eventType);
+		if (eventTypeRegistrations == null) {
+			eventTypeRegistrations = NO_REGISTRATIONS;
 		}
-		eventTypeListeners.add(listener);
+		eventTypeRegistrations = Arrays.copyOf(eventTypeRegistrations,
+				eventTypeRegistrations.length + 1);
+		eventTypeRegistrations[eventTypeRegistrations.length - 1] = registration;
+		registrations.put(eventType, eventTypeRegistrations);
+		List<Registration> listenerRegs = listenerRegistrations.get(listener);
+		if (listenerRegs == null) {
+			listenerRegs = new ArrayList<Registration>(1);
+			listenerRegistrations.put(listener, listenerRegs);
+		}
+		listenerRegs.add(registration);
+		dispatchTable = new ConcurrentHashMap<Class<?>, Registration[]>();
+		return registration;
 	}
 
 	@Override
-	public void unregister(
+	public synchronized void unregister(
 			IEventListener<? extends AbstractEvent> listener) {
-		for (Collection<IEventListener<?>> listeners : this.listeners.values()) {
-			if (listeners.contains(listener)) {
-				listeners.remove(listener);
+		List<Registration> listenerRegs = listenerRegistrations.get(listener);
+		if (listenerRegs != null) {
+			for (Registration registration : listenerRegs.toArray(
+					new Registration[listenerRegs.size()])) {
+				remove(registration);
 			}
 		}
-		
+	}
+
+	private synchronized void remove(Registration registration) {
+		if (!registration.active) {
+			return;
+		}
+		registration.active = false;
+		Registration[] eventTypeRegistrations = registrations
+				.get(registration.eventType);
+		int idx = Arrays.asList(eventTypeRegistrations).indexOf(registration);
+		if (eventTypeRegistrations.length == 1) {
+			registrations.remove(registration.eventType);
+		} else {
+			Registration[] newRegistrations = new Registration[eventTypeRegistrations.length - 1];
+			System.arraycopy(eventTypeRegistrations, 0, newRegistrations, 0, idx);
+			System.arraycopy(eventTypeRegistrations, idx + 1, newRegistrations,
+					idx, newRegistrations.length - idx);
+			registrations.put(registration.eventType, newRegistrations);
+		}
+		List<Registration> listenerRegs = listenerRegistrations
+				.get(registration.listener);
+		listenerRegs.remove(registration);
+		if (listenerRegs.isEmpty()) {
+			listenerRegistrations.remove(registration.listener);
+		}
+		dispatchTable = new ConcurrentHashMap<Class<?>, Registration[]>();
+	}
+
+	private Registration[] getRegistrations(Class<?> eventClass) {
+		Map<Class<?>, Registration[]> table = dispatchTable;
+		Registration[] result = table.get(eventClass);
+		if (result == null) {
+			synchronized (this) {
+				// The table is only filled with the current registrations
+				table = dispatchTable;
+				result = table.get(eventClass);
+				if (result == null) {
+					List<Registration> list = new ArrayList<Registration>();
+					for (Class<?> c = eventClass; c != null; c = c
+							.getSuperclass()) {
+						Registration[] eventTypeRegistrations = registrations
+								.get(c);
+						if (eventTypeRegistrations != null) {
+							list.addAll(Arrays.asList(eventTypeRegistrations));
+						}
+					}
+					result = list.isEmpty() ? NO_REGISTRATIONS : list
+							.toArray(new Registration[list.size()]);
+					table.put(eventClass, result);
+				}
+			}
+		}
+		return result;
 	}
 
 	/* (non-Javadoc)
 	 * @see org.activitymgr.ui.web.logic.impl.event.IEventBus#fire(org.activitymgr.ui.web.logic.impl.event.Event)
 	 */
-	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
 	public void fire(AbstractEvent event) {
 		if (event != null) {
-			Collection<IEventListener<?>> eventTypeListeners = listeners.get(event
-					.getClass());
-			if (eventTypeListeners != null) {
-				for (IEventListener eventTypeListener : eventTypeListeners) {
-					eventTypeListener.handle(event);
+			for (Registration registration : getRegistrations(event.getClass())) {
+				// The listener may have been unregistered by a previous one
+				if (registration.active) {
+					notify(registration.listener, event);
 				}
 			}
+		}
+	}
+
+	@Override
+	public void fireAsync(final AbstractEvent event) {
+		if (event != null) {
+			final Registration[] eventRegistrations = getRegistrations(event
+					.getClass());
+			if (eventRegistrations.length > 0) {
+				dispatchService.execute(new Runnable() {
+					@Override
+					public void run() {
+						for (Registration registration : eventRegistrations) {
+							if (registration.active) {
+								notifyInTransaction(registration.listener,
+										event);
+							}
+						}
+					}
+				});
+			}
+		}
+	}
 
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void notify(IEventListener listener, AbstractEvent event) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			listener.handle(event);
+			failed = false;
+		} finally {
+			dispatchService.record(listener, System.nanoTime() - start, failed);
 		}
 	}
 
+	private void notifyInTransaction(IEventListener<?> listener,
+			AbstractEvent event) {
+		// The caller may run the dispatch if the executor is saturated
+		boolean ownTransaction = dbTxProvider.get() == null;
+		try {
+			if (ownTransaction) {
+				DbTransactionContext txCtx = dbTxProvider.newCtx();
+				try {
+					notify(listener, event);
+					txCtx.commit();
+				} catch (RuntimeException e) {
+					txCtx.rollback(null);
+					throw e;
+				} finally {
+					dbTxProvider.release();
+				}
+			} else {
+				notify(listener, event);
+			}
+		} catch (Throwable t) {
+			log.error("Event listener " + listener.getClass().getName()
+					+ " failed", t);
+		}
+	}
 
 }
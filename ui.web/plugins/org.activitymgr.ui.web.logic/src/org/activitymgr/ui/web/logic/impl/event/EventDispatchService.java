@@ -0,0 +1,163 @@
+package org.activitymgr.ui.web.logic.impl.event;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.activitymgr.ui.web.logic.IConfiguration;
+import org.activitymgr.ui.web.logic.IEventListener;
+import org.activitymgr.ui.web.logic.impl.internal.Activator;
+import org.apache.log4j.Logger;
+
+import com.google.inject.Inject;
+
+/**
+ * Shared by the event buses of all the sessions : runs the asynchronous
+ * dispatches and records the listeners timings.
+ * 
+ * <p>
+ * Configuration (under <code>activitymgr.events.async</code>) :
+ * <ul>
+ * <li><code>threads</code> : count of dispatch threads (2 by default),</li>
+ * <li><code>queueSize</code> : maximum count of queued dispatches (100 by
+ * default) ; once the queue is full, the dispatches are run by the firing
+ * thread.</li>
+ * </ul>
+ * </p>
+ */
+public class EventDispatchService {
+
+	/**
+	 * Listener timings.
+	 */
+	public static class ListenerStats {
+
+		private final AtomicLong callsCount = new AtomicLong();
+		private final AtomicLong failuresCount = new AtomicLong();
+		private final AtomicLong totalTime = new AtomicLong();
+		private final AtomicLong maxTime = new AtomicLong();
+
+		void record(long nanos, boolean failed) {
+			callsCount.incrementAndGet();
+			if (failed) {
+				failuresCount.incrementAndGet();
+			}
+			totalTime.addAndGet(nanos);
+			long max;
+			while ((max = maxTime.get()) < nanos
+					&& !maxTime.compareAndSet(max, nanos)) {
+				// Retry
+			}
+		}
+
+		public long getCallsCount() {
+			return callsCount.get();
+		}
+
+		public long getFailuresCount() {
+			return failuresCount.get();
+		}
+
+		/**
+		 * @return the total time spent in the listener (in microseconds).
+		 */
+		public long getTotalTime() {
+			return totalTime.get() / 1000;
+		}
+
+		/**
+		 * @return the longest call duration (in microseconds).
+		 */
+		public long getMaxTime() {
+			return maxTime.get() / 1000;
+		}
+
+	}
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(EventDispatchService.class);
+
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicLong callerRunsCount = new AtomicLong();
+
+	/** Timings by listener class name */
+	private final ConcurrentMap<String, ListenerStats> stats = new ConcurrentHashMap<String, ListenerStats>();
+
+	@Inject
+	public EventDispatchService(IConfiguration cfg) {
+		IConfiguration asyncCfg = cfg.getScoped("activitymgr.events.async", null);
+		int threads = asyncCfg.getInt("threads", 2);
+		int queueSize = asyncCfg.getInt("queueSize", 100);
+		executor = new ThreadPoolExecutor(threads, threads, 0,
+				TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+						queueSize), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "event-dispatch-"
+								+ count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				}, new ThreadPoolExecutor.CallerRunsPolicy() {
+					@Override
+					public void rejectedExecution(Runnable r,
+							ThreadPoolExecutor e) {
+						// Back pressure
+						callerRunsCount.incrementAndGet();
+						super.rejectedExecution(r, e);
+					}
+				});
+		Activator.shutdownOnStop(executor, 0);
+		log.info("Asynchronous events : " + threads + " thread(s), "
+				+ queueSize + " queued dispatch(es)");
+	}
+
+	void execute(Runnable dispatch) {
+		executor.execute(dispatch);
+	}
+
+	void record(IEventListener<?> listener, long nanos, boolean failed) {
+		String name = listener.getClass().getName();
+		ListenerStats listenerStats = stats.get(name);
+		if (listenerStats == null) {
+			listenerStats = new ListenerStats();
+			ListenerStats previous = stats.putIfAbsent(name, listenerStats);
+			if (previous != null) {
+				listenerStats = previous;
+			}
+		}
+		listenerStats.record(nanos, failed);
+	}
+
+	/**
+	 * @return the timings by listener class name.
+	 */
+	public Map<String, ListenerStats> getListenerStats() {
+		return stats;
+	}
+
+	/**
+	 * @return the count of queued asynchronous dispatches.
+	 */
+	public int getQueuedCount() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * @return the count of asynchronous dispatches run by the firing thread
+	 *         because the queue was full.
+	 */
+	public long getCallerRunsCount() {
+		return callerRunsCount.get();
+	}
+
+}
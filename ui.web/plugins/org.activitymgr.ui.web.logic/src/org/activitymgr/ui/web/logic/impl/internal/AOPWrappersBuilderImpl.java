@@ -6,12 +6,18 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Savepoint;
+import java.util.List;
 import java.util.Stack;
 
+import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.ui.web.logic.IAOPWrappersBuilder;
+import org.activitymgr.ui.web.logic.IEventBus;
 import org.activitymgr.ui.web.logic.ILogic.IView;
+import org.activitymgr.ui.web.logic.ILogicContext;
 import org.activitymgr.ui.web.logic.IRootLogic;
 import org.activitymgr.ui.web.logic.IUINotificationsBlockingViewWrapper;
+import org.activitymgr.ui.web.logic.impl.event.EntitiesChangedEvent;
+import org.activitymgr.ui.web.logic.impl.event.EntityChange;
 
 import com.google.inject.Inject;
 
@@ -24,6 +30,18 @@ final class AOPWrappersBuilderImpl implements
 	@Inject
 	private ThreadLocalizedDbTransactionProviderImpl dbTxProvider;
 	
+	@Inject
+	private ILogicContext logicContext;
+	
+	@Inject
+	private IEventBus eventBus;
+	
+	@Inject
+	private ChangeFeed changeFeed;
+	
+	@Inject
+	private SessionChangesQueue sessionChangesQueue;
+	
 	private ThreadLocal<Boolean> viewNotificationsDisabled = new ThreadLocal<Boolean>();
 
 	@SuppressWarnings("unchecked")
@@ -83,14 +101,21 @@ final class AOPWrappersBuilderImpl implements
 						else {
 							DbTransactionContext txCtx = dbTxProvider.get();
 							Savepoint sp = null;
+							List<EntityChange> committedChanges = null;
 							try {
 								// Open the transaction if required and push a savepoint
+								// (read-only or unused transactions don't need any)
 								if (txCtx == null) {
 									// Bind TX provider
 									txCtx = dbTxProvider.newCtx();
+									// Register the user (read replica lag guard)
+									Collaborator connected = logicContext.getConnectedCollaborator();
+									if (connected != null) {
+										txCtx.setUser(connected.getId());
+									}
 								}
 								else {
-									sp = txCtx.getTx().setSavepoint();
+									sp = txCtx.setSavepoint();
 								}
 								txCtx.getCalls().push(method);
 
@@ -119,22 +144,25 @@ final class AOPWrappersBuilderImpl implements
 									}
 								}
 	
-								// Commit the transaction (or put a save point)
-								if (txCtx.getCalls().size() > 1) {
-									sp = txCtx.getTx().setSavepoint();
-								}
-								else {
-									txCtx.getTx().commit();
+								// Commit the transaction (read-only transactions
+								// are simply ended when released)
+								if (txCtx.getCalls().size() == 1) {
+									txCtx.commit();
+									if (!txCtx.getChanges().isEmpty()) {
+										// Notify the session (the transaction is still
+										// bound so that the listeners may read the model)
+										committedChanges = txCtx.getChanges();
+										eventBus.fire(new EntitiesChangedEvent(
+												rootLogic, committedChanges, true));
+									}
 								}
 								return result;
 							} catch (InvocationTargetException t) {
-								// Rollback the transaction in case of failure
-								if (txCtx.getCalls().size() > 1) {
-									txCtx.getTx().rollback(sp);
-								}
-								else {
-									txCtx.getTx().rollback();
-								}
+								// Rollback the transaction in case of failure (if
+								// the transaction was still read-only or unused
+								// when the nested call began, there is no savepoint
+								// but nothing was written before)
+								txCtx.rollback(sp);
 								Throwable exception = t.getTargetException();
 								exception.printStackTrace();
 								// Building message
@@ -157,6 +185,11 @@ final class AOPWrappersBuilderImpl implements
 									if (txCtx.getCalls().size() == 0) {
 										// Release the transaction
 										dbTxProvider.release();
+										// Publish the changes to the other sessions
+										if (committedChanges != null) {
+											changeFeed.publish(sessionChangesQueue,
+													committedChanges);
+										}
 									}
 								}
 							}
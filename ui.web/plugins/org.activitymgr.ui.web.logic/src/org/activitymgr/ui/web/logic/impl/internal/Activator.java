@@ -5,6 +5,9 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.activitymgr.core.model.IModelMgr;
 import org.apache.commons.dbcp.BasicDataSource;
@@ -32,6 +35,8 @@ public class Activator implements BundleActivator, ServiceTrackerCustomizer {
 
 	private BasicDataSource datasource;
 
+	private final List<Runnable> stopHooks = new CopyOnWriteArrayList<Runnable>();
+
 	private static Activator singleton = null;
 	
 	public Activator() {
@@ -67,8 +72,57 @@ public class Activator implements BundleActivator, ServiceTrackerCustomizer {
 		return modelMgr;
 	}
 
+	/**
+	 * Registers a task to run when the bundle stops (threads shutdown,
+	 * ...).
+	 * 
+	 * @param hook
+	 *            the task.
+	 */
+	public void addStopHook(Runnable hook) {
+		stopHooks.add(hook);
+	}
+
+	/**
+	 * Registers an executor to shut down when the bundle stops, so that its
+	 * threads don't survive the datasource and the injector they use.
+	 * 
+	 * @param executor
+	 *            the executor.
+	 * @param gracePeriod
+	 *            the delay (ms) given to the submitted tasks to complete ;
+	 *            <code>0</code> to interrupt them at once.
+	 */
+	public static void shutdownOnStop(final ExecutorService executor,
+			final long gracePeriod) {
+		Activator activator = getDefault();
+		if (activator != null) {
+			activator.addStopHook(new Runnable() {
+				@Override
+				public void run() {
+					if (gracePeriod > 0) {
+						executor.shutdown();
+						try {
+							if (executor.awaitTermination(gracePeriod,
+									TimeUnit.MILLISECONDS)) {
+								return;
+							}
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+					executor.shutdownNow();
+				}
+			});
+		}
+	}
+
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		for (Runnable hook : stopHooks) {
+			hook.run();
+		}
+		stopHooks.clear();
 		this.context = null;
 		for (ServiceTracker<?, ?> st : serviceTrackers.values()) {
 			st.close();
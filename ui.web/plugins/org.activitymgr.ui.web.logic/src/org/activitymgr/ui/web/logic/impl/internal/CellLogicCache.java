@@ -0,0 +1,324 @@
+package org.activitymgr.ui.web.logic.impl.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.ui.web.logic.IConfiguration;
+import org.activitymgr.ui.web.logic.ILogic;
+import org.activitymgr.ui.web.logic.ILogicContext;
+import org.apache.log4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.inject.Inject;
+
+/**
+ * Session wide cache of the tables and trees cells logics.
+ *
+ * <p>
+ * The cells logics (and their views) of all the tables of a session share a
+ * single cache, bounded by the session budget (
+ * <code>activitymgr.session.maxCellLogics</code>, 5000 cells by default).
+ * The least recently used logics are evicted and disposed first ; they are
+ * created again if their cell is requested later. Each table uses its own
+ * {@link Region}.
+ * </p>
+ */
+public class CellLogicCache {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(CellLogicCache.class);
+
+	/** Default maximum count of cells logics per session */
+	private static final int DEFAULT_MAX_CELL_LOGICS = 5000;
+
+	/**
+	 * Estimated size of a cell logic, of its wrappers and of its view
+	 * (bytes)
+	 */
+	public static final int ESTIMATED_CELL_LOGIC_SIZE = 2048;
+
+	/**
+	 * Cell logic loader.
+	 *
+	 * @param <ID>
+	 *            the rows identifiers type.
+	 */
+	public interface ICellLogicLoader<ID> {
+
+		/**
+		 * Creates a cell logic.
+		 *
+		 * @param id
+		 *            the row identifier.
+		 * @param propertyId
+		 *            the property (column) identifier.
+		 * @return the cell logic.
+		 * @throws Exception
+		 *             thrown if the logic cannot be created.
+		 */
+		ILogic<?> load(ID id, String propertyId) throws Exception;
+
+	}
+
+	/**
+	 * Cache key.
+	 */
+	private static class Key {
+		private final Region<?> region;
+		private final Object id;
+		private final String propertyId;
+		Key(Region<?> region, Object id, String propertyId) {
+			this.region = region;
+			this.id = id;
+			this.propertyId = propertyId;
+		}
+		@Override
+		public int hashCode() {
+			return (System.identityHashCode(region) * 31 + (id != null ? id.hashCode() : 0)) * 31
+					+ propertyId.hashCode();
+		}
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) obj;
+			return region == key.region
+					&& (id == null ? key.id == null : id.equals(key.id))
+					&& propertyId.equals(key.propertyId);
+		}
+	}
+
+	/**
+	 * Part of the cache dedicated to a table.
+	 *
+	 * @param <ID>
+	 *            the rows identifiers type.
+	 */
+	public class Region<ID> {
+
+		private final String name;
+
+		private final ICellLogicLoader<ID> loader;
+
+		/** Properties of the loaded cells (used to invalidate a row) */
+		private final Set<String> propertyIds = new CopyOnWriteArraySet<String>();
+
+		private Region(String name, ICellLogicLoader<ID> loader) {
+			this.name = name;
+			this.loader = loader;
+		}
+
+		/**
+		 * Returns a cell logic, which is created if it is not in the cache.
+		 *
+		 * @param id
+		 *            the row identifier.
+		 * @param propertyId
+		 *            the property identifier.
+		 * @return the cell logic.
+		 */
+		public ILogic<?> get(final ID id, final String propertyId) {
+			try {
+				return cache.get(new Key(this, id, propertyId), new Callable<ILogic<?>>() {
+					@Override
+					public ILogic<?> call() throws Exception {
+						ILogic<?> logic = loader.load(id, propertyId);
+						propertyIds.add(propertyId);
+						getRegionSize(name).incrementAndGet();
+						createdCount.incrementAndGet();
+						return logic;
+					}
+				});
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * @param id
+		 *            the row identifier.
+		 * @param propertyId
+		 *            the property identifier.
+		 * @return the cell logic or <code>null</code> if it is not in the
+		 *         cache (it has not been requested yet or it has been
+		 *         evicted).
+		 */
+		public ILogic<?> getIfPresent(ID id, String propertyId) {
+			return cache.getIfPresent(new Key(this, id, propertyId));
+		}
+
+		/**
+		 * Removes (and disposes) the cells logics of a row.
+		 *
+		 * @param id
+		 *            the row identifier.
+		 */
+		public void invalidate(ID id) {
+			for (String propertyId : propertyIds) {
+				cache.invalidate(new Key(this, id, propertyId));
+			}
+		}
+
+		/**
+		 * Removes (and disposes) all the cells logics of the region.
+		 */
+		public void invalidateAll() {
+			List<Key> keys = new ArrayList<Key>();
+			for (Key key : cache.asMap().keySet()) {
+				if (key.region == this) {
+					keys.add(key);
+				}
+			}
+			cache.invalidateAll(keys);
+		}
+
+	}
+
+	private final CellLogicCacheRegistry registry;
+
+	private final ILogicContext context;
+
+	private final int maxCellLogics;
+
+	private final Cache<Key, ILogic<?>> cache;
+
+	/** Cells logics count by region name */
+	private final ConcurrentMap<String, AtomicInteger> regionSizes = new ConcurrentHashMap<String, AtomicInteger>();
+
+	private final AtomicLong createdCount = new AtomicLong();
+
+	private final AtomicLong evictionsCount = new AtomicLong();
+
+	@Inject
+	public CellLogicCache(IConfiguration cfg, CellLogicCacheRegistry registry,
+			ILogicContext context) {
+		this.registry = registry;
+		this.context = context;
+		this.maxCellLogics = cfg.getInt("activitymgr.session.maxCellLogics",
+				DEFAULT_MAX_CELL_LOGICS);
+		this.cache = CacheBuilder.newBuilder().maximumSize(maxCellLogics)
+				.removalListener(new RemovalListener<Key, ILogic<?>>() {
+					@Override
+					public void onRemoval(
+							RemovalNotification<Key, ILogic<?>> notification) {
+						cellLogicRemoved(notification);
+					}
+				}).build();
+		registry.register(this);
+	}
+
+	private void cellLogicRemoved(RemovalNotification<Key, ILogic<?>> notification) {
+		getRegionSize(notification.getKey().region.name).decrementAndGet();
+		if (notification.wasEvicted()) {
+			evictionsCount.incrementAndGet();
+		}
+		try {
+			notification.getValue().dispose();
+		} catch (RuntimeException e) {
+			log.error("Cell logic disposal failure", e);
+		}
+	}
+
+	private AtomicInteger getRegionSize(String name) {
+		AtomicInteger size = regionSizes.get(name);
+		if (size == null) {
+			regionSizes.putIfAbsent(name, new AtomicInteger());
+			size = regionSizes.get(name);
+		}
+		return size;
+	}
+
+	/**
+	 * Creates a region.
+	 *
+	 * @param name
+	 *            the region name (used for the diagnostics, several regions
+	 *            may share the same name).
+	 * @param loader
+	 *            the cells logics loader.
+	 * @return the region.
+	 */
+	public <ID> Region<ID> newRegion(String name, ICellLogicLoader<ID> loader) {
+		return new Region<ID>(name, loader);
+	}
+
+	/**
+	 * Disposes all the cells logics (when the session ends).
+	 */
+	public void dispose() {
+		registry.unregister(this);
+		cache.invalidateAll();
+	}
+
+	/**
+	 * @return the login of the session user (<code>null</code> if no user is
+	 *         connected).
+	 */
+	public String getLogin() {
+		Collaborator connected = context.getConnectedCollaborator();
+		return connected != null ? connected.getLogin() : null;
+	}
+
+	/**
+	 * @return the maximum count of cells logics.
+	 */
+	public int getMaxCellLogics() {
+		return maxCellLogics;
+	}
+
+	/**
+	 * @return the count of retained cells logics.
+	 */
+	public long size() {
+		return cache.size();
+	}
+
+	/**
+	 * @return the estimated size of the retained cells logics (bytes).
+	 */
+	public long getEstimatedSize() {
+		return size() * ESTIMATED_CELL_LOGIC_SIZE;
+	}
+
+	/**
+	 * @return the count of retained cells logics by region name.
+	 */
+	public Map<String, Integer> getRegionSizes() {
+		Map<String, Integer> result = new TreeMap<String, Integer>();
+		for (Map.Entry<String, AtomicInteger> entry : regionSizes.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().get());
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * @return the count of created cells logics.
+	 */
+	public long getCreatedCount() {
+		return createdCount.get();
+	}
+
+	/**
+	 * @return the count of cells logics evicted because of the budget.
+	 */
+	public long getEvictionsCount() {
+		return evictionsCount.get();
+	}
+
+}
@@ -0,0 +1,30 @@
+package org.activitymgr.ui.web.logic.impl.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Application level registry of the sessions cells logics caches (used for
+ * diagnostic purpose).
+ */
+public class CellLogicCacheRegistry {
+
+	private final List<CellLogicCache> caches = new CopyOnWriteArrayList<CellLogicCache>();
+
+	void register(CellLogicCache cache) {
+		caches.add(cache);
+	}
+
+	void unregister(CellLogicCache cache) {
+		caches.remove(cache);
+	}
+
+	/**
+	 * @return the caches of the opened sessions.
+	 */
+	public List<CellLogicCache> getCaches() {
+		return new ArrayList<CellLogicCache>(caches);
+	}
+
+}
@@ -0,0 +1,89 @@
+package org.activitymgr.ui.web.logic.impl.internal;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.activitymgr.ui.web.logic.impl.event.EntityChange;
+import org.apache.log4j.Logger;
+
+/**
+ * Application level feed of the committed entity changes, shared by the
+ * sessions.
+ * 
+ * <p>
+ * The changes are published by the transaction wrapper once the
+ * transaction is committed, and delivered to the subscribers of the other
+ * sessions in the publishing thread : the subscribers must only queue them
+ * and return.
+ * </p>
+ */
+public class ChangeFeed {
+
+	/**
+	 * Change feed subscriber.
+	 */
+	public interface ISubscriber {
+
+		/**
+		 * Notifies committed changes.
+		 * 
+		 * @param changes
+		 *            the changes (in commit order).
+		 */
+		void changesCommitted(List<EntityChange> changes);
+
+	}
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(ChangeFeed.class);
+
+	private final List<ISubscriber> subscribers = new CopyOnWriteArrayList<ISubscriber>();
+
+	private final AtomicLong publishedCount = new AtomicLong();
+
+	public void subscribe(ISubscriber subscriber) {
+		subscribers.add(subscriber);
+	}
+
+	public void unsubscribe(ISubscriber subscriber) {
+		subscribers.remove(subscriber);
+	}
+
+	/**
+	 * Publishes committed changes.
+	 * 
+	 * @param origin
+	 *            the subscriber of the session that has made the changes
+	 *            (which is not notified).
+	 * @param changes
+	 *            the changes.
+	 */
+	public void publish(ISubscriber origin, List<EntityChange> changes) {
+		publishedCount.incrementAndGet();
+		for (ISubscriber subscriber : subscribers) {
+			if (subscriber != origin) {
+				try {
+					subscriber.changesCommitted(changes);
+				} catch (RuntimeException e) {
+					log.error("Change feed subscriber failure", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the count of subscribed sessions.
+	 */
+	public int getSubscribersCount() {
+		return subscribers.size();
+	}
+
+	/**
+	 * @return the count of published transactions.
+	 */
+	public long getPublishedCount() {
+		return publishedCount.get();
+	}
+
+}
@@ -0,0 +1,274 @@
+package org.activitymgr.ui.web.logic.impl.internal;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Duration;
+import org.activitymgr.core.dto.IDTOFactory;
+import org.activitymgr.core.dto.ReportCfg;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.misc.ChangeLogEntry;
+import org.activitymgr.core.model.ChangeLogPoller;
+import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.core.model.ModelException;
+import org.activitymgr.ui.web.logic.IConfiguration;
+import org.activitymgr.ui.web.logic.impl.event.EntityChange;
+import org.activitymgr.ui.web.logic.impl.event.EntityChange.Kind;
+import org.apache.log4j.Logger;
+
+import com.google.inject.Inject;
+
+/**
+ * Polls the change log when several servers share the database, so that
+ * the modifications made by the other servers invalidate the local caches
+ * (task indexes, report results, sessions views).
+ *
+ * <p>
+ * Configuration (under <code>activitymgr.changelog</code>) :
+ * <ul>
+ * <li><code>pollInterval</code> : the polling interval (ms) ; <code>0</code>
+ * (the default value) disables the change log, which is useless with a
+ * single server,</li>
+ * <li><code>retention</code> : the delay (ms) after which the entries are
+ * purged (one day by default),</li>
+ * <li><code>gapTimeout</code> : the delay (ms) after which a missing entry is
+ * considered as rolled back (one minute by default).</li>
+ * </ul>
+ * </p>
+ */
+public class ChangeLogPollingService {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(ChangeLogPollingService.class);
+
+	/** Purge period (ms) */
+	private static final long PURGE_PERIOD = 3600000;
+
+	@Inject
+	private IModelMgr modelMgr;
+
+	@Inject
+	private IDTOFactory dtoFactory;
+
+	@Inject
+	private ThreadLocalizedDbTransactionProviderImpl dbTxProvider;
+
+	@Inject
+	private ChangeFeed changeFeed;
+
+	private final ChangeLogPoller poller;
+
+	private final ScheduledExecutorService executor;
+
+	/** Start time (distinguishes the local data generations of two runs) */
+	private final long startTime = System.currentTimeMillis();
+
+	/** Count of committed local transactions */
+	private final AtomicLong commitsCount = new AtomicLong();
+
+	/** Count of committed local transactions read by the last poll */
+	private volatile long polledCommitsCount;
+
+	/** Thread of the running poll (its changes are not local) */
+	private volatile Thread pollingThread;
+
+	@Inject
+	public ChangeLogPollingService(IConfiguration cfg, ChangeLogPoller poller,
+			DatabaseUpgradeService databaseUpgradeService) {
+		this.poller = poller;
+		IConfiguration changeLogCfg = cfg.getScoped("activitymgr.changelog",
+				null);
+		long pollInterval = changeLogCfg.getInt("pollInterval", 0);
+		if (pollInterval <= 0) {
+			executor = null;
+		} else {
+			// The change log table is created by the upgrade : if the tables
+			// are not installed, every model modification would fail
+			if (!databaseUpgradeService.tablesExist()) {
+				throw new IllegalStateException(
+						"The change log cannot be enabled (activitymgr.changelog.pollInterval) as the database tables are not installed");
+			}
+			poller.setLoggingEnabled(true);
+			poller.setGapTimeout(changeLogCfg.getInt("gapTimeout", 60000));
+			poller.addListener(new ChangeLogPoller.IListener() {
+				@Override
+				public void changesApplied(List<ChangeLogEntry> entries) {
+					remoteChangesApplied(entries);
+				}
+			});
+			executor = Executors
+					.newSingleThreadScheduledExecutor(new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "changelog-poller");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			Activator.shutdownOnStop(executor, 0);
+			executor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					poll();
+				}
+			}, 0, pollInterval, TimeUnit.MILLISECONDS);
+			final long retention = changeLogCfg.getInt("retention", 86400000);
+			executor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					purge(retention);
+				}
+			}, PURGE_PERIOD, PURGE_PERIOD, TimeUnit.MILLISECONDS);
+			log.info("Change log polled every " + pollInterval + " ms");
+		}
+	}
+
+	@Inject
+	void subscribe(ChangeFeed changeFeed) {
+		changeFeed.subscribe(new ChangeFeed.ISubscriber() {
+			@Override
+			public void changesCommitted(List<EntityChange> changes) {
+				if (Thread.currentThread() != pollingThread) {
+					commitsCount.incrementAndGet();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Returns the generation of the data, which changes whenever some data
+	 * are modified, and which is the same on every server sharing the
+	 * database once they have polled the change log.
+	 *
+	 * @return the data generation, or <code>null</code> if some local
+	 *         modifications have not been read back from the change log yet.
+	 * @see ChangeLogPoller#getDataGeneration()
+	 */
+	public String getDataGeneration() {
+		if (executor == null) {
+			// Single server
+			return startTime + "-" + commitsCount.get();
+		}
+		if (commitsCount.get() != polledCommitsCount) {
+			return null;
+		}
+		return poller.getDataGeneration();
+	}
+
+	/**
+	 * @return <code>true</code> if the change log is polled.
+	 */
+	public boolean isEnabled() {
+		return executor != null;
+	}
+
+	/**
+	 * @return the change log poller.
+	 */
+	public ChangeLogPoller getPoller() {
+		return poller;
+	}
+
+	void poll() {
+		try {
+			// The local transactions committed so far are in the change log
+			long commits = commitsCount.get();
+			dbTxProvider.newCtx();
+			pollingThread = Thread.currentThread();
+			try {
+				poller.poll();
+				polledCommitsCount = commits;
+			} finally {
+				pollingThread = null;
+				dbTxProvider.release();
+			}
+		} catch (Throwable t) {
+			log.error("Change log poll failure", t);
+		}
+	}
+
+	private void purge(long retention) {
+		try {
+			DbTransactionContext txCtx = dbTxProvider.newCtx();
+			try {
+				dbTxProvider.beginReadWrite();
+				int count = poller.purge(retention);
+				txCtx.commit();
+				log.debug(count + " change log entries purged");
+			} finally {
+				dbTxProvider.release();
+			}
+		} catch (Throwable t) {
+			log.error("Change log purge failure", t);
+		}
+	}
+
+	/**
+	 * Invalidates the caches of the web layer once the core caches have been
+	 * invalidated (invoked by the poller, in its transaction).
+	 *
+	 * @param entries
+	 *            the remote change log entries.
+	 */
+	private void remoteChangesApplied(List<ChangeLogEntry> entries) {
+		// Sessions and report results update
+		List<EntityChange> changes = new ArrayList<EntityChange>();
+		for (ChangeLogEntry entry : entries) {
+			changes.add(toEntityChange(entry));
+		}
+		changeFeed.publish(null, changes);
+	}
+
+	private EntityChange toEntityChange(ChangeLogEntry entry) {
+		Kind kind = Kind.valueOf(entry.getKind().name());
+		String entity = entry.getEntity();
+		if (entity == null) {
+			return new EntityChange(kind, null, null, null, null);
+		}
+		else if (ChangeLogEntry.CONTRIBUTION.equals(entity)) {
+			// The sessions need the contribution itself (the duration is read
+			// again as it is not logged)
+			Contribution contribution = null;
+			Collaborator contributor = modelMgr.getCollaborator(entry.getContributorId());
+			Task task = modelMgr.getTask(entry.getEntityId());
+			int day = entry.getDay();
+			Calendar date = new GregorianCalendar(day / 10000, (day / 100) % 100 - 1, day % 100);
+			if (contributor != null && task != null) {
+				try {
+					Contribution[] contributions = modelMgr.getContributions(contributor, task, date, date);
+					if (contributions.length > 0) {
+						contribution = contributions[0];
+					}
+				} catch (ModelException e) {
+					throw new IllegalStateException(e.getMessage(), e);
+				}
+			}
+			if (contribution == null) {
+				// Removed since
+				kind = Kind.REMOVED;
+				contribution = dtoFactory.newContribution();
+				contribution.setDate(date);
+				contribution.setContributorId(entry.getContributorId());
+				contribution.setTaskId(entry.getEntityId());
+			}
+			return new EntityChange(kind, Contribution.class, null, contribution, null);
+		}
+		else {
+			Class<?> entityType = ChangeLogEntry.TASK.equals(entity) ? Task.class
+					: ChangeLogEntry.COLLABORATOR.equals(entity) ? Collaborator.class
+					: ChangeLogEntry.DURATION.equals(entity) ? Duration.class
+					: ReportCfg.class;
+			return new EntityChange(kind, entityType, entry.getEntityId(), null, null);
+		}
+	}
+
+}
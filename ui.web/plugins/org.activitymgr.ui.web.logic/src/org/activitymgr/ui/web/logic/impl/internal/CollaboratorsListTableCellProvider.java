@@ -2,69 +2,132 @@ package org.activitymgr.ui.web.logic.impl.internal;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
 
 import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.IDTOFactory;
 import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.ui.web.logic.IConfiguration;
 import org.activitymgr.ui.web.logic.ILogic;
 import org.activitymgr.ui.web.logic.ILogic.IView;
 import org.activitymgr.ui.web.logic.ILogicContext;
 import org.activitymgr.ui.web.logic.impl.AbstractLogicImpl;
-import org.activitymgr.ui.web.logic.impl.AbstractSafeTableCellProviderCallback;
+import org.activitymgr.ui.web.logic.impl.AbstractSafePagedTableCellProviderCallback;
 import org.activitymgr.ui.web.logic.spi.ICollaboratorsCellLogicFactory;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.inject.Inject;
 
-class CollaboratorsListTableCellProvider extends AbstractSafeTableCellProviderCallback<Long> {
+/**
+ * Collaborators table provider.
+ *
+ * <p>
+ * The collaborators are loaded by pages (keyset pagination, sorted by the
+ * database) when the view displays them ; only the last used pages are kept,
+ * and the cells logics of the evicted pages are released.
+ * </p>
+ *
+ * <p>
+ * Configuration (under <code>activitymgr.collaborators</code>) :
+ * <ul>
+ * <li><code>pageSize</code> : count of collaborators per page (100 by
+ * default, <code>0</code> loads all the collaborators at once),</li>
+ * <li><code>cachedPages</code> : count of pages kept in memory (10 by
+ * default).</li>
+ * </ul>
+ * </p>
+ */
+class CollaboratorsListTableCellProvider extends AbstractSafePagedTableCellProviderCallback<Long> {
+
+	/** Sort fields by property */
+	private static final Map<String, Integer> SORT_FIELDS = new HashMap<String, Integer>();
+	static {
+		SORT_FIELDS.put(ICollaboratorsCellLogicFactory.IS_ACTIVE_PROPERTY_NAME_ID, Collaborator.IS_ACTIVE_FIELD_IDX);
+		SORT_FIELDS.put(ICollaboratorsCellLogicFactory.LOGIN_PROPERTY_ID, Collaborator.LOGIN_FIELD_IDX);
+		SORT_FIELDS.put(ICollaboratorsCellLogicFactory.FIRST_PROPERTY_NAME_ID, Collaborator.FIRST_NAME_FIELD_IDX);
+		SORT_FIELDS.put(ICollaboratorsCellLogicFactory.LAST_PROPERTY_NAME_ID, Collaborator.LAST_NAME_FIELD_IDX);
+	}
 
 	@Inject
 	private IModelMgr modelMgr;
-	
+
+	@Inject
+	private IDTOFactory dtoFactory;
+
 	@Inject
 	private ICollaboratorsCellLogicFactory cellLogicFactory;
 
 	@Inject
 	private ILogicContext context;
 
+	@Inject
+	private IConfiguration cfg;
+
 	private boolean showInactiveCollaborators;
-	private List<Long> collaboratorIds = new ArrayList<Long>();
-	private Map<Long, Collaborator> collaboratorsMap = new HashMap<Long, Collaborator>();
 	private boolean readOnly;
-	
-	private LoadingCache<Long, LoadingCache<String, ILogic<?>>> cellLogics = CacheBuilder.newBuilder().build(new CacheLoader<Long, LoadingCache<String, ILogic<?>>>() {
+
+	private final int pageSize;
+	private final int cachedPages;
+
+	/** Sort */
+	private int orderByFieldIndex = Collaborator.FIRST_NAME_FIELD_IDX;
+	private boolean ascendantSort = true;
+
+	/** Collaborators count (<code>null</code> if it is not known yet) */
+	private Integer size;
+
+	/** Last used pages (by page number) */
+	private final Map<Integer, List<Long>> pages = new LinkedHashMap<Integer, List<Long>>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
 		@Override
-		public LoadingCache<String, ILogic<?>> load(final Long collaboratorId) throws Exception {
-			return CacheBuilder.newBuilder().build(new CacheLoader<String, ILogic<?>>() {
-				@Override
-				public ILogic<?> load(String propertyId) throws Exception {
-					Collaborator collaborator = collaboratorsMap.get(collaboratorId);
-					return cellLogicFactory.createCellLogic((AbstractLogicImpl<?>) getSource(), context, collaborator, propertyId, readOnly);
-				}
-			});
+		protected boolean removeEldestEntry(Map.Entry<Integer, List<Long>> eldest) {
+			if (size() > cachedPages) {
+				releasePage(eldest.getValue());
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * Last collaborator of each loaded page, which gives the key of the next
+	 * page (kept even if the page is evicted).
+	 */
+	private final List<Collaborator> pagesBounds = new ArrayList<Collaborator>();
+
+	/** Indexes of the loaded collaborators (kept even if the page is evicted) */
+	private final Map<Long, Integer> indexes = new HashMap<Long, Integer>();
+
+	/** Collaborators of the cached pages */
+	private final Map<Long, Collaborator> collaboratorsMap = new HashMap<Long, Collaborator>();
+
+	@Inject
+	private CellLogicCache cellLogicCache;
+
+	private CellLogicCache.Region<Long> cellLogics = cellLogicCache.newRegion("collaborators", new CellLogicCache.ICellLogicLoader<Long>() {
+		@Override
+		public ILogic<?> load(Long collaboratorId, String propertyId) throws Exception {
+			Collaborator collaborator = getCollaborator(collaboratorId);
+			return cellLogicFactory.createCellLogic((AbstractLogicImpl<?>) getSource(), context, collaborator, propertyId, readOnly);
 		}
 	});
-	
+
 	public CollaboratorsListTableCellProvider(AbstractLogicImpl<?> source, boolean showInactiveCollaborators, boolean readOnly) {
 		super(source);
 		this.showInactiveCollaborators = showInactiveCollaborators;
 		this.readOnly = readOnly;
+		IConfiguration collaboratorsCfg = cfg.getScoped("activitymgr.collaborators", null);
+		int pageSize = collaboratorsCfg.getInt("pageSize", 100);
+		this.pageSize = pageSize > 0 ? pageSize : Integer.MAX_VALUE;
+		this.cachedPages = Math.max(1, collaboratorsCfg.getInt("cachedPages", 10));
 	}
 
 	@Override
 	protected IView<?> unsafeGetCell(final Long collaboratorId, String propertyId) {
-		try {
-			return cellLogics.get(collaboratorId).get(propertyId).getView();
-		} catch (ExecutionException e) {
-			throw new IllegalStateException(e);
-		}
+		return cellLogics.get(collaboratorId, propertyId).getView();
 	}
 
 	@Override
@@ -73,34 +136,148 @@ class CollaboratorsListTableCellProvider extends AbstractSafeTableCellProviderCa
 	}
 
 	@Override
-	protected final synchronized List<Long> unsafeGetRootElements() throws Exception {
-		if (collaboratorIds.size() == 0) {
-			Collaborator[] collaborators = showInactiveCollaborators ? modelMgr
-					.getCollaborators(Collaborator.FIRST_NAME_FIELD_IDX, true)
-					: modelMgr.getActiveCollaborators(
-							Collaborator.FIRST_NAME_FIELD_IDX, true);
-			for (Collaborator collaborator : collaborators) {
-				long collaboratorId = collaborator.getId();
-				collaboratorIds.add(collaboratorId);
-				collaboratorsMap.put(collaboratorId, collaborator);
+	protected final synchronized int unsafeSize() {
+		if (size == null) {
+			size = modelMgr.getCollaboratorsCount(!showInactiveCollaborators);
+		}
+		return size;
+	}
+
+	@Override
+	protected final synchronized List<Long> unsafeGetItemIds(int startIndex, int count) {
+		List<Long> result = new ArrayList<Long>();
+		int endIndex = Math.min(startIndex + count, unsafeSize());
+		int index = startIndex;
+		while (index < endIndex) {
+			int pageNumber = index / pageSize;
+			List<Long> page = getPage(pageNumber);
+			int offset = index - pageNumber * pageSize;
+			if (offset >= page.size()) {
+				// Less collaborators than expected (removed meanwhile)
+				break;
 			}
-			// Sort collaborators identifiers
-			Collections.sort(collaboratorIds, new Comparator<Long>() {
-				@Override
-				public int compare(Long collaboratorId1, Long collaboratorId2) {
-					Collaborator collaborator1 = collaboratorsMap.get(collaboratorId1);
-					Collaborator collaborator2 = collaboratorsMap.get(collaboratorId2);
-					return collaborator1.getFirstName().compareTo(collaborator2.getFirstName());
-				}
-			});
+			int pageEnd = Math.min(page.size(), offset + endIndex - index);
+			result.addAll(page.subList(offset, pageEnd));
+			index += pageEnd - offset;
+		}
+		return result;
+	}
+
+	@Override
+	protected final synchronized List<Long> unsafeGetRootElements() {
+		return unsafeGetItemIds(0, unsafeSize());
+	}
+
+	@Override
+	protected final synchronized int unsafeIndexOf(Long collaboratorId) {
+		Integer index = indexes.get(collaboratorId);
+		return index != null ? index : -1;
+	}
+
+	@Override
+	protected final synchronized boolean unsafeContains(Long collaboratorId) {
+		if (indexes.containsKey(collaboratorId)) {
+			return true;
 		}
-		
-		return collaboratorIds;
+		// The collaborator may be in a page that has not been loaded yet
+		Collaborator collaborator = getCollaborator(collaboratorId);
+		return collaborator != null
+				&& (showInactiveCollaborators || collaborator.getIsActive());
 	}
 
 	@Override
-	protected final boolean unsafeContains(Long collaboratorId) {
-		return collaboratorsMap.containsKey(collaboratorId);
+	protected Collection<String> unsafeGetSortablePropertyIds() {
+		List<String> result = new ArrayList<String>();
+		for (String propertyId : unsafeGetPropertyIds()) {
+			if (SORT_FIELDS.containsKey(propertyId)) {
+				result.add(propertyId);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	protected final synchronized void unsafeSort(String propertyId, boolean ascending) {
+		Integer fieldIndex = SORT_FIELDS.get(propertyId);
+		if (fieldIndex == null) {
+			throw new IllegalArgumentException("Unsortable property : " + propertyId);
+		}
+		orderByFieldIndex = fieldIndex;
+		ascendantSort = ascending;
+		reset();
+	}
+
+	/**
+	 * Returns a page, which is loaded if it is not in the cache (the
+	 * previous pages are loaded first if their bounds are not known).
+	 */
+	private List<Long> getPage(int pageNumber) {
+		List<Long> page = pages.get(pageNumber);
+		if (page == null) {
+			for (int i = pagesBounds.size(); i < pageNumber; i++) {
+				if (loadPage(i).size() < pageSize) {
+					// No more collaborators
+					return new ArrayList<Long>();
+				}
+			}
+			page = loadPage(pageNumber);
+		}
+		return page;
+	}
+
+	private List<Long> loadPage(int pageNumber) {
+		Collaborator after = pageNumber > 0 ? pagesBounds.get(pageNumber - 1) : null;
+		Collaborator[] collaborators = modelMgr.getCollaboratorsPage(
+				orderByFieldIndex, ascendantSort, !showInactiveCollaborators,
+				after, pageSize);
+		List<Long> page = new ArrayList<Long>();
+		int index = pageNumber * pageSize;
+		for (Collaborator collaborator : collaborators) {
+			long collaboratorId = collaborator.getId();
+			page.add(collaboratorId);
+			collaboratorsMap.put(collaboratorId, collaborator);
+			indexes.put(collaboratorId, index++);
+		}
+		if (collaborators.length > 0 && pagesBounds.size() == pageNumber) {
+			// The cells may modify the collaborator, the bound is a copy
+			pagesBounds.add(copy(collaborators[collaborators.length - 1]));
+		}
+		pages.put(pageNumber, page);
+		return page;
+	}
+
+	private void releasePage(List<Long> page) {
+		for (Long collaboratorId : page) {
+			collaboratorsMap.remove(collaboratorId);
+			cellLogics.invalidate(collaboratorId);
+		}
+	}
+
+	private synchronized Collaborator getCollaborator(long collaboratorId) {
+		Collaborator collaborator = collaboratorsMap.get(collaboratorId);
+		if (collaborator == null) {
+			collaborator = modelMgr.getCollaborator(collaboratorId);
+		}
+		return collaborator;
+	}
+
+	private Collaborator copy(Collaborator collaborator) {
+		Collaborator copy = dtoFactory.newCollaborator();
+		copy.setId(collaborator.getId());
+		copy.setLogin(collaborator.getLogin());
+		copy.setFirstName(collaborator.getFirstName());
+		copy.setLastName(collaborator.getLastName());
+		copy.setIsActive(collaborator.getIsActive());
+		return copy;
+	}
+
+	private void reset() {
+		size = null;
+		pages.clear();
+		pagesBounds.clear();
+		indexes.clear();
+		collaboratorsMap.clear();
+		cellLogics.invalidateAll();
 	}
 
 	protected boolean isReadOnly() {
@@ -113,8 +290,7 @@ class CollaboratorsListTableCellProvider extends AbstractSafeTableCellProviderCa
 	}
 
 	@Override
-	public void dispose() {
-		collaboratorsMap.clear();
-		cellLogics.invalidateAll();
+	public synchronized void dispose() {
+		reset();
 	}
-}
\ No newline at end of file
+}
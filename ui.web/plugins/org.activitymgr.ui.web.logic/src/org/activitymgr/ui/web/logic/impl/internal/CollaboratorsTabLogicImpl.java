@@ -3,8 +3,8 @@ package org.activitymgr.ui.web.logic.impl.internal;
 import java.util.Set;
 
 import org.activitymgr.ui.web.logic.ICollaboratorsTabLogic;
+import org.activitymgr.ui.web.logic.IPagedTableCellProviderCallback;
 import org.activitymgr.ui.web.logic.ITabFolderLogic;
-import org.activitymgr.ui.web.logic.ITableCellProviderCallback;
 import org.activitymgr.ui.web.logic.impl.AbstractTabLogicImpl;
 import org.activitymgr.ui.web.logic.spi.ITabButtonFactory;
 
@@ -18,7 +18,7 @@ public class CollaboratorsTabLogicImpl extends AbstractTabLogicImpl<ICollaborato
 	public CollaboratorsTabLogicImpl(ITabFolderLogic parent) {
 		super(parent);
 		CollaboratorsListTableCellProvider contentProvider = new CollaboratorsListTableCellProvider(this, true, false);
-		getView().setCollaboratorsProviderCallback(wrapLogicForView(contentProvider, ITableCellProviderCallback.class));
+		getView().setCollaboratorsProviderCallback(wrapLogicForView(contentProvider, IPagedTableCellProviderCallback.class));
 
 		// Add buttons
 		registerButtons(buttonFactories);
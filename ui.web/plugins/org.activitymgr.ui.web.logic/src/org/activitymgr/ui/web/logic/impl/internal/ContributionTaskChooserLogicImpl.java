@@ -3,7 +3,6 @@ package org.activitymgr.ui.web.logic.impl.internal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -12,6 +11,8 @@ import java.util.Set;
 
 import org.activitymgr.core.dto.IDTOFactory;
 import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.misc.RecentTasks;
+import org.activitymgr.core.dto.misc.TaskSuggestions;
 import org.activitymgr.core.model.ModelException;
 import org.activitymgr.ui.web.logic.IConstraintsValidator;
 import org.activitymgr.ui.web.logic.IConstraintsValidator.ErrorStatus;
@@ -28,7 +29,11 @@ public class ContributionTaskChooserLogicImpl extends
 		AbstractTaskChooserLogicImpl<IContributionTaskChooserLogic.View>
 		implements IContributionTaskChooserLogic {
 	
+	private static final int SUGGESTIONS_COUNT = 20;
+
 	private Collection<Long> alreadySelectedTaskIds;
+
+	private Map<Long, String> recentTasksLabelsMap;
 	
 	@Inject
 	private IDTOFactory dtoFactory;
@@ -49,69 +54,55 @@ public class ContributionTaskChooserLogicImpl extends
 
 	public ContributionTaskChooserLogicImpl(AbstractLogicImpl<?> parent,
 			Long taskIdToExpand, Collection<Long> selectedTaskIds,
-			Task[] recentTasks) {
+			RecentTasks recentTasks) {
 		super(parent, taskIdToExpand);
 		// Remember already selected task ids
 		this.alreadySelectedTaskIds = selectedTaskIds;
 		
-		// Retrieve recent tasks labels
-		try {
-			final Map<Long, Task> recentTasksMap = new HashMap<Long, Task>();
-			// Retrieve recent tasks
-			for (Task recentTask : recentTasks) {
-				recentTasksMap.put(recentTask.getId(), recentTask);
-			}
-			// Add selected ID (if missing)
-			for (Long selectedTaskId : alreadySelectedTaskIds) {
-				if (!recentTasksMap.containsKey(selectedTaskId)) {
-					recentTasksMap.put(selectedTaskId,
-							getModelMgr().getTask(selectedTaskId));
-				}
+		// Retrieve recent tasks labels (recent tasks come with their code
+		// path, the most recently used first)
+		recentTasksLabelsMap = new LinkedHashMap<Long, String>();
+		Task[] tasks = recentTasks.getTasks();
+		for (int i = 0; i < tasks.length; i++) {
+			recentTasksLabelsMap.put(tasks[i].getId(), "[" + recentTasks.getTaskCodePaths()[i] + "] " + tasks[i].getName());
+		}
+		// Add selected ID (if missing)
+		List<Long> missingTaskIds = new ArrayList<Long>();
+		for (Long selectedTaskId : alreadySelectedTaskIds) {
+			if (!recentTasksLabelsMap.containsKey(selectedTaskId)) {
+				missingTaskIds.add(selectedTaskId);
 			}
-			// Retrieve task code path
-			final Map<Long, String> tasksCodePathMap = new HashMap<Long, String>();
-			final List<Long> recentTasksIds = new ArrayList<Long>(recentTasksMap.keySet());
-			for (Long taskId : recentTasksIds) {
-				Task task = recentTasksMap.get(taskId);
-				String taskCodePath = getModelMgr().getTaskCodePath(task);
-				tasksCodePathMap.put(taskId, taskCodePath);
+		}
+		if (!missingTaskIds.isEmpty()) {
+			long[] missingTaskIdsArray = new long[missingTaskIds.size()];
+			for (int i = 0; i < missingTaskIdsArray.length; i++) {
+				missingTaskIdsArray[i] = missingTaskIds.get(i);
 			}
-			Collections.sort(recentTasksIds, new Comparator<Long>() {
-				@Override
-				public int compare(Long taskId1, Long taskId2) {
-					Task task1 = recentTasksMap.get(taskId1);
-					Task task2 = recentTasksMap.get(taskId2);
-					String fullPath1 = task1.getFullPath();
-					String fullPath2 = task2.getFullPath();
-					return fullPath1.compareTo(fullPath2);
-				}
-			});
-			Map<Long, String> recentTasksLabelsMap = new LinkedHashMap<Long, String>();
-			for (Long taskId : recentTasksIds) {
-				recentTasksLabelsMap.put(taskId, "[" + tasksCodePathMap.get(taskId) + "] " + recentTasksMap.get(taskId).getName());
+			String[] missingTaskCodePaths = getModelMgr().getTaskCodePaths(missingTaskIdsArray);
+			for (int i = 0; i < missingTaskIdsArray.length; i++) {
+				Task task = getModelMgr().getTask(missingTaskIdsArray[i]);
+				recentTasksLabelsMap.put(task.getId(), "[" + missingTaskCodePaths[i] + "] " + task.getName());
 			}
-			getView().setRecentTasks(recentTasksLabelsMap);
+		}
+		getView().setRecentTasks(recentTasksLabelsMap);
 
-			// Pattern handler list
-			ArrayList<String> taskCreationPatternIds = new ArrayList<String>(taskCreationPatternHandlers.keySet());
-			Collections.sort(taskCreationPatternIds);
-			Map<String, String> taskCreationPatternHandlersLabelsMap = new HashMap<String, String>();
-			for (String patternId : taskCreationPatternIds) {
-				taskCreationPatternHandlersLabelsMap.put(patternId, taskCreationPatternHandlers.get(patternId).getLabel());
-			}
-			getView().setCreationPatterns(taskCreationPatternHandlersLabelsMap);
+		// Pattern handler list
+		ArrayList<String> taskCreationPatternIds = new ArrayList<String>(taskCreationPatternHandlers.keySet());
+		Collections.sort(taskCreationPatternIds);
+		Map<String, String> taskCreationPatternHandlersLabelsMap = new HashMap<String, String>();
+		for (String patternId : taskCreationPatternIds) {
+			taskCreationPatternHandlersLabelsMap.put(patternId, taskCreationPatternHandlers.get(patternId).getLabel());
+		}
+		getView().setCreationPatterns(taskCreationPatternHandlersLabelsMap);
 
-			// Reset button state & status label
-			onSelectionChanged(taskIdToExpand);
-		
-			// Open the window
-			getRoot().getView().openWindow(getView());
+		// Reset button state & status label
+		onSelectionChanged(taskIdToExpand);
 
-			// Update state
-			updateUI();
-		} catch (ModelException e) {
-			throw new IllegalStateException("Unexpected error while retrieving recent tasks", e);
-		}
+		// Open the window
+		getRoot().getView().openWindow(getView());
+
+		// Update state
+		updateUI();
 
 	}
 	
@@ -124,10 +115,29 @@ public class ContributionTaskChooserLogicImpl extends
 		// Register the tree content provider
 		treeContentProvider = new TaskTreeCellProvider(this, filter, true);
 		getView().setTasksTreeProviderCallback(wrapLogicForView(treeContentProvider, ITreeContentProviderCallback.class));
-		if (!"".equals(filter)) {
-			Task task = getModelMgr().getFirstTaskMatching(filter);
-			if (task != null) {
-				getView().expandToTask(task.getId());
+		if ("".equals(filter)) {
+			getView().setRecentTasks(recentTasksLabelsMap);
+		}
+		else {
+			try {
+				// Retrieve the best leaf tasks for the connected collaborator
+				TaskSuggestions suggestions = getModelMgr().getTaskSuggestions(
+						getContext().getConnectedCollaborator(), filter, null,
+						SUGGESTIONS_COUNT);
+				Task[] tasks = suggestions.getTasks();
+				Map<Long, String> suggestionsLabelsMap = new LinkedHashMap<Long, String>();
+				for (int i = 0; i < tasks.length; i++) {
+					suggestionsLabelsMap.put(tasks[i].getId(), "[" + suggestions.getTaskCodePaths()[i] + "] " + tasks[i].getName());
+				}
+				getView().setTaskSuggestions(suggestionsLabelsMap);
+				// Expand to the best suggestion (or to the first matching
+				// container if no leaf task matches)
+				Task task = tasks.length > 0 ? tasks[0] : getModelMgr().getFirstTaskMatching(filter);
+				if (task != null) {
+					getView().expandToTask(task.getId());
+				}
+			} catch (ModelException e) {
+				doThrow(e);
 			}
 		}
 	}
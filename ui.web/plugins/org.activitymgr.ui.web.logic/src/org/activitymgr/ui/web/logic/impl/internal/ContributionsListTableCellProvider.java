@@ -8,16 +8,17 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
 
 import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.IDTOFactory;
 import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.dto.misc.TaskContributions;
 import org.activitymgr.core.model.IModelMgr;
 import org.activitymgr.core.model.ModelException;
 import org.activitymgr.core.util.DateHelper;
 import org.activitymgr.core.util.StringHelper;
+import org.activitymgr.ui.web.logic.IFieldLogic;
 import org.activitymgr.ui.web.logic.ILabelLogic;
 import org.activitymgr.ui.web.logic.ILogic;
 import org.activitymgr.ui.web.logic.ILogic.IView;
@@ -25,15 +26,25 @@ import org.activitymgr.ui.web.logic.ILogicContext;
 import org.activitymgr.ui.web.logic.impl.AbstractContributionTabLogicImpl;
 import org.activitymgr.ui.web.logic.impl.AbstractLogicImpl;
 import org.activitymgr.ui.web.logic.impl.AbstractSafeTableCellProviderCallback;
+import org.activitymgr.ui.web.logic.impl.ContributionsTotals;
+import org.activitymgr.ui.web.logic.impl.ContributionsWriteBuffer;
+import org.activitymgr.ui.web.logic.impl.event.EntityChange;
+import org.activitymgr.ui.web.logic.impl.event.EntityChange.Kind;
 import org.activitymgr.ui.web.logic.spi.IContributionsCellLogicFactory;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.cache.RemovalListener;
-import com.google.common.cache.RemovalNotification;
 import com.google.inject.Inject;
 
+/**
+ * Provides the rows of the contributions table : the contributions of a
+ * contributor during a week, one row per task.
+ * 
+ * <p>
+ * Unlike the collaborators tables (see
+ * {@link CollaboratorsListTableCellProvider}), the rows are not loaded by
+ * pages : they are bounded by the tasks the contributor contributed to
+ * during the week, and they are all required to compute the week totals.
+ * </p>
+ */
 class ContributionsListTableCellProvider extends AbstractSafeTableCellProviderCallback<Long> {
 	
 	@Inject
@@ -45,9 +56,19 @@ class ContributionsListTableCellProvider extends AbstractSafeTableCellProviderCa
 	@Inject
 	private ILogicContext context;
 
+	@Inject
+	private IDTOFactory dtoFactory;
+
+	@Inject
+	private WeekContributionsCache weekContributionsCache;
+
+	@Inject
+	private ContributionsWriteBuffer writeBuffer;
+
 	private Map<Long, TaskContributions> contributionsMap = new HashMap<Long, TaskContributions>();
 	private List<Long> taskIds = new ArrayList<Long>();
 	private Collection<Long> unmodifiableTaskIds = Collections.unmodifiableCollection(taskIds);
+	private ContributionsTotals totals = new ContributionsTotals();
 	private Calendar firstDayOfWeek;
 	private Collaborator contributor;
 
@@ -56,29 +77,13 @@ class ContributionsListTableCellProvider extends AbstractSafeTableCellProviderCa
 		this.contributor = getContext().getConnectedCollaborator();
 	}
 
-	private LoadingCache<Long, LoadingCache<String, ILogic<?>>> cellLogics = CacheBuilder.newBuilder().removalListener(new RemovalListener<Long, LoadingCache<String, ILogic<?>>>() {
-		@Override
-		public void onRemoval(
-				RemovalNotification<Long, LoadingCache<String, ILogic<?>>> notification) {
-			LoadingCache<String, ILogic<?>> nestedCache = notification.getValue();
-			nestedCache.invalidateAll();
-		}
-	}).build(new CacheLoader<Long, LoadingCache<String, ILogic<?>>>() {
+	@Inject
+	private CellLogicCache cellLogicCache;
+
+	private CellLogicCache.Region<Long> cellLogics = cellLogicCache.newRegion("contributions", new CellLogicCache.ICellLogicLoader<Long>() {
 		@Override
-		public LoadingCache<String, ILogic<?>> load(final Long taskId) throws Exception {
-			return CacheBuilder.newBuilder().removalListener(new RemovalListener<String, ILogic<?>>() {
-				@Override
-				public void onRemoval(
-						RemovalNotification<String, ILogic<?>> notification) {
-					ILogic<?> value = notification.getValue();
-					value.dispose();
-				}
-			}).build(new CacheLoader<String, ILogic<?>>() {
-				@Override
-				public ILogic<?> load(String propertyId) throws Exception {
-					return cellLogicFactory.createCellLogic((AbstractLogicImpl<?>) getSource(), context, contributor, firstDayOfWeek, contributionsMap.get(taskId), propertyId);
-				}
-			});
+		public ILogic<?> load(Long taskId, String propertyId) throws Exception {
+			return cellLogicFactory.createCellLogic((AbstractLogicImpl<?>) getSource(), context, contributor, firstDayOfWeek, contributionsMap.get(taskId), totals, writeBuffer, propertyId);
 		}
 	});
 	
@@ -121,57 +126,159 @@ class ContributionsListTableCellProvider extends AbstractSafeTableCellProviderCa
 		loadContributions();
 	}
 	
-	protected void updateTaskTotals() {
-		for (long taskId : taskIds) {
-			updateTaskTotal(taskId);
-		}
-	}
-	
 	protected void updateTaskTotal(long taskId) {
-		ILogic<?> cellLogic = getCellLogic(taskId, IContributionsCellLogicFactory.TOTAL_COLUMN_ID);
+		// The cells that are not in the cache compute the total when they
+		// are created
+		ILogic<?> cellLogic = cellLogics.getIfPresent(taskId, IContributionsCellLogicFactory.TOTAL_COLUMN_ID);
 		if (cellLogic != null && cellLogic instanceof ILabelLogic) {
-			TaskContributions weekContributions = contributionsMap.get(taskId);
-			long total = 0;
-			for (Contribution c : weekContributions.getContributions()) {
-				if (c != null) {
-					total += c.getDurationId();
+			((ILabelLogic) cellLogic).getView().setLabel(StringHelper.hundredthToEntry(totals.getTaskTotal(taskId)));
+		}
+	}
+
+	protected void addEmptyWeekContributions(long... newTaskIds) throws ModelException {
+		// Code paths are resolved at once
+		String[] taskCodePaths = modelMgr.getTaskCodePaths(newTaskIds);
+		for (int i = 0; i < newTaskIds.length; i++) {
+			long taskId = newTaskIds[i];
+			Task task = modelMgr.getTask(taskId);
+			TaskContributions weekContribution = cellLogicFactory.newTaskContributions();
+			weekContribution.setContributions(new Contribution[7]);
+			weekContribution.setTask(task);
+			weekContribution.setTaskCodePath(taskCodePaths[i]);
+			taskIds.add(taskId);
+			contributionsMap.put(taskId, weekContribution);
+			
+			// Corner case : if the parent task of the given task is present in the current
+			// selection (which is possible if this parent task was a leaf task just before)
+			// the cell logic cache must be invalidated to let the corresponding cell become
+			// read-only 
+			Task parentTask = modelMgr.getParentTask(task);
+			if (parentTask != null && contributionsMap.containsKey(parentTask.getId())) {
+				cellLogics.invalidate(parentTask.getId());
+			}
+		}
+		// Resort the contributions (once for all the tasks)
+		sortWeekContributions();
+	}
+
+	/**
+	 * Applies the changes committed by another session : the modified
+	 * contributions of the displayed week are updated in place, and the
+	 * rows of the modified tasks are rebuilt.
+	 * 
+	 * @param changes
+	 *            the changes.
+	 * @return <code>true</code> if rows have been added or rebuilt (the
+	 *         table items must be reloaded).
+	 * @throws ModelException
+	 *             thrown if a model violation occurs.
+	 */
+	protected boolean applyChanges(List<EntityChange> changes) throws ModelException {
+		// The pending modifications are written first (they fail if they
+		// conflict with the changes)
+		writeBuffer.flush();
+		boolean rowsChanged = false;
+		for (EntityChange change : changes) {
+			if (change.getEntityType() == null) {
+				// Any contribution may have changed
+				loadContributions();
+				return true;
+			}
+			else if (change.concerns(Contribution.class)) {
+				rowsChanged |= applyContributionChange(change.getKind(),
+						(Contribution) change.getEntity());
+			}
+			else if (change.concerns(Task.class)
+					&& contributionsMap.containsKey(change.getId())) {
+				long taskId = (Long) change.getId();
+				if (change.getKind() == Kind.REMOVED) {
+					// The contributions have been removed too
+					loadContributions();
+					return true;
 				}
+				TaskContributions tc = contributionsMap.get(taskId);
+				tc.setTask(modelMgr.getTask(taskId));
+				tc.setTaskCodePath(modelMgr.getTaskCodePaths(new long[] { taskId })[0]);
+				cellLogics.invalidate(taskId);
+				rowsChanged = true;
 			}
-			((ILabelLogic) cellLogic).getView().setLabel(StringHelper.hundredthToEntry(total));
 		}
+		if (rowsChanged) {
+			sortWeekContributions();
+		}
+		return rowsChanged;
 	}
 
-	protected void addEmptyWeekContribution(long taskId) throws ModelException {
-		Task task = modelMgr.getTask(taskId);
-		TaskContributions weekContribution = cellLogicFactory.newTaskContributions();
-		weekContribution.setContributions(new Contribution[7]);
-		weekContribution.setTask(task);
-		weekContribution.setTaskCodePath(modelMgr.getTaskCodePath(task));
-		// Insert the task at the right place
-		taskIds.add(taskId);
-		contributionsMap.put(taskId, weekContribution);
-		// Resort the contributions
-		sortWeekContributions();
-		
-		// Corner case : if the parent task of the given task is present in the current
-		// selection (which is possible if this parent task was a leaf task just before)
-		// the cell logic cache must be invalidated to let the corresponding cell become
-		// read-only 
-		Task parentTask = modelMgr.getParentTask(task);
-		if (parentTask != null && taskIds.contains(parentTask.getId())) {
-			cellLogics.invalidate(parentTask.getId());
+	@SuppressWarnings("unchecked")
+	private boolean applyContributionChange(Kind kind, Contribution contribution) throws ModelException {
+		if (contributor == null || contribution.getContributorId() != contributor.getId()) {
+			return false;
 		}
+		Calendar cursor = (Calendar) firstDayOfWeek.clone();
+		int dayOfWeek = -1;
+		for (int i = 0; i < 7; i++) {
+			if (cursor.get(Calendar.YEAR) == contribution.getYear()
+					&& cursor.get(Calendar.MONTH) + 1 == contribution.getMonth()
+					&& cursor.get(Calendar.DATE) == contribution.getDay()) {
+				dayOfWeek = i;
+				break;
+			}
+			cursor.add(Calendar.DATE, 1);
+		}
+		if (dayOfWeek < 0) {
+			return false;
+		}
+		long taskId = contribution.getTaskId();
+		boolean rowAdded = false;
+		TaskContributions tc = contributionsMap.get(taskId);
+		if (tc == null) {
+			if (kind == Kind.REMOVED) {
+				return false;
+			}
+			addEmptyWeekContributions(taskId);
+			tc = contributionsMap.get(taskId);
+			rowAdded = true;
+		}
+		// The shared entity is copied (the cells modify their contributions)
+		Contribution copy = null;
+		if (kind != Kind.REMOVED) {
+			copy = dtoFactory.newContribution();
+			copy.setDate(contribution.getDate());
+			copy.setContributorId(contribution.getContributorId());
+			copy.setTaskId(taskId);
+			copy.setDurationId(contribution.getDurationId());
+		}
+		Contribution old = tc.getContributions()[dayOfWeek];
+		tc.getContributions()[dayOfWeek] = copy;
+		totals.update(taskId, dayOfWeek, old != null ? old.getDurationId() : 0,
+				copy != null ? copy.getDurationId() : 0);
+
+		// Update the cells if they have already been created
+		ILogic<?> cellLogic = cellLogics.getIfPresent(taskId, IContributionsCellLogicFactory.DAY_COLUMNS_IDENTIFIERS.get(dayOfWeek));
+		if (cellLogic instanceof IFieldLogic) {
+			((IFieldLogic<String, ?>) cellLogic).getView().setValue(
+					copy != null ? StringHelper.hundredthToEntry(copy.getDurationId()) : "");
+		}
+		updateTaskTotal(taskId);
+		return rowAdded;
 	}
 
-	
 	private void loadContributions() throws ModelException {
+		// The pending modifications must be written before the rows are
+		// discarded
+		writeBuffer.flush();
 		taskIds.clear();
 		contributionsMap.clear();
 		cellLogics.invalidateAll();
+		totals.reset(contributionsMap.values());
 
 		if (contributor != null) {
 			cellLogicFactory.loadDurations();
-			List<TaskContributions> weekContributions = cellLogicFactory.loadContributions(contributor, firstDayOfWeek);
+			// The week may have been prefetched
+			List<TaskContributions> weekContributions = weekContributionsCache.take(contributor, firstDayOfWeek);
+			if (weekContributions == null) {
+				weekContributions = cellLogicFactory.loadContributions(contributor, firstDayOfWeek);
+			}
 			for (TaskContributions tc : weekContributions) {
 				long taskId = tc.getTask().getId();
 				// Populate cache
@@ -182,8 +289,8 @@ class ContributionsListTableCellProvider extends AbstractSafeTableCellProviderCa
 			// Sort the tasks
 			sortWeekContributions();
 			
-			// Update task totals
-			updateTaskTotals();
+			// Compute the totals (the cells are created afterwards)
+			totals.reset(weekContributions);
 		}
 	}
 
@@ -199,6 +306,31 @@ class ContributionsListTableCellProvider extends AbstractSafeTableCellProviderCa
 		});
 	}
 
+	/**
+	 * Loads the previous and the next weeks in background.
+	 */
+	protected void prefetchAdjacentWeeks() {
+		weekContributionsCache.prefetchAdjacentWeeks(contributor, firstDayOfWeek);
+	}
+
+	/**
+	 * Discards the prefetched weeks if they are concerned by some changes.
+	 * 
+	 * @param changes
+	 *            the changes.
+	 * @return <code>true</code> if the prefetched weeks have been discarded.
+	 */
+	protected boolean invalidatePrefetchedWeeks(List<EntityChange> changes) {
+		return weekContributionsCache.invalidate(changes);
+	}
+
+	/**
+	 * Discards the prefetched weeks.
+	 */
+	protected void invalidatePrefetchedWeeks() {
+		weekContributionsCache.invalidate();
+	}
+
 	public Calendar getFirstDayOfWeek() {
 		return firstDayOfWeek;
 	}
@@ -220,25 +352,10 @@ class ContributionsListTableCellProvider extends AbstractSafeTableCellProviderCa
 	protected String unsafeGetFooter(String propertyId) {
 		int dayIdx = IContributionsCellLogicFactory.DAY_COLUMNS_IDENTIFIERS.indexOf(propertyId);
 		if (dayIdx >= 0) {
-			long total = 0;
-			for (TaskContributions tc : contributionsMap.values()) {
-				Contribution contribution = tc.getContributions()[dayIdx];
-				if (contribution != null) {
-					total += contribution.getDurationId();
-				}
-			}
-			return StringHelper.hundredthToEntry(total);
+			return StringHelper.hundredthToEntry(totals.getDayTotal(dayIdx));
 		}
 		else if (IContributionsCellLogicFactory.TOTAL_COLUMN_ID.equals(propertyId)) {
-			long total = 0;
-			for (TaskContributions tc : contributionsMap.values()) {
-				for (Contribution contribution : tc.getContributions()) {
-					if (contribution != null) {
-						total += contribution.getDurationId();
-					}
-				}
-			}
-			return StringHelper.hundredthToEntry(total);
+			return StringHelper.hundredthToEntry(totals.getTotal());
 		}
 		else {
 			return null;
@@ -247,17 +364,15 @@ class ContributionsListTableCellProvider extends AbstractSafeTableCellProviderCa
 
 	@Deprecated
 	private ILogic<?> getCellLogic(long taskId, String propertyId) {
-		try {
-			return cellLogics.get(taskId).get(propertyId);
-		} catch (ExecutionException e) {
-			throw new IllegalStateException(e);
-		}
+		return cellLogics.get(taskId, propertyId);
 	}
 
 	@Override
 	public void dispose() {
 		contributionsMap.clear();
 		taskIds.clear();;
+		totals.reset(contributionsMap.values());
+		cellLogics.invalidateAll();
 	}
 
 }
\ No newline at end of file
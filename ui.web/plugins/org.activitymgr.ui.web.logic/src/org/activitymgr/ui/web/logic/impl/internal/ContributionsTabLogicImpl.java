@@ -12,11 +12,13 @@ import org.activitymgr.core.model.ModelException;
 import org.activitymgr.ui.web.logic.IContributionsTabLogic;
 import org.activitymgr.ui.web.logic.IEventListener;
 import org.activitymgr.ui.web.logic.ITabFolderLogic;
+import org.activitymgr.ui.web.logic.IPagedTableCellProviderCallback;
 import org.activitymgr.ui.web.logic.ITableCellProviderCallback;
 import org.activitymgr.ui.web.logic.ITextFieldLogic;
 import org.activitymgr.ui.web.logic.impl.AbstractContributionTabLogicImpl;
 import org.activitymgr.ui.web.logic.impl.event.ContributionChangeEvent;
 import org.activitymgr.ui.web.logic.impl.event.ContributionsTabWeekChangedEvent;
+import org.activitymgr.ui.web.logic.impl.event.EntitiesChangedEvent;
 import org.activitymgr.ui.web.logic.spi.ICollaboratorsCellLogicFactory;
 import org.activitymgr.ui.web.logic.spi.IContributionsCellLogicFactory;
 import org.activitymgr.ui.web.logic.spi.ITabButtonFactory;
@@ -60,7 +62,7 @@ public class ContributionsTabLogicImpl extends AbstractContributionTabLogicImpl
 				return 100;
 			}
 		};
-		getView().setCollaboratorsProvider(wrapLogicForView(collaboratorsProvider, ITableCellProviderCallback.class));
+		getView().setCollaboratorsProvider(wrapLogicForView(collaboratorsProvider, IPagedTableCellProviderCallback.class));
 		getView().selectCollaborator(contributionsProvider.getContributor().getId());
 		
 		// Set the date in the view
@@ -69,6 +71,33 @@ public class ContributionsTabLogicImpl extends AbstractContributionTabLogicImpl
 		// Register the contribution change event
 		getEventBus().register(ContributionChangeEvent.class, this);
 
+		// Register the changes made by the other sessions (the local ones
+		// are already displayed by the cells)
+		getEventBus().register(EntitiesChangedEvent.class, new IEventListener<EntitiesChangedEvent>() {
+			@Override
+			public void handle(EntitiesChangedEvent event) {
+				// The prefetched weeks may be stale
+				boolean prefetchedWeeksInvalidated = contributionsProvider
+						.invalidatePrefetchedWeeks(event.getChanges());
+				if (!event.isLocal()) {
+					try {
+						if (contributionsProvider.applyChanges(event.getChanges())) {
+							getView().reloadContributionTableItems();
+						}
+						else {
+							getView().reloadContributionTableFooter();
+						}
+					}
+					catch (ModelException e) {
+						doThrow(e);
+					}
+				}
+				if (prefetchedWeeksInvalidated) {
+					contributionsProvider.prefetchAdjacentWeeks();
+				}
+			}
+		});
+
 		// Add buttons
 		registerButtons(buttonFactories);
 		
@@ -145,6 +174,9 @@ public class ContributionsTabLogicImpl extends AbstractContributionTabLogicImpl
 
 		getView().reloadContributionTableItems();
 		fireCollabratorOrWeekChangedEvent();
+
+		// The user is likely to browse the surrounding weeks
+		contributionsProvider.prefetchAdjacentWeeks();
 	}
 
 	private void fireCollabratorOrWeekChangedEvent() {
@@ -166,11 +198,16 @@ public class ContributionsTabLogicImpl extends AbstractContributionTabLogicImpl
 		try {
 			if (taskIds.length > 0) {
 				lastSelectedTaskId = taskIds[0];
+				long[] newTaskIds = new long[taskIds.length];
+				int count = 0;
 				for (long taskId : taskIds) {
-					if (!contributionsProvider.getTaskIds().contains(taskId)) {
-						contributionsProvider.addEmptyWeekContribution(taskId);
+					if (!contributionsProvider.contains(taskId)) {
+						newTaskIds[count++] = taskId;
 					}
 				}
+				if (count > 0) {
+					contributionsProvider.addEmptyWeekContributions(Arrays.copyOf(newTaskIds, count));
+				}
 				getView().reloadContributionTableItems();
 				for (String propertyId : contributionsProvider.getPropertyIds()) {
 					org.activitymgr.ui.web.logic.ILogic.IView<?> cell = contributionsProvider.getCell(taskIds[0], propertyId);
@@ -197,6 +234,7 @@ public class ContributionsTabLogicImpl extends AbstractContributionTabLogicImpl
 			contributionsProvider.changeContributor(getModelMgr().getCollaborator(collaboratorId));
 			getView().reloadContributionTableItems();
 			fireCollabratorOrWeekChangedEvent();
+			contributionsProvider.prefetchAdjacentWeeks();
 		}
 		catch (ModelException e) {
 			doThrow(e);
@@ -205,6 +243,9 @@ public class ContributionsTabLogicImpl extends AbstractContributionTabLogicImpl
 
 	@Override
 	public void handle(ContributionChangeEvent event) {
+		// The prefetched weeks are loaded again once the change is committed
+		// (see EntitiesChangedEvent)
+		contributionsProvider.invalidatePrefetchedWeeks();
 		contributionsProvider.updateTaskTotal(event.getTaskId());
 		getView().reloadContributionTableFooter();
 	}
@@ -0,0 +1,141 @@
+package org.activitymgr.ui.web.logic.impl.internal;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.activitymgr.ui.web.logic.IConfiguration;
+import org.activitymgr.ui.web.logic.impl.ContributionsWriteBuffer;
+import org.apache.log4j.Logger;
+
+import com.google.inject.Inject;
+
+/**
+ * Shared by the sessions contributions write buffers : schedules their
+ * flushes and records their metrics.
+ *
+ * <p>
+ * Configuration (under <code>activitymgr.contributions.writeBehind</code>) :
+ * <ul>
+ * <li><code>window</code> : the delay (ms) during which the modifications of
+ * the contributions cells are coalesced before being written ; <code>0</code>
+ * (the default value) disables the write buffer, each modification being
+ * written at once.</li>
+ * </ul>
+ * </p>
+ *
+ * @see ContributionsWriteBuffer
+ */
+public class ContributionsWriteBehindService {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(ContributionsWriteBehindService.class);
+
+	/** Delay (ms) given to a flush to complete when the bundle stops */
+	private static final long FLUSH_TIMEOUT = 10000;
+
+	private final long window;
+
+	private final ScheduledExecutorService executor;
+
+	/** Metrics */
+	private final AtomicLong editsCount = new AtomicLong();
+	private final AtomicLong flushesCount = new AtomicLong();
+	private final AtomicLong writtenCount = new AtomicLong();
+	private final AtomicLong failuresCount = new AtomicLong();
+
+	@Inject
+	public ContributionsWriteBehindService(IConfiguration cfg) {
+		IConfiguration writeBehindCfg = cfg.getScoped(
+				"activitymgr.contributions.writeBehind", null);
+		window = writeBehindCfg.getInt("window", 0);
+		if (window <= 0) {
+			executor = null;
+		} else {
+			executor = Executors
+					.newSingleThreadScheduledExecutor(new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "contributions-write-behind");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			// The pending flushes are written before the datasource is closed
+			Activator.shutdownOnStop(executor, window + FLUSH_TIMEOUT);
+			log.info("Contributions modifications coalesced during " + window + " ms");
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the contributions modifications are
+	 *         buffered.
+	 */
+	public boolean isEnabled() {
+		return executor != null;
+	}
+
+	/**
+	 * Schedules a flush request at the end of the coalescing window.
+	 *
+	 * @param flushRequest
+	 *            the flush request (invoked outside of the user interface
+	 *            thread).
+	 * @return the scheduled request.
+	 */
+	public ScheduledFuture<?> schedule(Runnable flushRequest) {
+		return executor.schedule(flushRequest, window, TimeUnit.MILLISECONDS);
+	}
+
+	public void recordEdit() {
+		editsCount.incrementAndGet();
+	}
+
+	public void recordFlush(int writtenContributions) {
+		flushesCount.incrementAndGet();
+		writtenCount.addAndGet(writtenContributions);
+	}
+
+	public void recordFailure() {
+		failuresCount.incrementAndGet();
+	}
+
+	/**
+	 * @return the coalescing window (ms).
+	 */
+	public long getWindow() {
+		return window;
+	}
+
+	/**
+	 * @return the count of buffered cells modifications.
+	 */
+	public long getEditsCount() {
+		return editsCount.get();
+	}
+
+	/**
+	 * @return the count of flushes (that is of transactions).
+	 */
+	public long getFlushesCount() {
+		return flushesCount.get();
+	}
+
+	/**
+	 * @return the count of written contributions.
+	 */
+	public long getWrittenCount() {
+		return writtenCount.get();
+	}
+
+	/**
+	 * @return the count of modifications that couldn't be written.
+	 */
+	public long getFailuresCount() {
+		return failuresCount.get();
+	}
+
+}
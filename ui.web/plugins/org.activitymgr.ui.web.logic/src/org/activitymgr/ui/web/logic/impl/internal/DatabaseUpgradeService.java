@@ -0,0 +1,59 @@
+package org.activitymgr.ui.web.logic.impl.internal;
+
+import java.sql.SQLException;
+
+import org.activitymgr.core.model.IModelMgr;
+import org.apache.log4j.Logger;
+
+import com.google.inject.Inject;
+
+/**
+ * Upgrades the database tables created by a previous version of the
+ * application (missing columns and tables) when the server starts, as the
+ * rich client does when it connects to the database.
+ *
+ * <p>
+ * The services that access the database at startup (change log polling,
+ * ...) depend on this service, so that the tables are upgraded first.
+ * </p>
+ */
+public class DatabaseUpgradeService {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(DatabaseUpgradeService.class);
+
+	/** Tells whether the tables exist */
+	private final boolean tablesExist;
+
+	@Inject
+	public DatabaseUpgradeService(IModelMgr modelMgr,
+			ThreadLocalizedDbTransactionProviderImpl dbTxProvider) {
+		try {
+			DbTransactionContext txCtx = dbTxProvider.newCtx();
+			try {
+				tablesExist = modelMgr.tablesExist();
+				if (tablesExist) {
+					modelMgr.upgradeTables();
+					txCtx.commit();
+				} else {
+					log.error("The database tables are not installed");
+				}
+			} catch (RuntimeException e) {
+				txCtx.rollback(null);
+				throw e;
+			} finally {
+				dbTxProvider.release();
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException("Database upgrade failed", e);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the tables exist (and have been upgraded).
+	 */
+	public boolean tablesExist() {
+		return tablesExist;
+	}
+
+}
@@ -2,24 +2,250 @@ package org.activitymgr.ui.web.logic.impl.internal;
 
 import java.lang.reflect.Method;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 
+import javax.sql.DataSource;
+
+import org.activitymgr.core.model.TransactionSynchronizer;
+import org.activitymgr.ui.web.logic.impl.event.EntityChange;
+
 public class DbTransactionContext {
 	
+	private DataSource ds;
+	
+	/** Read replica datasource (<code>null</code> if none is configured) */
+	private DataSource replicaDs;
+	
+	/** Task indexes transactions synchronizer */
+	private TransactionSynchronizer synchronizer;
+	
+	/**
+	 * The connection, borrowed from the pool on first use only (many calls
+	 * never access the database).
+	 */
 	private Connection tx;
 	
+	/** Tells whether the connection must be borrowed from the replica */
+	private boolean onReplica;
+	
+	/** The user key (used by the replica lag guard) */
+	private Object user;
+	
 	private Stack<Method> calls = new Stack<Method>();
 	
-	public DbTransactionContext(Connection con) {
-		tx = con;
+	/**
+	 * Tells whether the transaction is read-only (it becomes read-write when
+	 * a model manager method that is not read-only is invoked).
+	 */
+	private boolean readOnly = true;
+	
+	/** The entities modified by the transaction */
+	private List<EntityChange> changes = new ArrayList<EntityChange>();
+	
+	/** Count of changes recorded when each savepoint was set */
+	private Map<Savepoint, Integer> changeMarks = new IdentityHashMap<Savepoint, Integer>();
+	
+	/** Task indexes savepoints */
+	private Map<Savepoint, Object> indexMarks = new IdentityHashMap<Savepoint, Object>();
+	
+	public DbTransactionContext(DataSource ds, DataSource replicaDs,
+			TransactionSynchronizer synchronizer) {
+		this.ds = ds;
+		this.replicaDs = replicaDs;
+		this.synchronizer = synchronizer;
 	}
 	
-	public Connection getTx() {
+	/**
+	 * Returns the transaction connection, borrowing it from the pool if it
+	 * has not been used yet.
+	 * 
+	 * @return the connection.
+	 * @throws SQLException
+	 *             thrown if the connection cannot be retrieved.
+	 */
+	public Connection getTx() throws SQLException {
+		if (tx == null) {
+			Connection con = onReplica ? replicaDs.getConnection() : ds
+					.getConnection();
+			try {
+				con.setReadOnly(readOnly);
+			} catch (SQLException e) {
+				con.close();
+				throw e;
+			}
+			tx = con;
+		}
 		return tx;
 	}
 	
+	/**
+	 * @return <code>true</code> if the connection has been borrowed.
+	 */
+	public boolean hasTx() {
+		return tx != null;
+	}
+	
+	/**
+	 * Routes the next database accesses to the replica or to the primary
+	 * database. If the connection in use doesn't come from the requested
+	 * database, it is released (this is only possible for a read-only
+	 * transaction).
+	 * 
+	 * @param replica
+	 *            <code>true</code> to use the replica (ignored if no replica
+	 *            is configured).
+	 * @throws SQLException
+	 *             thrown if a JDBC error occurs.
+	 */
+	void route(boolean replica) throws SQLException {
+		replica = replica && replicaDs != null;
+		if (replica != onReplica) {
+			if (tx != null) {
+				if (!readOnly) {
+					throw new IllegalStateException("A read-write transaction cannot be routed to another database");
+				}
+				close();
+			}
+			onReplica = replica;
+			synchronizer.replica(replica);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the next database accesses are routed to
+	 *         the replica.
+	 */
+	public boolean isOnReplica() {
+		return onReplica;
+	}
+
+	/**
+	 * Releases the connection (if it has been borrowed). A read-only
+	 * transaction is ended (which releases its snapshot) and its connection
+	 * given back to the pool in its default mode.
+	 * 
+	 * @throws SQLException
+	 *             thrown if a JDBC error occurs.
+	 */
+	void close() throws SQLException {
+		if (tx != null) {
+			Connection con = tx;
+			tx = null;
+			try {
+				if (readOnly) {
+					con.rollback();
+					con.setReadOnly(false);
+				}
+			}
+			finally {
+				con.close();
+			}
+		}
+	}
+
+	public Object getUser() {
+		return user;
+	}
+
+	public void setUser(Object user) {
+		this.user = user;
+	}
+
 	public Stack<Method> getCalls() {
 		return calls;
 	}
 
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	void setReadOnly(boolean readOnly) {
+		this.readOnly = readOnly;
+		if (!readOnly) {
+			synchronizer.readWrite();
+		}
+	}
+
+	/**
+	 * Sets a savepoint (the savepoints are useless if the connection has not
+	 * been used yet, or if the transaction is read-only).
+	 * 
+	 * @return the savepoint or <code>null</code> if none is required.
+	 * @throws SQLException
+	 *             thrown if a JDBC error occurs.
+	 */
+	public Savepoint setSavepoint() throws SQLException {
+		if (tx != null && !readOnly) {
+			Savepoint sp = tx.setSavepoint();
+			changeMarks.put(sp, changes.size());
+			indexMarks.put(sp, synchronizer.setSavepoint());
+			return sp;
+		}
+		return null;
+	}
+
+	/**
+	 * Records an entity change (published once the transaction is
+	 * committed).
+	 * 
+	 * @param change
+	 *            the change.
+	 */
+	public void addChange(EntityChange change) {
+		changes.add(change);
+	}
+
+	/**
+	 * @return the entities modified by the transaction.
+	 */
+	public List<EntityChange> getChanges() {
+		return changes;
+	}
+
+	/**
+	 * Commits the transaction (nothing to do if the connection has not been
+	 * used or if the transaction is read-only), and shares its task indexes
+	 * modifications.
+	 * 
+	 * @throws SQLException
+	 *             thrown if a JDBC error occurs.
+	 */
+	public void commit() throws SQLException {
+		if (tx != null && !readOnly) {
+			tx.commit();
+			synchronizer.commit();
+		}
+	}
+
+	/**
+	 * Rollbacks the transaction (nothing to do if the connection has not
+	 * been used or if the transaction is read-only).
+	 * 
+	 * @param sp
+	 *            the savepoint to rollback to, <code>null</code> to rollback
+	 *            the whole transaction.
+	 * @throws SQLException
+	 *             thrown if a JDBC error occurs.
+	 */
+	public void rollback(Savepoint sp) throws SQLException {
+		if (tx != null && !readOnly) {
+			if (sp != null) {
+				tx.rollback(sp);
+			}
+			else {
+				tx.rollback();
+			}
+		}
+		// Forget the rolled back changes
+		Integer mark = sp != null ? changeMarks.remove(sp) : null;
+		changes.subList(mark != null ? mark : 0, changes.size()).clear();
+		synchronizer.rollback(sp != null ? indexMarks.remove(sp) : null);
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,202 @@
+package org.activitymgr.ui.web.logic.impl.internal;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Duration;
+import org.activitymgr.core.dto.ReportCfg;
+import org.activitymgr.core.dto.SimpleIdentityBean;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.ui.web.logic.impl.event.EntityChange;
+import org.activitymgr.ui.web.logic.impl.event.EntityChange.Kind;
+
+/**
+ * Translates the model manager modification calls into entity changes.
+ * 
+ * <p>
+ * The modification kind is given by the method name (<code>create*</code>,
+ * <code>update*</code>, <code>remove*</code>, the other ones like
+ * <code>move*</code> being considered as updates), the entities by the
+ * DTOs found in the result and in the arguments. The modified fields are
+ * computed for the tasks and the collaborators updates (by comparison with
+ * the database state before the update). The contributions whose duration
+ * is null in a batch update are removed ones.
+ * </p>
+ */
+class EntityChangesRecorder {
+
+	private static final Class<?>[] ENTITY_TYPES = new Class<?>[] {
+			Task.class, Contribution.class, Collaborator.class,
+			Duration.class, ReportCfg.class };
+
+	private final IModelMgr wrapped;
+
+	EntityChangesRecorder(IModelMgr wrapped) {
+		this.wrapped = wrapped;
+	}
+
+	/**
+	 * Returns the state of the entity modified by a method before its
+	 * invocation.
+	 * 
+	 * @param method
+	 *            the invoked method.
+	 * @param args
+	 *            the arguments.
+	 * @return the entity state (<code>null</code> if the modified fields
+	 *         are not computed for this method).
+	 */
+	Object getPreImage(Method method, Object[] args) {
+		if (method.getName().equals("updateTask") && args[0] != null) {
+			return wrapped.getTask(((Task) args[0]).getId());
+		} else if (method.getName().equals("updateCollaborator")
+				&& args[0] != null) {
+			return wrapped.getCollaborator(((Collaborator) args[0]).getId());
+		}
+		return null;
+	}
+
+	/**
+	 * Builds the changes corresponding to a modification method invocation.
+	 * 
+	 * @param method
+	 *            the invoked method.
+	 * @param args
+	 *            the arguments.
+	 * @param result
+	 *            the invocation result.
+	 * @param preImage
+	 *            the state of the modified entity before the invocation.
+	 * @return the changes.
+	 */
+	List<EntityChange> getChanges(Method method, Object[] args,
+			Object result, Object preImage) {
+		String name = method.getName();
+		Kind kind = name.startsWith("create") ? Kind.CREATED : name
+				.startsWith("remove") ? Kind.REMOVED : Kind.UPDATED;
+		// Collect the DTOs (the result first, as it holds the generated
+		// identifiers)
+		Map<Object, Object> entities = new IdentityHashMap<Object, Object>();
+		List<Object> ordered = new ArrayList<Object>();
+		collect(result, entities, ordered);
+		if (args != null) {
+			for (Object arg : args) {
+				collect(arg, entities, ordered);
+			}
+		}
+		List<EntityChange> changes = new ArrayList<EntityChange>();
+		if (ordered.isEmpty()) {
+			if (name.startsWith("import")) {
+				// Any entity may have been modified
+				changes.add(new EntityChange(Kind.UPDATED, null, null, null,
+						null));
+			}
+		} else {
+			for (Object entity : ordered) {
+				String[] changedFields = null;
+				if (preImage != null && preImage.getClass().equals(entity.getClass())) {
+					changedFields = diff(preImage, entity);
+				}
+				Kind entityKind = kind;
+				if (entity instanceof Contribution
+						&& ((Contribution) entity).getDurationId() == 0) {
+					// See IModelMgr#updateContributions()
+					entityKind = Kind.REMOVED;
+				}
+				changes.add(new EntityChange(entityKind, entityType(entity),
+						id(entity), copy(entity), changedFields));
+			}
+		}
+		return changes;
+	}
+
+	private static void collect(Object value, Map<Object, Object> entities,
+			List<Object> ordered) {
+		if (value instanceof Object[]) {
+			for (Object item : (Object[]) value) {
+				collect(item, entities, ordered);
+			}
+		} else if (value != null && entityType(value) != null
+				&& !entities.containsKey(value)) {
+			entities.put(value, value);
+			ordered.add(value);
+		}
+	}
+
+	private static Class<?> entityType(Object value) {
+		for (Class<?> type : ENTITY_TYPES) {
+			if (type.isInstance(value)) {
+				return type;
+			}
+		}
+		return null;
+	}
+
+	private static Object id(Object entity) {
+		if (entity instanceof SimpleIdentityBean) {
+			return ((SimpleIdentityBean) entity).getId();
+		} else if (entity instanceof Duration) {
+			return ((Duration) entity).getId();
+		}
+		return null;
+	}
+
+	private static List<Field> fields(Class<?> type) {
+		List<Field> fields = new ArrayList<Field>();
+		for (Class<?> c = type; c != null && c != Object.class; c = c
+				.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (!Modifier.isStatic(field.getModifiers())) {
+					field.setAccessible(true);
+					fields.add(field);
+				}
+			}
+		}
+		return fields;
+	}
+
+	private static String[] diff(Object before, Object after) {
+		try {
+			List<String> changed = new ArrayList<String>();
+			for (Field field : fields(after.getClass())) {
+				Object v1 = field.get(before);
+				Object v2 = field.get(after);
+				if (v1 == null ? v2 != null : !v1.equals(v2)) {
+					changed.add(field.getName());
+				}
+			}
+			return changed.toArray(new String[changed.size()]);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Copies a DTO (the sessions that receive the change must not share
+	 * the instance used by the session that has made it).
+	 */
+	private static Object copy(Object entity) {
+		try {
+			Constructor<?> constructor = entity.getClass()
+					.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			Object copy = constructor.newInstance();
+			for (Field field : fields(entity.getClass())) {
+				field.set(copy, field.get(entity));
+			}
+			return copy;
+		} catch (Exception e) {
+			throw new IllegalStateException("Couldn't copy " + entity, e);
+		}
+	}
+
+}
@@ -0,0 +1,99 @@
+package org.activitymgr.ui.web.logic.impl.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.core.model.ReadOnly;
+import org.activitymgr.ui.web.logic.impl.event.EntityChange;
+
+import com.google.inject.Provider;
+
+/**
+ * Provides a model manager wrapper that switches the current transaction to
+ * read-write mode before the invocation of the methods that are not
+ * {@link ReadOnly}, and routes the read-only calls to the primary database or
+ * to the read replica.
+ * 
+ * <p>
+ * The entities modified by the other methods are recorded in the current
+ * transaction context (see {@link EntityChangesRecorder}).
+ * </p>
+ */
+public class ModelMgrWrapperProvider implements Provider<IModelMgr> {
+
+	private Provider<IModelMgr> modelMgrProvider;
+
+	private ThreadLocalizedDbTransactionProviderImpl dbTxProvider;
+
+	private IModelMgr wrapper;
+
+	public ModelMgrWrapperProvider(Provider<IModelMgr> modelMgrProvider,
+			ThreadLocalizedDbTransactionProviderImpl dbTxProvider) {
+		this.modelMgrProvider = modelMgrProvider;
+		this.dbTxProvider = dbTxProvider;
+	}
+
+	@Override
+	public synchronized IModelMgr get() {
+		if (wrapper == null) {
+			final IModelMgr wrapped = modelMgrProvider.get();
+			final EntityChangesRecorder recorder = new EntityChangesRecorder(wrapped);
+			wrapper = (IModelMgr) Proxy.newProxyInstance(
+					IModelMgr.class.getClassLoader(),
+					new Class<?>[] { IModelMgr.class }, new InvocationHandler() {
+						@Override
+						public Object invoke(Object proxy, Method method,
+								Object[] args) throws Throwable {
+							Object preImage = null;
+							boolean modification = false;
+							if (!method.getDeclaringClass().equals(Object.class)) {
+								if (!method.isAnnotationPresent(ReadOnly.class)) {
+									DbTransactionContext txCtx = dbTxProvider.get();
+									if (txCtx != null && txCtx.isReadOnly()) {
+										// A read-write transaction doesn't load the
+										// shared task tree (it may see uncommitted
+										// tasks) : it is loaded first if required
+										dbTxProvider.route(false);
+										wrapped.getTaskCodePaths(new long[0]);
+									}
+									dbTxProvider.beginReadWrite();
+									modification = true;
+									preImage = recorder.getPreImage(method, args);
+								}
+								else {
+									boolean replica = dbTxProvider.useReplica(method);
+									if (replica) {
+										// The shared task tree must not be loaded from
+										// the replica (it would miss the latest changes
+										// until its next reload) : it is loaded from the
+										// primary database first if required (no database
+										// access otherwise)
+										dbTxProvider.route(false);
+										wrapped.getTaskCodePaths(new long[0]);
+									}
+									dbTxProvider.route(replica);
+								}
+							}
+							try {
+								Object result = method.invoke(wrapped, args);
+								DbTransactionContext txCtx = dbTxProvider.get();
+								if (modification && txCtx != null) {
+									for (EntityChange change : recorder.getChanges(
+											method, args, result, preImage)) {
+										txCtx.addChange(change);
+									}
+								}
+								return result;
+							} catch (InvocationTargetException e) {
+								throw e.getTargetException();
+							}
+						}
+					});
+		}
+		return wrapper;
+	}
+
+}
@@ -1,9 +1,7 @@
 package org.activitymgr.ui.web.logic.impl.internal;
 
-import java.util.Calendar;
-
 import org.activitymgr.core.dto.Collaborator;
-import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.misc.RecentTasks;
 import org.activitymgr.ui.web.logic.IContributionsTabLogic;
 import org.activitymgr.ui.web.logic.impl.AbstractContributionTabLogicImpl;
 import org.activitymgr.ui.web.logic.impl.AbstractSafeContributionTabStandardButtonLogicImpl;
@@ -14,6 +12,8 @@ import com.google.inject.Inject;
 
 public class NewContributionTaskButtonLogic extends AbstractSafeContributionTabStandardButtonLogicImpl {
 	
+	private static final int RECENT_TASKS_COUNT = 20;
+
 	@Inject
 	private IFeatureAccessManager featureAccessManager;
 
@@ -27,14 +27,9 @@ public class NewContributionTaskButtonLogic extends AbstractSafeContributionTabS
 		AbstractContributionTabLogicImpl contributionTabLogic = (AbstractContributionTabLogicImpl) getParent();
 		Collaborator contributor = contributionTabLogic.getContributor();
 
-		// Retrieve recent tasks labels
-		Calendar monday = contributionTabLogic.getFirstDayOfWeek();
-		Calendar from = (Calendar) monday.clone();
-		from.add(Calendar.DATE, -7);
-		Calendar to = (Calendar) monday.clone();
-		to.add(Calendar.DATE, 6);
-		Task[] recentTasks = getModelMgr().getContributedTasks(contributor,
-				from, to);
+		// Retrieve recent tasks
+		RecentTasks recentTasks = getModelMgr().getRecentTasks(contributor,
+				RECENT_TASKS_COUNT);
 
 		new ContributionTaskChooserLogicImpl(contributionTabLogic,
 				contributionTabLogic.getLastSelectedTaskId(),
@@ -0,0 +1,183 @@
+package org.activitymgr.ui.web.logic.impl.internal;
+
+import java.io.File;
+import java.util.Calendar;
+
+import org.activitymgr.core.dto.report.ReportIntervalType;
+import org.activitymgr.core.model.IReportProgressMonitor;
+
+/**
+ * A report generated in background.
+ * 
+ * @see ReportJobsManager
+ */
+public class ReportJob implements IReportProgressMonitor {
+
+	public static enum Status {
+		QUEUED, RUNNING, DONE, FAILED
+	}
+
+	/**
+	 * Step of a running job.
+	 */
+	public static enum Phase {
+		QUERYING, PROCESSING_ROWS, WRITING
+	}
+
+	private final String id;
+
+	private final long ownerId;
+
+	private final String name;
+
+	private final long submissionDate = System.currentTimeMillis();
+
+	/* Report parameters */
+	final Calendar start;
+	final ReportIntervalType intervalType;
+	final Integer intervalCount;
+	final Long rootTaskId;
+	final int taskDepth;
+	final boolean onlyKeepTasksWithContributions;
+	final boolean byContributor;
+	final boolean contributorCentricMode;
+	final long[] contributorIds;
+	final String[] columnIds;
+	final boolean includeTotals;
+
+	private volatile Status status = Status.QUEUED;
+
+	private volatile Phase phase;
+
+	private volatile int processedRows;
+
+	private volatile int totalRows;
+
+	private volatile String errorMessage;
+
+	private volatile File file;
+
+	private volatile long completionDate;
+
+	ReportJob(String id, long ownerId, String name, Calendar start,
+			ReportIntervalType intervalType, Integer intervalCount,
+			Long rootTaskId, int taskDepth,
+			boolean onlyKeepTasksWithContributions, boolean byContributor,
+			boolean contributorCentricMode, long[] contributorIds,
+			String[] columnIds, boolean includeTotals) {
+		this.id = id;
+		this.ownerId = ownerId;
+		this.name = name;
+		this.start = start;
+		this.intervalType = intervalType;
+		this.intervalCount = intervalCount;
+		this.rootTaskId = rootTaskId;
+		this.taskDepth = taskDepth;
+		this.onlyKeepTasksWithContributions = onlyKeepTasksWithContributions;
+		this.byContributor = byContributor;
+		this.contributorCentricMode = contributorCentricMode;
+		this.contributorIds = contributorIds;
+		this.columnIds = columnIds;
+		this.includeTotals = includeTotals;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.model.IReportProgressMonitor#queryStarted()
+	 */
+	@Override
+	public void queryStarted() {
+		phase = Phase.QUERYING;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.core.model.IReportProgressMonitor#rowsProcessed(int, int)
+	 */
+	@Override
+	public void rowsProcessed(int processed, int total) {
+		totalRows = total;
+		processedRows = processed;
+		phase = Phase.PROCESSING_ROWS;
+	}
+
+	void writing() {
+		phase = Phase.WRITING;
+	}
+
+	void running() {
+		status = Status.RUNNING;
+	}
+
+	void done(File file) {
+		this.file = file;
+		completionDate = System.currentTimeMillis();
+		status = Status.DONE;
+	}
+
+	void failed(String errorMessage) {
+		this.errorMessage = errorMessage;
+		completionDate = System.currentTimeMillis();
+		status = Status.FAILED;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public long getOwnerId() {
+		return ownerId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getSubmissionDate() {
+		return submissionDate;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return the step of the job (<code>null</code> if it is not running).
+	 */
+	public Phase getPhase() {
+		return status == Status.RUNNING ? phase : null;
+	}
+
+	/**
+	 * @return <code>true</code> if the job is queued or running.
+	 */
+	public boolean isPending() {
+		Status status = this.status;
+		return status == Status.QUEUED || status == Status.RUNNING;
+	}
+
+	/**
+	 * @return the progress percentage (0 if the row count is not known yet).
+	 */
+	public int getProgress() {
+		int total = totalRows;
+		return total > 0 ? (int) (processedRows * 100L / total) : 0;
+	}
+
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+
+	/**
+	 * @return the generated file (<code>null</code> if the job is not done).
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the completion date (0 if the job is pending).
+	 */
+	public long getCompletionDate() {
+		return completionDate;
+	}
+
+}
@@ -0,0 +1,332 @@
+package org.activitymgr.ui.web.logic.impl.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.activitymgr.core.dto.report.ReportIntervalType;
+import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.core.model.ModelException;
+import org.activitymgr.ui.web.logic.IConfiguration;
+import org.activitymgr.ui.web.logic.impl.internal.services.ReportBulkhead;
+import org.apache.log4j.Logger;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import com.google.inject.Inject;
+
+/**
+ * Generates the reports in background.
+ * 
+ * <p>
+ * The jobs are run by a bounded executor, each one in its own transaction
+ * (and through the reports bulkhead). The generated files are stored in a
+ * temporary directory and removed with their job once their time to live
+ * expires.
+ * </p>
+ * 
+ * <p>
+ * Configuration (under <code>activitymgr.reports.jobs</code>) :
+ * <ul>
+ * <li><code>threads</code> : count of jobs run concurrently (2 by default),</li>
+ * <li><code>queueSize</code> : maximum count of queued jobs (20 by default),</li>
+ * <li><code>ttl</code> : time to live of the finished jobs in minutes (60 by
+ * default),</li>
+ * <li><code>dir</code> : the directory of the generated files (a temporary
+ * directory by default), only the <code>am-report-*.xls</code> files are
+ * removed from it on startup.</li>
+ * </ul>
+ * </p>
+ */
+public class ReportJobsManager {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(ReportJobsManager.class);
+
+	/** Generated files name prefix and suffix */
+	private static final String FILE_PREFIX = "am-report-";
+	private static final String FILE_SUFFIX = ".xls";
+
+	@Inject
+	private IModelMgr modelMgr;
+
+	@Inject
+	private ThreadLocalizedDbTransactionProviderImpl dbTxProvider;
+
+	@Inject
+	private ReportBulkhead bulkhead;
+
+	private final File dir;
+
+	private final long ttl;
+
+	private final ThreadPoolExecutor executor;
+
+	private final ScheduledExecutorService purger;
+
+	private final Map<String, ReportJob> jobs = new ConcurrentHashMap<String, ReportJob>();
+
+	@Inject
+	public ReportJobsManager(IConfiguration cfg) {
+		IConfiguration jobsCfg = cfg.getScoped("activitymgr.reports.jobs", null);
+		int threads = jobsCfg.getInt("threads", 2);
+		int queueSize = jobsCfg.getInt("queueSize", 20);
+		ttl = jobsCfg.getInt("ttl", 60) * 60000L;
+		dir = new File(jobsCfg.get("dir",
+				new File(System.getProperty("java.io.tmpdir"),
+						"activitymgr-reports").getAbsolutePath()));
+		if (!dir.exists() && !dir.mkdirs()) {
+			throw new IllegalStateException("Couldn't create directory " + dir);
+		}
+		// Files left by a previous run are orphans (the directory may be
+		// shared with other files)
+		File[] files = dir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith(FILE_PREFIX)
+						&& name.endsWith(FILE_SUFFIX);
+			}
+		});
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		executor = new ThreadPoolExecutor(threads, threads, 0,
+				TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+						queueSize), new DaemonThreadFactory("report-job"),
+				new RejectedExecutionHandler() {
+					@Override
+					public void rejectedExecution(Runnable r,
+							ThreadPoolExecutor executor) {
+						throw new RejectedExecutionException(
+								"Too many reports are being generated, retry later");
+					}
+				});
+		purger = Executors
+				.newSingleThreadScheduledExecutor(new DaemonThreadFactory(
+						"report-job-purge"));
+		purger.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				purgeExpiredJobs();
+			}
+		}, 1, 1, TimeUnit.MINUTES);
+		log.info("Report jobs : " + threads + " thread(s), " + queueSize
+				+ " queued job(s), files stored in " + dir);
+
+		// The threads must not survive the bundle
+		Activator activator = Activator.getDefault();
+		if (activator != null) {
+			activator.addStopHook(new Runnable() {
+				@Override
+				public void run() {
+					shutdown();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Stops the jobs threads (the running jobs are interrupted) and removes
+	 * the generated files.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+		purger.shutdownNow();
+		for (ReportJob job : jobs.values()) {
+			deleteFile(job);
+		}
+		jobs.clear();
+	}
+
+	/**
+	 * Submits a report job.
+	 * 
+	 * @param ownerId
+	 *            the identifier of the collaborator that submits the job.
+	 * @param name
+	 *            the report name.
+	 * @see IModelMgr#buildReport(Calendar, ReportIntervalType, Integer, Long,
+	 *      int, boolean, boolean, boolean, long[], String[], boolean, boolean)
+	 * @return the job.
+	 * @throws RejectedExecutionException
+	 *             thrown if the jobs queue is full.
+	 */
+	public ReportJob submit(long ownerId, String name, Calendar start,
+			ReportIntervalType intervalType, Integer intervalCount,
+			Long rootTaskId, int taskDepth,
+			boolean onlyKeepTasksWithContributions, boolean byContributor,
+			boolean contributorCentricMode, long[] contributorIds,
+			String[] columnIds, boolean includeTotals) {
+		final ReportJob job = new ReportJob(UUID.randomUUID().toString(),
+				ownerId, name, start, intervalType, intervalCount,
+				rootTaskId, taskDepth, onlyKeepTasksWithContributions,
+				byContributor, contributorCentricMode, contributorIds,
+				columnIds, includeTotals);
+		jobs.put(job.getId(), job);
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					runJob(job);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			jobs.remove(job.getId());
+			throw e;
+		}
+		return job;
+	}
+
+	private void runJob(ReportJob job) {
+		File file = null;
+		try {
+			dbTxProvider.newCtx().setUser(job.getOwnerId());
+			try {
+				bulkhead.acquireForJob();
+				try {
+					job.running();
+					Workbook report = modelMgr.buildReport(job.start,
+							job.intervalType, job.intervalCount,
+							job.rootTaskId, job.taskDepth,
+							job.onlyKeepTasksWithContributions,
+							job.byContributor, job.contributorCentricMode,
+							job.contributorIds, job.columnIds,
+							job.includeTotals, job);
+					job.writing();
+					file = File.createTempFile(FILE_PREFIX, FILE_SUFFIX, dir);
+					OutputStream out = new FileOutputStream(file);
+					try {
+						report.write(out);
+					} finally {
+						out.close();
+					}
+					job.done(file);
+				} finally {
+					bulkhead.release();
+				}
+			} finally {
+				dbTxProvider.release();
+			}
+		} catch (Throwable t) {
+			if (t instanceof ModelException) {
+				// Invalid report parameters
+				log.warn("Report job " + job.getId() + " failed : "
+						+ t.getMessage());
+			} else {
+				log.error("Report job " + job.getId() + " failed", t);
+			}
+			if (file != null) {
+				file.delete();
+			}
+			job.failed(t.getMessage() != null ? t.getMessage() : t
+					.getClass().getSimpleName());
+		}
+	}
+
+	/**
+	 * @param id
+	 *            the job identifier.
+	 * @return the job or <code>null</code> if it doesn't exist (or has
+	 *         expired).
+	 */
+	public ReportJob getJob(String id) {
+		return jobs.get(id);
+	}
+
+	/**
+	 * @param ownerId
+	 *            the collaborator identifier.
+	 * @return the jobs of a collaborator, the most recent first.
+	 */
+	public List<ReportJob> getJobs(long ownerId) {
+		List<ReportJob> result = new ArrayList<ReportJob>();
+		for (ReportJob job : jobs.values()) {
+			if (job.getOwnerId() == ownerId) {
+				result.add(job);
+			}
+		}
+		Collections.sort(result, new Comparator<ReportJob>() {
+			@Override
+			public int compare(ReportJob o1, ReportJob o2) {
+				long d1 = o1.getSubmissionDate();
+				long d2 = o2.getSubmissionDate();
+				return d1 > d2 ? -1 : (d1 < d2 ? 1 : 0);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * @return the count of queued jobs.
+	 */
+	public int getQueuedCount() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * @return the count of running jobs.
+	 */
+	public int getRunningCount() {
+		return executor.getActiveCount();
+	}
+
+	void purgeExpiredJobs() {
+		long now = System.currentTimeMillis();
+		Iterator<ReportJob> it = jobs.values().iterator();
+		while (it.hasNext()) {
+			ReportJob job = it.next();
+			if (!job.isPending() && job.getCompletionDate() + ttl < now) {
+				it.remove();
+				deleteFile(job);
+			}
+		}
+	}
+
+	private static void deleteFile(ReportJob job) {
+		File file = job.getFile();
+		if (file != null && !file.delete()) {
+			log.warn("Couldn't delete " + file);
+		}
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+
+		private final String prefix;
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		DaemonThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, prefix + "-"
+					+ count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
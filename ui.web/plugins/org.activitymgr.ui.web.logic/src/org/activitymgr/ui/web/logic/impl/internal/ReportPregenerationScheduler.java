@@ -0,0 +1,230 @@
+package org.activitymgr.ui.web.logic.impl.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.activitymgr.core.dto.ReportCfg;
+import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.ui.web.logic.IConfiguration;
+import org.activitymgr.ui.web.logic.impl.internal.services.ReportBulkhead;
+import org.apache.log4j.Logger;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import com.google.inject.Inject;
+
+/**
+ * Regenerates selected saved report configurations at off-peak times, so
+ * that the reports opened by many users are served from the
+ * {@link ReportResultStore}.
+ * 
+ * <p>
+ * Configuration (under <code>activitymgr.reports.pregeneration</code>) :
+ * <ul>
+ * <li><code>reportCfgIds</code> : comma separated identifiers of the report
+ * configurations to pre-generate (none by default, which disables the
+ * scheduler),</li>
+ * <li><code>times</code> : comma separated times of the day (HH:mm) of the
+ * pre-generations (05:00 by default).</li>
+ * </ul>
+ * </p>
+ */
+public class ReportPregenerationScheduler {
+
+	/** Logger */
+	private static Logger log = Logger
+			.getLogger(ReportPregenerationScheduler.class);
+
+	@Inject
+	private IModelMgr modelMgr;
+
+	@Inject
+	private ThreadLocalizedDbTransactionProviderImpl dbTxProvider;
+
+	@Inject
+	private ReportBulkhead bulkhead;
+
+	@Inject
+	private ReportResultStore resultStore;
+
+	private final long[] reportCfgIds;
+
+	private final ScheduledExecutorService executor;
+
+	@Inject
+	public ReportPregenerationScheduler(IConfiguration cfg) {
+		IConfiguration pregenerationCfg = cfg.getScoped(
+				"activitymgr.reports.pregeneration", null);
+		reportCfgIds = parseIds(pregenerationCfg.get("reportCfgIds", ""));
+		if (reportCfgIds.length == 0) {
+			executor = null;
+		} else {
+			executor = Executors
+					.newSingleThreadScheduledExecutor(new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r,
+									"report-pregeneration");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			Activator.shutdownOnStop(executor, 0);
+			for (String time : pregenerationCfg.get("times", "05:00").split(
+					",")) {
+				time = time.trim();
+				int[] hourAndMinute = parseTime(time);
+				if (hourAndMinute == null) {
+					// The other times remain scheduled
+					log.error("Invalid reports pre-generation time '" + time
+							+ "' (HH:mm expected), ignored");
+				} else {
+					schedule(hourAndMinute[0], hourAndMinute[1]);
+					log.info("Reports pre-generation scheduled at " + time);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parses a time of the day.
+	 * 
+	 * @param time
+	 *            the time (HH:mm).
+	 * @return the hour and the minute, or <code>null</code> if the time is
+	 *         invalid.
+	 */
+	static int[] parseTime(String time) {
+		String[] hourAndMinute = time.split(":");
+		if (hourAndMinute.length != 2) {
+			return null;
+		}
+		try {
+			int hour = Integer.parseInt(hourAndMinute[0].trim());
+			int minute = Integer.parseInt(hourAndMinute[1].trim());
+			if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+				return null;
+			}
+			return new int[] { hour, minute };
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static long[] parseIds(String ids) {
+		List<Long> list = new ArrayList<Long>();
+		for (String id : ids.split(",")) {
+			if (!"".equals(id.trim())) {
+				try {
+					list.add(Long.parseLong(id.trim()));
+				} catch (NumberFormatException e) {
+					log.error("Invalid report configuration identifier '"
+							+ id.trim() + "', ignored");
+				}
+			}
+		}
+		long[] result = new long[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i);
+		}
+		return result;
+	}
+
+	private void schedule(final int hour, final int minute) {
+		Calendar next = Calendar.getInstance();
+		next.set(Calendar.HOUR_OF_DAY, hour);
+		next.set(Calendar.MINUTE, minute);
+		next.set(Calendar.SECOND, 0);
+		next.set(Calendar.MILLISECOND, 0);
+		if (!next.after(Calendar.getInstance())) {
+			next.add(Calendar.DATE, 1);
+		}
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					pregenerate();
+				} finally {
+					// The next run is computed each time (the days don't
+					// always last 24 hours)
+					schedule(hour, minute);
+				}
+			}
+		}, next.getTimeInMillis() - System.currentTimeMillis(),
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Regenerates the selected report configurations.
+	 */
+	void pregenerate() {
+		for (long reportCfgId : reportCfgIds) {
+			long start = System.currentTimeMillis();
+			try {
+				dbTxProvider.newCtx();
+				try {
+					ReportCfg reportCfg = modelMgr.getReportCfg(reportCfgId);
+					if (reportCfg == null) {
+						log.warn("Unknown report configuration " + reportCfgId);
+						continue;
+					}
+					dbTxProvider.get().setUser(reportCfg.getOwnerId());
+					ReportParameters reportParameters = ReportsLogicImpl
+							.toReportParameters(
+									modelMgr,
+									reportCfg.getConfiguration(),
+									ReportsTabLogicImpl.ADVANCED_REPORTS_CATEGORY
+											.equals(reportCfg.getCategory()),
+									reportCfg.getOwnerId());
+					// The generation is registered before the report is
+					// built so that a concurrent modification makes it stale
+					ReportResultStore.Generation generation = resultStore
+							.begin(reportParameters.getStart(),
+									reportParameters.getIntervalType(),
+									reportParameters.getIntervalCount(),
+									reportParameters.getRootTaskId(),
+									reportParameters.getContributorIds());
+					bulkhead.acquireForJob();
+					try {
+						Workbook report = modelMgr.buildReport(
+								reportParameters.getStart(),
+								reportParameters.getIntervalType(),
+								reportParameters.getIntervalCount(),
+								reportParameters.getRootTaskId(),
+								reportParameters.getTaskDepth(),
+								reportParameters
+										.isOnlyKeepTasksWithContributions(),
+								reportParameters.isByContributor(),
+								reportParameters.isContributorCentricMode(),
+								reportParameters.getContributorIds(),
+								reportParameters.getColumnIds().toArray(
+										new String[reportParameters
+												.getColumnIds().size()]),
+								true, false);
+						ByteArrayOutputStream out = new ByteArrayOutputStream();
+						report.write(out);
+						resultStore.put(reportParameters.getKey(true),
+								generation, out.toByteArray());
+					} finally {
+						bulkhead.release();
+						resultStore.end(generation);
+					}
+				} finally {
+					dbTxProvider.release();
+				}
+				log.info("Report configuration " + reportCfgId
+						+ " pre-generated in "
+						+ (System.currentTimeMillis() - start) + " ms");
+			} catch (Throwable t) {
+				log.error("Report configuration " + reportCfgId
+						+ " pre-generation failed", t);
+			}
+		}
+	}
+
+}
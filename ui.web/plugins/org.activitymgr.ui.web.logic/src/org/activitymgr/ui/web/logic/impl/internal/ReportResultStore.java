@@ -0,0 +1,406 @@
+package org.activitymgr.ui.web.logic.impl.internal;
+
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.report.ReportIntervalType;
+import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.ui.web.logic.impl.event.EntityChange;
+
+import com.google.inject.Inject;
+
+/**
+ * Stores generated reports (in Excel format) so that later requests with the
+ * same parameters are served without building the report again.
+ *
+ * <p>
+ * A stored report remains valid as long as no committed change (local or
+ * received from the change log) concerns its scope : the contributions
+ * changes only evict the reports whose interval, root task and contributors
+ * include the contribution, the tasks and collaborators changes (which are
+ * rare and may modify any report row) evict every report.
+ * </p>
+ *
+ * @see ChangeFeed
+ * @see ReportPregenerationScheduler
+ */
+public class ReportResultStore implements ChangeFeed.ISubscriber {
+
+	/**
+	 * Data read by a report.
+	 */
+	private static class Scope {
+		/** Start (inclusive, <code>null</code> if the interval is open) */
+		final Calendar start;
+		/** End (exclusive, <code>null</code> if the interval is open) */
+		final Calendar end;
+		/** Root task code path (<code>null</code> for the whole tree) */
+		final String rootTaskCodePath;
+		/** Sorted contributors (<code>null</code> for every contributor) */
+		final long[] contributorIds;
+
+		Scope(Calendar start, Calendar end, String rootTaskCodePath,
+				long[] contributorIds) {
+			this.start = start;
+			this.end = end;
+			this.rootTaskCodePath = rootTaskCodePath;
+			this.contributorIds = contributorIds;
+		}
+	}
+
+	/**
+	 * Report generation in progress.
+	 */
+	public static class Generation {
+		private final Scope scope;
+		private boolean stale;
+
+		private Generation(Scope scope) {
+			this.scope = scope;
+		}
+	}
+
+	private static class Entry {
+		final Scope scope;
+		final byte[] content;
+
+		Entry(Scope scope, byte[] content) {
+			this.scope = scope;
+			this.content = content;
+		}
+	}
+
+	@Inject
+	private IModelMgr modelMgr;
+
+	@Inject
+	private ThreadLocalizedDbTransactionProviderImpl dbTxProvider;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	private final List<Generation> generations = new ArrayList<Generation>();
+
+	/** Metrics */
+	private final AtomicLong hitsCount = new AtomicLong();
+	private final AtomicLong missesCount = new AtomicLong();
+	private final AtomicLong evictionsCount = new AtomicLong();
+
+	@Inject
+	void subscribe(ChangeFeed changeFeed) {
+		changeFeed.subscribe(this);
+	}
+
+	/**
+	 * Builds the key of a report.
+	 *
+	 * @see org.activitymgr.core.model.IModelMgr#buildReport(Calendar,
+	 *      ReportIntervalType, Integer, Long, int, boolean, boolean, boolean,
+	 *      long[], String[], boolean, boolean)
+	 * @return the report key.
+	 */
+	public static String key(Calendar start, ReportIntervalType intervalType,
+			Integer intervalCount, Long rootTaskId, int taskDepth,
+			boolean onlyKeepTasksWithContributions, boolean byContributor,
+			boolean contributorCentricMode, long[] contributorIds,
+			String[] columnIds, boolean includeTotals) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(start != null ? new SimpleDateFormat("yyyyMMdd")
+				.format(start.getTime()) : "-");
+		sb.append('|').append(intervalType);
+		sb.append('|').append(intervalCount);
+		sb.append('|').append(rootTaskId);
+		sb.append('|').append(taskDepth);
+		sb.append('|').append(onlyKeepTasksWithContributions);
+		sb.append('|').append(byContributor);
+		sb.append('|').append(contributorCentricMode);
+		if (contributorIds != null) {
+			// The contributors order doesn't matter
+			contributorIds = contributorIds.clone();
+			Arrays.sort(contributorIds);
+		}
+		sb.append('|').append(Arrays.toString(contributorIds));
+		sb.append('|').append(Arrays.toString(columnIds));
+		sb.append('|').append(includeTotals);
+		return sb.toString();
+	}
+
+	/**
+	 * Registers a report generation, which must be invoked in a transaction
+	 * before the report is built, so that a concurrent modification of its
+	 * data prevents it from being stored.
+	 *
+	 * @see org.activitymgr.core.model.IModelMgr#buildReport(Calendar,
+	 *      ReportIntervalType, Integer, Long, int, boolean, boolean, boolean,
+	 *      long[], String[], boolean, boolean)
+	 * @return the generation, to give to {@link #put(String, Generation, byte[])}
+	 *         and to end with {@link #end(Generation)}.
+	 */
+	public Generation begin(Calendar start, ReportIntervalType intervalType,
+			Integer intervalCount, Long rootTaskId, long[] contributorIds) {
+		// The model aligns the start on the interval type : one more interval
+		// is kept before and after
+		Calendar scopeStart = null;
+		Calendar scopeEnd = null;
+		if (start != null) {
+			scopeStart = (Calendar) start.clone();
+			scopeStart.add(intervalType.getIntType(), -1);
+			if (intervalCount != null) {
+				scopeEnd = (Calendar) start.clone();
+				scopeEnd.add(intervalType.getIntType(), intervalCount + 1);
+			}
+		}
+		String rootTaskCodePath = null;
+		if (rootTaskId != null) {
+			rootTaskCodePath = modelMgr
+					.getTaskCodePaths(new long[] { rootTaskId })[0];
+		}
+		if (contributorIds != null) {
+			contributorIds = contributorIds.clone();
+			Arrays.sort(contributorIds);
+		}
+		Generation generation = new Generation(new Scope(scopeStart,
+				scopeEnd, rootTaskCodePath, contributorIds));
+		synchronized (this) {
+			generations.add(generation);
+		}
+		return generation;
+	}
+
+	/**
+	 * Ends a report generation (whether the report has been stored or not).
+	 *
+	 * @param generation
+	 *            the generation.
+	 */
+	public synchronized void end(Generation generation) {
+		generations.remove(generation);
+	}
+
+	/**
+	 * Returns a stored report.
+	 *
+	 * @param key
+	 *            the report key.
+	 * @return the report content or <code>null</code> if the report is not
+	 *         stored.
+	 */
+	public byte[] get(String key) {
+		Entry entry = entries.get(key);
+		if (entry != null) {
+			hitsCount.incrementAndGet();
+			return entry.content;
+		}
+		missesCount.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Stores a report, unless its data have been modified during its
+	 * generation.
+	 *
+	 * @param key
+	 *            the report key.
+	 * @param generation
+	 *            the report generation.
+	 * @param content
+	 *            the report content.
+	 */
+	public synchronized void put(String key, Generation generation,
+			byte[] content) {
+		if (!generation.stale) {
+			entries.put(key, new Entry(generation.scope, content));
+		}
+		end(generation);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.activitymgr.ui.web.logic.impl.internal.ChangeFeed.ISubscriber#changesCommitted(java.util.List)
+	 */
+	@Override
+	public void changesCommitted(List<EntityChange> changes) {
+		Map<Long, String> taskCodePaths = getTaskCodePaths(changes);
+		synchronized (this) {
+			for (Iterator<Entry> it = entries.values().iterator(); it
+					.hasNext();) {
+				if (isConcerned(it.next().scope, changes, taskCodePaths)) {
+					it.remove();
+					evictionsCount.incrementAndGet();
+				}
+			}
+			for (Generation generation : generations) {
+				if (!generation.stale
+						&& isConcerned(generation.scope, changes,
+								taskCodePaths)) {
+					generation.stale = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the code paths of the contributions tasks, if a stored or
+	 * generated report is restricted to a task.
+	 *
+	 * @param changes
+	 *            the committed changes.
+	 * @return the code paths by task identifier (<code>null</code> if not
+	 *         required).
+	 */
+	private Map<Long, String> getTaskCodePaths(List<EntityChange> changes) {
+		if (!hasTaskRestrictedScope()) {
+			return null;
+		}
+		List<Long> taskIds = new ArrayList<Long>();
+		for (EntityChange change : changes) {
+			if (change.getEntityType() == Contribution.class
+					&& change.getEntity() != null) {
+				taskIds.add(((Contribution) change.getEntity()).getTaskId());
+			}
+		}
+		if (taskIds.isEmpty()) {
+			return null;
+		}
+		long[] ids = new long[taskIds.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = taskIds.get(i);
+		}
+		// The changes are published either in the transaction that has
+		// applied them (change log) or once it is released
+		boolean ownTransaction = dbTxProvider.get() == null;
+		String[] codePaths;
+		try {
+			if (ownTransaction) {
+				dbTxProvider.newCtx();
+			}
+			try {
+				codePaths = modelMgr.getTaskCodePaths(ids);
+			} finally {
+				if (ownTransaction) {
+					dbTxProvider.release();
+				}
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException("Database connection release failed", e);
+		}
+		Map<Long, String> result = new HashMap<Long, String>();
+		for (int i = 0; i < ids.length; i++) {
+			result.put(ids[i], codePaths[i]);
+		}
+		return result;
+	}
+
+	private synchronized boolean hasTaskRestrictedScope() {
+		for (Entry entry : entries.values()) {
+			if (entry.scope.rootTaskCodePath != null) {
+				return true;
+			}
+		}
+		for (Generation generation : generations) {
+			if (generation.scope.rootTaskCodePath != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tells whether changes concern the data of a report.
+	 *
+	 * @param scope
+	 *            the report scope.
+	 * @param changes
+	 *            the committed changes.
+	 * @param taskCodePaths
+	 *            the code paths of the contributions tasks
+	 *            (<code>null</code> if unknown).
+	 * @return <code>true</code> if the report is stale.
+	 */
+	private static boolean isConcerned(Scope scope, List<EntityChange> changes,
+			Map<Long, String> taskCodePaths) {
+		for (EntityChange change : changes) {
+			if (change.getEntityType() == Contribution.class
+					&& change.getEntity() != null) {
+				if (isConcerned(scope, (Contribution) change.getEntity(),
+						taskCodePaths)) {
+					return true;
+				}
+			}
+			else if (change.concerns(Task.class)
+					|| change.concerns(Collaborator.class)
+					|| change.concerns(Contribution.class)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isConcerned(Scope scope, Contribution contribution,
+			Map<Long, String> taskCodePaths) {
+		Calendar date = contribution.getDate();
+		if (scope.start != null && date.before(scope.start)) {
+			return false;
+		}
+		if (scope.end != null && !date.before(scope.end)) {
+			return false;
+		}
+		if (scope.contributorIds != null
+				&& Arrays.binarySearch(scope.contributorIds,
+						contribution.getContributorId()) < 0) {
+			return false;
+		}
+		if (scope.rootTaskCodePath != null) {
+			String taskCodePath = taskCodePaths != null ? taskCodePaths
+					.get(contribution.getTaskId()) : null;
+			// Unknown path (removed task, ...) : the report is considered
+			// as stale
+			if (taskCodePath != null
+					&& !taskCodePath.equals(scope.rootTaskCodePath)
+					&& !taskCodePath.startsWith(scope.rootTaskCodePath + "/")) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the count of stored reports.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the count of requests served from the store.
+	 */
+	public long getHitsCount() {
+		return hitsCount.get();
+	}
+
+	/**
+	 * @return the count of requests that couldn't be served from the store.
+	 */
+	public long getMissesCount() {
+		return missesCount.get();
+	}
+
+	/**
+	 * @return the count of reports evicted because of a modification of
+	 *         their data.
+	 */
+	public long getEvictionsCount() {
+		return evictionsCount.get();
+	}
+
+}
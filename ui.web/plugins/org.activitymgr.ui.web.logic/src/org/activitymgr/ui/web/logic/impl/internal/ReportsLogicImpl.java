@@ -22,6 +22,7 @@ import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.dto.IDTOFactory;
 import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.dto.report.ReportIntervalType;
+import org.activitymgr.core.model.IModelMgr;
 import org.activitymgr.core.model.ModelException;
 import org.activitymgr.core.util.DateHelper;
 import org.activitymgr.core.util.StringHelper;
@@ -37,6 +38,7 @@ import org.apache.commons.beanutils.BeanUtils;
 import org.apache.poi.ss.usermodel.Workbook;
 
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.internal.Streams;
@@ -120,6 +122,12 @@ public class ReportsLogicImpl extends AbstractLogicImpl<IReportsLogic.View>
 	@Inject
 	private IDTOFactory dtoFactory;
 
+	@Inject
+	private ReportJobsManager reportJobsManager;
+
+	@Inject
+	private ReportResultStore reportResultStore;
+
 	private ReportIntervalType intervalType = ReportIntervalType.MONTH;
 
 	private ReportIntervalBoundsMode intervalBoundsMode = ReportIntervalBoundsMode.AUTOMATIC;
@@ -146,6 +154,8 @@ public class ReportsLogicImpl extends AbstractLogicImpl<IReportsLogic.View>
 
 	private AbstractSafeDownloadButtonLogicImpl downloadReportButtonLogic;
 
+	private AbstractSafeStandardButtonLogicImpl buildInBackgroundButtonLogic;
+
 	private boolean advancedMode;
 
 	private AbstractSafeStandardButtonLogicImpl showPreviewDialogButtonLogic;
@@ -266,6 +276,12 @@ public class ReportsLogicImpl extends AbstractLogicImpl<IReportsLogic.View>
 				null, null) {
 			@Override
 			protected byte[] unsafeGetContent() throws Exception {
+				// Pre-generated report ?
+				byte[] content = reportResultStore.get(prepareReportParameters()
+						.getKey(true));
+				if (content != null) {
+					return content;
+				}
 				Workbook report = buildReport(false);
 				ByteArrayOutputStream out = new ByteArrayOutputStream();
 				report.write(out);
@@ -282,6 +298,14 @@ public class ReportsLogicImpl extends AbstractLogicImpl<IReportsLogic.View>
 		};
 		getView().addReportButton(
 				downloadReportButtonLogic.getView());
+		buildInBackgroundButtonLogic = new AbstractSafeStandardButtonLogicImpl(
+				this, "Build in background", null, null) {
+			@Override
+			protected void unsafeOnClick() throws Exception {
+				onBuildInBackgroundButtonClicked();
+			}
+		};
+		getView().addReportButton(buildInBackgroundButtonLogic.getView());
 		restoreDefaultValues();
 	}
 
@@ -436,6 +460,46 @@ public class ReportsLogicImpl extends AbstractLogicImpl<IReportsLogic.View>
 		getRoot().getView().openExternalUrl(url);
 	}
 
+	private void onBuildInBackgroundButtonClicked() throws ModelException {
+		ReportParameters reportParameters = prepareReportParameters();
+		ReportJob job = reportJobsManager.submit(
+				getContext().getConnectedCollaborator().getId(),
+				getReportJobName(),
+				(Calendar) start.clone(),
+				reportParameters.getIntervalType(),
+				reportParameters.getIntervalCount(),
+				reportParameters.getRootTaskId(),
+				reportParameters.getTaskDepth(),
+				reportParameters.isOnlyKeepTasksWithContributions(),
+				reportParameters.isByContributor(),
+				reportParameters.isContributorCentricMode(),
+				reportParameters.getContributorIds(),
+				reportParameters.getColumnIds().toArray(
+						new String[reportParameters.getColumnIds().size()]),
+				true);
+		onReportJobSubmitted(job);
+	}
+
+	/**
+	 * This method is intended to be subclassed.
+	 * 
+	 * @return the name of the reports generated in background.
+	 */
+	protected String getReportJobName() {
+		return "Report";
+	}
+
+	/**
+	 * This method is intended to be subclassed.
+	 * 
+	 * @param job
+	 *            the submitted report job.
+	 */
+	protected void onReportJobSubmitted(ReportJob job) {
+		getRoot().getView().showNotification(
+				"The report is being generated in background");
+	}
+
 	private void onShowPreviewDialogButtonClicked() {
 		String url = buildRestServiceURL();
 		ExternalContentDialogLogicImpl popup = new ExternalContentDialogLogicImpl(
@@ -617,26 +681,7 @@ public class ReportsLogicImpl extends AbstractLogicImpl<IReportsLogic.View>
 					ReportsLogicImpl.this.end.getTime());
 
 			// Compute interval count
-			Calendar endClone = (Calendar) end.clone();
-			switch (intervalType) {
-			case YEAR:
-				intervalCount = endClone.get(Calendar.YEAR)
-						- start.get(Calendar.YEAR);
-				break;
-			case MONTH:
-				intervalCount = (endClone.get(Calendar.YEAR) - start
-						.get(Calendar.YEAR))
-						* 12
-						+ (endClone.get(Calendar.MONTH) - start
-								.get(Calendar.MONTH));
-				break;
-			case WEEK:
-				intervalCount = DateHelper.countDaysBetween(start, endClone) / 7;
-				break;
-			case DAY:
-				intervalCount = DateHelper.countDaysBetween(start, endClone);
-			}
-			intervalCount++;
+			intervalCount = countIntervals(intervalType, start, end);
 			getView().setIntervalCount(intervalCount);
 
 			getView().setTaskScopePath(taskScopePath);
@@ -679,6 +724,31 @@ public class ReportsLogicImpl extends AbstractLogicImpl<IReportsLogic.View>
 		}
 	}
 
+	private static int countIntervals(ReportIntervalType intervalType,
+			Calendar start, Calendar end) {
+		int intervalCount = 0;
+		Calendar endClone = (Calendar) end.clone();
+		switch (intervalType) {
+		case YEAR:
+			intervalCount = endClone.get(Calendar.YEAR)
+					- start.get(Calendar.YEAR);
+			break;
+		case MONTH:
+			intervalCount = (endClone.get(Calendar.YEAR) - start
+					.get(Calendar.YEAR))
+					* 12
+					+ (endClone.get(Calendar.MONTH) - start
+							.get(Calendar.MONTH));
+			break;
+		case WEEK:
+			intervalCount = DateHelper.countDaysBetween(start, endClone) / 7;
+			break;
+		case DAY:
+			intervalCount = DateHelper.countDaysBetween(start, endClone);
+		}
+		return intervalCount + 1;
+	}
+
 	/**
 	 * This method is intended to be subclassed.
 	 * 
@@ -690,6 +760,7 @@ public class ReportsLogicImpl extends AbstractLogicImpl<IReportsLogic.View>
 
 	private void setReportButtonsEnabled(boolean enabled) {
 		downloadReportButtonLogic.getView().setEnabled(enabled);
+		buildInBackgroundButtonLogic.getView().setEnabled(enabled);
 		showPreviewDialogButtonLogic.getView().setEnabled(enabled);
 		showPreviewFullscreenButtonLogic.getView().setEnabled(enabled);
 	}
@@ -823,6 +894,159 @@ public class ReportsLogicImpl extends AbstractLogicImpl<IReportsLogic.View>
 		return sw.toString();
 	}
 
+	/**
+	 * Converts a saved report configuration into report parameters, the same
+	 * way the report configuration panel does it (but without any UI).
+	 * 
+	 * @param modelMgr
+	 *            the model manager.
+	 * @param json
+	 *            the report configuration json.
+	 * @param advancedMode
+	 *            <code>true</code> for an advanced report configuration.
+	 * @param ownerId
+	 *            the identifier of the report configuration owner.
+	 * @return the report parameters.
+	 * @throws ModelException
+	 *             thrown if the configuration is invalid.
+	 */
+	static ReportParameters toReportParameters(IModelMgr modelMgr,
+			String json, boolean advancedMode, long ownerId)
+			throws ModelException {
+		JsonObject jsonObject = new JsonObject();
+		if (json != null && !"".equals(json.trim())) {
+			jsonObject = (JsonObject) Streams.parse(new JsonReader(
+					new StringReader(json)));
+		}
+		ReportParameters reportParameters = new ReportParameters();
+
+		// Interval
+		ReportIntervalType intervalType = jsonObject.has(INTERVAL_TYPE) ? ReportIntervalType
+				.valueOf(jsonObject.get(INTERVAL_TYPE).getAsString())
+				: ReportIntervalType.MONTH;
+		reportParameters.setIntervalType(intervalType);
+		ReportIntervalBoundsMode intervalBoundsMode = jsonObject
+				.has(INTERVAL_BOUNDS_MODE) ? ReportIntervalBoundsMode
+				.valueOf(jsonObject.get(INTERVAL_BOUNDS_MODE).getAsString())
+				: ReportIntervalBoundsMode.AUTOMATIC;
+
+		// Task scope
+		if (jsonObject.has(TASK_SCOPE_PATH)) {
+			String taskScopePath = jsonObject.get(TASK_SCOPE_PATH)
+					.getAsString().trim();
+			if (taskScopePath.length() > 0) {
+				Task selectedTask = modelMgr.getTaskByCodePath(taskScopePath);
+				reportParameters.setRootTaskId(selectedTask != null ? selectedTask
+						.getId() : null);
+			}
+		}
+
+		if (intervalBoundsMode != ReportIntervalBoundsMode.AUTOMATIC) {
+			Calendar start = Calendar.getInstance();
+			if (jsonObject.has(START)) {
+				try {
+					start.setTime(YYYYMMDD_SDF.parse(jsonObject.get(START)
+							.getAsString()));
+				} catch (ParseException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			reportParameters.setStart(start);
+			if (intervalBoundsMode == ReportIntervalBoundsMode.BOTH_BOUNDS
+					&& jsonObject.has(INTERVAL_COUNT)) {
+				reportParameters.setIntervalCount(jsonObject.get(
+						INTERVAL_COUNT).getAsInt());
+			} else {
+				// Lower bound mode : the report ends with the last
+				// contribution
+				Calendar[] interval = modelMgr
+						.getContributionsInterval(reportParameters
+								.getRootTaskId());
+				Calendar end = interval != null ? interval[1] : start;
+				if (intervalType == ReportIntervalType.WEEK) {
+					// Goto end of week
+					end = DateHelper.moveToFirstDayOfWeek(end);
+					end.add(Calendar.WEEK_OF_YEAR, 1);
+					end.add(Calendar.DATE, -1);
+				}
+				reportParameters.setIntervalCount(countIntervals(intervalType,
+						start, end));
+			}
+		}
+
+		// Columns
+		List<String> columnIds = reportParameters.getColumnIds();
+		if (advancedMode && jsonObject.has(SELECTED_COLUMNS)) {
+			for (JsonElement columnId : jsonObject.get(SELECTED_COLUMNS)
+					.getAsJsonArray()) {
+				columnIds.add(columnId.getAsString());
+			}
+		} else {
+			columnIds.add("task.path");
+			columnIds.add("task.name");
+			if (advancedMode) {
+				columnIds.add("collaborator.login");
+			}
+		}
+		boolean includeTaskAttrs = false;
+		for (String columnId : columnIds) {
+			if (columnId.startsWith(TASK)) {
+				includeTaskAttrs = true;
+				break;
+			}
+		}
+		int taskTreeDepth = jsonObject.has(TASK_TREE_DEPTH) ? jsonObject.get(
+				TASK_TREE_DEPTH).getAsInt() : 1;
+		if (!includeTaskAttrs) {
+			taskTreeDepth = 0;
+		} else if (taskTreeDepth == 0) {
+			taskTreeDepth = 1;
+		}
+		reportParameters.setTaskDepth(taskTreeDepth);
+
+		// Collaborators
+		ReportCollaboratorsSelectionMode collaboratorsSelectionMode = ReportCollaboratorsSelectionMode.ME;
+		if (advancedMode) {
+			collaboratorsSelectionMode = jsonObject
+					.has(COLLABORATORS_SELECTION_MODE) ? ReportCollaboratorsSelectionMode
+					.valueOf(jsonObject.get(COLLABORATORS_SELECTION_MODE)
+							.getAsString())
+					: ReportCollaboratorsSelectionMode.ALL_COLLABORATORS;
+		}
+		switch (collaboratorsSelectionMode) {
+		case ME:
+			reportParameters.setContributorIds(new long[] { ownerId });
+			break;
+		case ALL_COLLABORATORS:
+			reportParameters.setContributorIds(null);
+			break;
+		case SELECT_COLLABORATORS:
+			JsonArray jsonArray = jsonObject.has(SELECTED_COLLABORATORS) ? jsonObject
+					.get(SELECTED_COLLABORATORS).getAsJsonArray()
+					: new JsonArray();
+			if (jsonArray.size() == 0)
+				throw new ModelException(
+						"At least one collaborator must be selected");
+			if (jsonArray.size() != modelMgr.getCollaborators().length) {
+				long[] contributorIds = new long[jsonArray.size()];
+				for (int i = 0; i < contributorIds.length; i++) {
+					contributorIds[i] = jsonArray.get(i).getAsLong();
+				}
+				reportParameters.setContributorIds(contributorIds);
+			}
+		}
+
+		// In basic mode, only keep non empty tasks
+		boolean onlyKeepTaskWithContributions = !advancedMode;
+		if (advancedMode && jsonObject.has(ONLY_KEEP_TASK_WITH_CONTRIBUTIONS)) {
+			onlyKeepTaskWithContributions = jsonObject.get(
+					ONLY_KEEP_TASK_WITH_CONTRIBUTIONS).getAsBoolean();
+		}
+		reportParameters
+				.setOnlyKeepTasksWithContributions(onlyKeepTaskWithContributions);
+		return reportParameters;
+	}
+
 	public void loadFromJson(String json) {
 		this.defaultConfigurationAsJson = json;
 		restoreDefaultValues();
@@ -1010,4 +1234,19 @@ class ReportParameters {
 		return false;
 	}
 
+	/**
+	 * @param includeTotals
+	 *            <code>true</code> if the report includes the totals.
+	 * @return the report key.
+	 * @see ReportResultStore#key(Calendar, ReportIntervalType, Integer, Long,
+	 *      int, boolean, boolean, boolean, long[], String[], boolean)
+	 */
+	String getKey(boolean includeTotals) {
+		return ReportResultStore.key(start, intervalType, intervalCount,
+				rootTaskId, taskDepth, onlyKeepTasksWithContributions,
+				isByContributor(), isContributorCentricMode(),
+				contributorIds, columnIds.toArray(new String[columnIds.size()]),
+				includeTotals);
+	}
+
 }
\ No newline at end of file
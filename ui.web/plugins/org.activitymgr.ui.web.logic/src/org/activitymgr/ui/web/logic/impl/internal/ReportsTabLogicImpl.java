@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -18,6 +19,7 @@ import org.activitymgr.ui.web.logic.ITabFolderLogic;
 import org.activitymgr.ui.web.logic.impl.AbstractSafeGenericCallback;
 import org.activitymgr.ui.web.logic.impl.AbstractSafeStandardButtonLogicImpl;
 import org.activitymgr.ui.web.logic.impl.AbstractTabLogicImpl;
+import org.activitymgr.ui.web.logic.impl.internal.services.ReportJobServiceLogic;
 import org.activitymgr.ui.web.logic.spi.ITabButtonFactory;
 
 import com.google.inject.Inject;
@@ -25,8 +27,15 @@ import com.google.inject.Inject;
 public class ReportsTabLogicImpl extends
 		AbstractTabLogicImpl<IReportsTabLogic.View> implements IReportsTabLogic {
 
+	/** Report configurations categories */
+	static final String ADVANCED_REPORTS_CATEGORY = "advanced-reports";
+	static final String SELF_REPORTS_CATEGORY = "self-reports";
+
 	@Inject(optional = true)
 	private Set<ITabButtonFactory<IReportsTabLogic>> buttonFactories;
+
+	@Inject
+	private ReportJobsManager reportJobsManager;
 	
 	private String tabLabel;
 
@@ -50,12 +59,15 @@ public class ReportsTabLogicImpl extends
 
 	private boolean dirty;
 
+	private Set<String> displayedReportJobIds = new HashSet<String>();
+
 	public ReportsTabLogicImpl(ITabFolderLogic parent,
 			final boolean advancedMode) {
 		super(parent);
 
 		tabLabel = advancedMode ? "Adv. reports" : "My reports";
-		category = advancedMode ? "advanced-reports" : "self-reports";
+		category = advancedMode ? ADVANCED_REPORTS_CATEGORY
+				: SELF_REPORTS_CATEGORY;
 
 		// Add buttons
 		registerButtons(buttonFactories);
@@ -219,6 +231,19 @@ public class ReportsTabLogicImpl extends
 					updateUI();
 				}
 			}
+
+			@Override
+			protected String getReportJobName() {
+				return selectedReportCfgs.size() == 1 ? selectedReportCfgs
+						.iterator().next().getName() : super
+						.getReportJobName();
+			}
+
+			@Override
+			protected void onReportJobSubmitted(ReportJob job) {
+				super.onReportJobSubmitted(job);
+				refreshReportJobs();
+			}
 		};
 		getView().setReportsView(reportsLogic.getView());
 
@@ -229,10 +254,62 @@ public class ReportsTabLogicImpl extends
 			getView().selectReportCfg(first.getId());
 		}
 
+		// Show the report jobs
+		refreshReportJobs();
+
 		// Update the UI
 		updateUI();
 	}
 
+	private void refreshReportJobs() {
+		List<ReportJob> jobs = reportJobsManager.getJobs(getContext()
+				.getConnectedCollaborator().getId());
+		Set<String> jobIds = new HashSet<String>();
+		boolean pending = false;
+		// Oldest first (the view inserts the new jobs at the top)
+		for (int i = jobs.size() - 1; i >= 0; i--) {
+			ReportJob job = jobs.get(i);
+			String status = null;
+			switch (job.getStatus()) {
+			case QUEUED:
+				status = "Queued";
+				break;
+			case RUNNING:
+				status = "Running (" + job.getProgress() + "%)";
+				break;
+			case DONE:
+				status = "Done";
+				break;
+			case FAILED:
+				status = "Failed : " + job.getErrorMessage();
+			}
+			getView().setReportJob(job.getId(), job.getName(), status,
+					job.getStatus() == ReportJob.Status.DONE);
+			jobIds.add(job.getId());
+			pending |= job.isPending();
+		}
+		// Remove the expired jobs
+		for (String jobId : displayedReportJobIds) {
+			if (!jobIds.contains(jobId)) {
+				getView().removeReportJob(jobId);
+			}
+		}
+		displayedReportJobIds = jobIds;
+		getView().setReportJobsPollingEnabled(pending);
+	}
+
+	@Override
+	public void onReportJobsRefresh() {
+		refreshReportJobs();
+	}
+
+	@Override
+	public void onReportJobDownload(String jobId) {
+		getRoot().getView().openExternalUrl(
+				"/service" + ReportJobServiceLogic.PATH + "?"
+						+ ReportJobServiceLogic.ID_PARAMETER + "=" + jobId);
+	}
+
 	private void selectReportConfig(ReportCfg cfg) {
 		selectedReportCfgs.clear();
 		selectedReportCfgs.add(cfg);
@@ -6,6 +6,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 
+import org.activitymgr.core.model.ModelException;
 import org.activitymgr.ui.web.logic.IAOPWrappersBuilder;
 import org.activitymgr.ui.web.logic.IEventBus;
 import org.activitymgr.ui.web.logic.IEventListener;
@@ -13,7 +14,10 @@ import org.activitymgr.ui.web.logic.ILogic;
 import org.activitymgr.ui.web.logic.ILogicContext;
 import org.activitymgr.ui.web.logic.IRootLogic;
 import org.activitymgr.ui.web.logic.ITabLogic;
+import org.activitymgr.ui.web.logic.impl.ContributionsWriteBuffer;
 import org.activitymgr.ui.web.logic.impl.event.ConnectedCollaboratorEvent;
+import org.activitymgr.ui.web.logic.impl.event.EntitiesChangedEvent;
+import org.activitymgr.ui.web.logic.impl.event.EntityChange;
 import org.activitymgr.ui.web.logic.impl.event.EventBusImpl;
 import org.activitymgr.ui.web.logic.impl.event.LogoutEvent;
 import org.activitymgr.ui.web.logic.spi.IFeatureAccessManager;
@@ -31,7 +35,9 @@ public class RootLogicImpl implements IRootLogic {
 	
 	private IRootLogic.View view;
 	
-	public RootLogicImpl(IRootLogic.View rootView, Injector mainInjector) {
+	private SessionChangesQueue changesQueue;
+	
+	public RootLogicImpl(final IRootLogic.View rootView, Injector mainInjector) {
 		userInjector = mainInjector.createChildInjector(new AbstractModule() {
 			@Override
 			protected void configure() {
@@ -41,6 +47,10 @@ public class RootLogicImpl implements IRootLogic {
 				bind(IAOPWrappersBuilder.class)
 						.to(AOPWrappersBuilderImpl.class);
 				bind(IRootLogic.class).toInstance(RootLogicImpl.this);
+				bind(SessionChangesQueue.class).in(Singleton.class);
+				bind(CellLogicCache.class).in(Singleton.class);
+				bind(WeekContributionsCache.class).in(Singleton.class);
+				bind(ContributionsWriteBuffer.class).in(Singleton.class);
 			}
 		});
 
@@ -95,6 +105,53 @@ public class RootLogicImpl implements IRootLogic {
 				showAuthenticationUI(true);
 			}
 		});
+
+		// Subscribe to the changes made by the other sessions (the raw view
+		// is notified as the notification occurs in another thread)
+		changesQueue = userInjector.getInstance(SessionChangesQueue.class);
+		changesQueue.setListener(new Runnable() {
+			@Override
+			public void run() {
+				rootView.notifyRemoteChanges();
+			}
+		});
+		userInjector.getInstance(ChangeFeed.class).subscribe(changesQueue);
+
+		// The buffered contributions are written by the scheduler thread
+		// once the coalescing window has elapsed, the failures are then
+		// reported from the user interface thread
+		userInjector.getInstance(ContributionsWriteBuffer.class).setListener(new Runnable() {
+			@Override
+			public void run() {
+				rootView.notifyPendingWrites();
+			}
+		});
+	}
+
+	@Override
+	public void onRemoteChanges() {
+		List<EntityChange> changes = changesQueue.drain();
+		if (!changes.isEmpty()) {
+			userInjector.getInstance(IEventBus.class).fire(
+					new EntitiesChangedEvent(this, changes, false));
+		}
+	}
+
+	@Override
+	public void onPendingWrites() {
+		ContributionsWriteBuffer writeBuffer = userInjector.getInstance(ContributionsWriteBuffer.class);
+		try {
+			writeBuffer.flush();
+		} catch (ModelException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+		// Notify the session of the modifications written by the
+		// scheduler thread
+		List<EntityChange> changes = writeBuffer.drainCommittedChanges();
+		if (!changes.isEmpty()) {
+			userInjector.getInstance(IEventBus.class).fire(
+					new EntitiesChangedEvent(this, changes, true));
+		}
 	}
 
 	private void showAuthenticationUI(boolean afterLogout) {
@@ -121,6 +178,14 @@ public class RootLogicImpl implements IRootLogic {
 
 	@Override
 	public void dispose() {
-		// TODO unregister listeners, dispose event bus
+		try {
+			// Write the last modifications
+			onPendingWrites();
+		} finally {
+			userInjector.getInstance(ChangeFeed.class).unsubscribe(changesQueue);
+			userInjector.getInstance(CellLogicCache.class).dispose();
+			userInjector.getInstance(WeekContributionsCache.class).invalidate();
+			// TODO unregister listeners, dispose event bus
+		}
 	}
 }
@@ -0,0 +1,76 @@
+package org.activitymgr.ui.web.logic.impl.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.activitymgr.ui.web.logic.impl.event.EntityChange;
+import org.activitymgr.ui.web.logic.impl.event.EntityChange.Kind;
+
+/**
+ * Queues the changes committed by the other sessions until the session
+ * user interface thread applies them.
+ */
+public class SessionChangesQueue implements ChangeFeed.ISubscriber {
+
+	/**
+	 * Maximum count of queued transactions (beyond this count, the queued
+	 * changes are replaced by a global change)
+	 */
+	private static final int MAX_QUEUED = 1000;
+
+	private final Queue<List<EntityChange>> queue = new ConcurrentLinkedQueue<List<EntityChange>>();
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	private Runnable listener;
+
+	/**
+	 * @param listener
+	 *            the listener to notify (outside of the user interface
+	 *            thread) when changes become available.
+	 */
+	void setListener(Runnable listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public void changesCommitted(List<EntityChange> changes) {
+		queue.add(changes);
+		if (size.incrementAndGet() > MAX_QUEUED) {
+			// The session doesn't apply the changes (it may have been
+			// left opened) : the whole views will be reloaded
+			List<EntityChange> global = new ArrayList<EntityChange>();
+			global.add(new EntityChange(Kind.UPDATED, null, null, null, null));
+			drain();
+			queue.add(global);
+			size.incrementAndGet();
+		}
+		// Only one notification is pending at a time
+		if (listener != null && scheduled.compareAndSet(false, true)) {
+			listener.run();
+		}
+	}
+
+	/**
+	 * Retrieves the queued changes.
+	 * 
+	 * @return the changes (in commit order).
+	 */
+	List<EntityChange> drain() {
+		scheduled.set(false);
+		List<EntityChange> changes = new ArrayList<EntityChange>();
+		List<EntityChange> transactionChanges;
+		while ((transactionChanges = queue.poll()) != null) {
+			size.decrementAndGet();
+			changes.addAll(transactionChanges);
+		}
+		return changes;
+	}
+
+}
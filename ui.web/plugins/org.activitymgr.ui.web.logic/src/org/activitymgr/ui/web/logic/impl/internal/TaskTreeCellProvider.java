@@ -3,10 +3,12 @@ package org.activitymgr.ui.web.logic.impl.internal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.Set;
 
+import org.activitymgr.core.dto.Contribution;
 import org.activitymgr.core.dto.Task;
 import org.activitymgr.core.dto.misc.TaskSums;
 import org.activitymgr.core.model.IModelMgr;
@@ -21,16 +23,18 @@ import org.activitymgr.ui.web.logic.ILogic.IView;
 import org.activitymgr.ui.web.logic.ILogicContext;
 import org.activitymgr.ui.web.logic.impl.AbstractLogicImpl;
 import org.activitymgr.ui.web.logic.impl.AbstractSafeTreeTableCellProviderCallback;
+import org.activitymgr.ui.web.logic.impl.event.EntityChange;
+import org.activitymgr.ui.web.logic.impl.event.EntityChange.Kind;
 import org.activitymgr.ui.web.logic.impl.event.TaskUpdatedEvent;
 import org.activitymgr.ui.web.logic.spi.ITasksCellLogicFactory;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.inject.Inject;
 
 class TaskTreeCellProvider extends AbstractSafeTreeTableCellProviderCallback<Long> implements IEventListener<TaskUpdatedEvent> {
 
+	/** Count of levels loaded at once when a task is expanded */
+	private static final int PREFETCH_DEPTH = 2;
+
 	@Inject
 	private IModelMgr modelMgr;
 
@@ -44,18 +48,18 @@ class TaskTreeCellProvider extends AbstractSafeTreeTableCellProviderCallback<Lon
 	private Map<Long, Long> parentTaskCache = new HashMap<Long, Long>();
 	private Map<Long, List<Long>> taskChildrenCache = new HashMap<Long, List<Long>>();
 	private Map<Long, TaskSums> taskSumsCache = new HashMap<Long, TaskSums>();
+	/** Parents whose children are filtered (the others are below a matching task) */
+	private Set<Long> filteredParentTaskIds = new HashSet<Long>();
 	private boolean readOnly;
 	
-	private LoadingCache<Long, LoadingCache<String, ILogic<?>>> cellLogics = CacheBuilder.newBuilder().build(new CacheLoader<Long, LoadingCache<String, ILogic<?>>>() {
+	@Inject
+	private CellLogicCache cellLogicCache;
+
+	private CellLogicCache.Region<Long> cellLogics = cellLogicCache.newRegion("tasks", new CellLogicCache.ICellLogicLoader<Long>() {
 		@Override
-		public LoadingCache<String, ILogic<?>> load(final Long taskId) throws Exception {
-			return CacheBuilder.newBuilder().build(new CacheLoader<String, ILogic<?>>() {
-				@Override
-				public ILogic<?> load(String propertyId) throws Exception {
-					TaskSums taskSums = taskSumsCache.get(taskId);
-					return cellLogicFactory.createCellLogic((AbstractLogicImpl<?>) getSource(), context, filter, taskSums, propertyId, readOnly);
-				}
-			});
+		public ILogic<?> load(Long taskId, String propertyId) throws Exception {
+			TaskSums taskSums = taskSumsCache.get(taskId);
+			return cellLogicFactory.createCellLogic((AbstractLogicImpl<?>) getSource(), context, filter, taskSums, propertyId, readOnly);
 		}
 	});
 
@@ -74,45 +78,127 @@ class TaskTreeCellProvider extends AbstractSafeTreeTableCellProviderCallback<Lon
 
 	@Override
 	protected List<Long> unsafeGetChildren(Long parentTaskId) throws ModelException {
-		// Clear cache
+		// The children are only loaded once (the cache is invalidated when
+		// the tasks or the contributions change, see applyChanges)
 		List<Long> subTaskIds = taskChildrenCache.get(parentTaskId);
 		if (subTaskIds != null) {
-			for (Long subTaskId : subTaskIds) {
-				taskSumsCache.remove(subTaskId);
-				parentTaskCache.remove(subTaskId);
-			}
+			return subTaskIds;
 		}
-		taskChildrenCache.remove(parentTaskId);
 		
-		// Update cache
-		Task parentTask = parentTaskId == null ? null : taskSumsCache.get(parentTaskId).getTask();
-		List<TaskSums> subTasksSums = modelMgr.getSubTasksSums(parentTask, null, null);
-		if (filter != null) {
-			Task[] filteredTasks = modelMgr.getSubTasks(parentTaskId, filter);
-			List<Long> filteredTaskIds = new ArrayList<Long>();
-			for (Task filteredTask : filteredTasks) {
-				filteredTaskIds.add(filteredTask.getId());
+		// Filtered part of the tree : the whole part is loaded at once
+		if (filter != null
+				&& (parentTaskId == null || filteredParentTaskIds.contains(parentTaskId))) {
+			List<TaskSums> tasksSums = modelMgr.getFilteredTasksSums(filter, null, null);
+			Map<String, Long> taskIdsByFullPath = getTaskIdsByFullPath(tasksSums, null);
+			// Every parent of a returned task has its children filtered
+			filteredParentTaskIds.clear();
+			filteredParentTaskIds.add(null);
+			for (TaskSums sums : tasksSums) {
+				filteredParentTaskIds.add(getParentTaskId(sums.getTask(), taskIdsByFullPath));
 			}
-			List<TaskSums> filteredTaskSums = new ArrayList<TaskSums>();
-			for (TaskSums sums : subTasksSums) {
-				if (filteredTaskIds.contains(sums.getTask().getId())) {
-					filteredTaskSums.add(sums);
+			// The children that are already known are kept
+			Set<Long> loadedParentTaskIds = new HashSet<Long>();
+			for (Long id : filteredParentTaskIds) {
+				if (!taskChildrenCache.containsKey(id)) {
+					loadedParentTaskIds.add(id);
 				}
 			}
-			subTasksSums = filteredTaskSums;
+			registerTasksSums(tasksSums, taskIdsByFullPath, loadedParentTaskIds);
+			subTaskIds = taskChildrenCache.get(parentTaskId);
+			if (subTaskIds != null) {
+				return subTaskIds;
+			}
 		}
-		
-		subTaskIds = new ArrayList<Long>();
-		for (TaskSums subTaskSums : subTasksSums) {
-			long subTaskId = subTaskSums.getTask().getId();
-			subTaskIds.add(subTaskId);
-			// Update task cache
-			taskSumsCache.put(subTaskId, subTaskSums);
-			parentTaskCache.put(subTaskId, parentTaskId);
+
+		// Other cases : several levels are loaded at once (the filter
+		// doesn't apply below a matching task)
+		Task parentTask = parentTaskId == null ? null : taskSumsCache.get(parentTaskId).getTask();
+		List<TaskSums> tasksSums = modelMgr.getSubTasksSums(parentTask, PREFETCH_DEPTH, null, null);
+		// The children of the deepest level are not loaded (unless they
+		// are leaves)
+		Set<Long> loadedParentTaskIds = new HashSet<Long>();
+		loadedParentTaskIds.add(parentTaskId);
+		int maxPathLength = (parentTask != null ? parentTask.getFullPath().length() : 0) + 2 * (PREFETCH_DEPTH - 1);
+		for (TaskSums sums : tasksSums) {
+			if (sums.isLeaf() || sums.getTask().getPath().length() < maxPathLength) {
+				loadedParentTaskIds.add(sums.getTask().getId());
+			}
+		}
+		registerTasksSums(tasksSums, getTaskIdsByFullPath(tasksSums, parentTask), loadedParentTaskIds);
+		return taskChildrenCache.get(parentTaskId);
+	}
+
+	/**
+	 * Loads the branches that lead to a task that has not been loaded yet (if
+	 * we want to reveal a deep task for example).
+	 * 
+	 * @param taskId
+	 *            the task identifier.
+	 */
+	private void prefetchBranch(long taskId) {
+		List<TaskSums> tasksSums = modelMgr.getBranchesSums(new long[] { taskId }, null, null);
+		Map<String, Long> taskIdsByFullPath = getTaskIdsByFullPath(tasksSums, null);
+		// The children that are already known (or filtered) are kept
+		Set<Long> loadedParentTaskIds = new HashSet<Long>();
+		for (TaskSums sums : tasksSums) {
+			Long parentTaskId = getParentTaskId(sums.getTask(), taskIdsByFullPath);
+			if (!taskChildrenCache.containsKey(parentTaskId)
+					&& !(filter != null && (parentTaskId == null || filteredParentTaskIds.contains(parentTaskId)))) {
+				loadedParentTaskIds.add(parentTaskId);
+			}
+		}
+		registerTasksSums(tasksSums, taskIdsByFullPath, loadedParentTaskIds);
+	}
+
+	/**
+	 * Registers a batch of tasks sums.
+	 * 
+	 * @param tasksSums
+	 *            the tasks sums (sorted by path and number).
+	 * @param taskIdsByFullPath
+	 *            the identifiers of the tasks of the batch (and of their
+	 *            common ancestor) by full path.
+	 * @param loadedParentTaskIds
+	 *            the tasks whose complete list of children is in the batch.
+	 */
+	private void registerTasksSums(List<TaskSums> tasksSums, Map<String, Long> taskIdsByFullPath, Set<Long> loadedParentTaskIds) {
+		Map<Long, List<Long>> subTaskIdsByParent = new HashMap<Long, List<Long>>();
+		for (Long parentTaskId : loadedParentTaskIds) {
+			subTaskIdsByParent.put(parentTaskId, new ArrayList<Long>());
+		}
+		for (TaskSums sums : tasksSums) {
+			Task task = sums.getTask();
+			long taskId = task.getId();
+			Long parentTaskId = getParentTaskId(task, taskIdsByFullPath);
+			parentTaskCache.put(taskId, parentTaskId);
+			List<Long> subTaskIds = subTaskIdsByParent.get(parentTaskId);
+			if (subTaskIds != null) {
+				subTaskIds.add(taskId);
+				taskSumsCache.put(taskId, sums);
+			}
+			else if (!taskSumsCache.containsKey(taskId)) {
+				// The displayed tasks keep their sums (their cells are
+				// invalidated with the children of their parent)
+				taskSumsCache.put(taskId, sums);
+			}
+		}
+		taskChildrenCache.putAll(subTaskIdsByParent);
+	}
+
+	private static Map<String, Long> getTaskIdsByFullPath(List<TaskSums> tasksSums, Task parentTask) {
+		Map<String, Long> taskIdsByFullPath = new HashMap<String, Long>();
+		if (parentTask != null) {
+			taskIdsByFullPath.put(parentTask.getFullPath(), parentTask.getId());
 		}
-		// Register children
-		taskChildrenCache.put(parentTaskId, subTaskIds);
-		return subTaskIds;
+		for (TaskSums sums : tasksSums) {
+			taskIdsByFullPath.put(sums.getTask().getFullPath(), sums.getTask().getId());
+		}
+		return taskIdsByFullPath;
+	}
+
+	private static Long getParentTaskId(Task task, Map<String, Long> taskIdsByFullPath) {
+		String path = task.getPath();
+		return path == null || path.length() == 0 ? null : taskIdsByFullPath.get(path);
 	}
 
 	@Override
@@ -127,9 +213,11 @@ class TaskTreeCellProvider extends AbstractSafeTreeTableCellProviderCallback<Lon
 
 	@Override
 	protected final boolean unsafeContains(Long taskId) {
-		return taskSumsCache.containsKey(taskId) || 
-				// The task may not have been yet loaded in cache (if we want to reveal a deep task for example)
-				modelMgr.getTask(taskId) != null;
+		if (!taskSumsCache.containsKey(taskId)) {
+			// The task may not have been yet loaded in cache (if we want to reveal a deep task for example)
+			prefetchBranch(taskId);
+		}
+		return taskSumsCache.containsKey(taskId);
 	}
 
 	@Override
@@ -139,35 +227,30 @@ class TaskTreeCellProvider extends AbstractSafeTreeTableCellProviderCallback<Lon
 
 	@Override
 	protected boolean unsafeHasChildren(Long taskId) {
-		if (taskSumsCache.containsKey(taskId)) {
-			return !taskSumsCache.get(taskId).isLeaf();
+		List<Long> subTaskIds = taskChildrenCache.get(taskId);
+		if (subTaskIds != null) {
+			return !subTaskIds.isEmpty();
 		}
-		else {
-			return !modelMgr.isLeaf(taskId);
+		if (!taskSumsCache.containsKey(taskId)) {
+			prefetchBranch(taskId);
 		}
+		TaskSums sums = taskSumsCache.get(taskId);
+		return sums != null && !sums.isLeaf();
 	}
 
 	@Override
 	protected final Long unsafeGetParent(Long taskId) {
-		Long parentTaskId = parentTaskCache.get(taskId);
-		if (parentTaskId != null) {
-			return parentTaskId;
-		}
-		else {
+		if (!parentTaskCache.containsKey(taskId)) {
 			// The task may not have been yet loaded in cache (if we want to reveal a deep task for example)
-			Task parentTask = modelMgr.getParentTask(modelMgr.getTask(taskId));
-			return parentTask != null ? parentTask.getId() : null;
+			prefetchBranch(taskId);
 		}
+		return parentTaskCache.get(taskId);
 	}
 
 	@Override
 	protected IView<?> unsafeGetCell(Long taskId, String propertyId)
 			throws Exception {
-		try {
-			return cellLogics.get(taskId).get(propertyId).getView();
-		} catch (ExecutionException e) {
-			throw new IllegalStateException(e);
-		}
+		return cellLogics.get(taskId, propertyId).getView();
 	}
 
 	@Override
@@ -193,24 +276,108 @@ class TaskTreeCellProvider extends AbstractSafeTreeTableCellProviderCallback<Lon
 				updateTaskLabelPropertyAmount(cursor, event.getProperty(), updateAmount);
 				updateTaskLabelPropertyAmount(cursor, ITasksCellLogicFactory.DELTA_PROPERTY_ID, updateAmountForDelta);
 			}
-		} catch (ExecutionException e) {
-			throw new IllegalStateException(e);
-		}
-		catch (StringFormatException e) {
+		} catch (StringFormatException e) {
 			throw new IllegalStateException(e);
 		}
 		
 	}
 
-	private void updateTaskLabelPropertyAmount(long taskId, String property, long amount) throws ExecutionException, StringFormatException {
-		ILabelLogic.View view = ((ILabelLogic) cellLogics.get(taskId).get(property)).getView();
-		long actualDelta = StringHelper.entryToHundredth(view.getLabel());
-		view.setLabel(StringHelper.hundredthToEntry(actualDelta + amount));
+	/**
+	 * Applies committed changes : the children of the parents of the
+	 * modified tasks (and of the tasks whose contributions have changed) are
+	 * reloaded the next time they are requested, with the sums of their
+	 * ancestors.
+	 * 
+	 * @param changes
+	 *            the changes.
+	 * @param local
+	 *            tells whether the changes have been made by the current
+	 *            session.
+	 * @return <code>true</code> if the tree must be refreshed.
+	 */
+	boolean applyChanges(List<EntityChange> changes, boolean local) {
+		boolean changed = false;
+		for (EntityChange change : changes) {
+			if (change.getEntityType() == null) {
+				// Any task may have changed
+				taskChildrenCache.clear();
+				cellLogics.invalidateAll();
+				changed = true;
+			}
+			else if (change.concerns(Task.class)) {
+				boolean structural = change.getKind() != Kind.UPDATED
+						|| change.getChangedFields() == null;
+				// The amounts updated by the current session are already
+				// displayed (see handle(TaskUpdatedEvent))
+				if (!local || structural) {
+					long taskId = (Long) change.getId();
+					changed |= invalidateBranch(taskId,
+							structural && change.getKind() != Kind.REMOVED);
+				}
+			}
+			else if (change.concerns(Contribution.class)) {
+				// The consumed sums of the task and of its parents change
+				changed |= invalidateBranch(
+						((Contribution) change.getEntity()).getTaskId(), false);
+			}
+		}
+		return changed;
+	}
+
+	private boolean invalidateBranch(long taskId, boolean lookup) {
+		boolean invalidated = false;
+		// Branch known by the cache
+		Long cursor = taskId;
+		while (parentTaskCache.containsKey(cursor)) {
+			Long parentTaskId = parentTaskCache.get(cursor);
+			invalidated |= invalidateChildren(parentTaskId);
+			if (parentTaskId == null) {
+				break;
+			}
+			cursor = parentTaskId;
+		}
+		// Current branch (the task may have been created or moved, or may not
+		// have been loaded yet)
+		if (lookup || !parentTaskCache.containsKey(taskId)) {
+			Task task = modelMgr.getTask(taskId);
+			while (task != null) {
+				Task parentTask = modelMgr.getParentTask(task);
+				invalidated |= invalidateChildren(parentTask != null ? parentTask.getId() : null);
+				task = parentTask;
+			}
+		}
+		return invalidated;
+	}
+
+	private boolean invalidateChildren(Long parentTaskId) {
+		List<Long> subTaskIds = taskChildrenCache.remove(parentTaskId);
+		if (subTaskIds == null) {
+			return false;
+		}
+		for (Long subTaskId : subTaskIds) {
+			cellLogics.invalidate(subTaskId);
+		}
+		return true;
+	}
+
+	private void updateTaskLabelPropertyAmount(long taskId, String property, long amount) throws StringFormatException {
+		ILabelLogic cellLogic = (ILabelLogic) cellLogics.getIfPresent(taskId, property);
+		if (cellLogic != null) {
+			ILabelLogic.View view = cellLogic.getView();
+			long actualDelta = StringHelper.entryToHundredth(view.getLabel());
+			view.setLabel(StringHelper.hundredthToEntry(actualDelta + amount));
+		}
+		else if (parentTaskCache.containsKey(taskId)) {
+			// The cell has been evicted (or has not been created yet) : the
+			// task sums are reloaded when it is requested again
+			invalidateChildren(parentTaskCache.get(taskId));
+		}
 	}
 
 	@Override
 	public void dispose() {
 		getContext().getEventBus().unregister(this);
+		cellLogics.invalidateAll();
 	}
 
 }
\ No newline at end of file
@@ -2,16 +2,18 @@ package org.activitymgr.ui.web.logic.impl.internal;
 
 import java.util.Set;
 
+import org.activitymgr.ui.web.logic.IEventListener;
 import org.activitymgr.ui.web.logic.ITabFolderLogic;
 import org.activitymgr.ui.web.logic.ITasksTabLogic;
 import org.activitymgr.ui.web.logic.ITreeContentProviderCallback;
 import org.activitymgr.ui.web.logic.impl.AbstractTabLogicImpl;
+import org.activitymgr.ui.web.logic.impl.event.EntitiesChangedEvent;
 import org.activitymgr.ui.web.logic.impl.event.TaskSelectedEvent;
 import org.activitymgr.ui.web.logic.spi.ITabButtonFactory;
 
 import com.google.inject.Inject;
 
-public class TasksTabLogicImpl extends AbstractTabLogicImpl<ITasksTabLogic.View> implements ITasksTabLogic {
+public class TasksTabLogicImpl extends AbstractTabLogicImpl<ITasksTabLogic.View> implements ITasksTabLogic, IEventListener<EntitiesChangedEvent> {
 
 	@Inject(optional = true)
 	private Set<ITabButtonFactory<ITasksTabLogic>> buttonFactories;
@@ -22,10 +24,20 @@ public class TasksTabLogicImpl extends AbstractTabLogicImpl<ITasksTabLogic.View>
 		treeContentCallback = new TaskTreeCellProvider(this, null, false);
 		getView().setTreeContentProviderCallback(wrapLogicForView(treeContentCallback, ITreeContentProviderCallback.class));
 
+		// Register the committed changes event
+		getEventBus().register(EntitiesChangedEvent.class, this);
+
 		// Add buttons
 		registerButtons(buttonFactories);
 	}
 
+	@Override
+	public void handle(EntitiesChangedEvent event) {
+		if (treeContentCallback.applyChanges(event.getChanges(), event.isLocal())) {
+			getView().reloadTaskTreeItems();
+		}
+	}
+
 	@Override
 	public String getLabel() {
 		return "Tasks";
@@ -38,6 +50,7 @@ public class TasksTabLogicImpl extends AbstractTabLogicImpl<ITasksTabLogic.View>
 
 	@Override
 	public void dispose() {
+		getEventBus().unregister(this);
 		treeContentCallback.dispose();
 		super.dispose();
 	}
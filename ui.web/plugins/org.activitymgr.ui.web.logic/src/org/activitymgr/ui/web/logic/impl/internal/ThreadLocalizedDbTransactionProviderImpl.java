@@ -1,19 +1,57 @@
 package org.activitymgr.ui.web.logic.impl.internal;
 
+import java.lang.reflect.Method;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.DataSource;
 
+import org.activitymgr.core.model.ReplicaRouter;
+import org.activitymgr.core.model.TransactionSynchronizer;
+
 import com.google.inject.Provider;
 
 public class ThreadLocalizedDbTransactionProviderImpl implements Provider<DbTransactionContext> {
 	
 	private DataSource ds;
 
+	/** Read replica datasource (<code>null</code> if none is configured) */
+	private DataSource replicaDs;
+
+	/** Read replica router */
+	private ReplicaRouter replicaRouter;
+
+	/** Task indexes transactions synchronizer */
+	private Provider<TransactionSynchronizer> synchronizerProvider;
+
 	private ThreadLocal<DbTransactionContext> transactions = new ThreadLocal<DbTransactionContext>();
 
+	/** Transactions counters (metrics) */
+	private AtomicLong readOnlyTransactionsCount = new AtomicLong();
+	private AtomicLong readWriteTransactionsCount = new AtomicLong();
+	private AtomicLong noConnectionTransactionsCount = new AtomicLong();
+
 	public ThreadLocalizedDbTransactionProviderImpl(DataSource ds) {
+		this(ds, null, null);
+	}
+
+	public ThreadLocalizedDbTransactionProviderImpl(DataSource ds,
+			DataSource replicaDs, ReplicaRouter replicaRouter) {
 		this.ds = ds;
+		this.replicaDs = replicaDs;
+		this.replicaRouter = replicaRouter;
+	}
+
+	/**
+	 * Sets the task indexes transactions synchronizer provider.
+	 * 
+	 * @param synchronizerProvider
+	 *            the synchronizer provider.
+	 */
+	public void setSynchronizerProvider(
+			Provider<TransactionSynchronizer> synchronizerProvider) {
+		this.synchronizerProvider = synchronizerProvider;
 	}
 
 	public DbTransactionContext newCtx() throws SQLException {
@@ -21,14 +59,107 @@ public class ThreadLocalizedDbTransactionProviderImpl implements Provider<DbTran
 		if (dbTransactionContext != null) {
 			throw new IllegalStateException("Previous database context not released for the current thread");
 		}
-		dbTransactionContext = new DbTransactionContext(ds.getConnection());
+		// Transactions are read-only until a model manager method that
+		// is not read-only is invoked, and the connection is only borrowed
+		// on first use
+		dbTransactionContext = new DbTransactionContext(ds, replicaDs,
+				synchronizerProvider.get());
 		transactions.set(dbTransactionContext);
 		return dbTransactionContext;
 	}
-	
+
+	/**
+	 * Switches the current transaction to read-write mode (if it is not
+	 * already the case).
+	 * 
+	 * <p>
+	 * As the read-only mode cannot be changed in the middle of a transaction,
+	 * the read-only transaction is ended first (there is nothing to commit)
+	 * if the connection has already been used.
+	 * </p>
+	 * 
+	 * @throws SQLException
+	 *             thrown if a JDBC error occurs.
+	 */
+	public void beginReadWrite() throws SQLException {
+		DbTransactionContext dbTransactionContext = transactions.get();
+		if (dbTransactionContext != null && dbTransactionContext.isReadOnly()) {
+			// Writes go to the primary database
+			dbTransactionContext.route(false);
+			if (dbTransactionContext.hasTx()) {
+				Connection tx = dbTransactionContext.getTx();
+				tx.rollback();
+				tx.setReadOnly(false);
+			}
+			dbTransactionContext.setReadOnly(false);
+		}
+	}
+
+	/**
+	 * Tells whether a read-only model manager call of the current transaction
+	 * must be routed to the replica.
+	 * 
+	 * @param method
+	 *            the invoked model manager method.
+	 * @return <code>true</code> if the replica must be used.
+	 * @see ReplicaRouter#useReplica(Method, Object)
+	 */
+	public boolean useReplica(Method method) {
+		DbTransactionContext dbTransactionContext = transactions.get();
+		return replicaRouter != null && dbTransactionContext != null
+				&& dbTransactionContext.isReadOnly()
+				&& replicaRouter.useReplica(method, dbTransactionContext.getUser());
+	}
+
+	/**
+	 * Routes the next database accesses of the current read-only transaction
+	 * to the replica or to the primary database.
+	 * 
+	 * @param replica
+	 *            <code>true</code> to use the replica.
+	 * @throws SQLException
+	 *             thrown if a JDBC error occurs.
+	 */
+	public void route(boolean replica) throws SQLException {
+		DbTransactionContext dbTransactionContext = transactions.get();
+		if (dbTransactionContext != null && dbTransactionContext.isReadOnly()) {
+			dbTransactionContext.route(replica);
+		}
+	}
+
+	/**
+	 * Gives the connection of the current read-only transaction back to the
+	 * pool before a long wait (it will be borrowed again on next use).
+	 * 
+	 * @throws SQLException
+	 *             thrown if a JDBC error occurs.
+	 */
+	public void releaseConnection() throws SQLException {
+		DbTransactionContext dbTransactionContext = transactions.get();
+		if (dbTransactionContext != null && dbTransactionContext.isReadOnly()) {
+			dbTransactionContext.close();
+		}
+	}
+
 	public void release() throws SQLException {
-		transactions.get().getTx().close();
+		DbTransactionContext dbTransactionContext = transactions.get();
 		transactions.remove();
+		// The uncommitted task indexes modifications are forgotten, and if
+		// the writes have been committed, the replica is not used for this
+		// user until it catches up
+		synchronizerProvider.get().release(replicaRouter,
+				dbTransactionContext.getUser());
+		if (!dbTransactionContext.hasTx()) {
+			// The database has not been accessed
+			noConnectionTransactionsCount.incrementAndGet();
+		}
+		else if (dbTransactionContext.isReadOnly()) {
+			readOnlyTransactionsCount.incrementAndGet();
+		}
+		else {
+			readWriteTransactionsCount.incrementAndGet();
+		}
+		dbTransactionContext.close();
 	}
 
 	@Override
@@ -36,4 +167,34 @@ public class ThreadLocalizedDbTransactionProviderImpl implements Provider<DbTran
 		return transactions.get();
 	}
 
+	/**
+	 * @return the count of the released read-only transactions.
+	 */
+	public long getReadOnlyTransactionsCount() {
+		return readOnlyTransactionsCount.get();
+	}
+
+	/**
+	 * @return the count of the released read-write transactions.
+	 */
+	public long getReadWriteTransactionsCount() {
+		return readWriteTransactionsCount.get();
+	}
+
+	/**
+	 * @return the read replica router (<code>null</code> if no replica is
+	 *         configured).
+	 */
+	public ReplicaRouter getReplicaRouter() {
+		return replicaRouter;
+	}
+
+	/**
+	 * @return the count of the released transactions that have not accessed
+	 *         the database (and so have not borrowed any connection).
+	 */
+	public long getNoConnectionTransactionsCount() {
+		return noConnectionTransactionsCount.get();
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,267 @@
+package org.activitymgr.ui.web.logic.impl.internal;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Contribution;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.misc.TaskContributions;
+import org.activitymgr.ui.web.logic.ILogicContext;
+import org.activitymgr.ui.web.logic.impl.event.EntityChange;
+import org.activitymgr.ui.web.logic.spi.IContributionsCellLogicFactory;
+import org.apache.log4j.Logger;
+
+import com.google.inject.Inject;
+
+/**
+ * Session cache of the contributions of the weeks that surround the
+ * displayed week.
+ *
+ * <p>
+ * Once a week is displayed, the previous and the next weeks are loaded in
+ * background, so that the week navigation doesn't wait for the database.
+ * A prefetched week is handed over to the contributions table when it is
+ * displayed (the cells modify it), and a prefetched week is discarded as
+ * soon as one of its contributions or tasks is modified.
+ * </p>
+ */
+public class WeekContributionsCache {
+
+	/**
+	 * Prefetched week.
+	 */
+	private static class Week {
+		final long contributorId;
+		/** First day (inclusive) */
+		final Calendar start;
+		/** Last day (exclusive) */
+		final Calendar end;
+		final Future<List<TaskContributions>> future;
+
+		Week(Collaborator contributor, Calendar firstDayOfWeek,
+				Future<List<TaskContributions>> future) {
+			this.contributorId = contributor.getId();
+			this.start = (Calendar) firstDayOfWeek.clone();
+			this.end = (Calendar) firstDayOfWeek.clone();
+			this.end.add(Calendar.DATE, 7);
+			this.future = future;
+		}
+	}
+
+	/** Task fields which modification changes the sub-tasks paths */
+	private static final List<String> TASK_PATH_FIELDS = Arrays.asList(
+			"path", "number");
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(WeekContributionsCache.class);
+
+	@Inject
+	private WeekPrefetchService prefetchService;
+
+	@Inject
+	private IContributionsCellLogicFactory cellLogicFactory;
+
+	@Inject
+	private ILogicContext context;
+
+	/** Prefetched weeks by contributor and first day */
+	private final Map<String, Week> weeks = new HashMap<String, Week>();
+
+	/**
+	 * Loads the previous and the next weeks of a week in background (the
+	 * other prefetched weeks are discarded).
+	 *
+	 * @param contributor
+	 *            the contributor.
+	 * @param firstDayOfWeek
+	 *            the first day of the displayed week.
+	 */
+	public synchronized void prefetchAdjacentWeeks(Collaborator contributor,
+			Calendar firstDayOfWeek) {
+		if (!prefetchService.isEnabled() || contributor == null) {
+			return;
+		}
+		Calendar previousWeek = (Calendar) firstDayOfWeek.clone();
+		previousWeek.add(Calendar.DATE, -7);
+		Calendar nextWeek = (Calendar) firstDayOfWeek.clone();
+		nextWeek.add(Calendar.DATE, 7);
+		String previousKey = getKey(contributor, previousWeek);
+		String nextKey = getKey(contributor, nextWeek);
+		Iterator<Map.Entry<String, Week>> it = weeks.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Week> entry = it.next();
+			if (!entry.getKey().equals(previousKey) && !entry.getKey().equals(nextKey)) {
+				entry.getValue().future.cancel(false);
+				it.remove();
+			}
+		}
+		prefetch(previousKey, contributor, previousWeek);
+		prefetch(nextKey, contributor, nextWeek);
+	}
+
+	private void prefetch(String key, final Collaborator contributor,
+			final Calendar firstDayOfWeek) {
+		if (!weeks.containsKey(key)) {
+			Collaborator connected = context.getConnectedCollaborator();
+			Future<List<TaskContributions>> future = prefetchService.submit(
+					connected != null ? connected.getId() : null,
+					new Callable<List<TaskContributions>>() {
+						@Override
+						public List<TaskContributions> call() throws Exception {
+							return cellLogicFactory.loadContributions(
+									contributor, firstDayOfWeek);
+						}
+					});
+			if (future != null) {
+				weeks.put(key, new Week(contributor, firstDayOfWeek, future));
+			}
+		}
+	}
+
+	/**
+	 * Hands over a prefetched week (waits for it if it is still being
+	 * loaded).
+	 *
+	 * @param contributor
+	 *            the contributor.
+	 * @param firstDayOfWeek
+	 *            the first day of the week.
+	 * @return the week contributions or <code>null</code> if the week has
+	 *         not been prefetched (or if the prefetch has failed).
+	 */
+	public List<TaskContributions> take(Collaborator contributor,
+			Calendar firstDayOfWeek) {
+		Week week;
+		synchronized (this) {
+			week = weeks.remove(getKey(contributor, firstDayOfWeek));
+		}
+		List<TaskContributions> result = null;
+		if (week != null) {
+			try {
+				result = week.future.get();
+			} catch (CancellationException e) {
+				// Invalidated meanwhile
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				log.warn("Week prefetch failure", e.getCause());
+			}
+		}
+		if (result != null) {
+			prefetchService.recordHit();
+		} else {
+			prefetchService.recordMiss();
+		}
+		return result;
+	}
+
+	/**
+	 * Discards the prefetched weeks.
+	 */
+	public synchronized void invalidate() {
+		for (Week week : weeks.values()) {
+			week.future.cancel(false);
+		}
+		weeks.clear();
+	}
+
+	/**
+	 * Discards the prefetched weeks that are concerned by some changes.
+	 *
+	 * @param changes
+	 *            the changes.
+	 * @return <code>true</code> if at least one week has been discarded.
+	 */
+	public synchronized boolean invalidate(List<EntityChange> changes) {
+		boolean invalidated = false;
+		Iterator<Week> it = weeks.values().iterator();
+		while (it.hasNext()) {
+			Week week = it.next();
+			if (isConcerned(week, changes)) {
+				week.future.cancel(false);
+				it.remove();
+				invalidated = true;
+			}
+		}
+		return invalidated;
+	}
+
+	private static boolean isConcerned(Week week, List<EntityChange> changes) {
+		for (EntityChange change : changes) {
+			if (change.getEntityType() == Contribution.class
+					&& change.getEntity() != null) {
+				Contribution contribution = (Contribution) change.getEntity();
+				Calendar date = contribution.getDate();
+				if (contribution.getContributorId() == week.contributorId
+						&& !date.before(week.start) && date.before(week.end)) {
+					return true;
+				}
+			}
+			else if (change.getEntityType() == Task.class
+					&& change.getId() != null) {
+				if (isConcerned(week, change)) {
+					return true;
+				}
+			}
+			else if (change.concerns(Contribution.class)
+					|| change.concerns(Task.class)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isConcerned(Week week, EntityChange taskChange) {
+		String[] changedFields = taskChange.getChangedFields();
+		if (changedFields == null
+				|| !Collections.disjoint(TASK_PATH_FIELDS,
+						Arrays.asList(changedFields))) {
+			// The task may have been moved : its former sub-tasks are unknown
+			return true;
+		}
+		if (!week.future.isDone()) {
+			// The week may have been loaded before the change
+			return true;
+		}
+		List<TaskContributions> contributions;
+		try {
+			contributions = week.future.get();
+		} catch (CancellationException e) {
+			return true;
+		} catch (ExecutionException e) {
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return true;
+		}
+		long taskId = ((Number) taskChange.getId()).longValue();
+		// The code of a task is a part of its sub-tasks code path
+		String fullPath = taskChange.getEntity() != null ? ((Task) taskChange
+				.getEntity()).getFullPath() : null;
+		for (TaskContributions taskContributions : contributions) {
+			Task task = taskContributions.getTask();
+			if (task.getId() == taskId
+					|| (fullPath != null && task.getFullPath().startsWith(
+							fullPath))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String getKey(Collaborator contributor, Calendar day) {
+		return contributor.getId() + "/" + day.get(Calendar.YEAR) + "-"
+				+ day.get(Calendar.MONTH) + "-" + day.get(Calendar.DATE);
+	}
+
+}
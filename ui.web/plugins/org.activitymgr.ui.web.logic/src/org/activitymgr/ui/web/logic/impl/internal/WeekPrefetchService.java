@@ -0,0 +1,167 @@
+package org.activitymgr.ui.web.logic.impl.internal;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.activitymgr.ui.web.logic.IConfiguration;
+import org.apache.log4j.Logger;
+
+import com.google.inject.Inject;
+
+/**
+ * Shared by the sessions : loads the weeks contributions in background (see
+ * {@link WeekContributionsCache}).
+ *
+ * <p>
+ * Configuration (under <code>activitymgr.contributions.prefetch</code>) :
+ * <ul>
+ * <li><code>threads</code> : count of prefetch threads (2 by default,
+ * <code>0</code> disables the prefetch),</li>
+ * <li><code>queueSize</code> : maximum count of queued prefetches (50 by
+ * default) ; once the queue is full, the prefetches are dropped (the weeks
+ * are then loaded when they are displayed).</li>
+ * </ul>
+ * </p>
+ */
+public class WeekPrefetchService {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(WeekPrefetchService.class);
+
+	@Inject
+	private ThreadLocalizedDbTransactionProviderImpl dbTxProvider;
+
+	private final ThreadPoolExecutor executor;
+
+	/** Metrics */
+	private final AtomicLong prefetchesCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong hitsCount = new AtomicLong();
+	private final AtomicLong missesCount = new AtomicLong();
+
+	@Inject
+	public WeekPrefetchService(IConfiguration cfg) {
+		IConfiguration prefetchCfg = cfg.getScoped(
+				"activitymgr.contributions.prefetch", null);
+		int threads = prefetchCfg.getInt("threads", 2);
+		int queueSize = prefetchCfg.getInt("queueSize", 50);
+		if (threads <= 0) {
+			executor = null;
+			log.info("Weeks prefetch disabled");
+		} else {
+			executor = new ThreadPoolExecutor(threads, threads, 0,
+					TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+							queueSize), new ThreadFactory() {
+						private final AtomicInteger count = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "week-prefetch-"
+									+ count.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			Activator.shutdownOnStop(executor, 0);
+			log.info("Weeks prefetch : " + threads + " thread(s), "
+					+ queueSize + " queued prefetch(es)");
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the weeks are prefetched.
+	 */
+	public boolean isEnabled() {
+		return executor != null;
+	}
+
+	/**
+	 * Schedules a load in its own (read-only) transaction.
+	 *
+	 * @param userId
+	 *            the identifier of the session user (read replica lag guard),
+	 *            <code>null</code> if unknown.
+	 * @param loader
+	 *            the loader.
+	 * @return the load result or <code>null</code> if the prefetch is
+	 *         disabled or if the queue is full.
+	 */
+	<T> FutureTask<T> submit(final Long userId, final Callable<T> loader) {
+		if (executor == null) {
+			return null;
+		}
+		FutureTask<T> future = new FutureTask<T>(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				DbTransactionContext txCtx = dbTxProvider.newCtx();
+				try {
+					if (userId != null) {
+						txCtx.setUser(userId);
+					}
+					return loader.call();
+				} finally {
+					dbTxProvider.release();
+				}
+			}
+		});
+		try {
+			executor.execute(future);
+			prefetchesCount.incrementAndGet();
+			return future;
+		} catch (RejectedExecutionException e) {
+			droppedCount.incrementAndGet();
+			return null;
+		}
+	}
+
+	void recordHit() {
+		hitsCount.incrementAndGet();
+	}
+
+	void recordMiss() {
+		missesCount.incrementAndGet();
+	}
+
+	/**
+	 * @return the count of queued prefetches.
+	 */
+	public int getQueuedCount() {
+		return executor != null ? executor.getQueue().size() : 0;
+	}
+
+	/**
+	 * @return the count of scheduled prefetches.
+	 */
+	public long getPrefetchesCount() {
+		return prefetchesCount.get();
+	}
+
+	/**
+	 * @return the count of prefetches dropped because the queue was full.
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * @return the count of weeks displayed from a prefetch.
+	 */
+	public long getHitsCount() {
+		return hitsCount.get();
+	}
+
+	/**
+	 * @return the count of weeks loaded when they were displayed.
+	 */
+	public long getMissesCount() {
+		return missesCount.get();
+	}
+
+}
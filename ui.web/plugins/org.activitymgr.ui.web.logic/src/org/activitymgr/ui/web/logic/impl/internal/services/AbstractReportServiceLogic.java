@@ -1,9 +1,19 @@
 package org.activitymgr.ui.web.logic.impl.internal.services;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
 
 import org.activitymgr.core.dto.Collaborator;
 import org.activitymgr.core.dto.Task;
@@ -12,14 +22,78 @@ import org.activitymgr.core.model.IModelMgr;
 import org.activitymgr.core.model.ModelException;
 import org.activitymgr.ui.web.logic.IReportsTabLogic;
 import org.activitymgr.ui.web.logic.impl.AbstractServiceWithAuthenticationLogic;
+import org.activitymgr.ui.web.logic.impl.internal.ChangeLogPollingService;
+import org.activitymgr.ui.web.logic.impl.internal.ReportJob;
+import org.activitymgr.ui.web.logic.impl.internal.ReportJobsManager;
+import org.activitymgr.ui.web.logic.impl.internal.ReportResultStore;
+import org.activitymgr.ui.web.logic.impl.internal.ThreadLocalizedDbTransactionProviderImpl;
 import org.activitymgr.ui.web.logic.spi.IFeatureAccessManager;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.Workbook;
 
+import com.google.gson.JsonObject;
 import com.google.inject.Inject;
 
 public abstract class AbstractReportServiceLogic extends
 		AbstractServiceWithAuthenticationLogic {
 
+	/**
+	 * Response that keeps its content in memory (the headers are directly
+	 * sent).
+	 */
+	private static class BufferedResponse implements Response {
+
+		private final Response response;
+
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		private boolean errorSent;
+
+		BufferedResponse(Response response) {
+			this.response = response;
+		}
+
+		@Override
+		public void setContentType(String contentType) {
+			response.setContentType(contentType);
+		}
+
+		@Override
+		public String getContentType() {
+			return response.getContentType();
+		}
+
+		@Override
+		public void addHeader(String name, String value) {
+			response.addHeader(name, value);
+		}
+
+		@Override
+		public void setStatus(int sc) {
+			response.setStatus(sc);
+		}
+
+		@Override
+		public void sendError(int sc, String msg) throws IOException {
+			errorSent = true;
+			response.sendError(sc, msg);
+		}
+
+		@Override
+		public OutputStream getOutputStream() {
+			return out;
+		}
+
+		byte[] getContent() {
+			return out.toByteArray();
+		}
+
+		boolean isErrorSent() {
+			return errorSent;
+		}
+
+	}
+
 	public static final String COLUMN_IDS_PARAMETER = "columnIds";
 	public static final String CONTRIBUTOR_IDS_PARAMETERS = "contributorIds";
 	public static final String CONTRIBUTOR_CENTRIC_MODE_PARAMETER = "contributorCentricMode";
@@ -31,6 +105,7 @@ public abstract class AbstractReportServiceLogic extends
 	public static final String INTERVAL_TYPE_PARAMETER = "intervalType";
 	public static final String START_PARAMETER = "start";
 	public static final String OMIT_TOTALS_PARAMETER = "omitTotals";
+	public static final String ASYNC_PARAMETER = "async";
 
 	@Inject
 	private IModelMgr modelMgr;
@@ -38,10 +113,25 @@ public abstract class AbstractReportServiceLogic extends
 	@Inject
 	private IFeatureAccessManager featureAccessManager;
 
+	@Inject
+	private ReportBulkhead bulkhead;
+
+	@Inject
+	private ThreadLocalizedDbTransactionProviderImpl dbTxProvider;
+
+	@Inject
+	private ReportJobsManager jobsManager;
+
+	@Inject
+	private ReportResultStore resultStore;
+
+	@Inject
+	private ChangeLogPollingService changeLogPollingService;
+
 	@Override
 	protected final void doService(Collaborator connected, Request parameters,
 			Response response)
-			throws ModelException, IOException {
+			throws ModelException, IOException, HttpException {
 		
 		boolean advancedParametersAllowed = featureAccessManager
 				.hasAccessToTab(connected, IReportsTabLogic.ADVANCED_REPORTS_ID);
@@ -138,11 +228,193 @@ public abstract class AbstractReportServiceLogic extends
 		boolean includeTotals = (omitTotalsParameter == null)
 				|| (!"true".equals(omitTotalsParameter));
 
-		Workbook xls = modelMgr.buildReport(start, intervalType, intervalCount,
-				rootTaskId, taskDepth, onlyKeepTasksWithContributions,
-				byContributor, contributorCentricMode, contributorIds,
-				columnIds, includeTotals, false);
-		doService(connected, parameters, response, xls);
+		// Background generation
+		if (isAsyncSupported()
+				&& "true".equals(parameters.getParameter(ASYNC_PARAMETER))) {
+			ReportJob job = null;
+			try {
+				job = jobsManager.submit(connected.getId(), getPath(), start,
+						intervalType, intervalCount, rootTaskId, taskDepth,
+						onlyKeepTasksWithContributions, byContributor,
+						contributorCentricMode, contributorIds, columnIds,
+						includeTotals);
+			} catch (RejectedExecutionException e) {
+				response.addHeader("Retry-After",
+						String.valueOf(bulkhead.getRetryAfter()));
+				throw new HttpException(503, e.getMessage());
+			}
+			JsonObject json = ReportJobServiceLogic.toJson(job);
+			response.setStatus(202);
+			response.addHeader("Location", json.get("location").getAsString());
+			ReportJobServiceLogic.writeJson(response, json);
+			return;
+		}
+
+		String reportKey = ReportResultStore.key(start, intervalType,
+				intervalCount, rootTaskId, taskDepth,
+				onlyKeepTasksWithContributions, byContributor,
+				contributorCentricMode, contributorIds, columnIds,
+				includeTotals);
+
+		// Conditional request : the report is not built again if the client
+		// already has it (the tag is the same on every server sharing the
+		// database, and changes whenever some data are modified)
+		boolean gzip = acceptsGzip(parameters.getHeader("Accept-Encoding"));
+		response.addHeader("Vary", "Accept-Encoding");
+		String dataGeneration = changeLogPollingService.getDataGeneration();
+		if (dataGeneration != null) {
+			String eTag = '"' + digest(getPath() + '|' + reportKey + '|'
+					+ dataGeneration) + (gzip ? "-gzip" : "") + '"';
+			response.addHeader("ETag", eTag);
+			if (matches(parameters.getHeader("If-None-Match"), eTag)) {
+				response.setStatus(304);
+				return;
+			}
+		}
+
+		// The response is buffered so that it can be compressed (unless an
+		// error is sent)
+		BufferedResponse bufferedResponse = new BufferedResponse(response);
+
+		// Pre-generated report ?
+		byte[] content = resultStore.get(reportKey);
+		if (content != null) {
+			doService(connected, parameters, bufferedResponse,
+					new HSSFWorkbook(new ByteArrayInputStream(content)));
+		}
+		else {
+			// Wait for a report generation slot (the connection must not be
+			// held while waiting)
+			try {
+				dbTxProvider.releaseConnection();
+			} catch (SQLException e) {
+				throw new IllegalStateException("Database connection release failed", e);
+			}
+			boolean acquired = false;
+			try {
+				acquired = bulkhead.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (!acquired) {
+				response.addHeader("Retry-After",
+						String.valueOf(bulkhead.getRetryAfter()));
+				throw new HttpException(503,
+						"Too many reports are being generated, retry later");
+			}
+			try {
+				Workbook xls = modelMgr.buildReport(start, intervalType,
+						intervalCount, rootTaskId, taskDepth,
+						onlyKeepTasksWithContributions, byContributor,
+						contributorCentricMode, contributorIds, columnIds,
+						includeTotals, false);
+				doService(connected, parameters, bufferedResponse, xls);
+			} finally {
+				bulkhead.release();
+			}
+		}
+		if (bufferedResponse.isErrorSent()) {
+			return;
+		}
+
+		byte[] body = bufferedResponse.getContent();
+		if (gzip) {
+			response.addHeader("Content-Encoding", "gzip");
+			GZIPOutputStream out = new GZIPOutputStream(
+					response.getOutputStream());
+			out.write(body);
+			out.finish();
+		}
+		else {
+			response.getOutputStream().write(body);
+		}
+	}
+
+	/**
+	 * Tells whether an <code>Accept-Encoding</code> header accepts the gzip
+	 * encoding (a <code>q</code> value of 0 excludes an encoding).
+	 * 
+	 * @param acceptEncoding
+	 *            the header value (may be <code>null</code>).
+	 * @return <code>true</code> if the gzip encoding is accepted.
+	 */
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		Boolean gzip = null;
+		Boolean any = null;
+		for (String coding : acceptEncoding.split(",")) {
+			String[] params = coding.split(";");
+			String name = params[0].trim().toLowerCase();
+			boolean accepted = true;
+			for (int i = 1; i < params.length; i++) {
+				String param = params[i].trim().toLowerCase();
+				if (param.startsWith("q=")) {
+					try {
+						accepted = Double.parseDouble(param.substring(2)
+								.trim()) > 0;
+					} catch (NumberFormatException e) {
+						accepted = false;
+					}
+				}
+			}
+			if ("gzip".equals(name) || "x-gzip".equals(name)) {
+				gzip = accepted;
+			}
+			else if ("*".equals(name)) {
+				any = accepted;
+			}
+		}
+		return gzip != null ? gzip : any != null && any;
+	}
+
+	/**
+	 * Tells whether an <code>If-None-Match</code> header matches the given
+	 * entity tag.
+	 * 
+	 * @param ifNoneMatch
+	 *            the header value (may be <code>null</code>).
+	 * @param eTag
+	 *            the entity tag.
+	 * @return <code>true</code> if the header matches the entity tag.
+	 */
+	private static boolean matches(String ifNoneMatch, String eTag) {
+		if (ifNoneMatch != null) {
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.startsWith("W/")) {
+					tag = tag.substring(2);
+				}
+				if ("*".equals(tag) || eTag.equals(tag)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static String digest(String value) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			byte[] hash = md.digest(value.getBytes("UTF-8"));
+			return String.format("%032x", new BigInteger(1, hash));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Tells whether the report may be generated in background (see
+	 * {@link #ASYNC_PARAMETER}), in which case the report is later
+	 * downloaded in Excel format through {@link ReportJobServiceLogic}.
+	 * 
+	 * @return <code>true</code> if the background generation is supported.
+	 */
+	protected boolean isAsyncSupported() {
+		return false;
 	}
 
 	protected abstract void doService(Collaborator connected, Request request,
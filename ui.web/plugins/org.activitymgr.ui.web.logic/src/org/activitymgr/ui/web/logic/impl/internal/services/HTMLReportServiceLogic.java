@@ -47,6 +47,8 @@ public class HTMLReportServiceLogic extends AbstractReportServiceLogic {
 		 * https://blogs.technet.microsoft
 		 * .com/the_microsoft_excel_support_team_blog
 		 * /2011/11/15/cannot-download-
+		 * (the page is revalidated with its entity tag, and is only sent
+		 * again if the data has changed)
 		 */
 		response.addHeader("Cache-Control", "max-age=0");
 		response.addHeader("Pragma", "public");
@@ -0,0 +1,185 @@
+package org.activitymgr.ui.web.logic.impl.internal.services;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Map;
+
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.model.ChangeLogPoller;
+import org.activitymgr.core.model.ModelException;
+import org.activitymgr.core.model.ReplicaRouter;
+import org.activitymgr.ui.web.logic.impl.AbstractServiceWithAuthenticationLogic;
+import org.activitymgr.ui.web.logic.impl.event.EventDispatchService;
+import org.activitymgr.ui.web.logic.impl.event.EventDispatchService.ListenerStats;
+import org.activitymgr.ui.web.logic.impl.internal.CellLogicCache;
+import org.activitymgr.ui.web.logic.impl.internal.CellLogicCacheRegistry;
+import org.activitymgr.ui.web.logic.impl.internal.ChangeLogPollingService;
+import org.activitymgr.ui.web.logic.impl.internal.ContributionsWriteBehindService;
+import org.activitymgr.ui.web.logic.impl.internal.ReportJobsManager;
+import org.activitymgr.ui.web.logic.impl.internal.ReportResultStore;
+import org.activitymgr.ui.web.logic.impl.internal.ThreadLocalizedDbTransactionProviderImpl;
+import org.activitymgr.ui.web.logic.impl.internal.WeekPrefetchService;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.internal.Streams;
+import com.google.gson.stream.JsonWriter;
+import com.google.inject.Inject;
+
+public class MetricsServiceLogic extends
+		AbstractServiceWithAuthenticationLogic {
+
+	@Inject
+	private ThreadLocalizedDbTransactionProviderImpl dbTxProvider;
+
+	@Inject
+	private ReportBulkhead reportBulkhead;
+
+	@Inject
+	private ReportJobsManager reportJobsManager;
+
+	@Inject
+	private ReportResultStore reportResultStore;
+
+	@Inject
+	private EventDispatchService eventDispatchService;
+
+	@Inject
+	private ChangeLogPollingService changeLogPollingService;
+
+	@Inject
+	private CellLogicCacheRegistry cellLogicCacheRegistry;
+
+	@Inject
+	private WeekPrefetchService weekPrefetchService;
+
+	@Inject
+	private ContributionsWriteBehindService contributionsWriteBehindService;
+
+	@Override
+	public String getPath() {
+		return "/metrics";
+	}
+
+	@Override
+	protected void doService(Collaborator connected, Request request,
+			Response response) throws ModelException, IOException {
+		// Build the JSON result
+		JsonObject json = new JsonObject();
+		JsonObject transactions = new JsonObject();
+		transactions.addProperty("readOnly",
+				dbTxProvider.getReadOnlyTransactionsCount());
+		transactions.addProperty("readWrite",
+				dbTxProvider.getReadWriteTransactionsCount());
+		transactions.addProperty("withoutConnection",
+				dbTxProvider.getNoConnectionTransactionsCount());
+		json.add("transactions", transactions);
+		ReplicaRouter replicaRouter = dbTxProvider.getReplicaRouter();
+		if (replicaRouter != null) {
+			JsonObject replica = new JsonObject();
+			replica.addProperty("calls", replicaRouter.getReplicaCallsCount());
+			replica.addProperty("lagFallbacks",
+					replicaRouter.getLagFallbacksCount());
+			json.add("replica", replica);
+		}
+		JsonObject reports = new JsonObject();
+		reports.addProperty("maxConcurrent", reportBulkhead.getMaxConcurrent());
+		reports.addProperty("running", reportBulkhead.getRunningCount());
+		reports.addProperty("queued", reportBulkhead.getQueuedCount());
+		reports.addProperty("maxQueued", reportBulkhead.getMaxQueuedCount());
+		reports.addProperty("accepted", reportBulkhead.getAcceptedCount());
+		reports.addProperty("rejected", reportBulkhead.getRejectedCount());
+		reports.addProperty("totalWaitTime", reportBulkhead.getTotalWaitTime());
+		reports.addProperty("maxWaitTime", reportBulkhead.getMaxWaitTime());
+		json.add("reports", reports);
+		JsonObject reportJobs = new JsonObject();
+		reportJobs.addProperty("queued", reportJobsManager.getQueuedCount());
+		reportJobs.addProperty("running", reportJobsManager.getRunningCount());
+		json.add("reportJobs", reportJobs);
+		JsonObject reportStore = new JsonObject();
+		reportStore.addProperty("size", reportResultStore.size());
+		reportStore.addProperty("hits", reportResultStore.getHitsCount());
+		reportStore.addProperty("misses", reportResultStore.getMissesCount());
+		reportStore.addProperty("evictions", reportResultStore.getEvictionsCount());
+		json.add("reportStore", reportStore);
+		JsonObject events = new JsonObject();
+		events.addProperty("asyncQueued", eventDispatchService.getQueuedCount());
+		events.addProperty("asyncCallerRuns",
+				eventDispatchService.getCallerRunsCount());
+		JsonObject listeners = new JsonObject();
+		for (Map.Entry<String, ListenerStats> entry : eventDispatchService
+				.getListenerStats().entrySet()) {
+			ListenerStats stats = entry.getValue();
+			JsonObject listener = new JsonObject();
+			listener.addProperty("calls", stats.getCallsCount());
+			listener.addProperty("failures", stats.getFailuresCount());
+			listener.addProperty("totalTimeMicros", stats.getTotalTime());
+			listener.addProperty("maxTimeMicros", stats.getMaxTime());
+			listeners.add(entry.getKey(), listener);
+		}
+		events.add("listeners", listeners);
+		json.add("events", events);
+		if (changeLogPollingService.isEnabled()) {
+			ChangeLogPoller poller = changeLogPollingService.getPoller();
+			JsonObject changeLog = new JsonObject();
+			changeLog.addProperty("highWaterMark", poller.getHighWaterMark());
+			changeLog.addProperty("polls", poller.getPollsCount());
+			changeLog.addProperty("appliedEntries", poller.getAppliedEntriesCount());
+			changeLog.addProperty("sinceLastPoll",
+					System.currentTimeMillis() - poller.getLastPollTime());
+			changeLog.addProperty("lastLag", poller.getLastLag());
+			changeLog.addProperty("maxLag", poller.getMaxLag());
+			json.add("changeLog", changeLog);
+		}
+		JsonObject cellLogics = new JsonObject();
+		JsonArray sessions = new JsonArray();
+		long totalCount = 0;
+		long totalEstimatedSize = 0;
+		for (CellLogicCache cache : cellLogicCacheRegistry.getCaches()) {
+			JsonObject session = new JsonObject();
+			session.addProperty("login", cache.getLogin());
+			session.addProperty("count", cache.size());
+			session.addProperty("max", cache.getMaxCellLogics());
+			session.addProperty("estimatedBytes", cache.getEstimatedSize());
+			session.addProperty("created", cache.getCreatedCount());
+			session.addProperty("evictions", cache.getEvictionsCount());
+			JsonObject regions = new JsonObject();
+			for (Map.Entry<String, Integer> entry : cache.getRegionSizes().entrySet()) {
+				regions.addProperty(entry.getKey(), entry.getValue());
+			}
+			session.add("regions", regions);
+			sessions.add(session);
+			totalCount += cache.size();
+			totalEstimatedSize += cache.getEstimatedSize();
+		}
+		cellLogics.addProperty("count", totalCount);
+		cellLogics.addProperty("estimatedBytes", totalEstimatedSize);
+		cellLogics.add("sessions", sessions);
+		json.add("cellLogics", cellLogics);
+		JsonObject weekPrefetch = new JsonObject();
+		weekPrefetch.addProperty("enabled", weekPrefetchService.isEnabled());
+		weekPrefetch.addProperty("queued", weekPrefetchService.getQueuedCount());
+		weekPrefetch.addProperty("prefetches", weekPrefetchService.getPrefetchesCount());
+		weekPrefetch.addProperty("dropped", weekPrefetchService.getDroppedCount());
+		weekPrefetch.addProperty("hits", weekPrefetchService.getHitsCount());
+		weekPrefetch.addProperty("misses", weekPrefetchService.getMissesCount());
+		json.add("weekPrefetch", weekPrefetch);
+		JsonObject writeBehind = new JsonObject();
+		writeBehind.addProperty("window", contributionsWriteBehindService.getWindow());
+		writeBehind.addProperty("edits", contributionsWriteBehindService.getEditsCount());
+		writeBehind.addProperty("flushes", contributionsWriteBehindService.getFlushesCount());
+		writeBehind.addProperty("written", contributionsWriteBehindService.getWrittenCount());
+		writeBehind.addProperty("failures", contributionsWriteBehindService.getFailuresCount());
+		json.add("writeBehind", writeBehind);
+
+		// Output the result
+		response.setContentType("application/json");
+		response.addHeader("Cache-Control", "no-cache");
+		OutputStreamWriter out = new OutputStreamWriter(
+				response.getOutputStream(), "UTF-8");
+		JsonWriter jsonWriter = new JsonWriter(out);
+		Streams.write(json, jsonWriter);
+		jsonWriter.flush();
+	}
+
+}
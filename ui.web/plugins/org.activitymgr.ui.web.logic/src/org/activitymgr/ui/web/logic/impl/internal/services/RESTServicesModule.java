@@ -1,5 +1,8 @@
 package org.activitymgr.ui.web.logic.impl.internal.services;
 
+import org.activitymgr.ui.web.logic.impl.internal.ReportJobsManager;
+import org.activitymgr.ui.web.logic.impl.internal.ReportPregenerationScheduler;
+import org.activitymgr.ui.web.logic.impl.internal.ReportResultStore;
 import org.activitymgr.ui.web.logic.spi.IRESTServiceLogic;
 
 import com.google.inject.AbstractModule;
@@ -10,6 +13,12 @@ public class RESTServicesModule extends AbstractModule {
 
 	@Override
 	protected void configure() {
+		// Bind the reports bulkhead, jobs manager & pre-generation
+		bind(ReportBulkhead.class).in(Singleton.class);
+		bind(ReportJobsManager.class).in(Singleton.class);
+		bind(ReportResultStore.class).in(Singleton.class);
+		bind(ReportPregenerationScheduler.class).asEagerSingleton();
+
 		// Bind rest services
 		Multibinder<IRESTServiceLogic> restBinder = Multibinder.newSetBinder(
 				binder(), IRESTServiceLogic.class);
@@ -19,6 +28,12 @@ public class RESTServicesModule extends AbstractModule {
 				.in(Singleton.class);
 		restBinder.addBinding().to(HTMLReportServiceLogic.class)
 				.in(Singleton.class);
+		restBinder.addBinding().to(TaskSuggestionsServiceLogic.class)
+				.in(Singleton.class);
+		restBinder.addBinding().to(MetricsServiceLogic.class)
+				.in(Singleton.class);
+		restBinder.addBinding().to(ReportJobServiceLogic.class)
+				.in(Singleton.class);
 	}
 
 }
@@ -0,0 +1,224 @@
+package org.activitymgr.ui.web.logic.impl.internal.services;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.activitymgr.ui.web.logic.IConfiguration;
+import org.activitymgr.ui.web.logic.LogicModule;
+import org.apache.log4j.Logger;
+
+import com.google.inject.Inject;
+
+/**
+ * Bounds the count of report generations running concurrently.
+ * 
+ * <p>
+ * The reports exceeding the concurrency limit are queued for a while. When
+ * the queue is full or when the timeout expires, the report is rejected (the
+ * client being asked to retry later).
+ * </p>
+ * 
+ * <p>
+ * The concurrency limit is bounded so that the interactive sessions always
+ * keep a reserved share of the connection pool.
+ * </p>
+ * 
+ * <p>
+ * Configuration (under <code>activitymgr.reports</code>) :
+ * <ul>
+ * <li><code>maxConcurrent</code> : maximum count of reports generated
+ * concurrently (2 by default),</li>
+ * <li><code>queueSize</code> : maximum count of queued reports (10 by
+ * default),</li>
+ * <li><code>queueTimeout</code> : maximum time spent in the queue in ms (30 s
+ * by default),</li>
+ * <li><code>retryAfter</code> : delay (in seconds) after which a rejected
+ * client may retry (30 s by default),</li>
+ * <li><code>reservedConnections</code> : count of connections of the pool
+ * (see <code>activitymgr.jdbc.maxActive</code>) reserved for the interactive
+ * sessions (half of the pool by default).</li>
+ * </ul>
+ * </p>
+ */
+public class ReportBulkhead {
+
+	/** Logger */
+	private static Logger log = Logger.getLogger(ReportBulkhead.class);
+
+	private final int maxConcurrent;
+
+	private final int queueSize;
+
+	private final long queueTimeout;
+
+	private final int retryAfter;
+
+	private final Semaphore semaphore;
+
+	/** Metrics */
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicInteger maxQueued = new AtomicInteger();
+	private final AtomicLong acceptedCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private final AtomicLong totalWaitTime = new AtomicLong();
+	private final AtomicLong maxWaitTime = new AtomicLong();
+
+	@Inject
+	public ReportBulkhead(IConfiguration cfg) {
+		IConfiguration reportsCfg = cfg.getScoped("activitymgr.reports", null);
+		int maxActive = cfg.getInt("activitymgr.jdbc.maxActive",
+				LogicModule.DEFAULT_MAX_ACTIVE_CONNECTIONS);
+		int reservedConnections = reportsCfg.getInt("reservedConnections",
+				maxActive / 2);
+		maxConcurrent = Math.max(1, Math.min(
+				reportsCfg.getInt("maxConcurrent", 2), maxActive
+						- reservedConnections));
+		queueSize = reportsCfg.getInt("queueSize", 10);
+		queueTimeout = reportsCfg.getInt("queueTimeout", 30000);
+		retryAfter = reportsCfg.getInt("retryAfter", 30);
+		semaphore = new Semaphore(maxConcurrent, true);
+		log.info("Reports bulkhead : " + maxConcurrent
+				+ " concurrent report(s), " + queueSize + " queued report(s), "
+				+ queueTimeout + " ms queue timeout");
+	}
+
+	/**
+	 * Acquires a report generation permit, waiting in the queue if required.
+	 * 
+	 * @return <code>true</code> if the permit has been acquired,
+	 *         <code>false</code> if the report is rejected (in which case the
+	 *         permit must not be released).
+	 * @throws InterruptedException
+	 *             thrown if the thread is interrupted while waiting.
+	 */
+	public boolean acquire() throws InterruptedException {
+		if (semaphore.tryAcquire()) {
+			acceptedCount.incrementAndGet();
+			return true;
+		}
+		// No free slot : the report is queued (unless the queue is full)
+		int queuedNow = queued.incrementAndGet();
+		try {
+			if (queuedNow > queueSize) {
+				rejectedCount.incrementAndGet();
+				return false;
+			}
+			updateMax(maxQueued, queuedNow);
+			long start = System.currentTimeMillis();
+			boolean acquired = semaphore.tryAcquire(queueTimeout,
+					TimeUnit.MILLISECONDS);
+			long waitTime = System.currentTimeMillis() - start;
+			totalWaitTime.addAndGet(waitTime);
+			updateMax(maxWaitTime, waitTime);
+			if (acquired) {
+				acceptedCount.incrementAndGet();
+			} else {
+				rejectedCount.incrementAndGet();
+			}
+			return acquired;
+		} finally {
+			queued.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Acquires a report generation permit for a background report job. The
+	 * job waits as long as required (it has already been queued by the jobs
+	 * executor).
+	 * 
+	 * @throws InterruptedException
+	 *             thrown if the thread is interrupted while waiting.
+	 * @see org.activitymgr.ui.web.logic.impl.internal.ReportJobsManager
+	 */
+	public void acquireForJob() throws InterruptedException {
+		semaphore.acquire();
+		acceptedCount.incrementAndGet();
+	}
+
+	/**
+	 * Releases a report generation permit.
+	 */
+	public void release() {
+		semaphore.release();
+	}
+
+	private static void updateMax(AtomicInteger max, int value) {
+		int current;
+		while ((current = max.get()) < value
+				&& !max.compareAndSet(current, value))
+			;
+	}
+
+	private static void updateMax(AtomicLong max, long value) {
+		long current;
+		while ((current = max.get()) < value
+				&& !max.compareAndSet(current, value))
+			;
+	}
+
+	/**
+	 * @return the delay (in seconds) after which a rejected client may retry.
+	 */
+	public int getRetryAfter() {
+		return retryAfter;
+	}
+
+	/**
+	 * @return the maximum count of reports generated concurrently.
+	 */
+	public int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	/**
+	 * @return the count of reports being generated.
+	 */
+	public int getRunningCount() {
+		return maxConcurrent - semaphore.availablePermits();
+	}
+
+	/**
+	 * @return the current queue depth.
+	 */
+	public int getQueuedCount() {
+		return Math.min(queued.get(), queueSize);
+	}
+
+	/**
+	 * @return the maximum queue depth observed.
+	 */
+	public int getMaxQueuedCount() {
+		return maxQueued.get();
+	}
+
+	/**
+	 * @return the count of accepted reports.
+	 */
+	public long getAcceptedCount() {
+		return acceptedCount.get();
+	}
+
+	/**
+	 * @return the count of rejected reports.
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * @return the total time spent in the queue (ms).
+	 */
+	public long getTotalWaitTime() {
+		return totalWaitTime.get();
+	}
+
+	/**
+	 * @return the maximum time spent in the queue (ms).
+	 */
+	public long getMaxWaitTime() {
+		return maxWaitTime.get();
+	}
+
+}
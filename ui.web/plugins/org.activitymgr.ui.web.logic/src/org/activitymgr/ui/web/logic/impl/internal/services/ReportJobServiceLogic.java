@@ -0,0 +1,143 @@
+package org.activitymgr.ui.web.logic.impl.internal.services;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.model.ModelException;
+import org.activitymgr.ui.web.logic.impl.AbstractServiceWithAuthenticationLogic;
+import org.activitymgr.ui.web.logic.impl.internal.ReportJob;
+import org.activitymgr.ui.web.logic.impl.internal.ReportJobsManager;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.internal.Streams;
+import com.google.gson.stream.JsonWriter;
+import com.google.inject.Inject;
+
+/**
+ * Gives access to the report jobs of the connected collaborator.
+ * 
+ * <p>
+ * Without <code>id</code> parameter, the jobs are listed. Otherwise, the
+ * generated report is downloaded if the job is done, and the job status is
+ * returned (with a 202 status code) if it is still pending.
+ * </p>
+ */
+public class ReportJobServiceLogic extends
+		AbstractServiceWithAuthenticationLogic {
+
+	public static final String PATH = "/report/job";
+
+	public static final String ID_PARAMETER = "id";
+
+	@Inject
+	private ReportJobsManager jobsManager;
+
+	@Override
+	public String getPath() {
+		return PATH;
+	}
+
+	@Override
+	protected void doService(Collaborator connected, Request request,
+			Response response) throws ModelException, IOException,
+			HttpException {
+		String id = request.getParameter(ID_PARAMETER);
+		if (id == null) {
+			JsonArray jobs = new JsonArray();
+			for (ReportJob job : jobsManager.getJobs(connected.getId())) {
+				jobs.add(toJson(job));
+			}
+			writeJson(response, jobs);
+		} else {
+			ReportJob job = jobsManager.getJob(id);
+			// The jobs of other collaborators are hidden
+			if (job == null || job.getOwnerId() != connected.getId()) {
+				throw new HttpException(404, "Unknown report job");
+			}
+			switch (job.getStatus()) {
+			case QUEUED:
+			case RUNNING:
+				response.setStatus(202);
+				writeJson(response, toJson(job));
+				break;
+			case FAILED:
+				throw new HttpException(500, "Report generation failed : "
+						+ job.getErrorMessage());
+			case DONE:
+				response.setContentType("application/vnd.ms-excel");
+				SimpleDateFormat sdf = new SimpleDateFormat(
+						"yyyyMMdd-HHmmss-SSS");
+				String name = "am-report-"
+						+ sdf.format(new Date(job.getCompletionDate()))
+						+ ".xls";
+				response.addHeader("Content-Disposition",
+						"attachment; filename=" + name);
+				InputStream in = new FileInputStream(job.getFile());
+				try {
+					OutputStream out = response.getOutputStream();
+					byte[] buf = new byte[8192];
+					int n;
+					while ((n = in.read(buf)) > 0) {
+						out.write(buf, 0, n);
+					}
+				} finally {
+					in.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Converts a job into JSON.
+	 * 
+	 * @param job
+	 *            the job.
+	 * @return the JSON object.
+	 */
+	static JsonObject toJson(ReportJob job) {
+		JsonObject json = new JsonObject();
+		json.addProperty("id", job.getId());
+		json.addProperty("name", job.getName());
+		json.addProperty("status", job.getStatus().name());
+		if (job.getPhase() != null) {
+			json.addProperty("phase", job.getPhase().name());
+		}
+		json.addProperty("progress", job.getProgress());
+		if (job.getErrorMessage() != null) {
+			json.addProperty("error", job.getErrorMessage());
+		}
+		json.addProperty("location", "/service" + PATH + "?" + ID_PARAMETER
+				+ "=" + job.getId());
+		return json;
+	}
+
+	/**
+	 * Writes a JSON result.
+	 * 
+	 * @param response
+	 *            the response.
+	 * @param json
+	 *            the JSON result.
+	 * @throws IOException
+	 *             thrown if an I/O error occurs.
+	 */
+	static void writeJson(Response response, JsonElement json)
+			throws IOException {
+		response.setContentType("application/json");
+		response.addHeader("Cache-Control", "no-cache");
+		OutputStreamWriter out = new OutputStreamWriter(
+				response.getOutputStream(), "UTF-8");
+		JsonWriter jsonWriter = new JsonWriter(out);
+		Streams.write(json, jsonWriter);
+		jsonWriter.flush();
+	}
+
+}
@@ -0,0 +1,93 @@
+package org.activitymgr.ui.web.logic.impl.internal.services;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+
+import org.activitymgr.core.dto.Collaborator;
+import org.activitymgr.core.dto.Task;
+import org.activitymgr.core.dto.misc.TaskSuggestions;
+import org.activitymgr.core.model.IModelMgr;
+import org.activitymgr.core.model.ModelException;
+import org.activitymgr.ui.web.logic.impl.AbstractServiceWithAuthenticationLogic;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.internal.Streams;
+import com.google.gson.stream.JsonWriter;
+import com.google.inject.Inject;
+
+public class TaskSuggestionsServiceLogic extends
+		AbstractServiceWithAuthenticationLogic {
+
+	public static final String FILTER_PARAMETER = "filter";
+	public static final String CURSOR_PARAMETER = "cursor";
+	public static final String SIZE_PARAMETER = "size";
+
+	private static final int DEFAULT_SIZE = 10;
+	private static final int MAX_SIZE = 100;
+
+	@Inject
+	private IModelMgr modelMgr;
+
+	@Override
+	public String getPath() {
+		return "/tasks/suggestions";
+	}
+
+	@Override
+	protected void doService(Collaborator connected, Request request,
+			Response response) throws ModelException, IOException,
+			HttpException {
+		String filter = request.getParameter(FILTER_PARAMETER);
+		if (filter == null) {
+			filter = "";
+		}
+		String cursor = request.getParameter(CURSOR_PARAMETER);
+		if (cursor != null && "".equals(cursor.trim())) {
+			cursor = null;
+		}
+		int size = DEFAULT_SIZE;
+		String sizeParam = request.getParameter(SIZE_PARAMETER);
+		if (sizeParam != null) {
+			try {
+				size = Integer.parseInt(sizeParam.trim());
+			} catch (NumberFormatException e) {
+				throw new HttpException(400, "Invalid size : " + sizeParam);
+			}
+			if (size < 1) {
+				throw new HttpException(400, "Invalid size : " + sizeParam);
+			}
+			size = Math.min(MAX_SIZE, size);
+		}
+
+		TaskSuggestions suggestions = modelMgr.getTaskSuggestions(connected,
+				filter, cursor, size);
+
+		// Build the JSON result
+		JsonObject json = new JsonObject();
+		JsonArray tasks = new JsonArray();
+		for (int i = 0; i < suggestions.getTasks().length; i++) {
+			Task task = suggestions.getTasks()[i];
+			JsonObject jsonTask = new JsonObject();
+			jsonTask.addProperty("id", task.getId());
+			jsonTask.addProperty("code", task.getCode());
+			jsonTask.addProperty("name", task.getName());
+			jsonTask.addProperty("codePath", suggestions.getTaskCodePaths()[i]);
+			tasks.add(jsonTask);
+		}
+		json.add("tasks", tasks);
+		if (suggestions.getNextCursor() != null) {
+			json.addProperty("nextCursor", suggestions.getNextCursor());
+		}
+
+		// Output the result
+		response.setContentType("application/json");
+		response.addHeader("Cache-Control", "no-cache");
+		OutputStreamWriter out = new OutputStreamWriter(
+				response.getOutputStream(), "UTF-8");
+		JsonWriter jsonWriter = new JsonWriter(out);
+		Streams.write(json, jsonWriter);
+		jsonWriter.flush();
+	}
+
+}
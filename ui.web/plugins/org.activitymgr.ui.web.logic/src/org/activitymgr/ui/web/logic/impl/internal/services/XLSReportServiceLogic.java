@@ -14,6 +14,11 @@ public class XLSReportServiceLogic extends AbstractReportServiceLogic {
 		return "/report/xls";
 	}
 
+	@Override
+	protected boolean isAsyncSupported() {
+		return true;
+	}
+
 	@Override
 	protected void doService(Collaborator connected, Request request,
 			Response response, Workbook report) throws IOException {
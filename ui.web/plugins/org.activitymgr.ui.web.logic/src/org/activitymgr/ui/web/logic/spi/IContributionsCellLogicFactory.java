@@ -12,6 +12,8 @@ import org.activitymgr.ui.web.logic.ILogic;
 import org.activitymgr.ui.web.logic.ILogicContext;
 import org.activitymgr.ui.web.logic.impl.AbstractLogicImpl;
 import org.activitymgr.ui.web.logic.impl.ContributionsCellLogicFatory;
+import org.activitymgr.ui.web.logic.impl.ContributionsTotals;
+import org.activitymgr.ui.web.logic.impl.ContributionsWriteBuffer;
 
 /**
  * @author jbrazeau
@@ -41,6 +43,7 @@ public interface IContributionsCellLogicFactory extends ICellLogicFactory {
 
 	ILogic<?> createCellLogic(AbstractLogicImpl<?> parentLogic, ILogicContext context, Collaborator contributor,
 			Calendar firstDayOfWeek, TaskContributions weekContributions,
+			ContributionsTotals totals, ContributionsWriteBuffer writeBuffer,
 			String propertyId);
 
 	List<TaskContributions> loadContributions(
@@ -28,6 +28,8 @@ public interface IRESTServiceLogic {
 
 		void addHeader(String name, String value);
 
+		void setStatus(int sc);
+
 		void sendError(int sc, String msg) throws IOException;
 
 		OutputStream getOutputStream() throws IOException;
@@ -19,6 +19,7 @@ import com.vaadin.ui.Component;
 import com.vaadin.ui.HorizontalLayout;
 import com.vaadin.ui.Label;
 import com.vaadin.ui.Panel;
+import com.vaadin.ui.AbstractTextField.TextChangeEventMode;
 import com.vaadin.ui.TextField;
 import com.vaadin.ui.Tree;
 import com.vaadin.ui.VerticalLayout;
@@ -32,6 +33,9 @@ public class AbstractTaskChooserDialog<LOGIC extends ITaskChooserLogic<?>>
 	private Button cancel = new Button("Cancel", this);
 	private LOGIC logic;
 	private Label statusLabel;
+	/** Delay (in ms) after which a filter modification is sent to the logic */
+	private static final int FILTER_TEXT_CHANGE_TIMEOUT = 300;
+
 	private TextField filterField;
 	private Tree taskTree;
 
@@ -98,6 +102,9 @@ public class AbstractTaskChooserDialog<LOGIC extends ITaskChooserLogic<?>>
         filterField = new TextField();
         filterField.setWidth("100%");
         filterField.setImmediate(true);
+        // Only notify the logic when the user pauses typing
+        filterField.setTextChangeEventMode(TextChangeEventMode.LAZY);
+        filterField.setTextChangeTimeout(FILTER_TEXT_CHANGE_TIMEOUT);
         vl.addComponent(filterField);
         filterField.setInputPrompt("Type a text to filter...");
        
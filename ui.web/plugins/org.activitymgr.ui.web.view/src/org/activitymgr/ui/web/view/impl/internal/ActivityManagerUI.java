@@ -11,20 +11,24 @@ import org.activitymgr.ui.web.view.impl.dialogs.YesNoDialog;
 
 import com.google.inject.Inject;
 import com.google.inject.Injector;
+import com.vaadin.annotations.Push;
 import com.vaadin.annotations.Theme;
 import com.vaadin.server.VaadinRequest;
 import com.vaadin.server.VaadinService;
+import com.vaadin.shared.ui.ui.Transport;
 import com.vaadin.ui.Component;
 import com.vaadin.ui.Notification;
 import com.vaadin.ui.Notification.Type;
 import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
 import com.vaadin.ui.Window;
 
 @Theme("activitymgr")
+// Pushes the changes made by the other sessions
+@Push(transport = Transport.LONG_POLLING)
 @SuppressWarnings("serial")
 public class ActivityManagerUI extends UI implements IRootLogic.View {
 
-	@SuppressWarnings("unused")
 	private IRootLogic logic;
 	private Cookie[] cookies;
 
@@ -114,4 +118,41 @@ public class ActivityManagerUI extends UI implements IRootLogic.View {
 	public void openExternalUrl(String url) {
 		getUI().getPage().open(url, "_blank");
 	}
+
+	@Override
+	public void notifyRemoteChanges() {
+		try {
+			access(new Runnable() {
+				@Override
+				public void run() {
+					logic.onRemoteChanges();
+				}
+			});
+		} catch (UIDetachedException e) {
+			// The session is being closed
+		}
+	}
+
+	@Override
+	public void notifyPendingWrites() {
+		try {
+			access(new Runnable() {
+				@Override
+				public void run() {
+					logic.onPendingWrites();
+				}
+			});
+		} catch (UIDetachedException e) {
+			// The session is being closed (the modifications have already
+			// been written)
+		}
+	}
+
+	@Override
+	public void detach() {
+		if (logic != null) {
+			logic.dispose();
+		}
+		super.detach();
+	}
 }
@@ -1,11 +1,11 @@
 package org.activitymgr.ui.web.view.impl.internal;
 
 import org.activitymgr.ui.web.logic.ICollaboratorsTabLogic;
-import org.activitymgr.ui.web.logic.ITableCellProviderCallback;
+import org.activitymgr.ui.web.logic.IPagedTableCellProviderCallback;
 import org.activitymgr.ui.web.view.AbstractTabPanel;
 import org.activitymgr.ui.web.view.IResourceCache;
 import org.activitymgr.ui.web.view.impl.internal.util.AlignHelper;
-import org.activitymgr.ui.web.view.impl.internal.util.TableDatasource;
+import org.activitymgr.ui.web.view.impl.internal.util.PagedTableDatasource;
 
 import com.google.inject.Inject;
 import com.vaadin.ui.Component;
@@ -33,8 +33,8 @@ public class CollaboratorsPanel extends AbstractTabPanel<ICollaboratorsTabLogic>
 	}
     @Override
 	public void setCollaboratorsProviderCallback(
-			final ITableCellProviderCallback<Long> collaboratorsProvider) {
-		TableDatasource<Long> dataSource = new TableDatasource<Long>(getResourceCache(), collaboratorsProvider);
+			final IPagedTableCellProviderCallback<Long> collaboratorsProvider) {
+		PagedTableDatasource<Long> dataSource = new PagedTableDatasource<Long>(getResourceCache(), collaboratorsProvider);
 		collaboratorsTable.setContainerDataSource(dataSource);
 		for (String propertyId : dataSource.getContainerPropertyIds()) {
 			collaboratorsTable.addGeneratedColumn(propertyId, new Table.ColumnGenerator() {
@@ -134,7 +134,18 @@ public class ContributionTaskChooserDialog extends
 
     @Override
     public void setRecentTasks(Map<Long, String> recentTasks) {
-    	MapBasedDatasource<Long> datasource = new MapBasedDatasource<Long>(recentTasks);
+    	recentTasksSelect.setCaption("Recent :");
+    	setRightListTasks(recentTasks);
+    }
+
+    @Override
+    public void setTaskSuggestions(Map<Long, String> suggestedTasks) {
+    	recentTasksSelect.setCaption("Suggestions :");
+    	setRightListTasks(suggestedTasks);
+    }
+
+    private void setRightListTasks(Map<Long, String> tasks) {
+    	MapBasedDatasource<Long> datasource = new MapBasedDatasource<Long>(tasks);
     	recentTasksSelect.setContainerDataSource(datasource);
     	recentTasksSelect.setItemCaptionPropertyId(MapBasedDatasource.LABEL_PROPERTY_ID);
     }
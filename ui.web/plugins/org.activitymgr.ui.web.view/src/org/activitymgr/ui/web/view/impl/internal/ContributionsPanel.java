@@ -5,11 +5,13 @@ import java.util.Date;
 import java.util.GregorianCalendar;
 
 import org.activitymgr.ui.web.logic.IContributionsTabLogic;
+import org.activitymgr.ui.web.logic.IPagedTableCellProviderCallback;
 import org.activitymgr.ui.web.logic.ITableCellProviderCallback;
 import org.activitymgr.ui.web.view.AbstractTabPanel;
 import org.activitymgr.ui.web.view.IResourceCache;
 import org.activitymgr.ui.web.view.impl.dialogs.PopupDateFieldWithParser;
 import org.activitymgr.ui.web.view.impl.internal.util.AlignHelper;
+import org.activitymgr.ui.web.view.impl.internal.util.PagedTableDatasource;
 import org.activitymgr.ui.web.view.impl.internal.util.TableDatasource;
 
 import com.google.inject.Inject;
@@ -272,8 +274,8 @@ public class ContributionsPanel extends AbstractTabPanel<IContributionsTabLogic>
 
 	@Override
 	public void setCollaboratorsProvider(
-			final ITableCellProviderCallback<Long> collaboratorsProvider) {
-		TableDatasource<Long> dataSource = new TableDatasource<Long>(getResourceCache(), collaboratorsProvider);
+			final IPagedTableCellProviderCallback<Long> collaboratorsProvider) {
+		PagedTableDatasource<Long> dataSource = new PagedTableDatasource<Long>(getResourceCache(), collaboratorsProvider);
 		collaboratorsTable.setContainerDataSource(dataSource);
 		int tableWidth = 10;
 		for (String propertyId : dataSource.getContainerPropertyIds()) {
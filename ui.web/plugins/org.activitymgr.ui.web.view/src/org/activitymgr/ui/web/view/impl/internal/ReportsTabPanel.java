@@ -11,10 +11,17 @@ import com.google.inject.Inject;
 import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.data.Property.ValueChangeListener;
 import com.vaadin.data.util.IndexedContainer;
+import com.vaadin.event.UIEvents.PollEvent;
+import com.vaadin.event.UIEvents.PollListener;
 import com.vaadin.shared.ui.MarginInfo;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Button.ClickEvent;
 import com.vaadin.ui.Component;
 import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.Label;
 import com.vaadin.ui.ListSelect;
+import com.vaadin.ui.Table;
+import com.vaadin.ui.UI;
 import com.vaadin.ui.VerticalLayout;
 
 @SuppressWarnings("serial")
@@ -33,6 +40,12 @@ public class ReportsTabPanel extends AbstractTabPanel<IReportsTabLogic>
 
 	private View reportsView;
 
+	private Table reportJobsTable;
+
+	private IndexedContainer reportJobsDatasource;
+
+	private PollListener reportJobsPollListener;
+
 	@Inject
 	public ReportsTabPanel(IResourceCache resourceCache) {
 		super(resourceCache);
@@ -57,6 +70,18 @@ public class ReportsTabPanel extends AbstractTabPanel<IReportsTabLogic>
 		reportsList.select("Projet EDF");
 		leftComponent.addComponent(reportsList);
 
+		leftComponent.addComponent(new Label("Background reports :"));
+		reportJobsTable = new Table();
+		reportJobsTable.setWidth(100, Unit.PERCENTAGE);
+		reportJobsTable.setPageLength(5);
+		reportJobsTable.addContainerProperty("name", String.class, null);
+		reportJobsTable.addContainerProperty("status", String.class, null);
+		reportJobsTable.addContainerProperty("download", Button.class, null);
+		reportJobsTable.setColumnHeaderMode(Table.ColumnHeaderMode.HIDDEN);
+		reportJobsDatasource = (IndexedContainer) reportJobsTable
+				.getContainerDataSource();
+		leftComponent.addComponent(reportJobsTable);
+
 		leftComponent.setExpandRatio(reportCfgsButtonsPanel, 10);
 		leftComponent.setExpandRatio(reportsList, 90);
 
@@ -83,6 +108,55 @@ public class ReportsTabPanel extends AbstractTabPanel<IReportsTabLogic>
 		reportsList.setItemCaption(id, name);
 	}
 
+	@SuppressWarnings("unchecked")
+	@Override
+	public void setReportJob(final String id, String name, String status,
+			boolean downloadable) {
+		if (reportJobsTable.getItem(id) == null) {
+			reportJobsDatasource.addItemAt(0, id);
+			reportJobsTable.getContainerProperty(id, "name").setValue(name);
+		}
+		reportJobsTable.getContainerProperty(id, "status").setValue(status);
+		if (downloadable
+				&& reportJobsTable.getContainerProperty(id, "download")
+						.getValue() == null) {
+			Button downloadButton = new Button("Download");
+			downloadButton.addStyleName("link");
+			downloadButton.addClickListener(new Button.ClickListener() {
+				@Override
+				public void buttonClick(ClickEvent event) {
+					getLogic().onReportJobDownload(id);
+				}
+			});
+			reportJobsTable.getContainerProperty(id, "download").setValue(
+					downloadButton);
+		}
+	}
+
+	@Override
+	public void removeReportJob(String id) {
+		reportJobsTable.removeItem(id);
+	}
+
+	@Override
+	public void setReportJobsPollingEnabled(boolean enabled) {
+		UI ui = UI.getCurrent();
+		if (enabled && reportJobsPollListener == null) {
+			reportJobsPollListener = new PollListener() {
+				@Override
+				public void poll(PollEvent event) {
+					getLogic().onReportJobsRefresh();
+				}
+			};
+			ui.addPollListener(reportJobsPollListener);
+			ui.setPollInterval(2000);
+		} else if (!enabled && reportJobsPollListener != null) {
+			ui.removePollListener(reportJobsPollListener);
+			reportJobsPollListener = null;
+			ui.setPollInterval(-1);
+		}
+	}
+
 	@Override
 	public void setLongReportsList(boolean longList) {
 		reportsList.setHeight(longList ? 530 : 230, Unit.PIXELS);
@@ -8,6 +8,7 @@ import org.activitymgr.ui.web.view.impl.internal.util.AlignHelper;
 import org.activitymgr.ui.web.view.impl.internal.util.TreeTableDatasource;
 
 import com.google.inject.Inject;
+import com.vaadin.data.Container;
 import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.data.Property.ValueChangeListener;
 import com.vaadin.ui.Component;
@@ -57,5 +58,17 @@ public class TasksPanel extends AbstractTabPanel<ITasksTabLogic> implements ITas
 			taskTree.setColumnAlignment(propertyId, AlignHelper.toVaadinAlign(tasksProvider.getColumnAlign(propertyId)));
 		}
 	}
+
+	@Override
+	public void reloadTaskTreeItems() {
+		// The tree reloads the children of the expanded tasks
+		final Container container = taskTree.getContainerDataSource();
+		taskTree.containerItemSetChange(new Container.ItemSetChangeEvent() {
+			@Override
+			public Container getContainer() {
+				return container;
+			}
+		});
+	}
     
 }
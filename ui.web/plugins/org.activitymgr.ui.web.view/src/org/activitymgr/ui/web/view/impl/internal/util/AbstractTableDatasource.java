@@ -39,12 +39,12 @@ public abstract class AbstractTableDatasource<ITEMID_TYPE, CELLPROVIDER_TYPE ext
 
 
 	@Override
-	public final Collection<ITEMID_TYPE> getItemIds() {
+	public Collection<ITEMID_TYPE> getItemIds() {
 		return getCellProvider().getRootElements();
 	}
 
 	@Override
-	public final int size() {
+	public int size() {
 		return getItemIds().size();
 	}
 
@@ -0,0 +1,138 @@
+package org.activitymgr.ui.web.view.impl.internal.util;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+
+import org.activitymgr.ui.web.logic.IPagedTableCellProviderCallback;
+import org.activitymgr.ui.web.view.IResourceCache;
+
+import com.vaadin.data.Container;
+import com.vaadin.data.Item;
+
+/**
+ * Table datasource that only requests the displayed rows to the provider (the
+ * table uses the indexed container methods) and delegates the sort to it.
+ */
+@SuppressWarnings("serial")
+public class PagedTableDatasource<ITEMID_TYPE> extends
+		AbstractTableDatasource<ITEMID_TYPE, IPagedTableCellProviderCallback<ITEMID_TYPE>> implements Container.Indexed, Container.Sortable {
+
+	public PagedTableDatasource(IResourceCache resourceCache,
+			IPagedTableCellProviderCallback<ITEMID_TYPE> cellProvider) {
+		super(resourceCache, cellProvider);
+	}
+
+	@Override
+	public Collection<ITEMID_TYPE> getItemIds() {
+		// Lazy list : the identifiers are requested only if they are read
+		return new AbstractList<ITEMID_TYPE>() {
+			@Override
+			public ITEMID_TYPE get(int index) {
+				return getIdByIndex(index);
+			}
+
+			@Override
+			public int size() {
+				return PagedTableDatasource.this.size();
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return getCellProvider().size();
+	}
+
+	@Override
+	public List<ITEMID_TYPE> getItemIds(int startIndex, int numberOfItems) {
+		return getCellProvider().getItemIds(startIndex, numberOfItems);
+	}
+
+	@Override
+	public ITEMID_TYPE getIdByIndex(int index) {
+		List<ITEMID_TYPE> itemIds = getCellProvider().getItemIds(index, 1);
+		return itemIds.isEmpty() ? null : itemIds.get(0);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public int indexOfId(Object itemId) {
+		return getCellProvider().indexOf((ITEMID_TYPE) itemId);
+	}
+
+	@Override
+	public Object nextItemId(Object itemId) {
+		int index = indexOfId(itemId);
+		return index >= 0 && index + 1 < size() ? getIdByIndex(index + 1) : null;
+	}
+
+	@Override
+	public Object prevItemId(Object itemId) {
+		int index = indexOfId(itemId);
+		return index > 0 ? getIdByIndex(index - 1) : null;
+	}
+
+	@Override
+	public Object firstItemId() {
+		return size() > 0 ? getIdByIndex(0) : null;
+	}
+
+	@Override
+	public Object lastItemId() {
+		int size = size();
+		return size > 0 ? getIdByIndex(size - 1) : null;
+	}
+
+	@Override
+	public boolean isFirstId(Object itemId) {
+		return indexOfId(itemId) == 0;
+	}
+
+	@Override
+	public boolean isLastId(Object itemId) {
+		int index = indexOfId(itemId);
+		return index >= 0 && index == size() - 1;
+	}
+
+	@Override
+	public void sort(Object[] propertyId, boolean[] ascending) {
+		// Only the first sort criteria is supported
+		if (propertyId.length > 0) {
+			getCellProvider().sort((String) propertyId[0], ascending[0]);
+		}
+	}
+
+	@Override
+	public Collection<?> getSortableContainerPropertyIds() {
+		return getCellProvider().getSortablePropertyIds();
+	}
+
+	/*
+	 * Unsupported operations
+	 */
+
+	@Override
+	public Object addItemAfter(Object previousItemId)
+			throws UnsupportedOperationException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Item addItemAfter(Object previousItemId, Object newItemId)
+			throws UnsupportedOperationException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Object addItemAt(int index) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Item addItemAt(int index, Object newItemId)
+			throws UnsupportedOperationException {
+		throw new UnsupportedOperationException();
+	}
+
+}
@@ -45,6 +45,8 @@ public class Activator implements BundleActivator, ServiceTrackerCustomizer {
 
 	private static final String PRODUCTION_MODE_PARAM = "productionMode";
 
+	private static final String ATMOSPHERE_BLOCKING_PARAM = "org.atmosphere.useBlocking";
+
 	private static final List<Class<?>> SERVICE_CLASSES = Arrays
 			.asList(new Class<?>[] { IExtensionRegistry.class,
 					HttpService.class /* , HttpContextExtensionService.class */});
@@ -147,6 +149,10 @@ public class Activator implements BundleActivator, ServiceTrackerCustomizer {
 				"true");
 		//props.put(WIDGETSET_PARAM, widgetset);
 		props.put(UI_PROVIDER_PARAM, OSGiUIProvider.class.getName());
+		// The servlets registered through the HTTP service cannot declare
+		// asynchronous support : the push connections (long polling) are
+		// held by blocking I/O instead of Servlet 3.0 async requests
+		props.put(ATMOSPHERE_BLOCKING_PARAM, "true");
 
 		// Retrieve bundles that may contain resources
 		Set<Bundle> resourceProviderBundles = new HashSet<Bundle>();
@@ -126,6 +126,11 @@ final class ActivityMgrServlet extends VaadinServlet {
 					public void addHeader(String name, String value) {
 						response.addHeader(name, value);
 					}
+
+					@Override
+					public void setStatus(int sc) {
+						response.setStatus(sc);
+					}
 				});
 			} else {
 				response.sendError(HttpServletResponse.SC_NOT_FOUND);